@@ -0,0 +1,89 @@
+package com.xhkzeroone.resttemplate.benchmark;
+
+import com.xhkzeroone.resttemplate.client.ReqOption;
+import com.xhkzeroone.resttemplate.client.RestClient;
+import com.xhkzeroone.resttemplate.client.RestConfig;
+import com.xhkzeroone.resttemplate.client.TransportType;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpMethod;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * HTTP/1.1 connection pool versus HTTP/2 streams on one connection at high concurrency, against a
+ * loopback server that answers after {@code latencyMillis}. The connections each client opened are
+ * reported as the {@code opened} counter.
+ * <p>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="Http2Benchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class Http2Benchmark {
+
+    @Param({"POOLED", "HTTP2"})
+    public TransportType type;
+
+    @Param({"0", "10"})
+    public long latencyMillis;
+
+    private final AtomicBoolean reporterClaimed = new AtomicBoolean();
+    private LocalH2Server server;
+    private RestClient client;
+    private ReqOption option;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Connections {
+        public long opened;
+        // Counters are summed over threads, so only one of them reports the server's total
+        private boolean reporter;
+
+        @Setup
+        public void setUp(Http2Benchmark benchmark) {
+            reporter = benchmark.reporterClaimed.compareAndSet(false, true);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        // Same server implementation for both, only the protocol differs
+        server = new LocalH2Server(type == TransportType.HTTP2 ? HttpVersionPolicy.FORCE_HTTP_2 : HttpVersionPolicy.FORCE_HTTP_1,
+                latencyMillis);
+        RestConfig config = new RestConfig();
+        config.setAddress(server.address());
+        config.setConnectTimeout(1000);
+        config.setReadTimeout(5000);
+        config.getTransport().setType(type);
+        config.getTransport().setMaxTotal(128);
+        config.getTransport().setMaxPerRoute(64);
+        config.getTransport().setMaxConcurrentStreams(100);
+        client = new RestClient(null, config);
+        option = ReqOption.builder()
+                .method(HttpMethod.GET)
+                .path(server.address() + "/users/{id}")
+                .pathVars("id", 1)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public String exchange(Connections connections) {
+        String body = client.exchange(option, String.class);
+        if (connections.reporter) {
+            connections.opened = server.connections();
+        }
+        return body;
+    }
+}
@@ -0,0 +1,121 @@
+package com.xhkzeroone.resttemplate.benchmark;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.DiscardingEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.IOSessionListener;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback non-blocking server speaking HTTP/1.1 or h2c (prior knowledge), answering every request
+ * with a fixed JSON payload after {@code latencyMillis}. Counts the connections clients open.
+ */
+public class LocalH2Server implements AutoCloseable {
+    private static final byte[] PAYLOAD = "{\"id\":1,\"name\":\"benchmark\",\"active\":true}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpAsyncServer server;
+    private final ScheduledExecutorService delays = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final String address;
+
+    public LocalH2Server(HttpVersionPolicy versionPolicy, long latencyMillis) throws Exception {
+        this.server = H2ServerBootstrap.bootstrap()
+                .setCanonicalHostName("127.0.0.1")
+                .setVersionPolicy(versionPolicy)
+                .setH2Config(H2Config.custom().setMaxConcurrentStreams(1000).build())
+                .setIOSessionListener(new IOSessionListener() {
+                    @Override
+                    public void connected(IOSession session) {
+                        connections.incrementAndGet();
+                    }
+
+                    @Override
+                    public void startTls(IOSession session) {
+                    }
+
+                    @Override
+                    public void inputReady(IOSession session) {
+                    }
+
+                    @Override
+                    public void outputReady(IOSession session) {
+                    }
+
+                    @Override
+                    public void timeout(IOSession session) {
+                    }
+
+                    @Override
+                    public void exception(IOSession session, Exception ex) {
+                    }
+
+                    @Override
+                    public void disconnected(IOSession session) {
+                    }
+                })
+                .register("*", new AsyncServerRequestHandler<Message<HttpRequest, Void>>() {
+                    @Override
+                    public AsyncRequestConsumer<Message<HttpRequest, Void>> prepare(HttpRequest request, EntityDetails entityDetails,
+                                                                                    HttpContext context) {
+                        return new BasicRequestConsumer<>(DiscardingEntityConsumer::new);
+                    }
+
+                    @Override
+                    public void handle(Message<HttpRequest, Void> message, ResponseTrigger trigger, HttpContext context) {
+                        Runnable respond = () -> {
+                            try {
+                                trigger.submitResponse(AsyncResponseBuilder.create(200)
+                                        .setEntity(PAYLOAD, ContentType.APPLICATION_JSON)
+                                        .build(), context);
+                            } catch (Exception e) {
+                                throw new IllegalStateException(e);
+                            }
+                        };
+                        if (latencyMillis > 0) {
+                            delays.schedule(respond, latencyMillis, TimeUnit.MILLISECONDS);
+                        } else {
+                            respond.run();
+                        }
+                    }
+                })
+                .create();
+        server.start();
+        ListenerEndpoint endpoint = server.listen(new InetSocketAddress("127.0.0.1", 0), URIScheme.HTTP).get();
+        this.address = "http://127.0.0.1:" + ((InetSocketAddress) endpoint.getAddress()).getPort();
+    }
+
+    public String address() {
+        return address;
+    }
+
+    public int connections() {
+        return connections.get();
+    }
+
+    @Override
+    public void close() {
+        server.close(CloseMode.IMMEDIATE);
+        delays.shutdownNow();
+    }
+}
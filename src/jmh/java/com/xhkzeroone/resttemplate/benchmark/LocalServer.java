@@ -0,0 +1,47 @@
+package com.xhkzeroone.resttemplate.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loopback HTTP/1.1 server answering every request with a fixed JSON payload.
+ */
+public class LocalServer implements AutoCloseable {
+    private static final byte[] PAYLOAD = "{\"id\":1,\"name\":\"benchmark\",\"active\":true}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public LocalServer() throws IOException {
+        // Avoid Nagle/delayed-ACK stalls dominating the measurement
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newFixedThreadPool(32);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, PAYLOAD.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(PAYLOAD);
+            }
+        });
+        server.start();
+    }
+
+    public String address() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,58 @@
+package com.xhkzeroone.resttemplate.benchmark;
+
+import com.xhkzeroone.resttemplate.client.Handler;
+import com.xhkzeroone.resttemplate.client.Middleware;
+import com.xhkzeroone.resttemplate.client.MiddlewareBuilder;
+import com.xhkzeroone.resttemplate.client.MiddlewareChain;
+import com.xhkzeroone.resttemplate.client.ReqContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of rebuilding the middleware chain versus dispatching through a pre-built one.
+ * Run with the GC profiler to get bytes per request (gc.alloc.rate.norm):
+ * <p>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="MiddlewareChainBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MiddlewareChainBenchmark {
+
+    @Param({"1", "4", "8"})
+    public int depth;
+
+    private List<Middleware> middlewares;
+    private Handler terminal;
+    private MiddlewareChain chain;
+
+    @Setup
+    public void setUp() {
+        middlewares = new ArrayList<>();
+        for (int i = 0; i < depth; i++) {
+            middlewares.add(next -> ctx -> next.handle(ctx));
+        }
+        terminal = ctx -> ctx.setResponse(ctx.getRequest());
+        chain = MiddlewareChain.of(middlewares, terminal, ctx -> null);
+    }
+
+    @Benchmark
+    public Object rebuildPerRequest() throws Exception {
+        ReqContext ctx = new ReqContext("payload");
+        MiddlewareBuilder.buildChain(middlewares, terminal).handle(ctx);
+        return ctx.getResponse();
+    }
+
+    @Benchmark
+    public Object compiled() throws Exception {
+        ReqContext ctx = new ReqContext("payload");
+        chain.handler().handle(ctx);
+        return ctx.getResponse();
+    }
+}
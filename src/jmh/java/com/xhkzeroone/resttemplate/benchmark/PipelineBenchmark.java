@@ -0,0 +1,113 @@
+package com.xhkzeroone.resttemplate.benchmark;
+
+import com.xhkzeroone.resttemplate.client.HttpCall;
+import com.xhkzeroone.resttemplate.client.HeaderParam;
+import com.xhkzeroone.resttemplate.client.Middleware;
+import com.xhkzeroone.resttemplate.client.PathVar;
+import com.xhkzeroone.resttemplate.client.QueryParam;
+import com.xhkzeroone.resttemplate.client.ReqOption;
+import com.xhkzeroone.resttemplate.client.RestClient;
+import com.xhkzeroone.resttemplate.client.RestConfig;
+import com.xhkzeroone.resttemplate.client.WebClient;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of one call through {@link RestClient#exchange(ReqOption, Class)} and
+ * {@link WebClient.RequestBuilder} against {@link StubRequestFactory}: context creation, header
+ * merging, URI expansion, the middleware chain and JSON decoding, with no I/O. The same call is
+ * also made with a {@link ReqOption} built per call and through an interface client.
+ * <p>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="PipelineBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Param({"0", "4"})
+    public int middlewares;
+
+    private RestClient restClient;
+    private WebClient webClient;
+    private ReqOption option;
+    private UserApi userApi;
+
+    public interface UserApi {
+        @HttpCall(method = "GET", path = "/users/{id}")
+        StubRequestFactory.User get(@PathVar("id") int id, @QueryParam("expand") String expand,
+                                    @HeaderParam("X-Request-Id") String requestId);
+    }
+
+    @Setup
+    public void setUp() {
+        RestConfig config = new RestConfig();
+        config.setAddress("http://stub.local");
+        config.setDefaultHeaders(Map.of("Accept", "application/json", "X-Client", "benchmark"));
+        restClient = new RestClient(null, config);
+        restClient.setRequestFactory(new StubRequestFactory());
+
+        RestTemplate restTemplate = new RestTemplate(new StubRequestFactory());
+        webClient = new WebClient(restTemplate).baseUrl("http://stub.local");
+
+        for (int i = 0; i < middlewares; i++) {
+            restClient.use((Middleware) next -> ctx -> next.handle(ctx));
+            webClient.use(new WebClient.Middleware() {
+            });
+        }
+        option = ReqOption.builder()
+                .method(HttpMethod.GET)
+                .path("/users/{id}")
+                .pathVars("id", 42)
+                .params("expand", "roles")
+                .header("X-Request-Id", "bench")
+                .build();
+        userApi = restClient.createClient(UserApi.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        restClient.close();
+        webClient.close();
+    }
+
+    @Benchmark
+    public StubRequestFactory.User restClientExchange() {
+        return restClient.exchange(option, StubRequestFactory.User.class);
+    }
+
+    @Benchmark
+    public StubRequestFactory.User restClientBuildAndExchange() {
+        return restClient.exchange(ReqOption.builder()
+                .method(HttpMethod.GET)
+                .path("/users/{id}")
+                .pathVars("id", 42)
+                .params("expand", "roles")
+                .header("X-Request-Id", "bench")
+                .build(), StubRequestFactory.User.class);
+    }
+
+    @Benchmark
+    public StubRequestFactory.User interfaceClient() {
+        return userApi.get(42, "roles", "bench");
+    }
+
+    @Benchmark
+    public Object webClientGet() {
+        return webClient.target("/users/{id}")
+                .pathVar("id", "42")
+                .param("expand", "roles")
+                .header("Accept", "application/json")
+                .header("X-Request-Id", "bench")
+                .result(StubRequestFactory.User.class)
+                .get()
+                .getBody();
+    }
+}
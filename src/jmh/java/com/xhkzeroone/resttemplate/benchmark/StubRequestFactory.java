@@ -0,0 +1,52 @@
+package com.xhkzeroone.resttemplate.benchmark;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * In-process transport answering every request with the same JSON body, so benchmarks measure
+ * the client's own overhead without sockets or a server thread.
+ */
+public class StubRequestFactory implements ClientHttpRequestFactory {
+    public static final String USER_JSON = "{\"id\":42,\"name\":\"Ada Lovelace\",\"email\":\"ada@example.com\","
+            + "\"roles\":[\"admin\",\"user\"],\"active\":true}";
+
+    private final byte[] body;
+
+    public StubRequestFactory() {
+        this(USER_JSON);
+    }
+
+    public StubRequestFactory(String body) {
+        this.body = body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+        MockClientHttpResponse response = new MockClientHttpResponse(body, HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().setContentLength(body.length);
+        request.setResponse(response);
+        return request;
+    }
+
+    /**
+     * Response type matching {@link #USER_JSON}.
+     */
+    public static class User {
+        public long id;
+        public String name;
+        public String email;
+        public String[] roles;
+        public boolean active;
+    }
+}
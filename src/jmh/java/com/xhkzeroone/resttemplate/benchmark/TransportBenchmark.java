@@ -0,0 +1,60 @@
+package com.xhkzeroone.resttemplate.benchmark;
+
+import com.xhkzeroone.resttemplate.client.ReqOption;
+import com.xhkzeroone.resttemplate.client.RestClient;
+import com.xhkzeroone.resttemplate.client.RestConfig;
+import com.xhkzeroone.resttemplate.client.TransportType;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpMethod;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link RestClient#exchange(ReqOption, Class)} per transport against a loopback server.
+ * <p>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="TransportBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class TransportBenchmark {
+
+    @Param({"SIMPLE", "POOLED", "JDK"})
+    public TransportType type;
+
+    private LocalServer server;
+    private RestClient client;
+    private ReqOption option;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new LocalServer();
+        RestConfig config = new RestConfig();
+        config.setAddress(server.address());
+        config.setConnectTimeout(1000);
+        config.setReadTimeout(5000);
+        config.getTransport().setType(type);
+        config.getTransport().setMaxPerRoute(64);
+        client = new RestClient(null, config);
+        option = ReqOption.builder()
+                .method(HttpMethod.GET)
+                .path(server.address() + "/users/{id}")
+                .pathVars("id", 1)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public String exchange() {
+        return client.exchange(option, String.class);
+    }
+}
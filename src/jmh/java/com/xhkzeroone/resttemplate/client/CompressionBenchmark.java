@@ -0,0 +1,95 @@
+package com.xhkzeroone.resttemplate.client;
+
+import com.xhkzeroone.resttemplate.benchmark.StubRequestFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU cost of gzip with {@link CompressionCodec}'s pooled deflaters/inflaters against the JDK's
+ * GZIP streams, for JSON arrays of a given size. The {@code rawBytes} and {@code wireBytes}
+ * counters are bytes per second before and after compression, so their ratio is the saving on
+ * the wire.
+ * <p>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="CompressionBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"1024", "16384", "262144"})
+    public int size;
+
+    @Param({"1", "6"})
+    public int level;
+
+    private CompressionCodec codec;
+    private byte[] json;
+    private byte[] gzipped;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Wire {
+        public long rawBytes;
+        public long wireBytes;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        RestConfig.Compression config = new RestConfig.Compression();
+        config.setLevel(level);
+        codec = new CompressionCodec(config);
+        StringBuilder array = new StringBuilder(size + 128).append('[');
+        for (int id = 0; array.length() < size; id++) {
+            array.append(id > 0 ? "," : "").append(StubRequestFactory.USER_JSON.replace("42", String.valueOf(id)));
+        }
+        json = array.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        gzipped = codec.compress(json);
+    }
+
+    @Benchmark
+    public byte[] compressPooled(Wire wire) {
+        byte[] compressed = codec.compress(json);
+        wire.rawBytes += json.length;
+        wire.wireBytes += compressed.length;
+        return compressed;
+    }
+
+    @Benchmark
+    public byte[] compressJdk(Wire wire) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(json.length / 4, 64));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(json);
+        }
+        byte[] compressed = out.toByteArray();
+        wire.rawBytes += json.length;
+        wire.wireBytes += compressed.length;
+        return compressed;
+    }
+
+    @Benchmark
+    public byte[] decompressPooled() {
+        return codec.decompress(gzipped, CompressionCodec.GZIP);
+    }
+
+    @Benchmark
+    public byte[] decompressJdk() throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            return in.readAllBytes();
+        }
+    }
+}
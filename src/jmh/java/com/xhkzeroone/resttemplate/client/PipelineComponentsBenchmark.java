@@ -0,0 +1,121 @@
+package com.xhkzeroone.resttemplate.client;
+
+import com.xhkzeroone.resttemplate.benchmark.StubRequestFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-call steps of the pipeline in isolation. Lives in the client package to reach the
+ * package-private pieces (context creation, {@link BodyCodec}).
+ * <p>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="PipelineComponentsBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineComponentsBenchmark {
+    private static final String BASE = "http://stub.local";
+    private static final String PATH = "/users/{id}/orders/{orderId}";
+
+    private RestClient client;
+    private ReqOption option;
+    private UriTemplateCache uriTemplates;
+    private DefaultUriBuilderFactory uriBuilderFactory;
+    private Map<String, String> defaultHeaders;
+    private Map<String, Object> pathVars;
+    private Map<String, Object> params;
+    private BodyCodec codec;
+    private MappingJackson2HttpMessageConverter converter;
+    private ResponseEntity<byte[]> response;
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        RestConfig config = new RestConfig();
+        config.setAddress(BASE);
+        config.setDefaultHeaders(Map.of("Accept", "application/json", "X-Client", "benchmark",
+                "X-Tenant", "acme", "User-Agent", "resttemplate-client"));
+        defaultHeaders = config.getDefaultHeaders();
+        client = new RestClient(null, config);
+        option = ReqOption.builder()
+                .method(HttpMethod.GET)
+                .path(PATH)
+                .pathVars("id", 42)
+                .pathVars("orderId", "A-1001")
+                .params("expand", "items")
+                .header("X-Request-Id", "bench")
+                .header("Accept", "application/json")
+                .build();
+
+        uriTemplates = new UriTemplateCache(BASE);
+        uriBuilderFactory = new DefaultUriBuilderFactory(BASE);
+        pathVars = new HashMap<>(Map.of("id", 42, "orderId", "A-1001"));
+        params = new HashMap<>(Map.of("expand", "items"));
+
+        converter = new MappingJackson2HttpMessageConverter();
+        codec = new BodyCodec(converter.getObjectMapper());
+        body = StubRequestFactory.USER_JSON.getBytes(StandardCharsets.UTF_8);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        response = new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public URI expandCompiledTemplate() {
+        return uriTemplates.expand(PATH, pathVars, params);
+    }
+
+    @Benchmark
+    public URI expandUriBuilderFactory() {
+        return uriBuilderFactory.uriString(PATH).queryParam("expand", params.get("expand")).build(pathVars);
+    }
+
+    @Benchmark
+    public HttpHeaders mergeHeaders() {
+        ReqContext ctx = client.createContext(option, StubRequestFactory.User.class);
+        return RestClient.entityHeaders(ctx.getHeaders());
+    }
+
+    // Previous approach: merge into a fresh map, then convert every value
+    @Benchmark
+    public HttpHeaders mergeHeadersEager() {
+        client.createContext(option, StubRequestFactory.User.class);
+        Map<String, Object> headers = new HashMap<>(defaultHeaders);
+        headers.putAll(option.getHeaders());
+        return RestClient.toHttpHeaders(headers);
+    }
+
+    @Benchmark
+    public Object decodeBodyCodec() {
+        return codec.decode(response, StubRequestFactory.User.class);
+    }
+
+    @Benchmark
+    public Object decodeMessageConverter() throws IOException {
+        MockClientHttpResponse message = new MockClientHttpResponse(body, HttpStatus.OK);
+        message.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return converter.read(StubRequestFactory.User.class, message);
+    }
+}
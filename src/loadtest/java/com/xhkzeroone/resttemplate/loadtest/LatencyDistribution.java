@@ -0,0 +1,61 @@
+package com.xhkzeroone.resttemplate.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side delay injected by {@link StubServer}. Parsed from a spec, all values in milliseconds:
+ * <ul>
+ *     <li>{@code fixed:10}</li>
+ *     <li>{@code uniform:5:50} - min and max</li>
+ *     <li>{@code lognormal:20:0.5} - median and sigma, a long right tail like most real services</li>
+ *     <li>{@code bimodal:10:400:0.02} - fast, slow and the fraction of slow responses (a slow replica)</li>
+ * </ul>
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    long sampleNanos(Random random);
+
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        double[] values = new double[parts.length - 1];
+        for (int i = 1; i < parts.length; i++) {
+            values[i - 1] = Double.parseDouble(parts[i]);
+        }
+        switch (parts[0]) {
+            case "fixed":
+                require(spec, values, 1);
+                long fixed = millis(values[0]);
+                return random -> fixed;
+            case "uniform":
+                require(spec, values, 2);
+                long min = millis(values[0]);
+                long max = millis(values[1]);
+                return random -> min + (long) (random.nextDouble() * (max - min));
+            case "lognormal":
+                require(spec, values, 2);
+                double mu = Math.log(values[0]);
+                double sigma = values[1];
+                return random -> millis(Math.exp(mu + sigma * random.nextGaussian()));
+            case "bimodal":
+                require(spec, values, 3);
+                long fast = millis(values[0]);
+                long slow = millis(values[1]);
+                double slowFraction = values[2];
+                return random -> random.nextDouble() < slowFraction ? slow : fast;
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+        }
+    }
+
+    private static void require(String spec, double[] values, int count) {
+        if (values.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " values in latency spec: " + spec);
+        }
+    }
+
+    private static long millis(double millis) {
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,99 @@
+package com.xhkzeroone.resttemplate.loadtest;
+
+import com.xhkzeroone.resttemplate.client.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-loop load: calls are started on a fixed schedule whether or not earlier ones have
+ * finished, and latency is measured from the scheduled start. A slow client or server therefore
+ * shows up as latency instead of quietly lowering the offered rate (coordinated omission).
+ */
+public class LoadGenerator {
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final int ratePerSecond;
+    private final Duration warmup;
+    private final Duration duration;
+
+    public LoadGenerator(int ratePerSecond, Duration warmup, Duration duration) {
+        this.ratePerSecond = ratePerSecond;
+        this.warmup = warmup;
+        this.duration = duration;
+    }
+
+    /**
+     * @param call starts one call; must not block for the duration of the call
+     */
+    public LoadResult run(Supplier<CompletableFuture<?>> call) throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        Queue<CompletableFuture<?>> measured = new ConcurrentLinkedQueue<>();
+        long interval = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long warmupNanos = warmup.toNanos();
+        long endNanos = warmupNanos + duration.toNanos();
+        long start = System.nanoTime();
+
+        for (long i = 0; ; i++) {
+            long offset = i * interval;
+            if (offset >= endNanos) {
+                break;
+            }
+            long intended = start + offset;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            CompletableFuture<?> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            if (offset < warmupNanos) {
+                continue;
+            }
+            measured.add(future.whenComplete((ignored, error) -> {
+                if (error != null) {
+                    errors.increment();
+                } else {
+                    histogram.record(System.nanoTime() - intended);
+                }
+            }));
+        }
+
+        List<CompletableFuture<?>> pending = List.copyOf(measured);
+        try {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+                    .exceptionally(error -> null)
+                    .get(DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Calls still running now are counted as errors below
+        }
+        long unfinished = pending.stream().filter(future -> !future.isDone()).count();
+        long completed = histogram.getCount();
+        double seconds = duration.toNanos() / 1e9;
+        return new LoadResult(pending.size(), completed / seconds, errors.sum() + unfinished,
+                millis(histogram.valueAtPercentile(50)),
+                millis(histogram.valueAtPercentile(99)),
+                millis(histogram.valueAtPercentile(99.9)),
+                millis(histogram.getMaxNanos()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
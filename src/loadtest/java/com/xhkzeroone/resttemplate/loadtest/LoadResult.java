@@ -0,0 +1,84 @@
+package com.xhkzeroone.resttemplate.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Outcome of one load run; latencies in milliseconds. Saved as a properties file to serve as
+ * the baseline for later runs.
+ */
+public record LoadResult(long requests, double throughput, long errors,
+                         double p50, double p99, double p999, double max) {
+
+    public double errorRate() {
+        return requests == 0 ? 0 : (double) errors / requests;
+    }
+
+    /**
+     * Regressions against a baseline, empty if none. Latency and throughput may be worse by
+     * {@code tolerance} (e.g. 0.2 for 20%); the error rate by the same fraction plus 0.1 points.
+     */
+    public List<String> regressionsAgainst(LoadResult baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        checkLatency(regressions, "p50", p50, baseline.p50, tolerance);
+        checkLatency(regressions, "p99", p99, baseline.p99, tolerance);
+        checkLatency(regressions, "p999", p999, baseline.p999, tolerance);
+        if (throughput < baseline.throughput * (1 - tolerance)) {
+            regressions.add(String.format("throughput %.1f/s < baseline %.1f/s", throughput, baseline.throughput));
+        }
+        if (errorRate() > baseline.errorRate() * (1 + tolerance) + 0.001) {
+            regressions.add(String.format("error rate %.4f > baseline %.4f", errorRate(), baseline.errorRate()));
+        }
+        return regressions;
+    }
+
+    private static void checkLatency(List<String> regressions, String name, double value, double baseline, double tolerance) {
+        if (value > baseline * (1 + tolerance)) {
+            regressions.add(String.format("%s %.2f ms > baseline %.2f ms", name, value, baseline));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d throughput=%.1f/s errors=%d (%.2f%%) p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms",
+                requests, throughput, errors, errorRate() * 100, p50, p99, p999, max);
+    }
+
+    public void save(Path path) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("requests", Long.toString(requests));
+        properties.setProperty("throughput", Double.toString(throughput));
+        properties.setProperty("errors", Long.toString(errors));
+        properties.setProperty("p50", Double.toString(p50));
+        properties.setProperty("p99", Double.toString(p99));
+        properties.setProperty("p999", Double.toString(p999));
+        properties.setProperty("max", Double.toString(max));
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            properties.store(writer, "Load test baseline");
+        }
+    }
+
+    public static LoadResult load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        return new LoadResult(
+                Long.parseLong(properties.getProperty("requests")),
+                Double.parseDouble(properties.getProperty("throughput")),
+                Long.parseLong(properties.getProperty("errors")),
+                Double.parseDouble(properties.getProperty("p50")),
+                Double.parseDouble(properties.getProperty("p99")),
+                Double.parseDouble(properties.getProperty("p999")),
+                Double.parseDouble(properties.getProperty("max")));
+    }
+}
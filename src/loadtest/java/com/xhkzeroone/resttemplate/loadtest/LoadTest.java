@@ -0,0 +1,138 @@
+package com.xhkzeroone.resttemplate.loadtest;
+
+import com.xhkzeroone.resttemplate.client.ReqOption;
+import com.xhkzeroone.resttemplate.client.RestClient;
+import com.xhkzeroone.resttemplate.client.RestConfig;
+import com.xhkzeroone.resttemplate.client.WebClient;
+import org.springframework.http.HttpMethod;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Drives a client against a local {@link StubServer} at a constant rate and prints throughput,
+ * latency percentiles and errors. Exits with status 1 when a baseline is given and the run
+ * regresses against it, which fails the Maven build:
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="client=rest-async rate=500 duration=30 latency=lognormal:20:0.5"
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="... save=loadtest-baseline.properties"
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="... baseline=loadtest-baseline.properties tolerance=0.2"
+ * </pre>
+ * Arguments (defaults in brackets): client rest|rest-async|web [rest-async], rate per second [200],
+ * warmup and duration in seconds [5, 20], latency spec [lognormal:10:0.5], errorRate [0],
+ * payload bytes [1024], connections [200], baseline, save, tolerance [0.2].
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        String client = options.getOrDefault("client", "rest-async");
+        int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "20")));
+        LatencyDistribution latency = LatencyDistribution.parse(options.getOrDefault("latency", "lognormal:10:0.5"));
+        double errorRate = Double.parseDouble(options.getOrDefault("errorRate", "0"));
+        int payload = Integer.parseInt(options.getOrDefault("payload", "1024"));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "200"));
+        double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "0.2"));
+
+        LoadResult result;
+        try (StubServer server = new StubServer(latency, errorRate, payload)) {
+            System.out.printf("Stub server at %s, client=%s rate=%d/s warmup=%ds duration=%ds latency=%s errorRate=%s payload=%dB%n",
+                    server.address(), client, rate, warmup.toSeconds(), duration.toSeconds(),
+                    options.getOrDefault("latency", "lognormal:10:0.5"), errorRate, payload);
+            result = run(client, server.address(), connections, new LoadGenerator(rate, warmup, duration));
+        }
+        System.out.println("Result: " + result);
+
+        if (options.containsKey("save")) {
+            Path path = Path.of(options.get("save"));
+            result.save(path);
+            System.out.println("Saved baseline to " + path.toAbsolutePath());
+        }
+        if (options.containsKey("baseline")) {
+            Path path = Path.of(options.get("baseline"));
+            if (!Files.exists(path)) {
+                System.out.println("No baseline at " + path.toAbsolutePath() + ", skipping comparison");
+                return;
+            }
+            LoadResult baseline = LoadResult.load(path);
+            System.out.println("Baseline: " + baseline);
+            List<String> regressions = result.regressionsAgainst(baseline, tolerance);
+            if (!regressions.isEmpty()) {
+                regressions.forEach(regression -> System.out.println("REGRESSION: " + regression));
+                System.exit(1);
+            }
+            System.out.println("No regression against baseline");
+        }
+    }
+
+    private static LoadResult run(String client, String address, int connections, LoadGenerator generator) throws Exception {
+        RestConfig config = new RestConfig();
+        config.setName("loadtest");
+        config.setAddress(address);
+        config.setConnectTimeout(1000);
+        config.setReadTimeout(10000);
+        config.getTransport().setMaxTotal(connections);
+        config.getTransport().setMaxPerRoute(connections);
+        ReqOption option = ReqOption.builder()
+                .method(HttpMethod.GET)
+                .path("/users/{id}")
+                .pathVars("id", 1)
+                .build();
+
+        // Blocking clients get a thread per in-flight call so the load stays open-loop
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService callers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-caller-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            switch (client) {
+                case "rest-async": {
+                    try (RestClient restClient = new RestClient(null, config)) {
+                        return generator.run(() -> restClient.exchangeAsync(option, byte[].class));
+                    }
+                }
+                case "rest": {
+                    try (RestClient restClient = new RestClient(null, config)) {
+                        return generator.run(blocking(callers, () -> restClient.exchange(option, byte[].class)));
+                    }
+                }
+                case "web": {
+                    try (WebClient webClient = new WebClient().baseUrl(address).transport(config.getTransport())) {
+                        return generator.run(blocking(callers, () -> webClient.target("/users/{id}")
+                                .pathVar("id", "1")
+                                .result(byte[].class)
+                                .get()));
+                    }
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown client: " + client);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private static Supplier<CompletableFuture<?>> blocking(ExecutorService callers, Supplier<?> call) {
+        return () -> CompletableFuture.supplyAsync(call, callers);
+    }
+}
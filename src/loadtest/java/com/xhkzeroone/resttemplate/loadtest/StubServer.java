@@ -0,0 +1,105 @@
+package com.xhkzeroone.resttemplate.loadtest;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletRegistration;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded Tomcat answering every path with a JSON payload of a fixed size after a delay drawn
+ * from a {@link LatencyDistribution}; a fraction of responses are 503s. Delays are served with
+ * async servlets, so slow responses do not tie up container threads.
+ */
+public class StubServer implements AutoCloseable {
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final byte[] payload;
+    private final ScheduledExecutorService timer;
+    private final WebServer server;
+
+    public StubServer(LatencyDistribution latency, double errorRate, int payloadBytes) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.payload = payload(payloadBytes);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stub-server-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        this.server = factory.getWebServer(context -> {
+            ServletRegistration.Dynamic stub = context.addServlet("stub", new StubServlet());
+            stub.setAsyncSupported(true);
+            stub.addMapping("/*");
+        });
+        server.start();
+    }
+
+    public String address() {
+        return "http://localhost:" + server.getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop();
+        server.destroy();
+        timer.shutdownNow();
+    }
+
+    private static byte[] payload(int size) {
+        String prefix = "{\"id\":1,\"data\":\"";
+        String suffix = "\"}";
+        char[] data = new char[Math.max(size - prefix.length() - suffix.length(), 0)];
+        Arrays.fill(data, 'x');
+        return (prefix + new String(data) + suffix).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private class StubServlet extends HttpServlet {
+        @Override
+        protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            // Drain the request body so the connection can be reused
+            request.getInputStream().readAllBytes();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            boolean fail = random.nextDouble() < errorRate;
+            long delay = latency.sampleNanos(random);
+            if (delay <= 0) {
+                respond(response, fail);
+                return;
+            }
+            AsyncContext async = request.startAsync();
+            async.setTimeout(0);
+            timer.schedule(() -> async.start(() -> {
+                try {
+                    respond((HttpServletResponse) async.getResponse(), fail);
+                } catch (IOException ignored) {
+                    // Client went away
+                } finally {
+                    async.complete();
+                }
+            }), delay, TimeUnit.NANOSECONDS);
+        }
+
+        private void respond(HttpServletResponse response, boolean fail) throws IOException {
+            if (fail) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                response.setContentLength(0);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType("application/json");
+            response.setContentLength(payload.length);
+            response.getOutputStream().write(payload);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads for the middlewares that only implement {@link Middleware#apply(Handler)} on the async
+ * path: each such call holds one until the rest of the chain completes. They are bounded and kept
+ * off the common pool, which CompletableFuture callbacks and parallel streams share. A bridged
+ * middleware below another one runs on the thread already held, so nested calls never wait for
+ * a thread of their own.
+ */
+final class AsyncBridge implements AutoCloseable {
+    private static final ThreadLocal<Boolean> BRIDGED = new ThreadLocal<>();
+    private static final AsyncBridge SHARED;
+
+    static {
+        RestConfig.Transport defaults = new RestConfig.Transport();
+        SHARED = new AsyncBridge(defaults.getAsyncBridgeThreads(), defaults.getAsyncBridgeQueue());
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    AsyncBridge(int threads, int queue) {
+        if (threads < 1 || queue < 1) {
+            throw new IllegalArgumentException("asyncBridgeThreads and asyncBridgeQueue must be at least 1");
+        }
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queue),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "rest-async-bridge");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Bridge for contexts that no {@link RestClient} created.
+     */
+    static AsyncBridge shared() {
+        return SHARED;
+    }
+
+    CompletableFuture<Void> run(Handler handler, ReqContext ctx) {
+        if (BRIDGED.get() != null) {
+            try {
+                handler.handle(ctx);
+                return CompletableFuture.completedFuture(null);
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        try {
+            return CompletableFuture.runAsync(() -> {
+                BRIDGED.set(Boolean.TRUE);
+                try {
+                    handler.handle(ctx);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                } finally {
+                    BRIDGED.remove();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new RequestRejectedException(
+                    "Async bridge is full: " + executor.getMaximumPoolSize() + " middleware calls running and "
+                            + executor.getQueue().size() + " queued"));
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
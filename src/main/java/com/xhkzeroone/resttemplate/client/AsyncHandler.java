@@ -0,0 +1,12 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link Handler}: the returned future completes once
+ * the response (or failure) has been written to the context.
+ */
+@FunctionalInterface
+public interface AsyncHandler {
+    CompletableFuture<Void> handle(ReqContext ctx);
+}
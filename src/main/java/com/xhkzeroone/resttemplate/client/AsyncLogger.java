@@ -0,0 +1,145 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands log messages to a single background thread through a bounded lock-free ring buffer.
+ * Messages are suppliers, so formatting happens on the background thread. When the buffer is
+ * full the message is dropped and counted; the caller never blocks. The writer parks while the
+ * buffer is empty and the next message wakes it.
+ */
+public class AsyncLogger {
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static volatile AsyncLogger shared;
+
+    private final int mask;
+    private final AtomicReferenceArray<Entry> slots;
+    // Per-slot sequence: equals the producer position when free, position + 1 when filled
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Thread writer;
+    // Set by the writer before it parks on an empty buffer, so producers know to wake it
+    private volatile boolean idle;
+    private long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public AsyncLogger(int capacity, String threadName) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.writer = new Thread(this::drain, threadName);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Process-wide instance used by the logging middlewares unless they are given their own.
+     */
+    public static AsyncLogger shared() {
+        AsyncLogger instance = shared;
+        if (instance == null) {
+            synchronized (AsyncLogger.class) {
+                instance = shared;
+                if (instance == null) {
+                    instance = new AsyncLogger(DEFAULT_CAPACITY, "rest-client-logger");
+                    shared = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a message; returns false if it was dropped because the buffer is full.
+     */
+    public boolean log(Logger logger, Level level, Supplier<String> message) {
+        if (!logger.isLoggable(level)) {
+            return true;
+        }
+        Entry entry = new Entry(logger, level, message);
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, entry);
+                    sequences.set(index, position + 1);
+                    if (idle) {
+                        LockSupport.unpark(writer);
+                    }
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                dropped.increment();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    private void drain() {
+        while (true) {
+            Entry entry = poll();
+            if (entry == null) {
+                idle = true;
+                // Checked again after raising the flag: a producer that missed it has published by now
+                entry = poll();
+                if (entry == null) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                if (entry == null) {
+                    continue;
+                }
+            }
+            try {
+                entry.logger.log(entry.level, entry.message.get());
+            } catch (Throwable e) {
+                // Anything a handler or message throws must not end the only writer
+                failed.increment();
+            }
+        }
+    }
+
+    private Entry poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        Entry entry = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, head + mask + 1);
+        head++;
+        return entry;
+    }
+
+    private record Entry(Logger logger, Level level, Supplier<String> message) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sets a bearer token from a {@link WebClient.AuthMiddleware.TokenProvider} on every request. A 401
+ * response invalidates the token it was sent with and, if the body can be sent again, the request
+ * is retried once with a new token. The {@code (RestConfig)} constructor uses a
+ * {@link CachingTokenProvider} for the client-credentials endpoint in {@link RestConfig.Auth},
+ * which {@link #close()} closes; a provider passed in is left to the caller to close.
+ */
+public class AuthMiddleware implements Middleware, AutoCloseable {
+    private final WebClient.AuthMiddleware.TokenProvider tokenProvider;
+    // Whether the provider was created here rather than passed in
+    private final boolean ownsTokenProvider;
+
+    public AuthMiddleware(RestConfig config) {
+        this(CachingTokenProvider.clientCredentials(config.getAuth()), true);
+    }
+
+    public AuthMiddleware(WebClient.AuthMiddleware.TokenProvider tokenProvider) {
+        this(tokenProvider, false);
+    }
+
+    private AuthMiddleware(WebClient.AuthMiddleware.TokenProvider tokenProvider, boolean ownsTokenProvider) {
+        this.tokenProvider = tokenProvider;
+        this.ownsTokenProvider = ownsTokenProvider;
+    }
+
+    @Override
+    public Handler apply(Handler next) {
+        return ctx -> {
+            String token = tokenProvider.getToken();
+            authorize(ctx, token);
+            try {
+                next.handle(ctx);
+            } catch (Exception e) {
+                if (!renew(ctx, token, e)) {
+                    throw e;
+                }
+                authorize(ctx, tokenProvider.getToken());
+                next.handle(ctx);
+            }
+        };
+    }
+
+    @Override
+    public AsyncHandler applyAsync(AsyncHandler next) {
+        return ctx -> tokenProvider.getTokenAsync().thenCompose(token -> {
+            authorize(ctx, token);
+            return next.handle(ctx).exceptionallyCompose(error -> {
+                if (!renew(ctx, token, RetryPolicy.unwrap(error))) {
+                    return CompletableFuture.failedFuture(error);
+                }
+                return tokenProvider.getTokenAsync().thenCompose(renewed -> {
+                    authorize(ctx, renewed);
+                    return next.handle(ctx);
+                });
+            });
+        });
+    }
+
+    public WebClient.AuthMiddleware.TokenProvider getTokenProvider() {
+        return tokenProvider;
+    }
+
+    /**
+     * Stops the background refreshes of the token provider this middleware created.
+     */
+    @Override
+    public void close() {
+        if (ownsTokenProvider && tokenProvider instanceof CachingTokenProvider provider) {
+            provider.close();
+        }
+    }
+
+    private static void authorize(ReqContext ctx, String token) {
+        if (token == null || token.isEmpty()) {
+            return;
+        }
+        if (ctx.getHeaders() == null) {
+            ctx.setHeaders(new HashMap<>());
+        }
+        ctx.getHeaders().put(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+
+    private boolean renew(ReqContext ctx, String token, Throwable error) {
+        return error instanceof RestClientResponseException response && response.getStatusCode().value() == 401
+                && token != null && BodySource.isReplayable(ctx.getRequest()) && tokenProvider.invalidate(token);
+    }
+}
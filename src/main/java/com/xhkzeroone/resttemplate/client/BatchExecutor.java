@@ -0,0 +1,139 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Scatter-gather over async calls: at most {@code parallelism} calls are in flight, a new one is
+ * started as each completes, and whatever is unfinished when the deadline passes is reported as
+ * {@link BatchResult.Status#TIMED_OUT} and cancelled instead of failing the batch.
+ * <p>
+ * Calls are started from a drain loop rather than from each completion callback, so calls that
+ * complete synchronously (cache hits, rejections) do not nest one stack frame per call.
+ */
+class BatchExecutor<I, T> {
+    private final List<I> inputs;
+    private final Function<I, CompletableFuture<T>> call;
+    private final int parallelism;
+    private final Consumer<BatchResult<T>> listener;
+    private final AtomicReferenceArray<BatchResult<T>> results;
+    private final AtomicReferenceArray<CompletableFuture<T>> calls;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger remaining;
+    // Free call slots, and how many drain requests are pending; only the thread that moved it from 0 drains
+    private final AtomicInteger slots;
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private BatchExecutor(List<I> inputs, Function<I, CompletableFuture<T>> call, int parallelism,
+                          Consumer<BatchResult<T>> listener) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.inputs = inputs;
+        this.call = call;
+        this.parallelism = parallelism;
+        this.listener = listener;
+        this.results = new AtomicReferenceArray<>(inputs.size());
+        this.calls = new AtomicReferenceArray<>(inputs.size());
+        this.remaining = new AtomicInteger(inputs.size());
+        this.slots = new AtomicInteger(parallelism);
+    }
+
+    static <I, T> CompletableFuture<List<BatchResult<T>>> execute(List<I> inputs, Function<I, CompletableFuture<T>> call,
+                                                                  int parallelism, Duration deadline,
+                                                                  Consumer<BatchResult<T>> listener) {
+        if (deadline == null || deadline.isNegative()) {
+            throw new IllegalArgumentException("Deadline must be set and not negative");
+        }
+        return new BatchExecutor<>(inputs, call, parallelism, listener).start(deadline);
+    }
+
+    private CompletableFuture<List<BatchResult<T>>> start(Duration deadline) {
+        if (inputs.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        drain();
+        return done.completeOnTimeout(null, deadline.toNanos(), TimeUnit.NANOSECONDS)
+                .thenApply(ignored -> collect());
+    }
+
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            // The draining thread, possibly this one further up the stack, will pick up the free slot
+            return;
+        }
+        do {
+            while (slots.get() > 0 && !done.isDone() && next.get() < inputs.size()) {
+                slots.decrementAndGet();
+                launch(next.getAndIncrement());
+            }
+        } while (drainRequests.decrementAndGet() != 0);
+    }
+
+    private void launch(int index) {
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(inputs.get(index));
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        calls.set(index, future);
+        future.whenComplete((value, error) -> {
+            complete(error == null
+                    ? BatchResult.success(index, value)
+                    : BatchResult.failure(index, unwrap(error)));
+            slots.incrementAndGet();
+            drain();
+        });
+        if (results.get(index) != null && results.get(index).getStatus() == BatchResult.Status.TIMED_OUT) {
+            // Started just as the deadline passed, after collect() looked for calls to cancel
+            future.cancel(true);
+        }
+    }
+
+    private void complete(BatchResult<T> result) {
+        // Late completions after the deadline lose the race against TIMED_OUT
+        if (!results.compareAndSet(result.getIndex(), null, result)) {
+            return;
+        }
+        notifyListener(result);
+        if (remaining.decrementAndGet() == 0) {
+            done.complete(null);
+        }
+    }
+
+    private List<BatchResult<T>> collect() {
+        List<BatchResult<T>> collected = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            BatchResult<T> timedOut = BatchResult.timedOut(i);
+            if (results.compareAndSet(i, null, timedOut)) {
+                CompletableFuture<T> inFlight = calls.get(i);
+                if (inFlight != null) {
+                    inFlight.cancel(true);
+                }
+                notifyListener(timedOut);
+            }
+            collected.add(results.get(i));
+        }
+        return collected;
+    }
+
+    private void notifyListener(BatchResult<T> result) {
+        if (listener != null) {
+            listener.accept(result);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
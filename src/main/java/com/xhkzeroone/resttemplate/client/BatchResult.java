@@ -0,0 +1,58 @@
+package com.xhkzeroone.resttemplate.client;
+
+/**
+ * Outcome of one item of a batch, at the same index as its request.
+ */
+public class BatchResult<T> {
+    public enum Status {SUCCESS, FAILED, TIMED_OUT}
+
+    private final int index;
+    private final Status status;
+    private final T value;
+    private final Throwable error;
+
+    private BatchResult(int index, Status status, T value, Throwable error) {
+        this.index = index;
+        this.status = status;
+        this.value = value;
+        this.error = error;
+    }
+
+    static <T> BatchResult<T> success(int index, T value) {
+        return new BatchResult<>(index, Status.SUCCESS, value, null);
+    }
+
+    static <T> BatchResult<T> failure(int index, Throwable error) {
+        return new BatchResult<>(index, Status.FAILED, null, error);
+    }
+
+    static <T> BatchResult<T> timedOut(int index) {
+        return new BatchResult<>(index, Status.TIMED_OUT, null, null);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{index=" + index + ", status=" + status
+                + (error != null ? ", error=" + error : ", value=" + value) + '}';
+    }
+}
@@ -0,0 +1,218 @@
+package com.xhkzeroone.resttemplate.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.UnknownHttpStatusCodeException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Request/response body conversion for paths that bypass RestTemplate's message converters
+ * (the async exchange, JSON responses). Uses the same ObjectMapper as the client's Jackson
+ * converter, with one ObjectReader per response type resolved on first use.
+ */
+class BodyCodec {
+    private static final List<MediaType> JSON_ACCEPT = List.of(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+
+    private final ObjectMapper objectMapper;
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    BodyCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    static BodyCodec from(List<HttpMessageConverter<?>> converters) {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter instanceof MappingJackson2HttpMessageConverter jackson) {
+                return new BodyCodec(jackson.getObjectMapper());
+            }
+        }
+        return new BodyCodec(new ObjectMapper());
+    }
+
+    ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    byte[] encode(Object body, HttpHeaders headers) {
+        if (body == null) {
+            return null;
+        }
+        if (body instanceof byte[] bytes) {
+            setContentTypeIfAbsent(headers, MediaType.APPLICATION_OCTET_STREAM);
+            return bytes;
+        }
+        if (body instanceof String text) {
+            setContentTypeIfAbsent(headers, MediaType.TEXT_PLAIN);
+            return text.getBytes(charsetOf(headers));
+        }
+        setContentTypeIfAbsent(headers, MediaType.APPLICATION_JSON);
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialize request body", e);
+        }
+    }
+
+    /**
+     * Reader for {@code type}, a Class, ParameterizedType or JavaType; cached per type.
+     */
+    ObjectReader readerFor(Type type) {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = readers.computeIfAbsent(type, key -> objectMapper.readerFor(javaType(key)));
+        }
+        return reader;
+    }
+
+    JavaType javaType(Type type) {
+        return type instanceof JavaType javaType ? javaType : objectMapper.getTypeFactory().constructType(type);
+    }
+
+    Class<?> rawClass(Type type) {
+        return type instanceof Class<?> clazz ? clazz : javaType(type).getRawClass();
+    }
+
+    /**
+     * Whether responses of this type are read as JSON with {@link #readerFor(Type)}. Text, bytes,
+     * resources and Void are left to the message converters.
+     */
+    static boolean isJson(Class<?> type) {
+        return type != String.class && type != byte[].class && type != Void.class && type != void.class
+                && !Resource.class.isAssignableFrom(type);
+    }
+
+    <T> T decode(ResponseEntity<byte[]> response, Class<T> type) {
+        return decode(response, (Type) type);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T decode(ResponseEntity<byte[]> response, Type type) {
+        checkStatus(response);
+        byte[] body = response.getBody();
+        Class<?> raw = rawClass(type);
+        if (body == null || body.length == 0 || raw == Void.class) {
+            return null;
+        }
+        if (raw == byte[].class) {
+            return (T) body;
+        }
+        if (raw == String.class) {
+            return (T) new String(body, charsetOf(response.getHeaders()));
+        }
+        try {
+            return readerFor(type).readValue(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot deserialize response to " + type.getTypeName(), e);
+        }
+    }
+
+    /**
+     * RestTemplate exchange that reads a JSON response with the cached reader for {@code type},
+     * straight from the response stream. Other types, and responses that are not JSON, go through
+     * the message converters as usual.
+     */
+    <T> ResponseEntity<T> exchange(RestTemplate restTemplate, URI uri, HttpMethod method, HttpEntity<?> entity, Type type) {
+        if (!isJson(rawClass(type))) {
+            // RestTemplate resolves Class and ParameterizedType, not Jackson's JavaType
+            Type resolvable = type instanceof JavaType ? rawClass(type) : type;
+            return restTemplate.exchange(uri, method, entity, ParameterizedTypeReference.forType(resolvable));
+        }
+        RequestCallback body = restTemplate.httpEntityCallback(entity);
+        RequestCallback callback = request -> {
+            // Entity headers are copied over these, so an explicit Accept still wins
+            request.getHeaders().setAccept(JSON_ACCEPT);
+            body.doWithRequest(request);
+        };
+        ResponseExtractor<ResponseEntity<T>> converters = restTemplate.responseEntityExtractor(type);
+        ObjectReader reader = readerFor(type);
+        return restTemplate.execute(uri, method, callback, response -> {
+            HttpHeaders headers = response.getHeaders();
+            if (!isReadableJson(headers.getContentType())) {
+                return converters.extractData(response);
+            }
+            HttpStatusCode status = response.getStatusCode();
+            if (status.is1xxInformational() || status.value() == HttpStatus.NO_CONTENT.value()
+                    || status.value() == HttpStatus.NOT_MODIFIED.value()
+                    || headers.getContentLength() == 0) {
+                return new ResponseEntity<>(headers, status);
+            }
+            try (JsonParser parser = reader.createParser(response.getBody())) {
+                T value = parser.nextToken() != null ? reader.readValue(parser) : null;
+                return new ResponseEntity<>(value, headers, status);
+            } catch (IOException e) {
+                throw new RestClientException("Error while extracting response for type [" + type.getTypeName()
+                        + "] and content type [" + headers.getContentType() + "]", e);
+            }
+        });
+    }
+
+    // JSON in a charset Jackson detects by itself; anything else is left to the converters
+    private static boolean isReadableJson(MediaType contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        boolean json = MediaType.APPLICATION_JSON.isCompatibleWith(contentType)
+                || contentType.getSubtype().endsWith("+json");
+        Charset charset = contentType.getCharset();
+        return json && (charset == null || charset.name().startsWith("UTF-"));
+    }
+
+    static void checkStatus(ResponseEntity<byte[]> response) {
+        HttpStatusCode status = response.getStatusCode();
+        if (!status.isError()) {
+            return;
+        }
+        HttpHeaders headers = response.getHeaders();
+        byte[] body = response.getBody() != null ? response.getBody() : new byte[0];
+        Charset charset = charsetOf(headers);
+        if (status.is4xxClientError()) {
+            throw HttpClientErrorException.create(status, "", headers, body, charset);
+        }
+        if (status.is5xxServerError()) {
+            throw HttpServerErrorException.create(status, "", headers, body, charset);
+        }
+        throw new UnknownHttpStatusCodeException(status.value(), "", headers, body, charset);
+    }
+
+    private static void setContentTypeIfAbsent(HttpHeaders headers, MediaType type) {
+        if (headers.getContentType() == null) {
+            headers.setContentType(type);
+        }
+    }
+
+    private static Charset charsetOf(HttpHeaders headers) {
+        MediaType contentType = headers.getContentType();
+        if (contentType != null && contentType.getCharset() != null) {
+            return contentType.getCharset();
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,322 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request body written to the connection as it is sent rather than serialized up front. Pass one
+ * as the body of a {@link ReqOption} or WebClient request. Bodies with a known length are sent
+ * with Content-Length, the rest chunked.
+ * <p>
+ * Files and writer callbacks can be sent again; streams and channels only once, so requests
+ * carrying them are never retried or hedged.
+ * <p>
+ * On the async exchange a writer callback runs on a shared pool of at most
+ * {@value #MAX_WRITERS} threads; past that, further async uploads from writers are rejected
+ * with {@link RequestRejectedException} rather than queued behind the running ones.
+ */
+public abstract class BodySource {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    static final int MAX_WRITERS = 64;
+
+    private final long contentLength;
+
+    private BodySource(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Sends the file with Content-Length, transferring it through its {@link FileChannel}.
+     */
+    public static BodySource of(Path file) {
+        try {
+            return new FileSource(file, Files.size(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read size of " + file, e);
+        }
+    }
+
+    public static BodySource of(InputStream stream) {
+        return of(stream, -1);
+    }
+
+    /**
+     * @param contentLength byte count the stream will supply, or -1 to send it chunked
+     */
+    public static BodySource of(InputStream stream, long contentLength) {
+        return new StreamSource(stream, contentLength);
+    }
+
+    public static BodySource of(ReadableByteChannel channel) {
+        return of(channel, -1);
+    }
+
+    public static BodySource of(ReadableByteChannel channel, long contentLength) {
+        return new ChannelSource(channel, contentLength);
+    }
+
+    /**
+     * Body produced by {@code writer} each time the request is sent.
+     */
+    public static BodySource writer(Writer writer) {
+        return writer(writer, -1);
+    }
+
+    public static BodySource writer(Writer writer, long contentLength) {
+        return new WriterSource(writer, contentLength);
+    }
+
+    /**
+     * Whether a request carrying {@code body} may be sent more than once.
+     */
+    static boolean isReplayable(Object body) {
+        return !(body instanceof BodySource source) || source.isReplayable();
+    }
+
+    /**
+     * Byte count, or -1 when unknown and the body is sent chunked.
+     */
+    public long contentLength() {
+        return contentLength;
+    }
+
+    public abstract boolean isReplayable();
+
+    public abstract void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Publisher for the JDK client used by the async exchange.
+     */
+    HttpRequest.BodyPublisher publisher() {
+        // Bridges writeTo onto a pipe read by the client. A failed writer closes the reading end,
+        // so the client fails with "Pipe closed" instead of seeing the end of a complete body
+        return sized(HttpRequest.BodyPublishers.ofInputStream(() -> {
+            PipedInputStream in = new PipedInputStream(BUFFER_SIZE);
+            PipedOutputStream out;
+            try {
+                out = new PipedOutputStream(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try {
+                Writers.EXECUTOR.execute(() -> {
+                    try {
+                        writeTo(out);
+                        out.close();
+                    } catch (IOException | RuntimeException e) {
+                        try {
+                            in.close();
+                        } catch (IOException ignored) {
+                            // Closing a pipe does not fail
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                throw new RequestRejectedException("All " + MAX_WRITERS + " body writer threads are busy");
+            }
+            return in;
+        }));
+    }
+
+    HttpRequest.BodyPublisher sized(HttpRequest.BodyPublisher publisher) {
+        return contentLength >= 0 ? HttpRequest.BodyPublishers.fromPublisher(publisher, contentLength) : publisher;
+    }
+
+    @FunctionalInterface
+    public interface Writer {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static final class FileSource extends BodySource {
+        private final Path file;
+
+        FileSource(Path file, long size) {
+            super(size);
+            this.file = file;
+        }
+
+        @Override
+        public boolean isReplayable() {
+            return true;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                transfer(channel, out);
+            }
+        }
+
+        @Override
+        HttpRequest.BodyPublisher publisher() {
+            try {
+                return HttpRequest.BodyPublishers.ofFile(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open " + file, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "BodySource[" + file + ", " + contentLength() + " bytes]";
+        }
+    }
+
+    private abstract static class OneShotSource extends BodySource {
+        private final AtomicBoolean sent = new AtomicBoolean();
+
+        OneShotSource(long contentLength) {
+            super(contentLength);
+        }
+
+        @Override
+        public boolean isReplayable() {
+            return false;
+        }
+
+        void claim() {
+            if (!sent.compareAndSet(false, true)) {
+                throw new IllegalStateException("Body has already been sent and cannot be replayed");
+            }
+        }
+    }
+
+    private static final class StreamSource extends OneShotSource {
+        private final InputStream stream;
+
+        StreamSource(InputStream stream, long contentLength) {
+            super(contentLength);
+            this.stream = stream;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            claim();
+            try (stream) {
+                stream.transferTo(out);
+            }
+        }
+
+        @Override
+        HttpRequest.BodyPublisher publisher() {
+            return sized(HttpRequest.BodyPublishers.ofInputStream(() -> {
+                claim();
+                return stream;
+            }));
+        }
+
+        @Override
+        public String toString() {
+            return "BodySource[stream, " + contentLength() + " bytes]";
+        }
+    }
+
+    private static final class ChannelSource extends OneShotSource {
+        private final ReadableByteChannel channel;
+
+        ChannelSource(ReadableByteChannel channel, long contentLength) {
+            super(contentLength);
+            this.channel = channel;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            claim();
+            try (channel) {
+                if (channel instanceof FileChannel file) {
+                    transfer(file, out);
+                    return;
+                }
+                WritableByteChannel target = Channels.newChannel(out);
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+        }
+
+        @Override
+        HttpRequest.BodyPublisher publisher() {
+            return sized(HttpRequest.BodyPublishers.ofInputStream(() -> {
+                claim();
+                return Channels.newInputStream(channel);
+            }));
+        }
+
+        @Override
+        public String toString() {
+            return "BodySource[channel, " + contentLength() + " bytes]";
+        }
+    }
+
+    private static final class WriterSource extends BodySource {
+        private final Writer writer;
+
+        WriterSource(Writer writer, long contentLength) {
+            super(contentLength);
+            this.writer = writer;
+        }
+
+        @Override
+        public boolean isReplayable() {
+            return true;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            writer.writeTo(out);
+        }
+
+        @Override
+        public String toString() {
+            return "BodySource[writer, " + contentLength() + " bytes]";
+        }
+    }
+
+    private static final class Writers {
+        private static final ThreadPoolExecutor EXECUTOR;
+
+        static {
+            AtomicInteger counter = new AtomicInteger();
+            EXECUTOR = new ThreadPoolExecutor(0, MAX_WRITERS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "body-writer-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static void transfer(FileChannel channel, OutputStream out) throws IOException {
+        // None of the transports expose their socket channel, so this cannot reach sendfile; it
+        // still moves the file in bounded chunks without staging it on the heap
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = channel.position();
+        long size = channel.size();
+        while (position < size) {
+            position += channel.transferTo(position, size - position, target);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes a {@link BodySource} straight to the request's output stream. Request factories that
+ * stream (all of the built-in transports) then send it without buffering it first.
+ */
+public class BodySourceHttpMessageConverter implements HttpMessageConverter<BodySource> {
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return BodySource.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes() {
+        return List.of(MediaType.ALL);
+    }
+
+    @Override
+    public BodySource read(Class<? extends BodySource> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("BodySource is write-only", inputMessage);
+    }
+
+    @Override
+    public void write(BodySource source, MediaType contentType, HttpOutputMessage outputMessage) throws IOException {
+        HttpHeaders headers = outputMessage.getHeaders();
+        if (headers.getContentType() == null) {
+            headers.setContentType(contentType != null && contentType.isConcrete() ? contentType : MediaType.APPLICATION_OCTET_STREAM);
+        }
+        if (source.contentLength() >= 0) {
+            headers.setContentLength(source.contentLength());
+        }
+        if (outputMessage instanceof StreamingHttpOutputMessage streaming) {
+            streaming.setBody(new StreamingHttpOutputMessage.Body() {
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    source.writeTo(out);
+                }
+
+                @Override
+                public boolean repeatable() {
+                    return source.isReplayable();
+                }
+            });
+        } else {
+            source.writeTo(outputMessage.getBody());
+        }
+    }
+}
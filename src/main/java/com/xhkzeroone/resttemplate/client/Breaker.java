@@ -0,0 +1,193 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Closed/open/half-open breaker over a count-based sliding window of the last {@code windowSize}
+ * calls. The window is a ring of outcome slots claimed by an atomic cursor, with failure and slow
+ * counters adjusted by the difference between the new and the overwritten outcome, so recording
+ * never takes a lock.
+ */
+public class Breaker {
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private static final int FAILED = 1;
+    private static final int SLOW = 2;
+    // Marks a slot that has never been written, so it does not count towards the window
+    private static final int EMPTY = 4;
+
+    private final String name;
+    private final RestConfig.CircuitBreaker config;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final LongSupplier clock;
+    private final AtomicReference<Phase> phase;
+    private final LongAdder rejected = new LongAdder();
+
+    public Breaker(String name, RestConfig.CircuitBreaker config) {
+        this(name, config, System::nanoTime);
+    }
+
+    Breaker(String name, RestConfig.CircuitBreaker config, LongSupplier clock) {
+        validate(config);
+        this.name = name;
+        this.config = config;
+        this.slowCallNanos = config.getSlowCallDuration() * 1_000_000L;
+        this.openNanos = config.getOpenDuration() * 1_000_000L;
+        this.clock = clock;
+        this.phase = new AtomicReference<>(Phase.closed(config.getWindowSize()));
+    }
+
+    /**
+     * Throws {@link IllegalArgumentException} for window sizes a breaker could never decide with:
+     * its windows must be able to reach the call counts that open or close it.
+     */
+    static void validate(RestConfig.CircuitBreaker config) {
+        if (config.getWindowSize() < 1 || config.getHalfOpenCalls() < 1) {
+            throw new IllegalArgumentException("Circuit breaker windowSize and halfOpenCalls must be at least 1, got "
+                    + config.getWindowSize() + " and " + config.getHalfOpenCalls());
+        }
+        if (config.getMinimumCalls() < 1 || config.getMinimumCalls() > config.getWindowSize()) {
+            throw new IllegalArgumentException("Circuit breaker minimumCalls must be between 1 and windowSize ("
+                    + config.getWindowSize() + "), got " + config.getMinimumCalls());
+        }
+    }
+
+    /**
+     * Returns the permit to pass to {@link #onResult}, or throws if the call is not permitted.
+     */
+    public Permit acquire() {
+        while (true) {
+            Phase current = phase.get();
+            switch (current.state) {
+                case CLOSED:
+                    return new Permit(current, clock.getAsLong());
+                case OPEN:
+                    if (clock.getAsLong() - current.openedAt < openNanos) {
+                        rejected.increment();
+                        throw new CircuitBreakerOpenException(name);
+                    }
+                    phase.compareAndSet(current, Phase.halfOpen(config.getHalfOpenCalls()));
+                    break;
+                case HALF_OPEN:
+                    if (current.permits.getAndDecrement() > 0) {
+                        return new Permit(current, clock.getAsLong());
+                    }
+                    rejected.increment();
+                    throw new CircuitBreakerOpenException(name);
+            }
+        }
+    }
+
+    public void onResult(Permit permit, boolean failed) {
+        Phase recordedIn = permit.phase;
+        if (phase.get() != recordedIn) {
+            return;
+        }
+        boolean slow = clock.getAsLong() - permit.startedAt >= slowCallNanos;
+        int outcome = (failed ? FAILED : 0) | (slow ? SLOW : 0);
+        if (recordedIn.state == State.CLOSED) {
+            recordedIn.record(outcome);
+            if (recordedIn.calls() >= config.getMinimumCalls() && isOverThreshold(recordedIn)) {
+                phase.compareAndSet(recordedIn, Phase.open(clock.getAsLong()));
+            }
+        } else if (recordedIn.state == State.HALF_OPEN) {
+            recordedIn.record(outcome);
+            if (recordedIn.calls() >= config.getHalfOpenCalls()) {
+                phase.compareAndSet(recordedIn, isOverThreshold(recordedIn)
+                        ? Phase.open(clock.getAsLong())
+                        : Phase.closed(config.getWindowSize()));
+            }
+        }
+    }
+
+    private boolean isOverThreshold(Phase window) {
+        int calls = window.calls();
+        return window.failures.get() * 100.0 / calls >= config.getFailureRateThreshold()
+                || window.slowCalls.get() * 100.0 / calls >= config.getSlowCallRateThreshold();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return phase.get().state;
+    }
+
+    public double getFailureRate() {
+        Phase current = phase.get();
+        int calls = current.calls();
+        return calls == 0 ? 0 : current.failures.get() * 100.0 / calls;
+    }
+
+    public double getSlowCallRate() {
+        Phase current = phase.get();
+        int calls = current.calls();
+        return calls == 0 ? 0 : current.slowCalls.get() * 100.0 / calls;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public static final class Permit {
+        private final Phase phase;
+        private final long startedAt;
+
+        private Permit(Phase phase, long startedAt) {
+            this.phase = phase;
+            this.startedAt = startedAt;
+        }
+    }
+
+    private static final class Phase {
+        private final State state;
+        private final long openedAt;
+        private final AtomicInteger permits;
+        private final AtomicIntegerArray slots;
+        private final AtomicLong cursor = new AtomicLong();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        private Phase(State state, long openedAt, int permits, int windowSize) {
+            this.state = state;
+            this.openedAt = openedAt;
+            this.permits = new AtomicInteger(permits);
+            this.slots = new AtomicIntegerArray(windowSize);
+            for (int i = 0; i < windowSize; i++) {
+                slots.set(i, EMPTY);
+            }
+        }
+
+        static Phase closed(int windowSize) {
+            return new Phase(State.CLOSED, 0, 0, Math.max(windowSize, 1));
+        }
+
+        static Phase open(long now) {
+            return new Phase(State.OPEN, now, 0, 1);
+        }
+
+        static Phase halfOpen(int permits) {
+            return new Phase(State.HALF_OPEN, 0, permits, Math.max(permits, 1));
+        }
+
+        void record(int outcome) {
+            int slot = (int) (cursor.getAndIncrement() % slots.length());
+            int previous = slots.getAndSet(slot, outcome);
+            int previousFailed = previous == EMPTY ? 0 : previous & FAILED;
+            int previousSlow = previous == EMPTY ? 0 : (previous & SLOW) >> 1;
+            failures.addAndGet((outcome & FAILED) - previousFailed);
+            slowCalls.addAndGet(((outcome & SLOW) >> 1) - previousSlow);
+        }
+
+        int calls() {
+            return (int) Math.min(cursor.get(), slots.length());
+        }
+    }
+}
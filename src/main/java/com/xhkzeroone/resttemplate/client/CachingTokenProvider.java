@@ -0,0 +1,276 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the token of a {@link TokenSource} until shortly before it expires.
+ * <p>
+ * Reads are a single volatile read while the token is fresh. Within {@code refreshAhead} of expiry
+ * the current token is still served while one background fetch replaces it; a fetch is also
+ * scheduled for that point, so an idle client has a fresh token too. Only when there is no valid
+ * token do callers wait, all of them on the same fetch. {@link #invalidate(String)} drops a token
+ * the server rejected.
+ */
+public class CachingTokenProvider implements WebClient.AuthMiddleware.TokenProvider, AutoCloseable {
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        AtomicInteger counter = new AtomicInteger();
+        EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "token-refresh-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private final TokenSource source;
+    private final long refreshAheadMillis;
+    private final long defaultLifetimeMillis;
+    private final long retryDelayMillis;
+    private final LongSupplier clock;
+    private final Scheduler scheduler;
+    private final AtomicReference<Cached> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<Cached>> inFlight = new AtomicReference<>();
+    private volatile long nextAttemptAt = Long.MIN_VALUE;
+    private volatile boolean closed;
+
+    public CachingTokenProvider(TokenSource source) {
+        this(source, new RestConfig.Auth());
+    }
+
+    public CachingTokenProvider(TokenSource source, RestConfig.Auth config) {
+        // Monotonic, so expiry is not thrown off by wall clock adjustments
+        this(source, config, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()), (task, delayMillis) ->
+                CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS, EXECUTOR).execute(task));
+    }
+
+    CachingTokenProvider(TokenSource source, RestConfig.Auth config, LongSupplier clock, Scheduler scheduler) {
+        this.source = source;
+        this.refreshAheadMillis = config.getRefreshAhead();
+        this.defaultLifetimeMillis = config.getDefaultLifetime();
+        this.retryDelayMillis = config.getRetryDelay();
+        this.clock = clock;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Provider for the OAuth2 client-credentials grant against {@code config.getTokenUri()}, called
+     * with the connect and read timeouts of {@code config}.
+     */
+    public static CachingTokenProvider clientCredentials(RestConfig.Auth config) {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(config.getConnectTimeout());
+        factory.setReadTimeout(config.getReadTimeout());
+        return clientCredentials(config, new RestTemplate(factory));
+    }
+
+    public static CachingTokenProvider clientCredentials(RestConfig.Auth config, RestTemplate restTemplate) {
+        if (config.getTokenUri() == null) {
+            throw new IllegalArgumentException("Token URI is required");
+        }
+        return new CachingTokenProvider(() -> {
+            MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+            form.add("grant_type", "client_credentials");
+            if (config.getScope() != null) {
+                form.add("scope", config.getScope());
+            }
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+            headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+            if (config.getClientId() != null) {
+                headers.setBasicAuth(config.getClientId(), config.getClientSecret() != null ? config.getClientSecret() : "");
+            }
+            Map<?, ?> response = restTemplate.postForObject(config.getTokenUri(), new HttpEntity<>(form, headers), Map.class);
+            Object token = response != null ? response.get("access_token") : null;
+            if (token == null) {
+                throw new IllegalStateException("Token endpoint returned no access_token");
+            }
+            Object expiresIn = response.get("expires_in");
+            return new Token(token.toString(),
+                    expiresIn != null ? Duration.ofSeconds(Long.parseLong(expiresIn.toString())) : null);
+        }, config);
+    }
+
+    @Override
+    public String getToken() {
+        Cached token = current.get();
+        long now = clock.getAsLong();
+        if (token != null && now < token.refreshAt) {
+            return token.value;
+        }
+        if (token != null && now < token.expiresAt) {
+            if (now >= nextAttemptAt) {
+                refresh(false);
+            }
+            return token.value;
+        }
+        return await(refresh(true)).value;
+    }
+
+    @Override
+    public CompletableFuture<String> getTokenAsync() {
+        Cached token = current.get();
+        long now = clock.getAsLong();
+        if (token != null && now < token.expiresAt) {
+            if (now >= token.refreshAt && now >= nextAttemptAt) {
+                refresh(false);
+            }
+            return CompletableFuture.completedFuture(token.value);
+        }
+        return refresh(false).thenApply(cached -> cached.value);
+    }
+
+    /**
+     * Drops {@code token} if it is still the cached one, so the next call fetches a new one.
+     */
+    @Override
+    public boolean invalidate(String token) {
+        Cached cached = current.get();
+        if (cached != null && cached.value.equals(token)) {
+            current.compareAndSet(cached, null);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the scheduled background refreshes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    // Starts a fetch unless one is running; inline runs it on the calling thread
+    private CompletableFuture<Cached> refresh(boolean inline) {
+        while (true) {
+            CompletableFuture<Cached> running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<Cached> fetch = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, fetch)) {
+                if (inline) {
+                    fetch(fetch);
+                } else {
+                    EXECUTOR.execute(() -> fetch(fetch));
+                }
+                return fetch;
+            }
+        }
+    }
+
+    private void fetch(CompletableFuture<Cached> fetch) {
+        try {
+            Token token = source.fetch();
+            long now = clock.getAsLong();
+            long lifetime = token.getExpiresIn() != null ? token.getExpiresIn().toMillis() : defaultLifetimeMillis;
+            Cached cached = lifetime > 0
+                    ? new Cached(token.getValue(), now + lifetime - Math.min(refreshAheadMillis, lifetime / 2), now + lifetime)
+                    : new Cached(token.getValue(), Long.MAX_VALUE, Long.MAX_VALUE);
+            current.set(cached);
+            inFlight.set(null);
+            fetch.complete(cached);
+            if (cached.refreshAt != Long.MAX_VALUE) {
+                schedule(cached, cached.refreshAt - now);
+            }
+        } catch (Throwable e) {
+            nextAttemptAt = clock.getAsLong() + retryDelayMillis;
+            inFlight.set(null);
+            fetch.completeExceptionally(e);
+            Cached cached = current.get();
+            if (cached != null && nextAttemptAt < cached.expiresAt) {
+                schedule(cached, retryDelayMillis);
+            }
+        }
+    }
+
+    private void schedule(Cached token, long delayMillis) {
+        scheduler.schedule(() -> {
+            // Skipped if the token was replaced or dropped meanwhile
+            if (!closed && current.get() == token) {
+                refresh(true);
+            }
+        }, Math.max(delayMillis, 0));
+    }
+
+    private static Cached await(CompletableFuture<Cached> fetch) {
+        try {
+            return fetch.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Cannot fetch token", cause);
+        }
+    }
+
+    // Runs a background refresh after a delay; replaced in tests along with the clock
+    @FunctionalInterface
+    interface Scheduler {
+        void schedule(Runnable task, long delayMillis);
+    }
+
+    /**
+     * Fetches a new token, typically from an OAuth2 token endpoint.
+     */
+    @FunctionalInterface
+    public interface TokenSource {
+        Token fetch() throws Exception;
+    }
+
+    public static final class Token {
+        private final String value;
+        private final Duration expiresIn;
+
+        /**
+         * @param expiresIn lifetime from now, or null if unknown
+         */
+        public Token(String value, Duration expiresIn) {
+            this.value = value;
+            this.expiresIn = expiresIn;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public Duration getExpiresIn() {
+            return expiresIn;
+        }
+    }
+
+    private static final class Cached {
+        final String value;
+        final long refreshAt;
+        final long expiresAt;
+
+        Cached(String value, long refreshAt, long expiresAt) {
+            this.value = value;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Lets whoever started a call abort the exchange it has in flight, so a hedged call's losing
+ * attempt or a batch item past its deadline gives back its connection and thread instead of
+ * running to completion. The transport registers how to abort the exchange it is sending with
+ * {@link #onAbort(Runnable)}; {@link #cancel()} runs it, now or as soon as one is registered.
+ * <p>
+ * Blocking sends find the cancellation of their thread through {@link #register(Runnable)},
+ * async ones through their {@link ReqContext}.
+ */
+final class Cancellation {
+    private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<>();
+
+    private Runnable abort;
+    private boolean cancelled;
+
+    synchronized void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        if (abort != null) {
+            abort.run();
+            abort = null;
+        }
+    }
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Sets how to abort the exchange in flight, replacing the previous one; runs it at once if
+     * already cancelled.
+     */
+    synchronized void onAbort(Runnable abort) {
+        if (cancelled) {
+            abort.run();
+        } else {
+            this.abort = abort;
+        }
+    }
+
+    /**
+     * Forgets the abort action once the exchange it belongs to has completed.
+     */
+    synchronized void clear() {
+        abort = null;
+    }
+
+    /**
+     * Registers an abort action with the cancellation the calling thread runs under, if any.
+     */
+    static void register(Runnable abort) {
+        Cancellation current = CURRENT.get();
+        if (current != null) {
+            current.onAbort(abort);
+        }
+    }
+
+    /**
+     * Runs {@code task} on {@code executor} under a cancellation of its own; cancelling the returned
+     * future aborts whatever exchange the task is sending at the time.
+     */
+    static <T> CompletableFuture<T> supplyAsync(Callable<T> task, Executor executor) {
+        Cancellation cancellation = new Cancellation();
+        CompletableFuture<T> result = CompletableFuture.supplyAsync(() -> {
+            CURRENT.set(cancellation);
+            try {
+                return task.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                CURRENT.remove();
+                cancellation.clear();
+                if (cancellation.isCancelled()) {
+                    // An abort may have interrupted this thread; do not hand the flag to the next task
+                    Thread.interrupted();
+                }
+            }
+        }, executor);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                cancellation.cancel();
+            }
+        });
+        return result;
+    }
+}
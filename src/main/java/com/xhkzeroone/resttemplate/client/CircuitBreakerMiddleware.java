@@ -0,0 +1,106 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link Breaker} per host or per route template (method + un-expanded path).
+ * 4xx responses count as successes: the downstream answered. While a circuit is open calls
+ * fail immediately with {@link CircuitBreakerOpenException}.
+ * <p>
+ * With {@link RestConfig#getAddresses()} set, the replica is picked below this middleware, so
+ * every call looks like it goes to the first address; HOST scope then keys breakers by route.
+ * The load balancer ejects failing replicas on its own.
+ */
+public class CircuitBreakerMiddleware implements Middleware {
+    public enum Scope {HOST, ROUTE}
+
+    private final RestConfig.CircuitBreaker config;
+    private final Scope scope;
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    public CircuitBreakerMiddleware() {
+        this(new RestConfig());
+    }
+
+    public CircuitBreakerMiddleware(RestConfig config) {
+        this.config = config.getCircuitBreaker();
+        Breaker.validate(this.config);
+        boolean balanced = config.getAddresses() != null && !config.getAddresses().isEmpty();
+        this.scope = balanced ? Scope.ROUTE : this.config.getScope();
+    }
+
+    @Override
+    public Handler apply(Handler next) {
+        return ctx -> {
+            Breaker breaker = breakerFor(ctx);
+            Breaker.Permit permit = breaker.acquire();
+            // Anything thrown that is not an exception, such as an Error, counts as a failure
+            boolean failed = true;
+            try {
+                next.handle(ctx);
+                failed = false;
+            } catch (Exception e) {
+                failed = isFailure(e);
+                throw e;
+            } finally {
+                breaker.onResult(permit, failed);
+            }
+        };
+    }
+
+    @Override
+    public AsyncHandler applyAsync(AsyncHandler next) {
+        return ctx -> {
+            Breaker breaker = breakerFor(ctx);
+            Breaker.Permit permit;
+            try {
+                permit = breaker.acquire();
+            } catch (CircuitBreakerOpenException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            try {
+                return next.handle(ctx).whenComplete((ignored, error) ->
+                        breaker.onResult(permit, error != null && isFailure(RetryPolicy.unwrap(error))));
+            } catch (RuntimeException | Error e) {
+                breaker.onResult(permit, isFailure(e));
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * How breakers are keyed: the configured scope, or ROUTE when calls are load balanced.
+     */
+    public Scope getScope() {
+        return scope;
+    }
+
+    public Collection<Breaker> getBreakers() {
+        return breakers.values();
+    }
+
+    public Breaker getBreaker(String key) {
+        return breakers.get(key);
+    }
+
+    private Breaker breakerFor(ReqContext ctx) {
+        String key;
+        if (scope == Scope.ROUTE) {
+            key = ctx.getMethod() + " " + ctx.getPath();
+        } else {
+            URI uri = ctx.getUri();
+            key = uri.getHost() + (uri.getPort() >= 0 ? ":" + uri.getPort() : "");
+        }
+        return breakers.computeIfAbsent(key, name -> new Breaker(name, config));
+    }
+
+    private static boolean isFailure(Throwable error) {
+        return !(error instanceof HttpClientErrorException) && !(error.getCause() instanceof HttpClientErrorException);
+    }
+}
@@ -0,0 +1,17 @@
+package com.xhkzeroone.resttemplate.client;
+
+/**
+ * Thrown without calling the downstream while a circuit is open.
+ */
+public class CircuitBreakerOpenException extends RequestRejectedException {
+    private final String circuit;
+
+    public CircuitBreakerOpenException(String circuit) {
+        super("Circuit breaker '" + circuit + "' is open");
+        this.circuit = circuit;
+    }
+
+    public String getCircuit() {
+        return circuit;
+    }
+}
@@ -0,0 +1,52 @@
+package com.xhkzeroone.resttemplate.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Client names each family of meters is published under, per registry. Micrometer hands back the
+ * existing meter for an id it already has, so two live instances publishing under the same
+ * {@code client} tag would silently report one of them; the second one gets {@code name-2}.
+ */
+final class ClientNames {
+    private static final Logger logger = Logger.getLogger(ClientNames.class.getName());
+    private static final Map<MeterRegistry, Map<String, Set<String>>> CLAIMED = new WeakHashMap<>();
+
+    private ClientNames() {
+    }
+
+    /**
+     * Claims {@code name} for {@code meters} in {@code registry}, or the first free {@code name-N}.
+     */
+    static String claim(MeterRegistry registry, String meters, String name) {
+        synchronized (CLAIMED) {
+            Set<String> names = CLAIMED.computeIfAbsent(registry, key -> new HashMap<>())
+                    .computeIfAbsent(meters, key -> new HashSet<>());
+            String claimed = name;
+            for (int i = 2; !names.add(claimed); i++) {
+                claimed = name + "-" + i;
+            }
+            if (!claimed.equals(name)) {
+                logger.warning("Meters " + meters + " for client '" + name + "' are already published; publishing as '"
+                        + claimed + "'. Give each client its own name.");
+            }
+            return claimed;
+        }
+    }
+
+    static void release(MeterRegistry registry, String meters, String name) {
+        synchronized (CLAIMED) {
+            Map<String, Set<String>> byMeters = CLAIMED.get(registry);
+            Set<String> names = byMeters != null ? byMeters.get(meters) : null;
+            if (names != null) {
+                names.remove(name);
+            }
+        }
+    }
+}
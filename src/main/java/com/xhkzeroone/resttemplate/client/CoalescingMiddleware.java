@@ -0,0 +1,228 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Single-flight for idempotent reads: concurrent GET/HEAD calls with the same method, URI,
+ * result type and vary headers share one downstream call. The first caller performs the call;
+ * the others wait for it and receive the same response, or the same exception if the server
+ * answered with an error status. When the first caller's call ends otherwise (cancelled, timed
+ * out, an I/O failure), that outcome is its own and the others make the call themselves.
+ * The in-flight slot is released as soon as the call completes, so a failure is never cached.
+ * <p>
+ * Followers wait at most the client's read timeout, then fail as a read timeout would.
+ * <p>
+ * Register after {@link HttpCacheMiddleware} so only cache misses are coalesced.
+ */
+public class CoalescingMiddleware implements Middleware {
+    private static final List<String> DEFAULT_VARY_HEADERS = List.of(HttpHeaders.AUTHORIZATION, HttpHeaders.ACCEPT);
+
+    private final List<String> varyHeaders;
+    private final long maxWaitMillis;
+    private final Map<String, CompletableFuture<Snapshot>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+    private final LongAdder sharedFailures = new LongAdder();
+
+    public CoalescingMiddleware() {
+        this(DEFAULT_VARY_HEADERS);
+    }
+
+    /**
+     * Followers wait at most {@code config.getReadTimeout()}.
+     */
+    public CoalescingMiddleware(RestConfig config) {
+        this(DEFAULT_VARY_HEADERS, config.getReadTimeout());
+    }
+
+    /**
+     * @param varyHeaders request headers whose values must match for two calls to be shared
+     */
+    public CoalescingMiddleware(List<String> varyHeaders) {
+        this(varyHeaders, 0);
+    }
+
+    /**
+     * @param varyHeaders   request headers whose values must match for two calls to be shared
+     * @param maxWaitMillis longest a follower waits for the shared call, 0 for no limit
+     */
+    public CoalescingMiddleware(List<String> varyHeaders, long maxWaitMillis) {
+        this.varyHeaders = List.copyOf(varyHeaders);
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override
+    public Handler apply(Handler next) {
+        return ctx -> {
+            if (!isIdempotentRead(ctx)) {
+                next.handle(ctx);
+                return;
+            }
+            String key = key(ctx);
+            CompletableFuture<Snapshot> call = new CompletableFuture<>();
+            CompletableFuture<Snapshot> existing = inFlight.putIfAbsent(key, call);
+            if (existing != null) {
+                followers.increment();
+                Snapshot snapshot = await(existing);
+                if (snapshot != null) {
+                    snapshot.applyTo(ctx);
+                } else {
+                    next.handle(ctx);
+                }
+                return;
+            }
+
+            leaders.increment();
+            try {
+                next.handle(ctx);
+                call.complete(Snapshot.of(ctx));
+            } catch (Throwable e) {
+                share(call, e);
+                throw e;
+            } finally {
+                inFlight.remove(key, call);
+            }
+        };
+    }
+
+    @Override
+    public AsyncHandler applyAsync(AsyncHandler next) {
+        return ctx -> {
+            if (!isIdempotentRead(ctx)) {
+                return next.handle(ctx);
+            }
+            String key = key(ctx);
+            CompletableFuture<Snapshot> call = new CompletableFuture<>();
+            CompletableFuture<Snapshot> existing = inFlight.putIfAbsent(key, call);
+            if (existing != null) {
+                followers.increment();
+                CompletableFuture<Snapshot> shared = maxWaitMillis > 0
+                        ? existing.copy().orTimeout(maxWaitMillis, TimeUnit.MILLISECONDS)
+                        : existing;
+                return shared.handle((snapshot, error) -> {
+                    if (error != null) {
+                        Throwable cause = RetryPolicy.unwrap(error);
+                        if (cause instanceof TimeoutException) {
+                            return CompletableFuture.<Void>failedFuture(waitTimedOut());
+                        }
+                        sharedFailures.increment();
+                        return CompletableFuture.<Void>failedFuture(cause);
+                    }
+                    if (snapshot == null) {
+                        return next.handle(ctx);
+                    }
+                    snapshot.applyTo(ctx);
+                    return CompletableFuture.<Void>completedFuture(null);
+                }).thenCompose(Function.identity());
+            }
+
+            leaders.increment();
+            CompletableFuture<Void> result;
+            try {
+                result = next.handle(ctx);
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            return result.whenComplete((ignored, error) -> {
+                inFlight.remove(key, call);
+                if (error != null) {
+                    share(call, error);
+                } else {
+                    call.complete(Snapshot.of(ctx));
+                }
+            });
+        };
+    }
+
+    public long getLeaderCount() {
+        return leaders.sum();
+    }
+
+    public long getFollowerCount() {
+        return followers.sum();
+    }
+
+    public long getSharedFailureCount() {
+        return sharedFailures.sum();
+    }
+
+    /**
+     * Fraction of eligible calls that were served by another caller's request.
+     */
+    public double getCoalescingRatio() {
+        long shared = followers.sum();
+        long total = shared + leaders.sum();
+        return total == 0 ? 0 : (double) shared / total;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private Snapshot await(CompletableFuture<Snapshot> call) throws Exception {
+        try {
+            return maxWaitMillis > 0 ? call.get(maxWaitMillis, TimeUnit.MILLISECONDS) : call.get();
+        } catch (ExecutionException e) {
+            sharedFailures.increment();
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (TimeoutException e) {
+            throw waitTimedOut();
+        }
+    }
+
+    // Only an answer from the server is shared; null tells followers to make the call themselves
+    private static void share(CompletableFuture<Snapshot> call, Throwable error) {
+        if (RetryPolicy.unwrap(error) instanceof RestClientResponseException) {
+            call.completeExceptionally(error);
+        } else {
+            call.complete(null);
+        }
+    }
+
+    private ResourceAccessException waitTimedOut() {
+        return new ResourceAccessException("Timed out after " + maxWaitMillis + " ms waiting for a shared call",
+                new SocketTimeoutException("Read timed out"));
+    }
+
+    private boolean isIdempotentRead(ReqContext ctx) {
+        return (ctx.getMethod() == HttpMethod.GET || ctx.getMethod() == HttpMethod.HEAD) && !ctx.isStreaming();
+    }
+
+    private String key(ReqContext ctx) {
+        StringBuilder key = new StringBuilder(128)
+                .append(ctx.getMethod().name()).append(' ')
+                .append(ctx.getUri()).append(' ')
+                .append(ctx.getGenericResponseType() != null ? ctx.getGenericResponseType().getTypeName() : "");
+        for (String header : varyHeaders) {
+            key.append('\n').append(header).append(':').append(ctx.getHeader(header));
+        }
+        return key.toString();
+    }
+
+    private record Snapshot(Object response, HttpStatusCode status, HttpHeaders headers) {
+        static Snapshot of(ReqContext ctx) {
+            return new Snapshot(ctx.getResponse(), ctx.getResponseStatus(), ctx.getResponseHeaders());
+        }
+
+        void applyTo(ReqContext ctx) {
+            ctx.setResponse(response);
+            ctx.setResponseStatus(status);
+            ctx.setResponseHeaders(headers);
+        }
+    }
+}
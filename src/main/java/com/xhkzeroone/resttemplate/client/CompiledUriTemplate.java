@@ -0,0 +1,184 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A path template resolved against a base address and split once into literal parts and
+ * {@code {variable}} slots. Expansion encodes variables and query parameters and builds the
+ * URI in a single pass, without re-parsing.
+ */
+public final class CompiledUriTemplate {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final String template;
+    private final String[] literals;
+    private final String[] variables;
+    private final String fragment;
+    private final boolean hasQuery;
+    private final int literalLength;
+
+    private CompiledUriTemplate(String template, String[] literals, String[] variables, String fragment, boolean hasQuery) {
+        this.template = template;
+        this.literals = literals;
+        this.variables = variables;
+        this.fragment = fragment;
+        this.hasQuery = hasQuery;
+        int length = fragment.length();
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static CompiledUriTemplate compile(String baseAddress, String path) {
+        String template = resolve(baseAddress, path);
+        String fragment = "";
+        int hash = template.indexOf('#');
+        if (hash >= 0) {
+            fragment = encodeLiteral(template.substring(hash));
+            template = template.substring(0, hash);
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int start = 0;
+        int open;
+        while ((open = template.indexOf('{', start)) >= 0) {
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed variable in URI template: " + template);
+            }
+            literals.add(encodeLiteral(template.substring(start, open)));
+            String name = template.substring(open + 1, close);
+            int colon = name.indexOf(':');
+            variables.add((colon >= 0 ? name.substring(0, colon) : name).trim());
+            start = close + 1;
+        }
+        literals.add(encodeLiteral(template.substring(start)));
+
+        return new CompiledUriTemplate(template, literals.toArray(new String[0]), variables.toArray(new String[0]),
+                fragment, template.indexOf('?') >= 0);
+    }
+
+    private static String resolve(String baseAddress, String path) {
+        if (path == null || path.isEmpty()) {
+            return baseAddress != null ? baseAddress : "";
+        }
+        if (baseAddress == null || baseAddress.isEmpty() || path.contains("://")) {
+            return path;
+        }
+        boolean baseSlash = baseAddress.endsWith("/");
+        boolean pathSlash = path.startsWith("/");
+        if (baseSlash && pathSlash) {
+            return baseAddress + path.substring(1);
+        }
+        if (!baseSlash && !pathSlash) {
+            return baseAddress + "/" + path;
+        }
+        return baseAddress + path;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public URI expand(Map<String, ?> pathVars, Map<String, ?> queryParams) {
+        StringBuilder uri = new StringBuilder(literalLength + 16 * (variables.length + (queryParams != null ? queryParams.size() * 2 : 0)));
+        for (int i = 0; i < variables.length; i++) {
+            uri.append(literals[i]);
+            Object value = pathVars != null ? pathVars.get(variables[i]) : null;
+            if (value == null) {
+                throw new IllegalArgumentException("No value for path variable '" + variables[i] + "' in " + template);
+            }
+            encode(uri, String.valueOf(value));
+        }
+        uri.append(literals[variables.length]);
+
+        if (queryParams != null && !queryParams.isEmpty()) {
+            char separator = hasQuery ? '&' : '?';
+            for (Map.Entry<String, ?> param : queryParams.entrySet()) {
+                if (param.getValue() instanceof Iterable<?> values) {
+                    for (Object value : values) {
+                        appendParam(uri, separator, param.getKey(), value);
+                        separator = '&';
+                    }
+                } else {
+                    appendParam(uri, separator, param.getKey(), param.getValue());
+                    separator = '&';
+                }
+            }
+        }
+        uri.append(fragment);
+        return URI.create(uri.toString());
+    }
+
+    private static void appendParam(StringBuilder uri, char separator, String key, Object value) {
+        uri.append(separator);
+        encode(uri, key);
+        if (value != null) {
+            uri.append('=');
+            encode(uri, String.valueOf(value));
+        }
+    }
+
+    // Values are encoded strictly (everything but RFC 3986 unreserved), so '/', '&', '+' and '=' are always escaped
+    static void encode(StringBuilder out, String value) {
+        int length = value.length();
+        int i = 0;
+        while (i < length && isUnreserved(value.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            out.append(value);
+            return;
+        }
+        out.append(value, 0, i);
+        byte[] bytes = value.substring(i).getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            char c = (char) (b & 0xFF);
+            if (isUnreserved(c)) {
+                out.append(c);
+            } else {
+                appendEscaped(out, b);
+            }
+        }
+    }
+
+    // Literal template text is trusted: reserved characters and existing escapes are kept, only illegal characters are escaped
+    private static String encodeLiteral(String literal) {
+        boolean clean = true;
+        for (int i = 0; i < literal.length() && clean; i++) {
+            clean = isLegal(literal.charAt(i));
+        }
+        if (clean) {
+            return literal;
+        }
+        StringBuilder out = new StringBuilder(literal.length() + 16);
+        for (byte b : literal.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if (isLegal(c)) {
+                out.append(c);
+            } else {
+                appendEscaped(out, b);
+            }
+        }
+        return out.toString();
+    }
+
+    private static void appendEscaped(StringBuilder out, byte b) {
+        out.append('%').append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static boolean isLegal(char c) {
+        return isUnreserved(c) || c == '%' || ":/?#[]@!$&'()*+,;=".indexOf(c) >= 0;
+    }
+}
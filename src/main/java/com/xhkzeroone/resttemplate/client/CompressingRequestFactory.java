@@ -0,0 +1,275 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Adds Accept-Encoding to every request, decodes gzip/deflate responses as they are read and,
+ * when enabled, compresses request bodies of at least the configured size.
+ * <p>
+ * Bodies of unknown length (JSON written by a converter, streamed sources) are probed by writing
+ * them up to the threshold first: a repeatable body that ends below it is sent as it is, anything
+ * else is compressed and sent chunked.
+ */
+class CompressingRequestFactory implements ClientHttpRequestFactory {
+    private final ClientHttpRequestFactory delegate;
+    private final CompressionCodec codec;
+
+    CompressingRequestFactory(ClientHttpRequestFactory delegate, CompressionCodec codec) {
+        this.delegate = delegate;
+        this.codec = codec;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        return new CompressingRequest(delegate.createRequest(uri, httpMethod));
+    }
+
+    private final class CompressingRequest implements ClientHttpRequest, StreamingHttpOutputMessage {
+        private final ClientHttpRequest request;
+        private ByteArrayOutputStream buffered;
+        private Body body;
+
+        CompressingRequest(ClientHttpRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return request.getAttributes();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+
+        @Override
+        public OutputStream getBody() {
+            if (buffered == null) {
+                buffered = new ByteArrayOutputStream(1024);
+            }
+            return buffered;
+        }
+
+        @Override
+        public void setBody(Body body) {
+            this.body = body;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            HttpHeaders headers = getHeaders();
+            if (!headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+                headers.set(HttpHeaders.ACCEPT_ENCODING, CompressionCodec.ACCEPT_ENCODING);
+            }
+            if (buffered != null) {
+                send(buffered.toByteArray());
+            } else if (body != null) {
+                send(body);
+            }
+            ClientHttpResponse response = request.execute();
+            String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+            return CompressionCodec.isSupported(encoding) ? new DecompressingResponse(response, encoding) : response;
+        }
+
+        private void send(byte[] bytes) throws IOException {
+            if (!isEncoded() && codec.shouldCompress(bytes.length)) {
+                sendCompressed(out -> out.write(bytes), true);
+            } else {
+                write(out -> out.write(bytes), true);
+            }
+        }
+
+        private void send(Body body) throws IOException {
+            long length = getHeaders().getContentLength();
+            if (isEncoded() || !codec.shouldCompress(length)) {
+                write(body, body.repeatable());
+                return;
+            }
+            if (length < 0 && body.repeatable()) {
+                ThresholdProbe probe = new ThresholdProbe(codec.getRequestThreshold());
+                try {
+                    body.writeTo(probe);
+                    byte[] small = probe.toByteArray();
+                    getHeaders().setContentLength(small.length);
+                    write(out -> out.write(small), true);
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    if (!ThresholdProbe.isExceeded(e)) {
+                        throw e;
+                    }
+                    // Large enough to compress
+                }
+            }
+            sendCompressed(body, body.repeatable());
+        }
+
+        private void sendCompressed(Body body, boolean repeatable) throws IOException {
+            HttpHeaders headers = getHeaders();
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            headers.set(HttpHeaders.CONTENT_ENCODING, codec.getRequestEncoding());
+            write(out -> {
+                try (OutputStream compressed = codec.compress(StreamUtils.nonClosing(out))) {
+                    body.writeTo(compressed);
+                }
+            }, repeatable);
+        }
+
+        private void write(Body body, boolean repeatable) throws IOException {
+            if (request instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(new Body() {
+                    @Override
+                    public void writeTo(OutputStream out) throws IOException {
+                        body.writeTo(out);
+                    }
+
+                    @Override
+                    public boolean repeatable() {
+                        return repeatable;
+                    }
+                });
+            } else {
+                body.writeTo(request.getBody());
+            }
+        }
+
+        private boolean isEncoded() {
+            return getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING);
+        }
+    }
+
+    /**
+     * Collects up to {@code limit} bytes and aborts the write once more arrive.
+     */
+    private static final class ThresholdProbe extends ByteArrayOutputStream {
+        private final int limit;
+
+        ThresholdProbe(int limit) {
+            super(Math.min(limit, 1024));
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) {
+            check(1);
+            super.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            check(len);
+            super.write(b, off, len);
+        }
+
+        static boolean isExceeded(Throwable e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause == Exceeded.INSTANCE) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void check(int len) {
+            if (count + len >= limit) {
+                throw Exceeded.INSTANCE;
+            }
+        }
+
+        static final class Exceeded extends RuntimeException {
+            static final Exceeded INSTANCE = new Exceeded();
+
+            private Exceeded() {
+                super("Body exceeds the compression threshold", null, false, false);
+            }
+        }
+    }
+
+    final class DecompressingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final String encoding;
+        private HttpHeaders headers;
+        private InputStream body;
+
+        DecompressingResponse(ClientHttpResponse response, String encoding) {
+            this.response = response;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            if (headers == null) {
+                // The decoded body no longer matches these
+                HttpHeaders decoded = new HttpHeaders();
+                decoded.putAll(response.getHeaders());
+                decoded.remove(HttpHeaders.CONTENT_ENCODING);
+                decoded.remove(HttpHeaders.CONTENT_LENGTH);
+                headers = decoded;
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = codec.decompress(response.getBody(), encoding);
+            }
+            return body;
+        }
+
+        /**
+         * The encoded body as the transport returned it, for aborting the connection under the
+         * decoder instead of closing it, which would drain the rest.
+         */
+        InputStream getRawBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (body != null) {
+                    body.close();
+                }
+            } catch (IOException ignored) {
+                // The response is closed below either way
+            } finally {
+                response.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * gzip and deflate streams backed by pooled {@link Deflater}/{@link Inflater} instances and
+ * buffers. The JDK's GZIP streams allocate a new native (de)compressor and buffer per stream;
+ * these return theirs to the pool when closed.
+ */
+class CompressionCodec {
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final boolean compressRequests;
+    private final int requestThreshold;
+    private final boolean gzipRequests;
+    private final Pool<Deflater> deflaters;
+    private final Pool<Inflater> gzipInflaters;
+    private final Pool<Inflater> zlibInflaters;
+    private final Pool<byte[]> buffers;
+
+    CompressionCodec(RestConfig.Compression config) {
+        this.compressRequests = config.isCompressRequests();
+        this.requestThreshold = config.getRequestThreshold();
+        String encoding = config.getRequestEncoding() != null ? config.getRequestEncoding().toLowerCase(Locale.ROOT) : GZIP;
+        if (!GZIP.equals(encoding) && !DEFLATE.equals(encoding)) {
+            throw new IllegalArgumentException("Unsupported request encoding: " + config.getRequestEncoding());
+        }
+        this.gzipRequests = GZIP.equals(encoding);
+        int level = config.getLevel();
+        this.deflaters = new Pool<>(config.getPoolSize(), () -> new Deflater(level, gzipRequests));
+        this.gzipInflaters = new Pool<>(config.getPoolSize(), () -> new Inflater(true));
+        this.zlibInflaters = new Pool<>(config.getPoolSize(), () -> new Inflater(false));
+        this.buffers = new Pool<>(config.getPoolSize(), () -> new byte[BUFFER_SIZE]);
+    }
+
+    String getRequestEncoding() {
+        return gzipRequests ? GZIP : DEFLATE;
+    }
+
+    /**
+     * Whether a request body of {@code length} bytes (-1 if unknown) should be compressed.
+     */
+    boolean shouldCompress(long length) {
+        return compressRequests && (length < 0 || length >= requestThreshold);
+    }
+
+    int getRequestThreshold() {
+        return requestThreshold;
+    }
+
+    static boolean isSupported(String contentEncoding) {
+        return contentEncoding != null
+                && (GZIP.equalsIgnoreCase(contentEncoding.trim()) || DEFLATE.equalsIgnoreCase(contentEncoding.trim()));
+    }
+
+    /**
+     * Stream that compresses into {@code out} with the request encoding; closing it finishes the
+     * compressed data and closes {@code out}.
+     */
+    OutputStream compress(OutputStream out) throws IOException {
+        return new DeflatingOutputStream(out);
+    }
+
+    /**
+     * Decoded view of a body with the given Content-Encoding; closing it closes {@code in}. An
+     * empty body decodes to an empty stream.
+     */
+    InputStream decompress(InputStream in, String contentEncoding) {
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        if (!GZIP.equals(encoding) && !DEFLATE.equals(encoding)) {
+            throw new IllegalArgumentException("Unsupported content encoding: " + contentEncoding);
+        }
+        return new InflatingInputStream(in, GZIP.equals(encoding));
+    }
+
+    byte[] compress(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(body.length / 4, 64));
+        try (OutputStream compressed = compress(out)) {
+            compressed.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    byte[] decompress(byte[] body, String contentEncoding) {
+        try (InputStream in = decompress(new ByteArrayInputStream(body), contentEncoding)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot decode " + contentEncoding + " response body", e);
+        }
+    }
+
+    private static void readGzipHeader(int id1, InputStream in) throws IOException {
+        int id2 = readByte(in);
+        if (id1 != 0x1f || id2 != 0x8b || readByte(in) != Deflater.DEFLATED) {
+            throw new ZipException("Not in gzip format");
+        }
+        int flags = readByte(in);
+        // mtime, xfl, os
+        skip(in, 6);
+        if ((flags & FEXTRA) != 0) {
+            skip(in, readByte(in) | (readByte(in) << 8));
+        }
+        if ((flags & FNAME) != 0) {
+            while (readByte(in) != 0) {
+                // Skip file name
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (readByte(in) != 0) {
+                // Skip comment
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            skip(in, 2);
+        }
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end of compressed body");
+        }
+        return b;
+    }
+
+    private static void skip(InputStream in, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readByte(in);
+        }
+    }
+
+    private final class DeflatingOutputStream extends FilterOutputStream {
+        private final Deflater deflater;
+        private final byte[] buffer;
+        private final CRC32 crc;
+        private boolean closed;
+
+        DeflatingOutputStream(OutputStream out) throws IOException {
+            super(out);
+            this.deflater = deflaters.borrow();
+            this.buffer = buffers.borrow();
+            this.crc = gzipRequests ? new CRC32() : null;
+            if (gzipRequests) {
+                out.write(GZIP_HEADER);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+
+        private void deflate() throws IOException {
+            int n = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+            if (n > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                if (crc != null) {
+                    writeIntLE((int) crc.getValue());
+                    writeIntLE((int) deflater.getBytesRead());
+                }
+                out.close();
+            } finally {
+                deflaters.release(deflater);
+                buffers.release(buffer);
+            }
+        }
+
+        private void writeIntLE(int value) throws IOException {
+            out.write(value);
+            out.write(value >>> 8);
+            out.write(value >>> 16);
+            out.write(value >>> 24);
+        }
+    }
+
+    private final class InflatingInputStream extends InputStream {
+        private final InputStream in;
+        private final boolean gzip;
+        private final byte[] single = new byte[1];
+        private Pool<Inflater> pool;
+        private Inflater inflater;
+        private byte[] buffer;
+        private CRC32 crc;
+        private int filled;
+        private boolean eof;
+        private boolean closed;
+
+        InflatingInputStream(InputStream in, boolean gzip) {
+            this.in = in;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (eof || inflater == null && !start()) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                while (true) {
+                    int n = inflater.inflate(b, off, len);
+                    if (n > 0) {
+                        if (crc != null) {
+                            crc.update(b, off, n);
+                        }
+                        return n;
+                    }
+                    if (inflater.finished()) {
+                        eof = true;
+                        if (crc != null) {
+                            readGzipTrailer();
+                        }
+                        return -1;
+                    }
+                    if (inflater.needsDictionary()) {
+                        throw new ZipException("Compressed body needs a preset dictionary");
+                    }
+                    filled = in.read(buffer, 0, buffer.length);
+                    if (filled < 0) {
+                        throw new EOFException("Unexpected end of compressed body");
+                    }
+                    inflater.setInput(buffer, 0, filled);
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage() != null ? e.getMessage() : "Invalid compressed body");
+            }
+        }
+
+        // Reads the framing on first use, so that an empty body is just an empty stream
+        private boolean start() throws IOException {
+            int first = in.read();
+            if (first < 0) {
+                eof = true;
+                return false;
+            }
+            buffer = buffers.borrow();
+            if (gzip) {
+                readGzipHeader(first, in);
+                crc = new CRC32();
+                pool = gzipInflaters;
+                inflater = pool.borrow();
+                return true;
+            }
+            // "deflate" is meant to be zlib-wrapped, but some servers send raw deflate data
+            int second = readByte(in);
+            boolean zlib = (first & 0x0f) == Deflater.DEFLATED && ((first << 8) | second) % 31 == 0;
+            pool = zlib ? zlibInflaters : gzipInflaters;
+            inflater = pool.borrow();
+            buffer[0] = (byte) first;
+            buffer[1] = (byte) second;
+            filled = 2;
+            inflater.setInput(buffer, 0, filled);
+            return true;
+        }
+
+        private void readGzipTrailer() throws IOException {
+            // The trailer starts in whatever the inflater left unread of the last buffer
+            int position = filled - inflater.getRemaining();
+            long expectedCrc = 0;
+            long expectedSize = 0;
+            for (int i = 0; i < 8; i++) {
+                long b = position < filled ? buffer[position++] & 0xff : readByte(in);
+                if (i < 4) {
+                    expectedCrc |= b << (8 * i);
+                } else {
+                    expectedSize |= b << (8 * (i - 4));
+                }
+            }
+            if (expectedCrc != crc.getValue() || expectedSize != (inflater.getBytesWritten() & 0xffffffffL)) {
+                throw new ZipException("Corrupt gzip trailer");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (inflater != null) {
+                pool.release(inflater);
+            }
+            if (buffer != null) {
+                buffers.release(buffer);
+            }
+            in.close();
+        }
+    }
+
+    /**
+     * Bounded pool; objects returned to a full pool are dropped (and natively freed).
+     */
+    private static final class Pool<T> {
+        private final ArrayBlockingQueue<T> idle;
+        private final Supplier<T> factory;
+
+        Pool(int size, Supplier<T> factory) {
+            this.idle = new ArrayBlockingQueue<>(Math.max(size, 1));
+            this.factory = factory;
+        }
+
+        T borrow() {
+            T item = idle.poll();
+            return item != null ? item : factory.get();
+        }
+
+        void release(T item) {
+            if (item instanceof Deflater deflater) {
+                deflater.reset();
+            } else if (item instanceof Inflater inflater) {
+                inflater.reset();
+            }
+            if (!idle.offer(item)) {
+                if (item instanceof Deflater deflater) {
+                    deflater.end();
+                } else if (item instanceof Inflater inflater) {
+                    inflater.end();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.xhkzeroone.resttemplate.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bulkhead whose size follows the downstream's latency, see {@link ConcurrencyLimiter}.
+ * Calls that cannot get a slot fail with {@link RequestRejectedException}, which takes the
+ * fallback path of {@link RestClient#exchange(ReqOption, Class, java.util.function.Supplier)}.
+ * Timeouts, connection failures, 429, 503 and 504 count as drops and shrink the limit.
+ * <p>
+ * The current limit, calls in flight and queued callers are published as the
+ * {@code restclient.concurrency.limit}, {@code .inflight} and {@code .queued} gauges, tagged
+ * with the client name; like {@link MetricsMiddleware}, a second live instance with the same
+ * name publishes as {@code name-2}, and {@link #close()} removes the gauges.
+ */
+public class ConcurrencyLimitMiddleware implements Middleware, AutoCloseable {
+    private static final String METRIC_PREFIX = "restclient.concurrency.";
+
+    private final ConcurrencyLimiter limiter;
+    private final MeterRegistry registry;
+    private final String clientName;
+    private final Queue<Meter> meters = new ConcurrentLinkedQueue<>();
+
+    public ConcurrencyLimitMiddleware() {
+        this(new RestConfig());
+    }
+
+    public ConcurrencyLimitMiddleware(RestConfig config) {
+        this(config, Metrics.globalRegistry);
+    }
+
+    public ConcurrencyLimitMiddleware(RestConfig config, MeterRegistry registry) {
+        this.limiter = new ConcurrencyLimiter(config.getConcurrencyLimit());
+        this.registry = registry;
+        this.clientName = registry != null
+                ? ClientNames.claim(registry, METRIC_PREFIX, MetricsMiddleware.clientName(config))
+                : MetricsMiddleware.clientName(config);
+        if (registry != null) {
+            gauge("limit", ConcurrencyLimiter::getLimit);
+            gauge("inflight", ConcurrencyLimiter::getInFlight);
+            gauge("queued", ConcurrencyLimiter::getQueued);
+        }
+    }
+
+    @Override
+    public Handler apply(Handler next) {
+        return ctx -> {
+            limiter.acquire();
+            long start = System.nanoTime();
+            boolean dropped = false;
+            try {
+                next.handle(ctx);
+            } catch (Exception e) {
+                dropped = isDrop(e);
+                throw e;
+            } finally {
+                limiter.release(System.nanoTime() - start, dropped);
+            }
+        };
+    }
+
+    @Override
+    public AsyncHandler applyAsync(AsyncHandler next) {
+        return ctx -> limiter.acquireAsync().thenCompose(ignored -> {
+            long start = System.nanoTime();
+            CompletableFuture<Void> result;
+            try {
+                result = next.handle(ctx);
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            } catch (Error e) {
+                limiter.release(System.nanoTime() - start, false);
+                throw e;
+            }
+            return result.whenComplete((done, error) ->
+                    limiter.release(System.nanoTime() - start, error != null && isDrop(RetryPolicy.unwrap(error))));
+        });
+    }
+
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Value of the {@code client} tag the gauges are published under.
+     */
+    public String getClientName() {
+        return clientName;
+    }
+
+    /**
+     * Removes the gauges and frees the client name for another instance.
+     */
+    @Override
+    public void close() {
+        if (registry == null) {
+            return;
+        }
+        Meter meter;
+        while ((meter = meters.poll()) != null) {
+            registry.remove(meter);
+        }
+        ClientNames.release(registry, METRIC_PREFIX, clientName);
+    }
+
+    private void gauge(String name, ToIntFunction<ConcurrencyLimiter> value) {
+        meters.add(Gauge.builder(METRIC_PREFIX + name, limiter, value::applyAsInt)
+                .tag("client", clientName)
+                .register(registry));
+    }
+
+    private static boolean isDrop(Throwable error) {
+        if (error instanceof ResourceAccessException || error instanceof IOException) {
+            return true;
+        }
+        if (error instanceof HttpStatusCodeException status) {
+            int code = status.getStatusCode().value();
+            return code == 429 || code == 503 || code == 504;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,213 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive bound on in-flight calls using a gradient (Vegas-style) limit: each sample compares
+ * a slowly moving average of latency with the latest latency. While latency stays near the
+ * average the limit grows by roughly sqrt(limit); when latency climbs (a queue is forming
+ * downstream) the limit shrinks in proportion. Drops (timeouts, 429/503) cut it multiplicatively.
+ * <p>
+ * Calls over the limit wait in a bounded queue for at most {@code maxWait}, or are rejected
+ * straight away when the queue is disabled or full.
+ */
+public class ConcurrencyLimiter {
+    private static final double BACKOFF_RATIO = 0.9;
+    // Weight of a new sample in the long-term latency average
+    private static final double LONG_RTT_ALPHA = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitMillis;
+    private final double smoothing;
+    private final double tolerance;
+
+    private final AtomicLong limitBits;
+    private final AtomicLong longRttBits = new AtomicLong(Double.doubleToLongBits(0));
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejected = new LongAdder();
+
+    public ConcurrencyLimiter(RestConfig.ConcurrencyLimit config) {
+        this.minLimit = Math.max(config.getMinLimit(), 1);
+        this.maxLimit = Math.max(config.getMaxLimit(), minLimit);
+        this.maxQueue = config.getMaxQueue();
+        this.maxWaitMillis = config.getMaxWait();
+        this.smoothing = config.getSmoothing();
+        this.tolerance = config.getTolerance();
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(
+                Math.min(Math.max(config.getInitialLimit(), minLimit), maxLimit)));
+    }
+
+    /**
+     * Takes a slot, waiting up to {@code maxWait} in the queue if configured.
+     */
+    public void acquire() throws InterruptedException {
+        if (tryAcquire()) {
+            return;
+        }
+        CompletableFuture<Void> waiter = enqueue();
+        try {
+            waiter.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            abandon(waiter);
+            throw e;
+        } catch (Exception e) {
+            abandon(waiter);
+            rejected.increment();
+            throw new RequestRejectedException("Concurrency limit " + getLimit() + " reached, waited " + maxWaitMillis + " ms");
+        }
+    }
+
+    /**
+     * Completes when a slot is held; never blocks the caller.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        if (tryAcquire()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> waiter;
+        try {
+            waiter = enqueue();
+        } catch (RequestRejectedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return waiter.orTimeout(maxWaitMillis, TimeUnit.MILLISECONDS).handle((ignored, error) -> {
+            if (error != null) {
+                abandon(waiter);
+                rejected.increment();
+                throw new RequestRejectedException("Concurrency limit " + getLimit() + " reached, waited " + maxWaitMillis + " ms");
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Releases a slot and feeds the call's latency into the limit.
+     *
+     * @param dropped the call failed in a way that signals overload
+     */
+    public void release(long rttNanos, boolean dropped) {
+        onSample(rttNanos, dropped);
+        releaseSlot();
+    }
+
+    private boolean tryAcquire() {
+        int limit = getLimit();
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private CompletableFuture<Void> enqueue() {
+        boolean queueing = maxQueue > 0 && maxWaitMillis > 0;
+        if (!queueing || queued.incrementAndGet() > maxQueue) {
+            if (queueing) {
+                queued.decrementAndGet();
+            }
+            rejected.increment();
+            throw new RequestRejectedException("Concurrency limit " + getLimit() + " reached");
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        // A slot may have been released between the failed tryAcquire and enqueueing
+        if (tryAcquire()) {
+            if (waiters.remove(waiter)) {
+                queued.decrementAndGet();
+                waiter.complete(null);
+            } else {
+                // A releaser already took the waiter and is handing it a slot
+                releaseSlot();
+            }
+        }
+        return waiter;
+    }
+
+    private void abandon(CompletableFuture<Void> waiter) {
+        waiter.cancel(false);
+        if (waiter.isCompletedExceptionally()) {
+            if (waiters.remove(waiter)) {
+                queued.decrementAndGet();
+            }
+        } else {
+            // Handed a slot just as we gave up: give it back
+            releaseSlot();
+        }
+    }
+
+    private void releaseSlot() {
+        CompletableFuture<Void> waiter;
+        while ((waiter = waiters.poll()) != null) {
+            queued.decrementAndGet();
+            // Hand the slot straight to the waiter; in-flight count is unchanged
+            if (waiter.complete(null)) {
+                return;
+            }
+        }
+        inFlight.decrementAndGet();
+    }
+
+    private void onSample(long rttNanos, boolean dropped) {
+        long bits;
+        double limit;
+        double next;
+        do {
+            bits = limitBits.get();
+            limit = Double.longBitsToDouble(bits);
+            if (dropped) {
+                next = limit * BACKOFF_RATIO;
+            } else {
+                // Calls well under the limit say nothing about whether it could be higher
+                if (inFlight.get() < limit / 2) {
+                    return;
+                }
+                double longRtt = updateLongRtt(rttNanos);
+                double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / Math.max(rttNanos, 1)));
+                double target = limit * gradient + Math.sqrt(limit);
+                next = limit * (1 - smoothing) + target * smoothing;
+            }
+            next = Math.max(minLimit, Math.min(maxLimit, next));
+        } while (!limitBits.compareAndSet(bits, Double.doubleToLongBits(next)));
+    }
+
+    private double updateLongRtt(long rttNanos) {
+        long bits;
+        double current;
+        double next;
+        do {
+            bits = longRttBits.get();
+            current = Double.longBitsToDouble(bits);
+            next = current == 0 ? rttNanos : current * (1 - LONG_RTT_ALPHA) + rttNanos * LONG_RTT_ALPHA;
+        } while (!longRttBits.compareAndSet(bits, Double.doubleToLongBits(next)));
+        return next;
+    }
+
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getQueued() {
+        return Math.max(queued.get(), 0);
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,312 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Request factory over Apache HttpClient's async HTTP/2 client. Calls to one host share a single
+ * connection, each as its own stream: http:// URIs speak h2c with prior knowledge, https:// URIs
+ * negotiate h2 through ALPN. At most {@code maxConcurrentStreams} streams per host are open at a
+ * time; further calls queue until one completes, and beyond {@code maxQueuedStreams} queued calls
+ * are rejected.
+ * <p>
+ * Request and response bodies are buffered in memory.
+ */
+class H2ClientHttpRequestFactory implements ClientHttpRequestFactory, AutoCloseable {
+    // Connection-specific headers are not allowed in HTTP/2; framing ones are set by the client
+    private static final Set<String> EXCLUDED_HEADERS = Set.of("connection", "keep-alive", "proxy-connection",
+            "transfer-encoding", "upgrade", "host", "content-length", "content-type");
+
+    private final CloseableHttpAsyncClient client;
+    private final int maxConcurrentStreams;
+    private final int maxQueuedStreams;
+    private final int readTimeout;
+    private final Map<String, StreamLimiter> limiters = new ConcurrentHashMap<>();
+
+    H2ClientHttpRequestFactory(RestConfig.Transport settings, int connectTimeout, int readTimeout) {
+        this.maxConcurrentStreams = Math.max(settings.getMaxConcurrentStreams(), 1);
+        this.maxQueuedStreams = Math.max(settings.getMaxQueuedStreams(), 0);
+        this.readTimeout = readTimeout;
+        this.client = H2AsyncClientBuilder.create()
+                .setH2Config(H2Config.custom()
+                        .setPushEnabled(false)
+                        .setMaxConcurrentStreams(maxConcurrentStreams)
+                        .build())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .setTimeToLive(TimeValue.ofMilliseconds(settings.getTimeToLive()))
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeout))
+                        .build())
+                .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleEviction()))
+                .build();
+        client.start();
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        return new H2ClientHttpRequest(uri, httpMethod);
+    }
+
+    /**
+     * Sends the request as a stream on the host's connection; the future completes with the
+     * buffered response, whatever its status, or fails with a {@link RequestRejectedException} when
+     * the host's queue is full.
+     */
+    CompletableFuture<SimpleHttpResponse> execute(HttpMethod method, URI uri, HttpHeaders headers, byte[] body) {
+        SimpleHttpRequest request = toRequest(method, uri, headers, body);
+        CompletableFuture<SimpleHttpResponse> result = new CompletableFuture<>();
+        StreamLimiter limiter = limiters.computeIfAbsent(uri.getScheme() + "://" + uri.getRawAuthority(),
+                key -> new StreamLimiter(maxConcurrentStreams, maxQueuedStreams));
+        limiter.start(result, () -> {
+            Future<SimpleHttpResponse> sent = client.execute(SimpleRequestProducer.create(request), SimpleResponseConsumer.create(),
+                    new FutureCallback<>() {
+                        @Override
+                        public void completed(SimpleHttpResponse response) {
+                            limiter.finish();
+                            result.complete(response);
+                        }
+
+                        @Override
+                        public void failed(Exception e) {
+                            limiter.finish();
+                            result.completeExceptionally(e);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            limiter.finish();
+                            result.cancel(false);
+                        }
+                    });
+            result.whenComplete((response, error) -> {
+                if (result.isCancelled()) {
+                    sent.cancel(true);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Buffered request for Apache's async clients; headers the client sets itself are left out.
+     */
+    static SimpleHttpRequest toRequest(HttpMethod method, URI uri, HttpHeaders headers, byte[] body) {
+        SimpleRequestBuilder builder = SimpleRequestBuilder.create(method.name()).setUri(uri);
+        headers.forEach((name, values) -> {
+            if (!EXCLUDED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                values.forEach(value -> builder.addHeader(name, value));
+            }
+        });
+        if (body != null) {
+            String contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+            builder.setBody(body, contentType != null ? ContentType.parse(contentType) : null);
+        }
+        return builder.build();
+    }
+
+    static HttpHeaders toHttpHeaders(SimpleHttpResponse response) {
+        HttpHeaders headers = new HttpHeaders();
+        for (Header header : response.getHeaders()) {
+            headers.add(header.getName(), header.getValue());
+        }
+        return headers;
+    }
+
+    @Override
+    public void close() {
+        client.close(CloseMode.GRACEFUL);
+    }
+
+    private final class H2ClientHttpRequest extends AbstractClientHttpRequest {
+        private final URI uri;
+        private final HttpMethod method;
+        private ByteArrayOutputStream body;
+
+        H2ClientHttpRequest(URI uri, HttpMethod method) {
+            this.uri = uri;
+            this.method = method;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+            if (body == null) {
+                body = new ByteArrayOutputStream(1024);
+            }
+            return body;
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            CompletableFuture<SimpleHttpResponse> sent = H2ClientHttpRequestFactory.this.execute(method, uri, headers,
+                    body != null ? body.toByteArray() : null);
+            Cancellation.register(() -> sent.cancel(false));
+            try {
+                return new H2ClientHttpResponse(readTimeout > 0 ? sent.get(readTimeout, TimeUnit.MILLISECONDS) : sent.get());
+            } catch (TimeoutException e) {
+                sent.cancel(false);
+                throw new SocketTimeoutException("Read timed out after " + readTimeout + " ms");
+            } catch (InterruptedException e) {
+                sent.cancel(false);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the response");
+            } catch (CancellationException e) {
+                throw new IOException("Request cancelled", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+    }
+
+    private static final class H2ClientHttpResponse implements ClientHttpResponse {
+        private final SimpleHttpResponse response;
+        private HttpHeaders headers;
+
+        H2ClientHttpResponse(SimpleHttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatusCode.valueOf(response.getCode());
+        }
+
+        @Override
+        public String getStatusText() {
+            return response.getReasonPhrase() != null ? response.getReasonPhrase() : "";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            if (headers == null) {
+                headers = toHttpHeaders(response);
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            byte[] body = response.getBodyBytes();
+            return new ByteArrayInputStream(body != null ? body : new byte[0]);
+        }
+
+        @Override
+        public void close() {
+            // Fully buffered, nothing to release
+        }
+    }
+
+    /**
+     * Caps the open streams to one host; calls beyond the cap run, in order, as others finish. A
+     * queued call given up on leaves the queue at once, so its request is not held until its turn.
+     */
+    private static final class StreamLimiter {
+        private final int max;
+        private final int maxWaiting;
+        private final ArrayDeque<Stream> waiting = new ArrayDeque<>();
+        private int active;
+
+        StreamLimiter(int max, int maxWaiting) {
+            this.max = max;
+            this.maxWaiting = maxWaiting;
+        }
+
+        void start(CompletableFuture<?> result, Runnable send) {
+            Stream stream = new Stream(result, send);
+            synchronized (this) {
+                if (active >= max) {
+                    if (waiting.size() >= maxWaiting) {
+                        result.completeExceptionally(new RequestRejectedException(
+                                "All " + max + " streams are open and " + maxWaiting + " calls are queued"));
+                        return;
+                    }
+                    waiting.add(stream);
+                    result.whenComplete((response, error) -> drop(stream));
+                    return;
+                }
+                active++;
+            }
+            send.run();
+        }
+
+        /**
+         * Hands the finished stream's slot to the next queued call still wanted; loops rather than
+         * recursing, as it runs on the client's I/O thread.
+         */
+        void finish() {
+            while (true) {
+                Stream next;
+                synchronized (this) {
+                    next = waiting.poll();
+                    if (next == null) {
+                        active--;
+                        return;
+                    }
+                }
+                if (!next.result.isDone()) {
+                    next.send.run();
+                    return;
+                }
+            }
+        }
+
+        private synchronized void drop(Stream stream) {
+            waiting.remove(stream);
+        }
+    }
+
+    private record Stream(CompletableFuture<?> result, Runnable send) {
+    }
+}
@@ -0,0 +1,168 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Request headers of one call: the request's headers laid over the client's defaults, both
+ * immutable snapshots. Reads go straight to the snapshots; the first write copies the merged
+ * headers into a private case-insensitive map, so calls no middleware touches copy nothing.
+ */
+final class HeaderMap extends AbstractMap<String, Object> {
+    private final HeaderSnapshot defaults;
+    private final HeaderSnapshot request;
+    private LinkedCaseInsensitiveMap<Object> materialized;
+
+    HeaderMap(HeaderSnapshot defaults, HeaderSnapshot request) {
+        this.defaults = defaults;
+        this.request = request;
+    }
+
+    /**
+     * Independent copy for a parallel attempt; shares the snapshots.
+     */
+    HeaderMap copy() {
+        HeaderMap copy = new HeaderMap(defaults, request);
+        if (materialized != null) {
+            copy.materialized = new LinkedCaseInsensitiveMap<>(materialized.size());
+            copy.materialized.putAll(materialized);
+        }
+        return copy;
+    }
+
+    /**
+     * Headers to send. Unless a middleware changed them this is the defaults' shared read-only
+     * instance or a merge sharing its value lists, so it must not be modified.
+     */
+    HttpHeaders toHttpHeaders() {
+        if (materialized != null) {
+            HttpHeaders headers = new HttpHeaders();
+            materialized.forEach((name, value) -> headers.set(name, String.valueOf(value)));
+            return headers;
+        }
+        if (request.isEmpty()) {
+            return defaults.toHttpHeaders();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        for (int i = 0; i < defaults.size(); i++) {
+            if (request.indexOf(defaults.nameAt(i)) < 0) {
+                headers.put(defaults.nameAt(i), defaults.valuesAt(i));
+            }
+        }
+        for (int i = 0; i < request.size(); i++) {
+            headers.put(request.nameAt(i), request.valuesAt(i));
+        }
+        return headers;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (materialized != null) {
+            return materialized.get(key);
+        }
+        int index = request.indexOf(key);
+        return index >= 0 ? request.valueAt(index) : defaults.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return materialized != null ? materialized.containsKey(key) : request.containsKey(key) || defaults.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return materialize().put(HeaderSnapshot.canonicalName(key), value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> headers) {
+        headers.forEach(this::put);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        materialize().clear();
+    }
+
+    @Override
+    public int size() {
+        if (materialized != null) {
+            return materialized.size();
+        }
+        int size = request.size();
+        for (int i = 0; i < defaults.size(); i++) {
+            if (request.indexOf(defaults.nameAt(i)) < 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (materialized != null) {
+            return materialized.entrySet();
+        }
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                Iterator<Entry<String, Object>> overridden = request.entrySet().iterator();
+                return new Iterator<>() {
+                    private int next = skipOverridden(0);
+
+                    private int skipOverridden(int index) {
+                        while (index < defaults.size() && request.indexOf(defaults.nameAt(index)) >= 0) {
+                            index++;
+                        }
+                        return index;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < defaults.size() || overridden.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next < defaults.size()) {
+                            int index = next;
+                            next = skipOverridden(next + 1);
+                            return new SimpleImmutableEntry<>(defaults.nameAt(index), defaults.valueAt(index));
+                        }
+                        if (!overridden.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return overridden.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return HeaderMap.this.size();
+            }
+        };
+    }
+
+    private LinkedCaseInsensitiveMap<Object> materialize() {
+        if (materialized == null) {
+            LinkedCaseInsensitiveMap<Object> merged = new LinkedCaseInsensitiveMap<>(size() + 4);
+            merged.putAll(defaults);
+            merged.putAll(request);
+            materialized = merged;
+        }
+        return materialized;
+    }
+}
@@ -0,0 +1,211 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable header set with case-insensitive names and values already converted to strings.
+ * Names are canonical, interned instances, so lookups with the usual constants match by identity
+ * before falling back to a case-insensitive scan. Built once per client (defaults) and per
+ * {@link ReqOption} (request headers), or per call for interface methods with header arguments.
+ */
+final class HeaderSnapshot extends AbstractMap<String, Object> {
+    static final HeaderSnapshot EMPTY = new HeaderSnapshot(new String[0], new String[0]);
+
+    private static final Map<String, String> CANONICAL_NAMES = new ConcurrentHashMap<>();
+
+    static {
+        for (String name : List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE,
+                HttpHeaders.AUTHORIZATION, HttpHeaders.CACHE_CONTROL, HttpHeaders.CONNECTION, HttpHeaders.CONTENT_ENCODING,
+                HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_TYPE, HttpHeaders.COOKIE, HttpHeaders.IF_MATCH,
+                HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.IF_NONE_MATCH, HttpHeaders.USER_AGENT, RetryPolicy.IDEMPOTENCY_KEY,
+                "X-Api-Key", "X-Request-Id", "X-Correlation-Id")) {
+            CANONICAL_NAMES.put(name.toLowerCase(Locale.ROOT), name);
+        }
+    }
+
+    private final String[] names;
+    private final String[] values;
+    // Built on first use; racing threads build equal instances
+    private volatile HttpHeaders httpHeaders;
+
+    private HeaderSnapshot(String[] names, String[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * Snapshot of {@code headers}; null values are dropped and, of names differing only in case,
+     * the last one wins.
+     */
+    static HeaderSnapshot of(Map<String, ?> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return EMPTY;
+        }
+        if (headers instanceof HeaderSnapshot snapshot) {
+            return snapshot;
+        }
+        String[] names = new String[headers.size()];
+        String[] values = new String[headers.size()];
+        int size = 0;
+        for (Map.Entry<String, ?> header : headers.entrySet()) {
+            if (header.getValue() == null) {
+                continue;
+            }
+            String name = canonicalName(header.getKey());
+            int index = indexOf(names, size, name);
+            if (index < 0) {
+                index = size++;
+                names[index] = name;
+            }
+            values[index] = String.valueOf(header.getValue());
+        }
+        if (size == 0) {
+            return EMPTY;
+        }
+        return new HeaderSnapshot(size == names.length ? names : Arrays.copyOf(names, size),
+                size == values.length ? values : Arrays.copyOf(values, size));
+    }
+
+    /**
+     * This snapshot with the given headers set, replacing any of the same name; null values are
+     * skipped. {@code names} must be canonical, see {@link #canonicalName(String)}.
+     */
+    HeaderSnapshot with(String[] names, Object[] values) {
+        String[] mergedNames = Arrays.copyOf(this.names, this.names.length + names.length);
+        String[] mergedValues = Arrays.copyOf(this.values, mergedNames.length);
+        int size = this.names.length;
+        for (int i = 0; i < names.length; i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            int index = indexOf(mergedNames, size, names[i]);
+            if (index < 0) {
+                index = size++;
+                mergedNames[index] = names[i];
+            }
+            mergedValues[index] = String.valueOf(values[i]);
+        }
+        if (size == this.names.length && Arrays.equals(mergedValues, 0, size, this.values, 0, size)) {
+            return this;
+        }
+        return new HeaderSnapshot(size == mergedNames.length ? mergedNames : Arrays.copyOf(mergedNames, size),
+                size == mergedValues.length ? mergedValues : Arrays.copyOf(mergedValues, size));
+    }
+
+    /**
+     * Shared instance for a header name: the usual spelling for well-known headers, otherwise the
+     * interned name as given.
+     */
+    static String canonicalName(String name) {
+        String canonical = CANONICAL_NAMES.get(name);
+        if (canonical != null) {
+            return canonical;
+        }
+        canonical = CANONICAL_NAMES.get(name.toLowerCase(Locale.ROOT));
+        return canonical != null ? canonical : name.intern();
+    }
+
+    int indexOf(Object name) {
+        return name instanceof String key ? indexOf(names, names.length, key) : -1;
+    }
+
+    private static int indexOf(String[] names, int size, String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i] == name) {
+                return i;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    String nameAt(int index) {
+        return names[index];
+    }
+
+    String valueAt(int index) {
+        return values[index];
+    }
+
+    List<String> valuesAt(int index) {
+        return toHttpHeaders().get(names[index]);
+    }
+
+    /**
+     * Read-only HttpHeaders view, built once.
+     */
+    HttpHeaders toHttpHeaders() {
+        HttpHeaders headers = httpHeaders;
+        if (headers == null) {
+            HttpHeaders built = new HttpHeaders();
+            for (int i = 0; i < names.length; i++) {
+                built.put(names[i], List.of(values[i]));
+            }
+            headers = HttpHeaders.readOnlyHttpHeaders(built);
+            httpHeaders = headers;
+        }
+        return headers;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < names.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next >= names.length) {
+                            throw new NoSuchElementException();
+                        }
+                        int index = next++;
+                        return new SimpleImmutableEntry<>(names[index], values[index]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return names.length;
+            }
+        };
+    }
+}
@@ -0,0 +1,217 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second attempt of a call that has not completed within the hedge delay and takes
+ * whichever attempt finishes first; the other is cancelled, which aborts its exchange. The
+ * delay is either fixed or a percentile of recent latency, and hedges are paid for from a {@link RetryBudget} so they stay
+ * under a fraction of traffic. Errors are not hedged: an attempt that fails while the other is
+ * still running simply leaves the result to the other one.
+ * <p>
+ * The latency behind the percentile is always the original attempt's, from its start until it
+ * completes, fails or loses; a winning hedge's own, shorter time would pull the delay down.
+ * <p>
+ * Only use it for idempotent calls.
+ */
+public class Hedger {
+    // Latency samples needed before a percentile-based delay is trusted
+    private static final int MIN_SAMPLES = 20;
+
+    private final long fixedDelayMillis;
+    private final long minDelayMillis;
+    private final LatencyWindow latencies;
+    private final RetryBudget budget;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+
+    public Hedger(RestConfig.Hedge config) {
+        this.fixedDelayMillis = config.getDelay();
+        this.minDelayMillis = config.getMinDelay();
+        this.latencies = new LatencyWindow(config.getPercentile());
+        this.budget = new RetryBudget(config.getBudgetRatio(), config.getBudgetMaxTokens());
+    }
+
+    public <T> CompletableFuture<T> hedge(Supplier<CompletableFuture<T>> attempt) {
+        calls.increment();
+        budget.onRequest();
+        long delay = delayMillis();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Race race = new Race();
+        AtomicReference<CompletableFuture<T>> hedge = new AtomicReference<>();
+        CompletableFuture<T> primary = start(attempt, result, race, false);
+
+        if (delay >= 0 && !primary.isDone()) {
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+                race.outstanding.incrementAndGet();
+                if (result.isDone() || !budget.tryAcquire()) {
+                    race.outstanding.decrementAndGet();
+                    return;
+                }
+                hedges.increment();
+                hedge.set(start(attempt, result, race, true));
+                if (result.isDone()) {
+                    hedge.get().cancel(true);
+                }
+            });
+        }
+        result.whenComplete((value, error) -> {
+            primary.cancel(true);
+            CompletableFuture<T> second = hedge.get();
+            if (second != null) {
+                second.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Blocking variant: both attempts run on a shared pool while the caller waits for the first.
+     * The loser's exchange is aborted through the transport, which frees its thread.
+     */
+    public <T> T call(Callable<T> attempt) throws Exception {
+        CompletableFuture<T> result = hedge(() -> Cancellation.supplyAsync(attempt, Pool.EXECUTOR));
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> attempt,
+                                           CompletableFuture<T> result, Race race, boolean isHedge) {
+        long startedAt = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = attempt.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (!isHedge) {
+                // Recorded before completing, so callers woken by the result see it
+                latencies.record(System.nanoTime() - startedAt);
+            }
+            if (error == null) {
+                if (race.decided.compareAndSet(false, true)) {
+                    if (isHedge) {
+                        hedgesWon.increment();
+                    }
+                    result.complete(value);
+                }
+            } else if (race.outstanding.decrementAndGet() == 0 && race.decided.compareAndSet(false, true)) {
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Hedge delay for the next call, or -1 to send no hedge.
+     */
+    long delayMillis() {
+        if (fixedDelayMillis > 0) {
+            return fixedDelayMillis;
+        }
+        long percentile = latencies.percentileNanos();
+        return percentile < 0 ? -1 : Math.max(TimeUnit.NANOSECONDS.toMillis(percentile), minDelayMillis);
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    public long getHedgeWonCount() {
+        return hedgesWon.sum();
+    }
+
+    /**
+     * Fraction of sent hedges that finished before the original attempt.
+     */
+    public double getHedgeWinRate() {
+        long sent = hedges.sum();
+        return sent == 0 ? 0 : (double) hedgesWon.sum() / sent;
+    }
+
+    // The first attempt to succeed, or the last to fail, decides the result
+    private static final class Race {
+        final AtomicBoolean decided = new AtomicBoolean();
+        final AtomicInteger outstanding = new AtomicInteger(1);
+    }
+
+    private static final class Pool {
+        private static final ExecutorService EXECUTOR;
+
+        static {
+            AtomicInteger counter = new AtomicInteger();
+            EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "hedge-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Ring of recent latencies. The percentile is recomputed from a sorted copy every
+     * {@code RECOMPUTE_EVERY} samples rather than per call.
+     */
+    private static final class LatencyWindow {
+        private static final int SIZE = 512;
+        private static final int RECOMPUTE_EVERY = 32;
+
+        private final double percentile;
+        private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+        private final AtomicLong cursor = new AtomicLong();
+        private volatile long cached = -1;
+
+        LatencyWindow(double percentile) {
+            this.percentile = Math.min(Math.max(percentile, 0), 100);
+        }
+
+        void record(long nanos) {
+            long index = cursor.getAndIncrement();
+            samples.set((int) (index % SIZE), nanos);
+            long count = index + 1;
+            if (count == MIN_SAMPLES || count % RECOMPUTE_EVERY == 0) {
+                cached = compute((int) Math.min(count, SIZE));
+            }
+        }
+
+        long percentileNanos() {
+            return cached;
+        }
+
+        private long compute(int count) {
+            long[] copy = new long[count];
+            for (int i = 0; i < count; i++) {
+                copy[i] = samples.get(i);
+            }
+            Arrays.sort(copy);
+            int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+            return copy[Math.min(Math.max(rank, 0), count - 1)];
+        }
+    }
+}
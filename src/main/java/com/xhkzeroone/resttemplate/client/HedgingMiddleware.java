@@ -0,0 +1,71 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.http.HttpMethod;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hedges GET, HEAD and OPTIONS calls with a {@link Hedger}; other methods pass through.
+ * Each attempt runs the rest of the chain on its own copy of the request, and the winning
+ * attempt's response is copied back. The losing attempt's exchange is aborted.
+ * <p>
+ * The sync path needs a thread per attempt; prefer the async path where latency matters.
+ */
+public class HedgingMiddleware implements Middleware {
+    private final Hedger hedger;
+
+    public HedgingMiddleware() {
+        this(new RestConfig());
+    }
+
+    public HedgingMiddleware(RestConfig config) {
+        this(new Hedger(config.getHedge()));
+    }
+
+    public HedgingMiddleware(Hedger hedger) {
+        this.hedger = hedger;
+    }
+
+    @Override
+    public Handler apply(Handler next) {
+        return ctx -> {
+            if (!isHedgeable(ctx.getMethod()) || ctx.isStreaming() || !BodySource.isReplayable(ctx.getRequest())) {
+                next.handle(ctx);
+                return;
+            }
+            ReqContext winner = hedger.call(() -> {
+                ReqContext attempt = ctx.copyRequest();
+                next.handle(attempt);
+                return attempt;
+            });
+            ctx.copyResponse(winner);
+        };
+    }
+
+    @Override
+    public AsyncHandler applyAsync(AsyncHandler next) {
+        return ctx -> {
+            if (!isHedgeable(ctx.getMethod()) || !BodySource.isReplayable(ctx.getRequest())) {
+                return next.handle(ctx);
+            }
+            return hedger.hedge(() -> {
+                ReqContext attempt = ctx.copyRequest();
+                CompletableFuture<ReqContext> sent = next.handle(attempt).thenApply(ignored -> attempt);
+                sent.whenComplete((ignored, error) -> {
+                    if (sent.isCancelled()) {
+                        attempt.cancel();
+                    }
+                });
+                return sent;
+            }).thenAccept(ctx::copyResponse);
+        };
+    }
+
+    public Hedger getHedger() {
+        return hedger;
+    }
+
+    static boolean isHedgeable(HttpMethod method) {
+        return method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS;
+    }
+}
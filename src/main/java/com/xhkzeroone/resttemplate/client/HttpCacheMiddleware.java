@@ -0,0 +1,347 @@
+package com.xhkzeroone.resttemplate.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.lang.reflect.Type;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Private HTTP cache for GET responses following Cache-Control/Expires, with conditional
+ * revalidation (If-None-Match / If-Modified-Since), Vary matching and stale-if-error.
+ * Entries are held in a size-bounded W-TinyLFU cache.
+ * <p>
+ * Cached response bodies are shared between callers and must be treated as read-only.
+ */
+public class HttpCacheMiddleware implements Middleware {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final Cache<String, Entry> cache;
+    private final long defaultStaleIfErrorMillis;
+    private final Clock clock;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidated = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+
+    public HttpCacheMiddleware() {
+        this(DEFAULT_MAX_ENTRIES, Duration.ZERO);
+    }
+
+    /**
+     * @param defaultStaleIfError how long a stale entry may replace a failed call when the
+     *                            response carried no {@code stale-if-error} directive
+     */
+    public HttpCacheMiddleware(int maxEntries, Duration defaultStaleIfError) {
+        this(maxEntries, defaultStaleIfError, Clock.systemUTC());
+    }
+
+    HttpCacheMiddleware(int maxEntries, Duration defaultStaleIfError, Clock clock) {
+        this.cache = Caffeine.newBuilder().maximumSize(maxEntries).build();
+        this.defaultStaleIfErrorMillis = defaultStaleIfError.toMillis();
+        this.clock = clock;
+    }
+
+    @Override
+    public Handler apply(Handler next) {
+        return ctx -> {
+            if (!isCacheable(ctx)) {
+                next.handle(ctx);
+                return;
+            }
+            String key = key(ctx);
+            long now = clock.millis();
+            Entry entry = lookup(key, ctx);
+            if (entry != null && entry.isFresh(now) && !noCache(ctx)) {
+                serve(ctx, entry, hits);
+                return;
+            }
+            prepare(ctx, entry);
+            try {
+                next.handle(ctx);
+            } catch (Exception e) {
+                if (entry != null && canServeStale(entry, e, now)) {
+                    serve(ctx, entry, staleServed);
+                    return;
+                }
+                throw e;
+            }
+            store(ctx, key, entry, now);
+        };
+    }
+
+    @Override
+    public AsyncHandler applyAsync(AsyncHandler next) {
+        return ctx -> {
+            if (!isCacheable(ctx)) {
+                return next.handle(ctx);
+            }
+            String key = key(ctx);
+            long now = clock.millis();
+            Entry entry = lookup(key, ctx);
+            if (entry != null && entry.isFresh(now) && !noCache(ctx)) {
+                serve(ctx, entry, hits);
+                return CompletableFuture.completedFuture(null);
+            }
+            prepare(ctx, entry);
+            return next.handle(ctx).handle((ignored, error) -> {
+                if (error == null) {
+                    store(ctx, key, entry, now);
+                    return null;
+                }
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (entry != null && canServeStale(entry, cause, now)) {
+                    serve(ctx, entry, staleServed);
+                    return null;
+                }
+                throw error instanceof CompletionException ce ? ce : new CompletionException(error);
+            });
+        };
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getRevalidatedCount() {
+        return revalidated.sum();
+    }
+
+    public long getStaleServedCount() {
+        return staleServed.sum();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private boolean isCacheable(ReqContext ctx) {
+        if (ctx.getMethod() != HttpMethod.GET || ctx.isStreaming()) {
+            return false;
+        }
+        String cacheControl = ctx.getHeader(HttpHeaders.CACHE_CONTROL);
+        return cacheControl == null || !Directives.parse(cacheControl).has("no-store");
+    }
+
+    private boolean noCache(ReqContext ctx) {
+        String cacheControl = ctx.getHeader(HttpHeaders.CACHE_CONTROL);
+        return cacheControl != null && Directives.parse(cacheControl).has("no-cache");
+    }
+
+    private String key(ReqContext ctx) {
+        Type type = ctx.getGenericResponseType();
+        return ctx.getUri() + " " + (type != null ? type.getTypeName() : "");
+    }
+
+    private Entry lookup(String key, ReqContext ctx) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && !entry.matchesVary(ctx)) {
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+        }
+        return entry;
+    }
+
+    private void prepare(ReqContext ctx, Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        if (entry.etag != null) {
+            ctx.getHeaders().put(HttpHeaders.IF_NONE_MATCH, entry.etag);
+        }
+        if (entry.lastModified != null) {
+            ctx.getHeaders().put(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified);
+        }
+    }
+
+    private boolean canServeStale(Entry entry, Throwable error, long now) {
+        // Client errors are answers, not outages
+        return !(error instanceof HttpClientErrorException) && !(error.getCause() instanceof HttpClientErrorException)
+                && entry.canServeStale(now);
+    }
+
+    private void serve(ReqContext ctx, Entry entry, LongAdder counter) {
+        counter.increment();
+        ctx.setResponse(entry.body);
+        ctx.setResponseStatus(entry.status);
+        ctx.setResponseHeaders(entry.headers);
+    }
+
+    private void store(ReqContext ctx, String key, Entry previous, long requestTime) {
+        HttpStatusCode status = ctx.getResponseStatus();
+        HttpHeaders headers = ctx.getResponseHeaders();
+        if (status == null || headers == null) {
+            return;
+        }
+        if (status.value() == HttpStatus.NOT_MODIFIED.value() && previous != null) {
+            Entry refreshed = previous.revalidated(headers, requestTime, defaultStaleIfErrorMillis);
+            cache.put(key, refreshed);
+            serve(ctx, refreshed, revalidated);
+            return;
+        }
+        if (status.value() != HttpStatus.OK.value()) {
+            return;
+        }
+        Entry entry = Entry.create(ctx, status, headers, requestTime, defaultStaleIfErrorMillis);
+        if (entry != null) {
+            cache.put(key, entry);
+        }
+    }
+
+    private static final class Entry {
+        private final Object body;
+        private final HttpStatusCode status;
+        private final HttpHeaders headers;
+        private final Map<String, String> vary;
+        private final String etag;
+        private final String lastModified;
+        private final long freshUntil;
+        private final long staleIfErrorUntil;
+
+        private Entry(Object body, HttpStatusCode status, HttpHeaders headers, Map<String, String> vary,
+                      long freshUntil, long staleIfErrorUntil) {
+            this.body = body;
+            this.status = status;
+            this.headers = headers;
+            this.vary = vary;
+            this.etag = headers.getETag();
+            this.lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+            this.freshUntil = freshUntil;
+            this.staleIfErrorUntil = staleIfErrorUntil;
+        }
+
+        static Entry create(ReqContext ctx, HttpStatusCode status, HttpHeaders headers, long requestTime, long defaultStaleIfError) {
+            Directives directives = Directives.parse(headers.getCacheControl());
+            if (directives.has("no-store")) {
+                return null;
+            }
+            Map<String, String> vary = new LinkedHashMap<>();
+            for (String name : headers.getVary()) {
+                if ("*".equals(name.trim())) {
+                    return null;
+                }
+                vary.put(name.trim(), ctx.getHeader(name.trim()));
+            }
+            long freshUntil = requestTime + freshnessLifetime(headers, directives, requestTime);
+            long staleIfErrorUntil = directives.has("must-revalidate") ? 0 : freshUntil + staleIfError(directives, defaultStaleIfError);
+            Entry entry = new Entry(ctx.getResponse(), status, HttpHeaders.readOnlyHttpHeaders(headers), vary, freshUntil, staleIfErrorUntil);
+            boolean useful = freshUntil > requestTime || entry.etag != null || entry.lastModified != null || staleIfErrorUntil > requestTime;
+            return useful ? entry : null;
+        }
+
+        Entry revalidated(HttpHeaders notModified, long requestTime, long defaultStaleIfError) {
+            HttpHeaders merged = new HttpHeaders();
+            merged.putAll(headers);
+            notModified.forEach(merged::put);
+            Directives directives = Directives.parse(merged.getCacheControl());
+            long fresh = requestTime + freshnessLifetime(merged, directives, requestTime);
+            long stale = directives.has("must-revalidate") ? 0 : fresh + staleIfError(directives, defaultStaleIfError);
+            return new Entry(body, status, HttpHeaders.readOnlyHttpHeaders(merged), vary, fresh, stale);
+        }
+
+        boolean isFresh(long now) {
+            return now < freshUntil;
+        }
+
+        boolean canServeStale(long now) {
+            return now < staleIfErrorUntil;
+        }
+
+        boolean matchesVary(ReqContext ctx) {
+            for (Map.Entry<String, String> header : vary.entrySet()) {
+                if (!Objects.equals(header.getValue(), ctx.getHeader(header.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long freshnessLifetime(HttpHeaders headers, Directives directives, long now) {
+            if (directives.has("no-cache")) {
+                return 0;
+            }
+            long lifetime;
+            if (directives.has("max-age")) {
+                lifetime = directives.seconds("max-age") * 1000;
+            } else if (headers.getExpires() > 0) {
+                long date = headers.getDate() > 0 ? headers.getDate() : now;
+                lifetime = headers.getExpires() - date;
+            } else {
+                return 0;
+            }
+            String age = headers.getFirst("Age");
+            if (age != null) {
+                try {
+                    lifetime -= Long.parseLong(age.trim()) * 1000;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            return Math.max(lifetime, 0);
+        }
+
+        private static long staleIfError(Directives directives, long defaultStaleIfError) {
+            return directives.has("stale-if-error") ? directives.seconds("stale-if-error") * 1000 : defaultStaleIfError;
+        }
+    }
+
+    private static final class Directives {
+        private static final Directives EMPTY = new Directives(Map.of());
+
+        private final Map<String, String> values;
+
+        private Directives(Map<String, String> values) {
+            this.values = values;
+        }
+
+        static Directives parse(String cacheControl) {
+            if (cacheControl == null || cacheControl.isBlank()) {
+                return EMPTY;
+            }
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String directive : cacheControl.split(",")) {
+                int eq = directive.indexOf('=');
+                String name = (eq >= 0 ? directive.substring(0, eq) : directive).trim().toLowerCase(Locale.ROOT);
+                String value = eq >= 0 ? directive.substring(eq + 1).trim().replace("\"", "") : "";
+                if (!name.isEmpty()) {
+                    values.put(name, value);
+                }
+            }
+            return new Directives(values);
+        }
+
+        boolean has(String name) {
+            return values.containsKey(name);
+        }
+
+        long seconds(String name) {
+            try {
+                return Math.max(Long.parseLong(values.get(name)), 0);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interface method as an HTTP call for {@link RestClient#createClient(Class)}. On the
+ * interface itself it sets a path prefix and headers shared by all its methods.
+ * <pre>
+ * &#64;HttpCall(path = "/users", headers = "Accept: application/json")
+ * interface UserApi {
+ *     &#64;HttpCall(method = "GET", path = "/{id}")
+ *     User get(&#64;PathVar("id") long id, &#64;QueryParam("fields") String fields);
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface HttpCall {
+    /** HTTP method name; ignored on the interface. */
+    String method() default "GET";
+
+    /** Path template, resolved against the client's address. */
+    String path() default "";
+
+    /** Fixed headers as {@code "Name: value"}; method headers override interface ones. */
+    String[] headers() default {};
+}
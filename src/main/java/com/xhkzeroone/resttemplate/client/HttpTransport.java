@@ -0,0 +1,453 @@
+package com.xhkzeroone.resttemplate.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Owns the {@link ClientHttpRequestFactory} behind a client together with whatever
+ * connection pool it holds, so the pool can be observed and closed with the client.
+ * <p>
+ * Async calls with a buffered body go through an async client of the same kind: with
+ * {@link TransportType#POOLED} an Apache async client whose pool has the same limits, TTL and
+ * idle eviction as the blocking one (each pool gets the full limits), with
+ * {@link TransportType#HTTP2} the HTTP/2 client. Other transports, and streamed bodies on any
+ * transport, use the JDK client, which does not cap its connections; its callbacks run on a
+ * pool of at most one thread per processor. Everything is closed with the transport.
+ */
+public class HttpTransport implements AutoCloseable {
+    // Headers java.net.http.HttpClient refuses to accept from callers
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final TransportType type;
+    private final RestConfig.Transport settings;
+    private final ClientHttpRequestFactory requestFactory;
+    private final PoolingHttpClientConnectionManager pool;
+    private final AutoCloseable resource;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final CompressionCodec compression;
+    // Created on first use, guarded by this
+    private volatile HttpClient asyncClient;
+    private ExecutorService asyncExecutor;
+    private volatile CloseableHttpAsyncClient pooledAsyncClient;
+    private volatile PoolingAsyncClientConnectionManager asyncPool;
+    private boolean closed;
+
+    private HttpTransport(TransportType type, RestConfig.Transport settings, ClientHttpRequestFactory requestFactory,
+                          PoolingHttpClientConnectionManager pool, AutoCloseable resource,
+                          HttpClient asyncClient, ExecutorService asyncExecutor,
+                          int connectTimeout, int readTimeout, CompressionCodec compression) {
+        this.type = type;
+        this.settings = settings;
+        this.compression = compression;
+        this.requestFactory = compression != null ? new CompressingRequestFactory(requestFactory, compression) : requestFactory;
+        this.pool = pool;
+        this.resource = resource;
+        this.asyncClient = asyncClient;
+        this.asyncExecutor = asyncExecutor;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    public static HttpTransport create(RestConfig.Transport settings, int connectTimeout, int readTimeout) {
+        RestConfig.Transport transport = settings != null ? settings : new RestConfig.Transport();
+        TransportType type = transport.getType() != null ? transport.getType() : TransportType.POOLED;
+        CompressionCodec compression = transport.getCompression() != null && transport.getCompression().isEnabled()
+                ? new CompressionCodec(transport.getCompression())
+                : null;
+        return switch (type) {
+            case SIMPLE -> simple(transport, connectTimeout, readTimeout, compression);
+            case POOLED -> pooled(transport, connectTimeout, readTimeout, compression);
+            case JDK -> jdk(transport, connectTimeout, readTimeout, compression);
+            case HTTP2 -> h2(transport, connectTimeout, readTimeout, compression);
+        };
+    }
+
+    private static HttpTransport simple(RestConfig.Transport settings, int connectTimeout, int readTimeout,
+                                        CompressionCodec compression) {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory() {
+            @Override
+            protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+                super.prepareConnection(connection, httpMethod);
+                Cancellation.register(connection::disconnect);
+            }
+        };
+        factory.setConnectTimeout(connectTimeout);
+        factory.setReadTimeout(readTimeout);
+        return new HttpTransport(TransportType.SIMPLE, settings, factory, null, null, null, null,
+                connectTimeout, readTimeout, compression);
+    }
+
+    private static HttpTransport pooled(RestConfig.Transport settings, int connectTimeout, int readTimeout,
+                                        CompressionCodec compression) {
+        PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(settings.getMaxTotal())
+                .setMaxConnPerRoute(settings.getMaxPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                        .setTimeToLive(TimeValue.ofMilliseconds(settings.getTimeToLive()))
+                        .build())
+                .build();
+
+        HttpClientBuilder builder = HttpClients.custom();
+        if (compression != null) {
+            // Decoding is done by CompressingRequestFactory with pooled inflaters instead
+            builder.disableContentCompression();
+        }
+        CloseableHttpClient httpClient = builder
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(settings.getConnectionRequestTimeout()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeout))
+                        // Used when the server does not send a Keep-Alive header
+                        .setDefaultKeepAlive(settings.getKeepAlive(), TimeUnit.MILLISECONDS)
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleEviction()))
+                .build();
+
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient) {
+            @Override
+            protected void postProcessHttpRequest(ClassicHttpRequest request) {
+                if (request instanceof Cancellable cancellable) {
+                    // Shuts the connection down, failing the blocked read
+                    Cancellation.register(cancellable::cancel);
+                }
+            }
+        };
+        return new HttpTransport(TransportType.POOLED, settings, factory, pool,
+                httpClient, null, null, connectTimeout, readTimeout, compression);
+    }
+
+    private static HttpTransport jdk(RestConfig.Transport settings, int connectTimeout, int readTimeout,
+                                     CompressionCodec compression) {
+        ExecutorService executor = newJdkExecutor();
+        HttpClient httpClient = newJdkClient(connectTimeout, executor);
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient) {
+            @Override
+            public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+                // The request cancels its exchange when the thread waiting for it is interrupted
+                Cancellation.register(Thread.currentThread()::interrupt);
+                return super.createRequest(uri, httpMethod);
+            }
+        };
+        if (readTimeout > 0) {
+            factory.setReadTimeout(readTimeout);
+        }
+        return new HttpTransport(TransportType.JDK, settings, factory, null, null, httpClient, executor,
+                connectTimeout, readTimeout, compression);
+    }
+
+    private static HttpTransport h2(RestConfig.Transport settings, int connectTimeout, int readTimeout,
+                                    CompressionCodec compression) {
+        H2ClientHttpRequestFactory factory = new H2ClientHttpRequestFactory(settings, connectTimeout, readTimeout);
+        return new HttpTransport(TransportType.HTTP2, settings, factory, null, factory, null, null,
+                connectTimeout, readTimeout, compression);
+    }
+
+    private static HttpClient newJdkClient(int connectTimeout, ExecutorService executor) {
+        HttpClient.Builder builder = HttpClient.newBuilder().executor(executor);
+        if (connectTimeout > 0) {
+            builder.connectTimeout(Duration.ofMillis(connectTimeout));
+        }
+        return builder.build();
+    }
+
+    private static ExecutorService newJdkExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "http-async");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private CloseableHttpAsyncClient newPooledAsyncClient() {
+        asyncPool = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(settings.getMaxTotal())
+                .setMaxConnPerRoute(settings.getMaxPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .setTimeToLive(TimeValue.ofMilliseconds(settings.getTimeToLive()))
+                        .build())
+                .build();
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setConnectionManager(asyncPool)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(settings.getConnectionRequestTimeout()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeout))
+                        .setDefaultKeepAlive(settings.getKeepAlive(), TimeUnit.MILLISECONDS)
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleEviction()))
+                .build();
+        client.start();
+        return client;
+    }
+
+    /**
+     * Sends the request without blocking the caller. Status codes are not interpreted here.
+     * Cancelling the returned future aborts the exchange.
+     */
+    public CompletableFuture<ResponseEntity<byte[]>> sendAsync(HttpMethod method, URI uri, HttpHeaders headers, byte[] body) {
+        if (body != null && compression != null && !headers.containsKey(HttpHeaders.CONTENT_ENCODING)
+                && compression.shouldCompress(body.length)) {
+            body = compression.compress(body);
+            headers.set(HttpHeaders.CONTENT_ENCODING, compression.getRequestEncoding());
+        }
+        if (resource instanceof H2ClientHttpRequestFactory h2) {
+            if (compression != null && !headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+                headers.set(HttpHeaders.ACCEPT_ENCODING, CompressionCodec.ACCEPT_ENCODING);
+            }
+            return cancelling(h2.execute(method, uri, headers, body), this::toResponseEntity);
+        }
+        if (pool != null) {
+            if (compression != null && !headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+                headers.set(HttpHeaders.ACCEPT_ENCODING, CompressionCodec.ACCEPT_ENCODING);
+            }
+            return cancelling(execute(pooledAsyncClient(), method, uri, headers, body), this::toResponseEntity);
+        }
+        return sendAsync(method, uri, headers, body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(body));
+    }
+
+    /**
+     * Same as {@link #sendAsync(HttpMethod, URI, HttpHeaders, byte[])} with the body read from
+     * {@code body} as it is sent. Such bodies are never compressed. With {@link TransportType#HTTP2}
+     * these go through the JDK client, which upgrades to HTTP/2 on its own connections.
+     */
+    public CompletableFuture<ResponseEntity<byte[]>> sendAsync(HttpMethod method, URI uri, HttpHeaders headers,
+                                                               HttpRequest.BodyPublisher body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).method(method.name(), body);
+        if (compression != null && !headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+            builder.header(HttpHeaders.ACCEPT_ENCODING, CompressionCodec.ACCEPT_ENCODING);
+        }
+        if (readTimeout > 0) {
+            builder.timeout(Duration.ofMillis(readTimeout));
+        }
+        headers.forEach((name, values) -> {
+            if (!RESTRICTED_HEADERS.contains(name.toLowerCase())) {
+                values.forEach(value -> builder.header(name, value));
+            }
+        });
+        return cancelling(asyncClient().sendAsync(builder.build(), HttpResponse.BodyHandlers.ofByteArray()), response -> {
+            HttpHeaders responseHeaders = new HttpHeaders();
+            response.headers().map().forEach(responseHeaders::addAll);
+            return toResponseEntity(response.statusCode(), responseHeaders, response.body());
+        });
+    }
+
+    // thenApply whose cancellation reaches the client's own future, which aborts the exchange
+    private static <T, R> CompletableFuture<R> cancelling(CompletableFuture<T> sent, Function<T, R> mapper) {
+        CompletableFuture<R> result = sent.thenApply(mapper);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                sent.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<SimpleHttpResponse> execute(CloseableHttpAsyncClient client, HttpMethod method, URI uri,
+                                                          HttpHeaders headers, byte[] body) {
+        CompletableFuture<SimpleHttpResponse> result = new CompletableFuture<>();
+        Future<SimpleHttpResponse> sent = client.execute(
+                SimpleRequestProducer.create(H2ClientHttpRequestFactory.toRequest(method, uri, headers, body)),
+                SimpleResponseConsumer.create(), new FutureCallback<>() {
+                    @Override
+                    public void completed(SimpleHttpResponse response) {
+                        result.complete(response);
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        result.completeExceptionally(e);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        result.cancel(false);
+                    }
+                });
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                sent.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private ResponseEntity<byte[]> toResponseEntity(SimpleHttpResponse response) {
+        return toResponseEntity(response.getCode(), H2ClientHttpRequestFactory.toHttpHeaders(response), response.getBodyBytes());
+    }
+
+    private ResponseEntity<byte[]> toResponseEntity(int status, HttpHeaders headers, byte[] body) {
+        String encoding = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (compression != null && body != null && CompressionCodec.isSupported(encoding)) {
+            body = compression.decompress(body, encoding);
+            headers.remove(HttpHeaders.CONTENT_ENCODING);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+        }
+        return new ResponseEntity<>(body, headers, status);
+    }
+
+    private HttpClient asyncClient() {
+        HttpClient client = asyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = asyncClient;
+                if (client == null) {
+                    checkOpen();
+                    asyncExecutor = newJdkExecutor();
+                    client = newJdkClient(connectTimeout, asyncExecutor);
+                    asyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private CloseableHttpAsyncClient pooledAsyncClient() {
+        CloseableHttpAsyncClient client = pooledAsyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = pooledAsyncClient;
+                if (client == null) {
+                    checkOpen();
+                    client = newPooledAsyncClient();
+                    pooledAsyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Transport is closed");
+        }
+    }
+
+    public TransportType getType() {
+        return type;
+    }
+
+    public ClientHttpRequestFactory getRequestFactory() {
+        return requestFactory;
+    }
+
+    /**
+     * Connections of the blocking pool plus those of the async pool, once async calls were made.
+     */
+    public TransportStats getStats() {
+        if (pool == null) {
+            return TransportStats.EMPTY;
+        }
+        PoolStats stats = pool.getTotalStats();
+        PoolingAsyncClientConnectionManager async = asyncPool;
+        if (async == null) {
+            return new TransportStats(stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax());
+        }
+        PoolStats asyncStats = async.getTotalStats();
+        return new TransportStats(stats.getLeased() + asyncStats.getLeased(), stats.getAvailable() + asyncStats.getAvailable(),
+                stats.getPending() + asyncStats.getPending(), stats.getMax() + asyncStats.getMax());
+    }
+
+    /**
+     * Publishes {@link #getStats()} as {@code restclient.pool.leased}, {@code .available},
+     * {@code .pending} and {@code .max} gauges tagged with the client name.
+     */
+    public void bindTo(MeterRegistry registry, String clientName) {
+        gauge(registry, "leased", clientName, TransportStats::getLeased);
+        gauge(registry, "available", clientName, TransportStats::getAvailable);
+        gauge(registry, "pending", clientName, TransportStats::getPending);
+        gauge(registry, "max", clientName, TransportStats::getMax);
+    }
+
+    private void gauge(MeterRegistry registry, String name, String clientName, ToIntFunction<TransportStats> value) {
+        Gauge.builder("restclient.pool." + name, this, transport -> value.applyAsInt(transport.getStats()))
+                .tag("client", clientName)
+                .baseUnit("connections")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        CloseableHttpAsyncClient pooledAsync;
+        ExecutorService executor;
+        synchronized (this) {
+            closed = true;
+            pooledAsync = pooledAsyncClient;
+            executor = asyncExecutor;
+        }
+        if (pooledAsync != null) {
+            pooledAsync.close(CloseMode.GRACEFUL);
+        }
+        if (executor != null) {
+            // The JDK client has no close() before Java 21; its connections go once it is unreachable
+            executor.shutdown();
+        }
+        if (resource == null) {
+            return;
+        }
+        try {
+            resource.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot close transport", e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Proxy behind {@link RestClient#createClient(Class)}. Every method of the interface gets its
+ * {@link InvocationPlan} when the proxy is created, so a mistake in the annotations fails at
+ * startup and a call is a map lookup plus the plan. Default methods run as written, through a
+ * method handle resolved up front as well.
+ */
+final class InterfaceClient implements InvocationHandler {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final Class<?> api;
+    private final Map<Method, InvocationPlan> plans;
+    // (Object proxy, Object[] args) -> Object
+    private final Map<Method, MethodHandle> defaults;
+
+    private InterfaceClient(Class<?> api, Map<Method, InvocationPlan> plans, Map<Method, MethodHandle> defaults) {
+        this.api = api;
+        this.plans = plans;
+        this.defaults = defaults;
+    }
+
+    static <T> T create(Class<T> api, RestClient client) {
+        if (!api.isInterface()) {
+            throw new IllegalArgumentException(api.getName() + " is not an interface");
+        }
+        Map<Method, InvocationPlan> plans = new HashMap<>();
+        Map<Method, MethodHandle> defaults = new HashMap<>();
+        for (Method method : api.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            if (method.isDefault()) {
+                defaults.put(method, defaultMethod(api, method));
+            } else {
+                plans.put(method, InvocationPlan.of(method, client));
+            }
+        }
+        Object proxy = Proxy.newProxyInstance(api.getClassLoader(), new Class<?>[]{api},
+                new InterfaceClient(api, Map.copyOf(plans), Map.copyOf(defaults)));
+        return api.cast(proxy);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object[] arguments = args != null ? args : NO_ARGS;
+        InvocationPlan plan = plans.get(method);
+        if (plan != null) {
+            return plan.invoke(arguments);
+        }
+        MethodHandle defaultMethod = defaults.get(method);
+        if (defaultMethod != null) {
+            return defaultMethod.invokeExact(proxy, arguments);
+        }
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "toString" -> api.getSimpleName() + " client";
+            default -> throw new UnsupportedOperationException(method.toString());
+        };
+    }
+
+    private static MethodHandle defaultMethod(Class<?> api, Method method) {
+        try {
+            MethodHandle handle = MethodHandles.privateLookupIn(api, MethodHandles.lookup()).unreflectSpecial(method, api);
+            return handle.asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot call default method " + method, e);
+        }
+    }
+}
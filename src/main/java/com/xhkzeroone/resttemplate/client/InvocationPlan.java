@@ -0,0 +1,230 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.http.HttpMethod;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Everything needed to turn a call of one {@link HttpCall} method into a request, worked out once
+ * from its annotations: the compiled URI template, the fixed headers as a snapshot, and for each
+ * argument a {@link MethodHandle} that copies it into the path variables, query parameters or
+ * headers. A call only runs the binders and sends the context through the client's chain; header
+ * arguments go into a per-call snapshot over the fixed headers, so the header map stays unwritten.
+ */
+final class InvocationPlan {
+    private static final MethodHandle PUT;
+    private static final MethodHandle[] NONE = new MethodHandle[0];
+
+    static {
+        try {
+            PUT = MethodHandles.lookup().findStatic(InvocationPlan.class, "putIfPresent",
+                    MethodType.methodType(void.class, Map.class, String.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final RestClient client;
+    private final HttpMethod method;
+    private final String path;
+    private final CompiledUriTemplate uriTemplate;
+    private final HeaderSnapshot headers;
+    // Each (Map, Object[]) -> void, putting one argument into the map under its name
+    private final MethodHandle[] pathVarBinders;
+    private final MethodHandle[] paramBinders;
+    // Canonical names of the @HeaderParam arguments and an (Object[]) -> Object getter for each
+    private final String[] headerNames;
+    private final MethodHandle[] headerGetters;
+    // (Object[]) -> Object, or null without a body
+    private final MethodHandle bodyGetter;
+    private final Class<?> responseClass;
+    private final Type responseType;
+    private final boolean async;
+
+    private InvocationPlan(RestClient client, HttpMethod method, String path, HeaderSnapshot headers,
+                           MethodHandle[] pathVarBinders, MethodHandle[] paramBinders, String[] headerNames,
+                           MethodHandle[] headerGetters, MethodHandle bodyGetter, Type responseType, boolean async) {
+        this.client = client;
+        this.method = method;
+        this.path = path;
+        this.uriTemplate = client.getUriTemplates().get(path);
+        this.headers = headers;
+        this.pathVarBinders = pathVarBinders;
+        this.paramBinders = paramBinders;
+        this.headerNames = headerNames;
+        this.headerGetters = headerGetters;
+        this.bodyGetter = bodyGetter;
+        this.responseType = responseType;
+        this.responseClass = MethodType.methodType(client.codec().rawClass(responseType)).wrap().returnType();
+        this.async = async;
+    }
+
+    static InvocationPlan of(Method method, RestClient client) {
+        HttpCall call = method.getAnnotation(HttpCall.class);
+        if (call == null) {
+            throw new IllegalArgumentException("Method is not annotated with @HttpCall: " + method);
+        }
+        HttpCall shared = method.getDeclaringClass().getAnnotation(HttpCall.class);
+        String path = join(shared != null ? shared.path() : "", call.path());
+
+        Map<String, Object> fixedHeaders = new LinkedHashMap<>();
+        if (shared != null) {
+            parseHeaders(shared.headers(), fixedHeaders, method);
+        }
+        parseHeaders(call.headers(), fixedHeaders, method);
+
+        List<MethodHandle> pathVars = new ArrayList<>();
+        List<MethodHandle> params = new ArrayList<>();
+        List<String> headerNames = new ArrayList<>();
+        List<MethodHandle> headers = new ArrayList<>();
+        MethodHandle body = null;
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            Parameter parameter = parameters[i];
+            if (parameter.isAnnotationPresent(PathVar.class)) {
+                pathVars.add(binder(name(parameter, parameter.getAnnotation(PathVar.class).value()), i));
+            } else if (parameter.isAnnotationPresent(QueryParam.class)) {
+                params.add(binder(name(parameter, parameter.getAnnotation(QueryParam.class).value()), i));
+            } else if (parameter.isAnnotationPresent(HeaderParam.class)) {
+                headerNames.add(HeaderSnapshot.canonicalName(name(parameter, parameter.getAnnotation(HeaderParam.class).value())));
+                headers.add(argument(i));
+            } else if (parameter.isAnnotationPresent(Body.class) && body == null) {
+                body = argument(i);
+            } else {
+                throw new IllegalArgumentException("Parameter " + i + " of " + method
+                        + " needs one of @PathVar, @QueryParam, @HeaderParam or a single @Body");
+            }
+        }
+
+        Type responseType = method.getGenericReturnType();
+        boolean async = method.getReturnType() == CompletableFuture.class;
+        if (async) {
+            if (!(responseType instanceof ParameterizedType future)) {
+                throw new IllegalArgumentException("CompletableFuture without a type argument: " + method);
+            }
+            responseType = future.getActualTypeArguments()[0];
+        }
+        if (responseType == void.class) {
+            responseType = Void.class;
+        }
+
+        return new InvocationPlan(client, HttpMethod.valueOf(call.method().toUpperCase()), path, HeaderSnapshot.of(fixedHeaders),
+                toArray(pathVars), toArray(params), headerNames.toArray(new String[0]), toArray(headers), body, responseType, async);
+    }
+
+    /**
+     * Sends the call; a {@link CompletableFuture} for async methods, the decoded body otherwise.
+     */
+    Object invoke(Object[] args) throws Throwable {
+        Object body = bodyGetter != null ? (Object) bodyGetter.invokeExact(args) : null;
+        ReqContext context = new ReqContext(body);
+        context.setMethod(method);
+        context.setPath(path);
+        context.setUriTemplates(client.getUriTemplates());
+        context.setUriTemplate(uriTemplate);
+        context.setAsyncBridge(client.getAsyncBridge());
+        context.setResponseType(responseClass);
+        if (responseType != responseClass) {
+            context.setGenericResponseType(responseType);
+        }
+        context.setMiddlewares(List.of());
+
+        Map<String, Object> pathVars = new HashMap<>();
+        for (MethodHandle binder : pathVarBinders) {
+            binder.invokeExact(pathVars, args);
+        }
+        Map<String, Object> params = new HashMap<>();
+        for (MethodHandle binder : paramBinders) {
+            binder.invokeExact(params, args);
+        }
+        HeaderSnapshot requestHeaders = headers;
+        if (headerGetters.length > 0) {
+            Object[] values = new Object[headerGetters.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (Object) headerGetters[i].invokeExact(args);
+            }
+            requestHeaders = headers.with(headerNames, values);
+        }
+        context.setPathVars(pathVars);
+        context.setParams(params);
+        context.setHeaders(new HeaderMap(client.getDefaultHeaders(), requestHeaders));
+
+        if (async) {
+            return client.handleAsync(context).thenApply(this::cast);
+        }
+        return cast(client.handle(context));
+    }
+
+    private Object cast(Object response) {
+        if (response == null || responseClass.isInstance(response)) {
+            return response;
+        }
+        throw new IllegalStateException("Response is not of expected type: " + responseClass.getName());
+    }
+
+    private static void putIfPresent(Map<String, Object> target, String name, Object value) {
+        if (value != null) {
+            target.put(name, value);
+        }
+    }
+
+    // (Map, Object[]) -> void: putIfPresent(map, name, args[index])
+    private static MethodHandle binder(String name, int index) {
+        return MethodHandles.filterArguments(MethodHandles.insertArguments(PUT, 1, name), 1, argument(index));
+    }
+
+    // (Object[]) -> Object: args[index]
+    private static MethodHandle argument(int index) {
+        return MethodHandles.insertArguments(MethodHandles.arrayElementGetter(Object[].class), 1, index);
+    }
+
+    private static String name(Parameter parameter, String name) {
+        if (!name.isEmpty()) {
+            return name;
+        }
+        if (!parameter.isNamePresent()) {
+            throw new IllegalArgumentException("No name for " + parameter + " of " + parameter.getDeclaringExecutable()
+                    + "; set it on the annotation or compile with -parameters");
+        }
+        return parameter.getName();
+    }
+
+    private static void parseHeaders(String[] headers, Map<String, Object> target, Method method) {
+        for (String header : headers) {
+            int colon = header.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Header '" + header + "' of " + method + " is not 'Name: value'");
+            }
+            target.put(header.substring(0, colon).trim(), header.substring(colon + 1).trim());
+        }
+    }
+
+    private static String join(String prefix, String path) {
+        if (prefix.isEmpty() || path.isEmpty()) {
+            return prefix + path;
+        }
+        if (prefix.endsWith("/") && path.startsWith("/")) {
+            return prefix + path.substring(1);
+        }
+        if (!prefix.endsWith("/") && !path.startsWith("/")) {
+            return prefix + "/" + path;
+        }
+        return prefix + path;
+    }
+
+    private static MethodHandle[] toArray(List<MethodHandle> binders) {
+        return binders.isEmpty() ? NONE : binders.toArray(NONE);
+    }
+}
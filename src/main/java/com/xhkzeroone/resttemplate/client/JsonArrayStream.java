@@ -0,0 +1,196 @@
+package com.xhkzeroone.resttemplate.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.hc.core5.http.io.EofSensorInputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Elements of a JSON array response body, decoded one at a time as they are read from the
+ * connection. Holds the connection until the array has been read to the end or the stream is
+ * closed; closing early aborts the connection instead of reading the rest of the body.
+ */
+public class JsonArrayStream<T> implements Iterator<T>, AutoCloseable {
+    private final ClientHttpResponse response;
+    private final InputStream body;
+    private final JsonParser parser;
+    private final ObjectReader reader;
+    private final HttpStatusCode status;
+    private final HttpHeaders headers;
+    private boolean ready;
+    private boolean exhausted;
+    private boolean closed;
+
+    private JsonArrayStream(ClientHttpResponse response, ObjectReader reader) throws IOException {
+        this.response = response;
+        this.status = response.getStatusCode();
+        this.headers = response.getHeaders();
+        this.body = response.getBody();
+        this.reader = reader;
+        this.parser = reader.createParser(body);
+        JsonToken first = parser.nextToken();
+        if (first == null) {
+            exhausted = true;
+        } else if (first != JsonToken.START_ARRAY) {
+            throw new IOException("Expected a JSON array but got " + first);
+        }
+    }
+
+    /**
+     * Sends the request and returns once the response headers have arrived. Error statuses are
+     * thrown as the same exceptions RestTemplate uses; I/O failures as ResourceAccessException.
+     * The body is either encoded bytes or a {@link BodySource}.
+     */
+    static <T> JsonArrayStream<T> open(ClientHttpRequestFactory requestFactory, HttpMethod method, URI uri,
+                                       HttpHeaders headers, Object body, ObjectReader reader) {
+        ClientHttpResponse response = null;
+        try {
+            ClientHttpRequest request = requestFactory.createRequest(uri, method);
+            request.getHeaders().putAll(headers);
+            if (request.getHeaders().getAccept().isEmpty()) {
+                request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+            }
+            if (body instanceof BodySource source) {
+                new BodySourceHttpMessageConverter().write(source, null, request);
+            } else if (body instanceof byte[] bytes) {
+                request.getBody().write(bytes);
+            }
+            response = request.execute();
+            if (response.getStatusCode().isError()) {
+                // Error bodies are small; read them whole so the exception carries them
+                BodyCodec.checkStatus(new ResponseEntity<>(response.getBody().readAllBytes(),
+                        response.getHeaders(), response.getStatusCode()));
+            }
+            return new JsonArrayStream<>(response, reader);
+        } catch (IOException e) {
+            closeQuietly(response);
+            throw new ResourceAccessException("I/O error on " + method + " request for \"" + uri + "\": " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            closeQuietly(response);
+            throw e;
+        }
+    }
+
+    public HttpStatusCode getStatusCode() {
+        return status;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ready) {
+            return true;
+        }
+        if (exhausted || closed) {
+            return false;
+        }
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                exhausted = true;
+                close();
+                return false;
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Cannot read JSON array element", e);
+        }
+        ready = true;
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ready = false;
+        try {
+            return reader.readValue(parser);
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Cannot decode JSON array element", e);
+        }
+    }
+
+    /**
+     * Hands every remaining element to {@code consumer}, then closes the stream.
+     */
+    public void forEach(Consumer<? super T> consumer) {
+        try {
+            forEachRemaining(consumer);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Sequential stream over the remaining elements; closing it closes this.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        ready = false;
+        try {
+            if (!exhausted) {
+                abort();
+            }
+            parser.close();
+        } catch (IOException ignored) {
+            // The connection is discarded either way
+        } finally {
+            response.close();
+        }
+    }
+
+    private void abort() throws IOException {
+        // Closing a pooled response drains the remaining body so the connection can be reused;
+        // aborting drops the connection instead. A decoded body is aborted underneath its decoder.
+        InputStream raw = response instanceof CompressingRequestFactory.DecompressingResponse decompressing
+                ? decompressing.getRawBody() : body;
+        if (raw instanceof EofSensorInputStream sensor) {
+            sensor.abort();
+        } else {
+            body.close();
+        }
+    }
+
+    private static void closeQuietly(ClientHttpResponse response) {
+        if (response != null) {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear (HDR-style) histogram of nanosecond latencies: each power of two is split into 32
+ * linear sub-buckets, so every recorded value is kept to within about 3% using a fixed array of
+ * counters. Recording is one array increment plus adders and never locks. Values above
+ * {@value #MAX_EXPONENT} bits (~18 minutes) are clamped.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int MAX_EXPONENT = 40;
+
+    private final int subBucketBits;
+    private final long maxValue;
+    private final AtomicLongArray counts;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(SUB_BUCKET_BITS, MAX_EXPONENT);
+    }
+
+    /**
+     * Histogram splitting each power of two into {@code 2^subBucketBits} sub-buckets, up to values
+     * of {@code maxExponent + 1} bits; fewer of either take less memory.
+     */
+    LatencyHistogram(int subBucketBits, int maxExponent) {
+        this.subBucketBits = subBucketBits;
+        this.maxValue = (1L << (maxExponent + 1)) - 1;
+        this.counts = new AtomicLongArray(indexOf(maxValue, subBucketBits) + 1);
+    }
+
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), maxValue);
+        counts.incrementAndGet(indexOf(value, subBucketBits));
+        count.increment();
+        total.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+     * Highest value equivalent to the given percentile (0-100), or 0 if nothing was recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+        return valueAtPercentile(new LatencyHistogram[]{this}, percentile);
+    }
+
+    /**
+     * Percentile of the values recorded in all of {@code histograms}, which share one layout.
+     */
+    static long valueAtPercentile(LatencyHistogram[] histograms, double percentile) {
+        int bits = histograms[0].subBucketBits;
+        int buckets = histograms[0].counts.length();
+        long recorded = 0;
+        long max = 0;
+        for (LatencyHistogram histogram : histograms) {
+            for (int i = 0; i < buckets; i++) {
+                recorded += histogram.counts.get(i);
+            }
+            max = Math.max(max, histogram.max.get());
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+        long target = Math.max((long) Math.ceil(Math.min(percentile, 100) / 100 * recorded), 1);
+        long seen = 0;
+        for (int i = 0; i < buckets; i++) {
+            for (LatencyHistogram histogram : histograms) {
+                seen += histogram.counts.get(i);
+            }
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i, bits), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forgets everything recorded so far. Values recorded concurrently may be partly kept.
+     */
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+    static int indexOf(long value) {
+        return indexOf(value, SUB_BUCKET_BITS);
+    }
+
+    static int indexOf(long value, int subBucketBits) {
+        int subBuckets = 1 << subBucketBits;
+        if (value < subBuckets) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - subBucketBits;
+        int subBucket = (int) (value >>> shift) - subBuckets;
+        return subBuckets + shift * subBuckets + subBucket;
+    }
+
+    static long highestEquivalentValue(int index) {
+        return highestEquivalentValue(index, SUB_BUCKET_BITS);
+    }
+
+    static long highestEquivalentValue(int index, int subBucketBits) {
+        int subBuckets = 1 << subBucketBits;
+        if (index < subBuckets) {
+            return index;
+        }
+        int shift = (index - subBuckets) / subBuckets;
+        int subBucket = (index - subBuckets) % subBuckets;
+        long lowest = (long) (subBuckets + subBucket) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
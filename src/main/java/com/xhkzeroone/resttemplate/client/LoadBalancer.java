@@ -0,0 +1,289 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Spreads calls over the replicas in {@link RestConfig#getAddresses()}. Each call samples two
+ * endpoints at random and takes the one with the lower cost, the moving average of its latency
+ * times its outstanding calls plus one (power of two choices), so slow or busy replicas get less
+ * traffic without every client piling onto the same fastest one. A failed call also raises its
+ * endpoint's cost to at least {@code failurePenalty}, fading out over {@code decayTime}, so a
+ * replica that fails fast does not look like the fastest one.
+ * <p>
+ * An endpoint failing {@code consecutiveFailures} calls in a row is ejected for a while, longer
+ * each time it happens again, unless {@code maxEjectionPercent} of the endpoints are out already.
+ * When it comes back it is only considered for a share of picks that grows over {@code rampUpTime},
+ * so it is probed with a trickle of calls rather than a burst. 4xx responses count as successes.
+ * <p>
+ * {@link RestClient} puts it directly above the transport, below every middleware, so retried
+ * and hedged attempts each pick an endpoint of their own. Calls to absolute URLs pass through.
+ */
+public class LoadBalancer implements Middleware {
+    // A returning endpoint starts at this fraction of its normal weight
+    private static final double MIN_WEIGHT = 0.1;
+    private static final int MAX_EJECTION_MULTIPLIER = 10;
+
+    private final RestConfig.LoadBalance config;
+    private final Endpoint[] endpoints;
+    private final LongSupplier clock;
+    private final double decayNanos;
+    private final long rampUpNanos;
+    private final long failurePenaltyNanos;
+
+    public LoadBalancer(List<String> addresses, RestConfig.LoadBalance config) {
+        this(addresses, config, System::nanoTime);
+    }
+
+    LoadBalancer(List<String> addresses, RestConfig.LoadBalance config, LongSupplier clock) {
+        if (addresses == null || addresses.isEmpty()) {
+            throw new IllegalArgumentException("At least one address is required");
+        }
+        this.config = config;
+        this.clock = clock;
+        this.decayNanos = Math.max(config.getDecayTime(), 1) * 1_000_000.0;
+        this.rampUpNanos = config.getRampUpTime() * 1_000_000L;
+        this.failurePenaltyNanos = config.getFailurePenalty() * 1_000_000L;
+        this.endpoints = new Endpoint[addresses.size()];
+        for (int i = 0; i < endpoints.length; i++) {
+            endpoints[i] = new Endpoint(addresses.get(i));
+        }
+    }
+
+    @Override
+    public Handler apply(Handler next) {
+        return ctx -> {
+            if (isAbsolute(ctx)) {
+                next.handle(ctx);
+                return;
+            }
+            Endpoint endpoint = choose();
+            ctx.setUriTemplates(endpoint.uriTemplates);
+            long startedAt = endpoint.start();
+            // Anything thrown that is not an exception, such as an Error, counts as a failure
+            boolean failed = true;
+            try {
+                next.handle(ctx);
+                failed = false;
+            } catch (Exception e) {
+                failed = isFailure(e);
+                throw e;
+            } finally {
+                endpoint.complete(startedAt, failed);
+            }
+        };
+    }
+
+    @Override
+    public AsyncHandler applyAsync(AsyncHandler next) {
+        return ctx -> {
+            if (isAbsolute(ctx)) {
+                return next.handle(ctx);
+            }
+            Endpoint endpoint = choose();
+            ctx.setUriTemplates(endpoint.uriTemplates);
+            long startedAt = endpoint.start();
+            try {
+                return next.handle(ctx).whenComplete((ignored, error) ->
+                        endpoint.complete(startedAt, error != null && isFailure(RetryPolicy.unwrap(error))));
+            } catch (RuntimeException | Error e) {
+                endpoint.complete(startedAt, isFailure(e));
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * The endpoint for the next call. If every endpoint is ejected, all are considered again.
+     */
+    public Endpoint choose() {
+        long now = clock.getAsLong();
+        if (endpoints.length == 1) {
+            return endpoints[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Endpoint first = null;
+        Endpoint second = null;
+        // Two distinct picks among the available endpoints, without building a list per call
+        for (int attempt = 0; attempt < 2 * endpoints.length && second == null; attempt++) {
+            Endpoint candidate = endpoints[random.nextInt(endpoints.length)];
+            if (candidate.isEjected(now) || candidate == first || random.nextDouble() >= candidate.weight(now)) {
+                continue;
+            }
+            if (first == null) {
+                first = candidate;
+            } else {
+                second = candidate;
+            }
+        }
+        if (second == null) {
+            List<Endpoint> available = available(now);
+            if (available.isEmpty()) {
+                // Panic mode: ejecting everything would fail every call, so ignore ejection
+                available = List.of(endpoints);
+            }
+            if (available.size() == 1) {
+                return available.get(0);
+            }
+            first = available.get(random.nextInt(available.size()));
+            do {
+                second = available.get(random.nextInt(available.size()));
+            } while (second == first);
+        }
+        return first.cost(now) <= second.cost(now) ? first : second;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return List.of(endpoints);
+    }
+
+    private List<Endpoint> available(long now) {
+        List<Endpoint> available = new ArrayList<>(endpoints.length);
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.isEjected(now)) {
+                available.add(endpoint);
+            }
+        }
+        return available;
+    }
+
+    // Ejects unless that would take out more than maxEjectionPercent (at least one endpoint may always go)
+    private synchronized boolean tryEject(Endpoint endpoint, long now) {
+        int ejected = 0;
+        for (Endpoint other : endpoints) {
+            if (other.isEjected(now)) {
+                ejected++;
+            }
+        }
+        int allowed = Math.max(1, endpoints.length * config.getMaxEjectionPercent() / 100);
+        if (endpoints.length < 2 || ejected >= allowed) {
+            return false;
+        }
+        int multiplier = Math.min(endpoint.ejections + 1, MAX_EJECTION_MULTIPLIER);
+        long duration = Math.min(config.getBaseEjectionTime() * multiplier, config.getMaxEjectionTime()) * 1_000_000L;
+        endpoint.ejectedUntil = now + duration;
+        endpoint.ejections = multiplier;
+        // The ramp-up limits its traffic when it returns; a penalty on top would keep it starved
+        endpoint.penaltyNanos = 0;
+        return true;
+    }
+
+    private static boolean isAbsolute(ReqContext ctx) {
+        return ctx.getPath() != null && ctx.getPath().contains("://");
+    }
+
+    private static boolean isFailure(Throwable error) {
+        return !(error instanceof HttpClientErrorException) && !(error.getCause() instanceof HttpClientErrorException);
+    }
+
+    public final class Endpoint {
+        private final String address;
+        private final UriTemplateCache uriTemplates;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        // Guarded by this
+        private double latencyNanos;
+        private long updatedAt;
+        private boolean sampled;
+        private int consecutiveFailures;
+        // Set under the balancer's lock; ejections is 0 once a returned endpoint has ramped up fully
+        private volatile int ejections;
+        private volatile long ejectedUntil;
+        private volatile double latency;
+        // Latency charged for the last failure, decaying from penalizedAt
+        private volatile double penaltyNanos;
+        private volatile long penalizedAt;
+
+        private Endpoint(String address) {
+            this.address = address;
+            this.uriTemplates = new UriTemplateCache(address);
+        }
+
+        long start() {
+            outstanding.incrementAndGet();
+            return clock.getAsLong();
+        }
+
+        void complete(long startedAt, boolean failed) {
+            outstanding.decrementAndGet();
+            long now = clock.getAsLong();
+            boolean eject;
+            synchronized (this) {
+                long rtt = Math.max(now - startedAt, 0);
+                if (!sampled) {
+                    latencyNanos = rtt;
+                    sampled = true;
+                } else if (rtt > latencyNanos) {
+                    // Peak-sensitive: a slower call counts in full at once, recovery decays in
+                    latencyNanos = rtt;
+                } else {
+                    double weight = Math.exp(-Math.max(now - updatedAt, 0) / decayNanos);
+                    latencyNanos = latencyNanos * weight + rtt * (1 - weight);
+                }
+                updatedAt = now;
+                latency = latencyNanos;
+                if (failed && failurePenaltyNanos > Math.max(rtt, penalty(now))) {
+                    penalizedAt = now;
+                    penaltyNanos = failurePenaltyNanos;
+                }
+                consecutiveFailures = failed ? consecutiveFailures + 1 : 0;
+                eject = failed && consecutiveFailures >= config.getConsecutiveFailures() && !isEjected(now);
+                if (eject) {
+                    consecutiveFailures = 0;
+                }
+            }
+            if (eject) {
+                tryEject(this, now);
+            } else if (!failed && ejections > 0 && now - ejectedUntil > rampUpNanos) {
+                // Healthy through a whole ramp-up: a later ejection starts from the base time again
+                ejections = 0;
+            }
+        }
+
+        boolean isEjected(long now) {
+            return ejections > 0 && now - ejectedUntil < 0;
+        }
+
+        // Latency average, or the fading failure penalty if higher, times load
+        double cost(long now) {
+            return (Math.max(latency, penalty(now)) + 1) * (outstanding.get() + 1);
+        }
+
+        private double penalty(long now) {
+            double penalty = penaltyNanos;
+            return penalty == 0 ? 0 : penalty * Math.exp(-Math.max(now - penalizedAt, 0) / decayNanos);
+        }
+
+        // Chance of being considered for a pick: 1, or growing linearly while ramping up after an ejection
+        double weight(long now) {
+            long sinceReturn = now - ejectedUntil;
+            if (ejections > 0 && sinceReturn >= 0 && sinceReturn < rampUpNanos) {
+                return Math.max(MIN_WEIGHT, (double) sinceReturn / rampUpNanos);
+            }
+            return 1;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        /**
+         * Moving average of call latency in milliseconds; 0 before the first call.
+         */
+        public double getLatencyMillis() {
+            return latency / 1_000_000.0;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public boolean isEjected() {
+            return isEjected(clock.getAsLong());
+        }
+    }
+}
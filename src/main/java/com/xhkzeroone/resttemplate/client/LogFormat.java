@@ -0,0 +1,73 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Sampling decision, header redaction and body truncation shared by the logging middlewares.
+ * Only {@link #sample(boolean)} runs on the request thread; the rest runs on the log writer.
+ */
+class LogFormat {
+    private static final String REDACTED = "***";
+
+    private final double successSampleRate;
+    private final double errorSampleRate;
+    private final int maxBodyLength;
+    private final Set<String> redactHeaders;
+
+    LogFormat(RestConfig.Logging config) {
+        this.successSampleRate = config.getSuccessSampleRate();
+        this.errorSampleRate = config.getErrorSampleRate();
+        this.maxBodyLength = config.getMaxBodyLength();
+        this.redactHeaders = config.getRedactHeaders().stream()
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    boolean sample(boolean error) {
+        double rate = error ? errorSampleRate : successSampleRate;
+        return rate >= 1 || rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    String headers(Map<String, ?> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return "{}";
+        }
+        StringBuilder out = new StringBuilder("{");
+        Iterator<? extends Map.Entry<String, ?>> entries = headers.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, ?> header = entries.next();
+            out.append(header.getKey()).append('=');
+            if (redactHeaders.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                out.append(REDACTED);
+            } else {
+                Object value = header.getValue();
+                out.append(value instanceof List<?> list && list.size() == 1 ? list.get(0) : value);
+            }
+            if (entries.hasNext()) {
+                out.append(", ");
+            }
+        }
+        return out.append('}').toString();
+    }
+
+    String body(Object body) {
+        if (body == null) {
+            return "(no body)";
+        }
+        String text;
+        if (body instanceof byte[] bytes) {
+            int length = Math.min(bytes.length, maxBodyLength);
+            text = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            return bytes.length > maxBodyLength ? text + "... (" + bytes.length + " bytes)" : text;
+        }
+        text = String.valueOf(body);
+        return text.length() > maxBodyLength ? text.substring(0, maxBodyLength) + "... (" + text.length() + " chars)" : text;
+    }
+}
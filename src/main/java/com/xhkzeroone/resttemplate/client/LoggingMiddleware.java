@@ -1,22 +1,91 @@
 package com.xhkzeroone.resttemplate.client;
 
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Logs one line per call once it completes, for a sample of successes and errors; responses
+ * outside 2xx are logged at WARNING. The parts of the call are captured when it is sampled and
+ * the message is built from them on {@link AsyncLogger}'s background thread, with sensitive
+ * headers redacted and bodies truncated.
+ */
 public class LoggingMiddleware implements Middleware {
     private static final Logger logger = Logger.getLogger(LoggingMiddleware.class.getName());
 
+    private final LogFormat format;
+    private final AsyncLogger asyncLogger;
+
+    public LoggingMiddleware() {
+        this(new RestConfig());
+    }
+
+    public LoggingMiddleware(RestConfig config) {
+        this(config, AsyncLogger.shared());
+    }
+
+    public LoggingMiddleware(RestConfig config, AsyncLogger asyncLogger) {
+        this.format = new LogFormat(config.getLogging());
+        this.asyncLogger = asyncLogger;
+    }
+
     @Override
     public Handler apply(Handler next) {
         return ctx -> {
-            logger.info(String.format("📤 Sending Request - Method: %s, Path: %s, Headers: %s, Params: %s, PathVars: %s, Body: %s",
-                    ctx.getMethod(), ctx.getPath(), ctx.getHeaders(), ctx.getParams(), ctx.getPathVars(), ctx.getRequest()
-            ));
-            long start = System.currentTimeMillis();
-            next.handle(ctx);
-            long elapsed = System.currentTimeMillis() - start;
-            Object response = ctx.getResponse();
-            logger.info("✅ Response (" + elapsed + " ms): " + response);
+            long start = System.nanoTime();
+            try {
+                next.handle(ctx);
+            } catch (Exception e) {
+                log(ctx, start, e);
+                throw e;
+            }
+            log(ctx, start, null);
         };
     }
-}
 
+    @Override
+    public AsyncHandler applyAsync(AsyncHandler next) {
+        return ctx -> {
+            long start = System.nanoTime();
+            return next.handle(ctx).whenComplete((ignored, error) -> log(ctx, start, error));
+        };
+    }
+
+    private void log(ReqContext ctx, long start, Throwable error) {
+        if (!format.sample(error != null)) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        // Captured now: the context may be reused or changed by the time the writer formats it
+        Sample sample = new Sample(ctx.getMethod(), ctx.getPath(), ctx.copyHeaders(), copy(ctx.getParams()),
+                copy(ctx.getPathVars()), ctx.getRequest(), elapsed);
+        if (error != null) {
+            Throwable cause = RetryPolicy.unwrap(error);
+            asyncLogger.log(logger, Level.WARNING, () -> "❌ " + request(sample) + " failed: " + cause);
+        } else {
+            HttpStatusCode status = ctx.getResponseStatus();
+            Object response = ctx.getResponse();
+            boolean ok = status == null || status.is2xxSuccessful();
+            asyncLogger.log(logger, ok ? Level.INFO : Level.WARNING, () -> (ok ? "✅ " : "⚠️ ") + request(sample)
+                    + " -> " + status + ", Response: " + format.body(response));
+        }
+    }
+
+    private String request(Sample sample) {
+        return String.format("%s %s (%.1f ms) - Headers: %s, Params: %s, PathVars: %s, Body: %s",
+                sample.method(), sample.path(), sample.elapsedNanos() / 1e6, format.headers(sample.headers()),
+                sample.params(), sample.pathVars(), format.body(sample.body()));
+    }
+
+    private static Map<String, Object> copy(Map<String, Object> values) {
+        return values != null ? new LinkedHashMap<>(values) : null;
+    }
+
+    private record Sample(HttpMethod method, String path, Map<String, Object> headers, Map<String, Object> params,
+                          Map<String, Object> pathVars, Object body, long elapsedNanos) {
+    }
+}
@@ -0,0 +1,237 @@
+package com.xhkzeroone.resttemplate.client;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Records call latency in a {@link LatencyHistogram} per client name, HTTP method, un-expanded
+ * path template and status class, and publishes each one to a Micrometer registry as a
+ * {@link FunctionTimer} named {@value #METRIC_NAME} plus {@code .percentile} (tag {@code phi})
+ * and {@code .max} gauges. Count and total are cumulative; percentiles and max cover roughly the
+ * last two minutes, see {@link RotatingLatencyHistogram}. Calls refused by a protective
+ * middleware are tagged {@code status=REJECTED}, other calls without a response {@code IO_ERROR}.
+ * <p>
+ * Templates, not expanded URIs, keep the tag cardinality bounded; past {@value #MAX_SERIES}
+ * series further ones are recorded under {@code uri=OTHER}. Series use histograms with 16
+ * sub-buckets per power of two (within about 6%) up to ~2 minutes, about 17 KB each.
+ * <p>
+ * Each instance publishes under its own {@code client} tag: a second live instance with the same
+ * client name in the same registry gets {@code name-2} and a warning. {@link #close()} removes
+ * the meters and frees the name; the client closes the middlewares it uses.
+ */
+public class MetricsMiddleware implements Middleware, AutoCloseable {
+    public static final String METRIC_NAME = "restclient.requests";
+    static final int MAX_SERIES = 1000;
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    // Index 0 is for calls that got no response at all, the last for calls rejected locally
+    private static final String[] STATUS_CLASSES = {"IO_ERROR", "1xx", "2xx", "3xx", "4xx", "5xx", "REJECTED"};
+    private static final int REJECTED = STATUS_CLASSES.length - 1;
+    private static final String OTHER = "OTHER";
+    // Window of the percentile and max gauges, and how many histograms it rotates through
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(2);
+    private static final int WINDOW_HISTOGRAMS = 3;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int MAX_EXPONENT = 36;
+
+    private final String clientName;
+    private final MeterRegistry registry;
+    private final LongSupplier clock;
+    private final Queue<Meter> meters = new ConcurrentLinkedQueue<>();
+    private final Map<String, Map<HttpMethod, AtomicReferenceArray<Series>>> routes = new ConcurrentHashMap<>();
+    private final AtomicInteger seriesCount = new AtomicInteger();
+
+    public MetricsMiddleware() {
+        this(new RestConfig());
+    }
+
+    public MetricsMiddleware(RestConfig config) {
+        this(config, Metrics.globalRegistry);
+    }
+
+    public MetricsMiddleware(RestConfig config, MeterRegistry registry) {
+        this(config, registry, System::nanoTime);
+    }
+
+    MetricsMiddleware(RestConfig config, MeterRegistry registry, LongSupplier clock) {
+        this.registry = registry;
+        this.clientName = registry != null ? ClientNames.claim(registry, METRIC_NAME, clientName(config)) : clientName(config);
+        this.clock = clock;
+    }
+
+    @Override
+    public Handler apply(Handler next) {
+        return ctx -> {
+            long start = System.nanoTime();
+            try {
+                next.handle(ctx);
+            } catch (Exception e) {
+                record(ctx, statusIndex(e), System.nanoTime() - start);
+                throw e;
+            }
+            record(ctx, statusIndex(ctx), System.nanoTime() - start);
+        };
+    }
+
+    @Override
+    public AsyncHandler applyAsync(AsyncHandler next) {
+        return ctx -> {
+            long start = System.nanoTime();
+            return next.handle(ctx).whenComplete((ignored, error) -> record(ctx,
+                    error != null ? statusIndex(RetryPolicy.unwrap(error)) : statusIndex(ctx),
+                    System.nanoTime() - start));
+        };
+    }
+
+    /**
+     * Lifetime histogram for one key, or null if no call has been recorded under it.
+     *
+     * @param statusClass "2xx", "4xx", ..., "IO_ERROR" or "REJECTED"
+     */
+    public LatencyHistogram getHistogram(HttpMethod method, String path, String statusClass) {
+        Map<HttpMethod, AtomicReferenceArray<Series>> byMethod = routes.get(path);
+        AtomicReferenceArray<Series> byStatus = byMethod != null ? byMethod.get(method) : null;
+        if (byStatus == null) {
+            return null;
+        }
+        for (int i = 0; i < STATUS_CLASSES.length; i++) {
+            if (STATUS_CLASSES[i].equals(statusClass)) {
+                Series series = byStatus.get(i);
+                return series != null ? series.lifetime : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Value of the {@code client} tag this instance publishes under.
+     */
+    public String getClientName() {
+        return clientName;
+    }
+
+    /**
+     * Removes the published meters and frees the client name for another instance.
+     */
+    @Override
+    public void close() {
+        if (registry == null) {
+            return;
+        }
+        Meter meter;
+        while ((meter = meters.poll()) != null) {
+            registry.remove(meter);
+        }
+        ClientNames.release(registry, METRIC_NAME, clientName);
+    }
+
+    private void record(ReqContext ctx, int status, long nanos) {
+        Series series = series(ctx.getPath() != null ? ctx.getPath() : "", ctx.getMethod(), status);
+        series.lifetime.record(nanos);
+        series.recent.record(nanos);
+    }
+
+    private Series series(String path, HttpMethod method, int status) {
+        Map<HttpMethod, AtomicReferenceArray<Series>> byMethod = routes.get(path);
+        AtomicReferenceArray<Series> byStatus = byMethod != null ? byMethod.get(method) : null;
+        Series series = byStatus != null ? byStatus.get(status) : null;
+        if (series != null) {
+            return series;
+        }
+        if (seriesCount.get() >= MAX_SERIES && !OTHER.equals(path)) {
+            return series(OTHER, method, status);
+        }
+        if (byMethod == null) {
+            byMethod = routes.computeIfAbsent(path, key -> new ConcurrentHashMap<>());
+        }
+        if (byStatus == null) {
+            byStatus = byMethod.computeIfAbsent(method, key -> new AtomicReferenceArray<>(STATUS_CLASSES.length));
+        }
+        Series created = new Series(clock);
+        if (byStatus.compareAndSet(status, null, created)) {
+            seriesCount.incrementAndGet();
+            register(created, method, path, STATUS_CLASSES[status]);
+        }
+        return byStatus.get(status);
+    }
+
+    private void register(Series series, HttpMethod method, String path, String statusClass) {
+        if (registry == null) {
+            return;
+        }
+        Tags tags = Tags.of("client", clientName, "method", method.name(), "uri", path, "status", statusClass);
+        meters.add(FunctionTimer.builder(METRIC_NAME, series.lifetime, LatencyHistogram::getCount,
+                        LatencyHistogram::getTotalNanos, TimeUnit.NANOSECONDS)
+                .tags(tags)
+                .register(registry));
+        meters.add(Gauge.builder(METRIC_NAME + ".max", series.recent, h -> h.getMaxNanos() / 1e9)
+                .tags(tags)
+                .baseUnit("seconds")
+                .register(registry));
+        for (double percentile : PERCENTILES) {
+            meters.add(Gauge.builder(METRIC_NAME + ".percentile", series.recent, h -> h.valueAtPercentile(percentile * 100) / 1e9)
+                    .tags(tags.and("phi", String.valueOf(percentile)))
+                    .baseUnit("seconds")
+                    .register(registry));
+        }
+    }
+
+    private static int statusIndex(ReqContext ctx) {
+        // A handler that completed without recording a status (e.g. served from a stub) counts as 2xx
+        return ctx.getResponseStatus() != null ? statusClass(ctx.getResponseStatus().value()) : 2;
+    }
+
+    private static int statusIndex(Throwable error) {
+        if (error instanceof RestClientResponseException response) {
+            return statusClass(response.getStatusCode().value());
+        }
+        return error instanceof RequestRejectedException ? REJECTED : 0;
+    }
+
+    private static int statusClass(int status) {
+        int statusClass = status / 100;
+        return statusClass >= 1 && statusClass <= 5 ? statusClass : 0;
+    }
+
+    static String clientName(RestConfig config) {
+        if (config.getName() != null) {
+            return config.getName();
+        }
+        if (config.getAddress() != null) {
+            String host = URI.create(config.getAddress()).getHost();
+            if (host != null) {
+                return host;
+            }
+        }
+        return "default";
+    }
+
+    // Lifetime count and total for the timer, a sliding window for the gauges
+    private static final class Series {
+        final LatencyHistogram lifetime = histogram();
+        final RotatingLatencyHistogram recent;
+
+        Series(LongSupplier clock) {
+            this.recent = new RotatingLatencyHistogram(WINDOW_NANOS, WINDOW_HISTOGRAMS, clock, Series::histogram);
+        }
+
+        static LatencyHistogram histogram() {
+            return new LatencyHistogram(SUB_BUCKET_BITS, MAX_EXPONENT);
+        }
+    }
+}
@@ -1,6 +1,24 @@
 package com.xhkzeroone.resttemplate.client;
 
+import java.util.concurrent.CompletionException;
+
 @FunctionalInterface
 public interface Middleware {
     Handler apply(Handler next);
-}
\ No newline at end of file
+
+    /**
+     * Wraps an async handler. The default bridges to {@link #apply(Handler)} and therefore
+     * occupies one of the client's bounded bridge threads for the whole call, see
+     * {@link RestConfig.Transport#getAsyncBridgeThreads()}; middlewares used on the async path should override it.
+     */
+    default AsyncHandler applyAsync(AsyncHandler next) {
+        Handler handler = apply(ctx -> {
+            try {
+                next.handle(ctx).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        });
+        return ctx -> ctx.asyncBridge().run(handler, ctx);
+    }
+}
@@ -8,18 +8,32 @@ import java.util.List;
 
 public class MiddlewareBuilder {
     public static Middleware build(Class<?> middlewareClasses, ApplicationContext ctx) {
-        Object instance = getOrCreateInstance(middlewareClasses, ctx);
+        return build(middlewareClasses, ctx, null);
+    }
+
+    /**
+     * Uses the Spring bean if there is one, otherwise a {@code (RestConfig)} constructor when a
+     * config is given, otherwise the no-arg constructor.
+     */
+    public static Middleware build(Class<?> middlewareClasses, ApplicationContext ctx, RestConfig config) {
+        Object instance = getOrCreateInstance(middlewareClasses, ctx, config);
         if (!(instance instanceof Middleware)) {
             throw new IllegalArgumentException("Class " + middlewareClasses.getName() + " does not implement Middleware interface");
         }
         return (Middleware) instance;
     }
 
-    private static Object getOrCreateInstance(Class<?> clazz, ApplicationContext ctx) {
+    private static Object getOrCreateInstance(Class<?> clazz, ApplicationContext ctx, RestConfig config) {
         try {
             return ctx.getBean(clazz);
         } catch (Exception e) {
             try {
+                if (config != null) {
+                    try {
+                        return clazz.getDeclaredConstructor(RestConfig.class).newInstance(config);
+                    } catch (NoSuchMethodException ignored) {
+                    }
+                }
                 return clazz.getDeclaredConstructor().newInstance();
             } catch (Exception ex) {
                 throw new IllegalStateException("Cannot instantiate middleware: " + clazz.getName(), ex);
@@ -34,4 +48,12 @@ public class MiddlewareBuilder {
         }
         return handler;
     }
+
+    public static AsyncHandler buildAsyncChain(List<Middleware> middlewares, AsyncHandler finalHandler) {
+        AsyncHandler handler = finalHandler;
+        for (int i = middlewares.size() - 1; i >= 0; i--) {
+            handler = middlewares.get(i).applyAsync(handler);
+        }
+        return handler;
+    }
 }
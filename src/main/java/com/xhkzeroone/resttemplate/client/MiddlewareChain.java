@@ -0,0 +1,61 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable, pre-built handler chain. Built once per middleware set; request-scoped middlewares
+ * carried by the {@link ReqContext} are applied just above the terminal handler, so the shared
+ * part of the chain is never rebuilt per request.
+ */
+public final class MiddlewareChain {
+    private final List<Middleware> middlewares;
+    private final Handler terminal;
+    private final AsyncHandler asyncTerminal;
+    private final Handler handler;
+    private final AsyncHandler asyncHandler;
+
+    private MiddlewareChain(List<Middleware> middlewares, Handler terminal, AsyncHandler asyncTerminal) {
+        this.middlewares = List.copyOf(middlewares);
+        this.terminal = terminal;
+        this.asyncTerminal = asyncTerminal;
+        this.handler = MiddlewareBuilder.buildChain(this.middlewares, ctx -> {
+            List<Middleware> scoped = ctx.getMiddlewares();
+            if (scoped == null || scoped.isEmpty()) {
+                terminal.handle(ctx);
+            } else {
+                MiddlewareBuilder.buildChain(scoped, terminal).handle(ctx);
+            }
+        });
+        this.asyncHandler = MiddlewareBuilder.buildAsyncChain(this.middlewares, ctx -> {
+            List<Middleware> scoped = ctx.getMiddlewares();
+            if (scoped == null || scoped.isEmpty()) {
+                return asyncTerminal.handle(ctx);
+            }
+            return MiddlewareBuilder.buildAsyncChain(scoped, asyncTerminal).handle(ctx);
+        });
+    }
+
+    public static MiddlewareChain of(List<Middleware> middlewares, Handler terminal, AsyncHandler asyncTerminal) {
+        return new MiddlewareChain(middlewares, terminal, asyncTerminal);
+    }
+
+    public MiddlewareChain with(Middleware middleware) {
+        List<Middleware> next = new ArrayList<>(middlewares.size() + 1);
+        next.addAll(middlewares);
+        next.add(middleware);
+        return new MiddlewareChain(next, terminal, asyncTerminal);
+    }
+
+    public List<Middleware> getMiddlewares() {
+        return middlewares;
+    }
+
+    public Handler handler() {
+        return handler;
+    }
+
+    public AsyncHandler asyncHandler() {
+        return asyncHandler;
+    }
+}
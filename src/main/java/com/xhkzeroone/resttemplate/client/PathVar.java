@@ -0,0 +1,18 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds the argument to the {@code {name}} variable of the {@link HttpCall} path.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface PathVar {
+    /** Name; defaults to the parameter name when compiled with {@code -parameters}. */
+    String value() default "";
+}
@@ -0,0 +1,78 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.web.client.RestClientResponseException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the client's {@link RateLimiter} to the Handler chain. Routes are matched on the
+ * un-expanded path template. On the async path waiting for a permit does not hold a thread.
+ */
+public class RateLimitMiddleware implements Middleware {
+    private final RateLimiter limiter;
+
+    public RateLimitMiddleware() {
+        this(new RestConfig());
+    }
+
+    public RateLimitMiddleware(RestConfig config) {
+        this(new RateLimiter(config.getRateLimit()));
+    }
+
+    public RateLimitMiddleware(RateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Handler apply(Handler next) {
+        return ctx -> {
+            TokenBucket route = limiter.route(ctx.getMethod(), ctx.getPath());
+            limiter.acquire(route);
+            try {
+                next.handle(ctx);
+            } catch (RestClientResponseException e) {
+                limiter.onResponse(route, e.getStatusCode().value(), e.getResponseHeaders());
+                throw e;
+            }
+            observe(route, ctx);
+        };
+    }
+
+    @Override
+    public AsyncHandler applyAsync(AsyncHandler next) {
+        return ctx -> {
+            TokenBucket route = limiter.route(ctx.getMethod(), ctx.getPath());
+            long wait;
+            try {
+                wait = limiter.reserve(route);
+            } catch (RequestRejectedException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            CompletableFuture<Void> permitted = CompletableFuture.completedFuture(null);
+            if (wait > 0) {
+                Executor delayed = CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS);
+                permitted = CompletableFuture.runAsync(() -> {
+                }, delayed);
+            }
+            return permitted.thenCompose(ignored -> next.handle(ctx)).whenComplete((done, error) -> {
+                if (error == null) {
+                    observe(route, ctx);
+                } else if (RetryPolicy.unwrap(error) instanceof RestClientResponseException e) {
+                    limiter.onResponse(route, e.getStatusCode().value(), e.getResponseHeaders());
+                }
+            });
+        };
+    }
+
+    public RateLimiter getLimiter() {
+        return limiter;
+    }
+
+    private void observe(TokenBucket route, ReqContext ctx) {
+        if (ctx.getResponseStatus() != null) {
+            limiter.onResponse(route, ctx.getResponseStatus().value(), ctx.getResponseHeaders());
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.util.UriTemplate;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side quota built from {@link TokenBucket}s: one for the whole client and one per
+ * configured route template. A call takes a permit from its route bucket (if any) and from the
+ * client bucket; in {@link Mode#BLOCK} it may wait up to {@code maxWait} for them, in
+ * {@link Mode#FAIL_FAST} it is rejected straight away with {@link RequestRejectedException}.
+ * <p>
+ * When adaptive, responses steer the bucket the call went through: {@code Retry-After} on 429/503
+ * pauses it, and {@code RateLimit-Remaining}/{@code RateLimit-Reset} (or the {@code X-RateLimit-*}
+ * and structured {@code RateLimit} variants) spread the remaining quota over the reset window.
+ * The rate never rises above the configured one.
+ */
+public class RateLimiter {
+    public enum Mode {BLOCK, FAIL_FAST}
+
+    private static final long EPOCH_SECONDS_THRESHOLD = 1_000_000_000L;
+
+    private final TokenBucket clientBucket;
+    private final Map<String, TokenBucket> routes = new HashMap<>();
+    private final List<RouteMatcher> matchers = new ArrayList<>();
+    private final long maxWaitNanos;
+    private final boolean adaptive;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+
+    public RateLimiter(RestConfig.RateLimit config) {
+        this(config, System::nanoTime);
+    }
+
+    RateLimiter(RestConfig.RateLimit config, LongSupplier clock) {
+        this.clientBucket = new TokenBucket(config.getRate(), config.getBurst(), clock);
+        this.maxWaitNanos = config.getMode() == Mode.FAIL_FAST ? 0 : TimeUnit.MILLISECONDS.toNanos(config.getMaxWait());
+        this.adaptive = config.isAdaptive();
+        if (config.getRoutes() != null) {
+            config.getRoutes().forEach((key, route) -> {
+                String trimmed = key.trim();
+                int space = trimmed.indexOf(' ');
+                HttpMethod method = space > 0 ? HttpMethod.valueOf(trimmed.substring(0, space).toUpperCase(Locale.ROOT)) : null;
+                String template = space > 0 ? trimmed.substring(space + 1).trim() : trimmed;
+                TokenBucket bucket = new TokenBucket(route.getRate(), route.getBurst(), clock);
+                routes.put(method != null ? method.name() + " " + template : template, bucket);
+                matchers.add(new RouteMatcher(method, new UriTemplate(template), bucket));
+            });
+        }
+    }
+
+    /**
+     * Route bucket for an un-expanded path template, or null if the route has no limit of its own.
+     */
+    public TokenBucket route(HttpMethod method, String template) {
+        if (routes.isEmpty() || template == null) {
+            return null;
+        }
+        TokenBucket bucket = routes.get(method.name() + " " + template);
+        return bucket != null ? bucket : routes.get(template);
+    }
+
+    /**
+     * Route bucket for an expanded URI, matched against the configured templates.
+     */
+    public TokenBucket route(HttpMethod method, URI uri) {
+        if (matchers.isEmpty()) {
+            return null;
+        }
+        String path = uri.getRawPath();
+        for (RouteMatcher matcher : matchers) {
+            if ((matcher.method == null || matcher.method == method) && matcher.template.matches(path)) {
+                return matcher.bucket;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes the permits for one call.
+     *
+     * @param route the call's route bucket, may be null
+     * @return nanos to wait before sending
+     * @throws RequestRejectedException if the permits are not available within {@code maxWait}
+     */
+    public long reserve(TokenBucket route) {
+        long routeWait = route != null ? route.reserve(maxWaitNanos) : 0;
+        long clientWait = routeWait >= 0 ? clientBucket.reserve(maxWaitNanos) : -1;
+        if (clientWait < 0) {
+            if (route != null && routeWait >= 0) {
+                // The route permit is not used, so it must not count against the route's quota
+                route.cancel();
+            }
+            rejected.increment();
+            throw new RequestRejectedException("Rate limit exceeded" + (maxWaitNanos > 0
+                    ? ", no permit within " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms" : ""));
+        }
+        long wait = Math.max(routeWait, clientWait);
+        if (wait > 0) {
+            delayed.increment();
+        }
+        return wait;
+    }
+
+    /**
+     * Blocking variant of {@link #reserve(TokenBucket)}.
+     */
+    public void acquire(TokenBucket route) throws InterruptedException {
+        long wait = reserve(route);
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Feeds response headers back into the bucket the call went through.
+     */
+    public void onResponse(TokenBucket route, int status, HttpHeaders headers) {
+        if (!adaptive || headers == null) {
+            return;
+        }
+        TokenBucket bucket = route != null ? route : clientBucket;
+        if (status == 429 || status == 503) {
+            long retryAfter = RetryPolicy.retryAfterMillis(headers);
+            if (retryAfter > 0) {
+                bucket.pause(TimeUnit.MILLISECONDS.toNanos(retryAfter));
+                return;
+            }
+        }
+        Quota quota = Quota.parse(headers);
+        if (quota == null) {
+            return;
+        }
+        if (quota.remaining <= 0) {
+            bucket.pause(TimeUnit.SECONDS.toNanos(quota.resetSeconds));
+        } else {
+            // Back to the configured rate once the quota window resets, even if later responses carry no quota
+            bucket.adjustRate((double) quota.remaining / quota.resetSeconds, TimeUnit.SECONDS.toNanos(quota.resetSeconds));
+        }
+    }
+
+    public TokenBucket getClientBucket() {
+        return clientBucket;
+    }
+
+    public Map<String, TokenBucket> getRouteBuckets() {
+        return Map.copyOf(routes);
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getDelayedCount() {
+        return delayed.sum();
+    }
+
+    private record RouteMatcher(HttpMethod method, UriTemplate template, TokenBucket bucket) {
+    }
+
+    private record Quota(long remaining, long resetSeconds) {
+        static Quota parse(HttpHeaders headers) {
+            String remaining = first(headers, "RateLimit-Remaining", "X-RateLimit-Remaining");
+            String reset = first(headers, "RateLimit-Reset", "X-RateLimit-Reset");
+            String combined = headers.getFirst("RateLimit");
+            if (combined != null && (remaining == null || reset == null)) {
+                // Structured form: "limit=100, remaining=50, reset=30" or ";r=50;t=30"
+                for (String part : combined.split("[,;]")) {
+                    int eq = part.indexOf('=');
+                    if (eq < 0) {
+                        continue;
+                    }
+                    String name = part.substring(0, eq).trim().toLowerCase(Locale.ROOT);
+                    String value = part.substring(eq + 1).trim();
+                    if (name.equals("remaining") || name.equals("r")) {
+                        remaining = value;
+                    } else if (name.equals("reset") || name.equals("t")) {
+                        reset = value;
+                    }
+                }
+            }
+            long remainingValue = parse(remaining);
+            long resetValue = parse(reset);
+            if (remainingValue < 0 || resetValue < 0) {
+                return null;
+            }
+            if (resetValue >= EPOCH_SECONDS_THRESHOLD) {
+                // Some servers send X-RateLimit-Reset as an epoch timestamp
+                resetValue -= System.currentTimeMillis() / 1000;
+            }
+            return resetValue > 0 ? new Quota(remainingValue, resetValue) : null;
+        }
+
+        private static String first(HttpHeaders headers, String name, String fallback) {
+            String value = headers.getFirst(name);
+            return value != null ? value : headers.getFirst(fallback);
+        }
+
+        private static long parse(String value) {
+            if (value == null) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+}
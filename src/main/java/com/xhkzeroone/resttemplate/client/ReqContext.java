@@ -1,7 +1,13 @@
 package com.xhkzeroone.resttemplate.client;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
 
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -14,6 +20,17 @@ public class ReqContext {
     private Map<String, Object> headers;
     private Map<String, Object> params;
     private Map<String, Object> pathVars;
+    private Class<?> responseType;
+    private Type genericResponseType;
+    private Class<?> elementType;
+    private List<Middleware> middlewares;
+    private HttpStatusCode responseStatus;
+    private HttpHeaders responseHeaders;
+    private UriTemplateCache uriTemplates;
+    private CompiledUriTemplate uriTemplate;
+    private AsyncBridge asyncBridge;
+    // Not copied: every attempt is cancelled on its own
+    private final Cancellation cancellation = new Cancellation();
 
     public ReqContext(Object request) {
         this.request = request;
@@ -45,6 +62,7 @@ public class ReqContext {
 
     public void setPath(String path) {
         this.path = path;
+        this.uriTemplate = null;
     }
 
     public Object getBody() {
@@ -63,6 +81,25 @@ public class ReqContext {
         this.headers = headers;
     }
 
+    /**
+     * Request header value by case-insensitive name, or null.
+     */
+    public String getHeader(String name) {
+        if (headers == null) {
+            return null;
+        }
+        Object value = headers.get(name);
+        if (value == null && !(headers instanceof HeaderMap)) {
+            for (Map.Entry<String, Object> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name)) {
+                    value = header.getValue();
+                    break;
+                }
+            }
+        }
+        return value != null ? String.valueOf(value) : null;
+    }
+
     public Map<String, Object> getParams() {
         return params;
     }
@@ -78,4 +115,157 @@ public class ReqContext {
     public void setPathVars(Map<String, Object> pathVars) {
         this.pathVars = pathVars;
     }
+
+    public Class<?> getResponseType() {
+        return responseType;
+    }
+
+    public void setResponseType(Class<?> responseType) {
+        this.responseType = responseType;
+        this.genericResponseType = null;
+    }
+
+    /**
+     * Full response type, e.g. {@code List<User>}; the same as {@link #getResponseType()} unless the
+     * call was made with a ParameterizedTypeReference or JavaType.
+     */
+    public Type getGenericResponseType() {
+        return genericResponseType != null ? genericResponseType : responseType;
+    }
+
+    void setGenericResponseType(Type genericResponseType) {
+        this.genericResponseType = genericResponseType;
+    }
+
+    /**
+     * Element type of a streamed JSON array response, or null when the response is buffered.
+     */
+    public Class<?> getElementType() {
+        return elementType;
+    }
+
+    void setElementType(Class<?> elementType) {
+        this.elementType = elementType;
+    }
+
+    /**
+     * Whether the response is a {@link JsonArrayStream} still reading from the connection, which
+     * cannot be cached, shared or raced.
+     */
+    public boolean isStreaming() {
+        return elementType != null;
+    }
+
+    public List<Middleware> getMiddlewares() {
+        return middlewares;
+    }
+
+    public void setMiddlewares(List<Middleware> middlewares) {
+        this.middlewares = middlewares;
+    }
+
+    public HttpStatusCode getResponseStatus() {
+        return responseStatus;
+    }
+
+    public void setResponseStatus(HttpStatusCode responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+
+    public HttpHeaders getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    public void setResponseHeaders(HttpHeaders responseHeaders) {
+        this.responseHeaders = responseHeaders;
+    }
+
+    /**
+     * The absolute URI the current path, path variables and params expand to.
+     */
+    public URI getUri() {
+        if (uriTemplate != null) {
+            return uriTemplate.expand(pathVars, params);
+        }
+        if (uriTemplates == null) {
+            return CompiledUriTemplate.compile(null, path).expand(pathVars, params);
+        }
+        return uriTemplates.expand(path, pathVars, params);
+    }
+
+    void setUriTemplates(UriTemplateCache uriTemplates) {
+        if (uriTemplates != this.uriTemplates) {
+            // Compiled against the previous base address
+            this.uriTemplate = null;
+        }
+        this.uriTemplates = uriTemplates;
+    }
+
+    /**
+     * Template already compiled for the current path; dropped if a middleware changes the path.
+     */
+    void setUriTemplate(CompiledUriTemplate uriTemplate) {
+        this.uriTemplate = uriTemplate;
+    }
+
+    /**
+     * Aborts the async exchange sent for this context, if it is still in flight, and any sent later.
+     */
+    public void cancel() {
+        cancellation.cancel();
+    }
+
+    public boolean isCancelled() {
+        return cancellation.isCancelled();
+    }
+
+    Cancellation cancellation() {
+        return cancellation;
+    }
+
+    /**
+     * Threads the default {@link Middleware#applyAsync} runs on: the sending client's, or shared ones.
+     */
+    AsyncBridge asyncBridge() {
+        return asyncBridge != null ? asyncBridge : AsyncBridge.shared();
+    }
+
+    void setAsyncBridge(AsyncBridge asyncBridge) {
+        this.asyncBridge = asyncBridge;
+    }
+
+    /**
+     * Copy of the request side, with its own header map, for sending a parallel attempt.
+     */
+    ReqContext copyRequest() {
+        ReqContext copy = new ReqContext(request);
+        copy.method = method;
+        copy.path = path;
+        copy.body = body;
+        copy.headers = copyHeaders();
+        copy.params = params;
+        copy.pathVars = pathVars;
+        copy.responseType = responseType;
+        copy.genericResponseType = genericResponseType;
+        copy.elementType = elementType;
+        copy.middlewares = middlewares;
+        copy.uriTemplates = uriTemplates;
+        copy.uriTemplate = uriTemplate;
+        copy.asyncBridge = asyncBridge;
+        return copy;
+    }
+
+    /**
+     * The headers as they are now, unaffected by later changes; cheap while no middleware has
+     * written to them.
+     */
+    Map<String, Object> copyHeaders() {
+        return headers instanceof HeaderMap map ? map.copy() : headers != null ? new LinkedHashMap<>(headers) : null;
+    }
+
+    void copyResponse(ReqContext from) {
+        this.response = from.response;
+        this.responseStatus = from.responseStatus;
+        this.responseHeaders = from.responseHeaders;
+    }
 }
\ No newline at end of file
@@ -2,7 +2,10 @@ package com.xhkzeroone.resttemplate.client;
 
 import org.springframework.http.HttpMethod;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ReqOption {
@@ -12,14 +15,16 @@ public class ReqOption {
     private final Map<String, Object> headers;
     private final Map<String, Object> params;
     private final Map<String, Object> pathVars;
+    private final List<Middleware> middlewares;
 
     private ReqOption(Builder builder) {
         this.method = builder.method;
         this.path = builder.path;
         this.body = builder.body;
-        this.headers = builder.headers;
-        this.params = builder.params;
-        this.pathVars = builder.pathVars;
+        this.headers = HeaderSnapshot.of(builder.headers);
+        this.params = builder.params != null ? builder.params : Map.of();
+        this.pathVars = builder.pathVars != null ? builder.pathVars : Map.of();
+        this.middlewares = builder.middlewares != null ? builder.middlewares : List.of();
     }
 
     public static Builder builder() {
@@ -30,9 +35,11 @@ public class ReqOption {
         private HttpMethod method;
         private String path;
         private Object body;
-        private final Map<String, Object> headers = new HashMap<>();
-        private final Map<String, Object> params = new HashMap<>();
-        private final Map<String, Object> pathVars = new HashMap<>();
+        // Allocated on first use; most requests set few or none of these
+        private Map<String, Object> headers;
+        private Map<String, Object> params;
+        private Map<String, Object> pathVars;
+        private List<Middleware> middlewares;
 
         public Builder method(HttpMethod method) {
             this.method = method;
@@ -53,20 +60,37 @@ public class ReqOption {
         }
 
         public Builder header(String key, Object value) {
+            if (headers == null) {
+                headers = new LinkedHashMap<>();
+            }
             this.headers.put(key, value);
             return this;
         }
 
         public Builder params(String key, Object value) {
+            if (params == null) {
+                params = new HashMap<>();
+            }
             this.params.put(key, value);
             return this;
         }
 
         public Builder pathVars(String key, Object value) {
+            if (pathVars == null) {
+                pathVars = new HashMap<>();
+            }
             this.pathVars.put(key, value);
             return this;
         }
 
+        public Builder use(Middleware middleware) {
+            if (middlewares == null) {
+                middlewares = new ArrayList<>();
+            }
+            this.middlewares.add(middleware);
+            return this;
+        }
+
         public ReqOption build() {
             if (method == null || path == null) {
                 throw new IllegalStateException("Method and path are required");
@@ -78,7 +102,11 @@ public class ReqOption {
     public HttpMethod getMethod() { return method; }
     public String getPath() { return path; }
     public Object getBody() { return body; }
+    /**
+     * Request headers, snapshotted when the option is built; read-only.
+     */
     public Map<String, Object> getHeaders() { return headers; }
     public Map<String, Object> getParams() { return params; }
     public Map<String, Object> getPathVars() { return pathVars; }
+    public List<Middleware> getMiddlewares() { return middlewares; }
 }
@@ -0,0 +1,11 @@
+package com.xhkzeroone.resttemplate.client;
+
+/**
+ * A call refused locally, before reaching the downstream, by a protective middleware. It is an
+ * {@link IllegalStateException} so {@code exchange(opt, resClass, fallback)} answers with the fallback.
+ */
+public class RequestRejectedException extends IllegalStateException {
+    public RequestRejectedException(String message) {
+        super(message);
+    }
+}
@@ -1,49 +1,137 @@
 package com.xhkzeroone.resttemplate.client;
 
+import com.fasterxml.jackson.databind.JavaType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.DefaultUriBuilderFactory;
-import org.springframework.web.util.UriComponentsBuilder;
 
+import java.lang.reflect.Type;
 import java.net.URI;
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
-public class RestClient extends RestTemplate {
+public class RestClient extends RestTemplate implements AutoCloseable, MeterBinder {
 
     private final ApplicationContext ctx;
     private final RestConfig config;
-    private final List<Middleware> middlewares = new ArrayList<>();
+    private final HttpTransport transport;
+    private final UriTemplateCache uriTemplates;
+    private final HeaderSnapshot defaultHeaders;
+    private final LoadBalancer loadBalancer;
+    private final AsyncBridge asyncBridge;
+    private volatile MiddlewareChain chain;
+    private volatile BodyCodec codec;
 
     public RestClient(ApplicationContext ctx, RestConfig config) {
-        super(createRequestFactory(config));
+        this(ctx, config, createTransport(config));
+    }
+
+    private RestClient(ApplicationContext ctx, RestConfig config, HttpTransport transport) {
+        super(transport.getRequestFactory());
         this.ctx = ctx;
         this.config = config;
+        this.transport = transport;
+        List<String> addresses = config.getAddresses();
+        this.loadBalancer = addresses != null && !addresses.isEmpty() ? new LoadBalancer(addresses, config.getLoadBalance()) : null;
+        // With several replicas, URIs are expanded against the first until the balancer picks one
+        String address = loadBalancer != null ? addresses.get(0) : config.getAddress();
+        this.uriTemplates = new UriTemplateCache(address);
+        this.defaultHeaders = HeaderSnapshot.of(config.getDefaultHeaders());
+        this.asyncBridge = new AsyncBridge(config.getTransport().getAsyncBridgeThreads(), config.getTransport().getAsyncBridgeQueue());
+        this.chain = loadBalancer != null
+                ? MiddlewareChain.of(List.of(), loadBalancer.apply(this::send), loadBalancer.applyAsync(this::sendAsync))
+                : MiddlewareChain.of(List.of(), this::send, this::sendAsync);
+        getMessageConverters().add(0, new BodySourceHttpMessageConverter());
 
-        if (config.getAddress() != null) {
-            this.setUriTemplateHandler(new DefaultUriBuilderFactory(config.getAddress()));
+        if (address != null) {
+            this.setUriTemplateHandler(new DefaultUriBuilderFactory(address));
         }
     }
 
-    private static SimpleClientHttpRequestFactory createRequestFactory(RestConfig config) {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(config.getConnectTimeout());
-        factory.setReadTimeout(config.getReadTimeout());
-        return factory;
+    private static HttpTransport createTransport(RestConfig config) {
+        return HttpTransport.create(config.getTransport(), config.getConnectTimeout(), config.getReadTimeout());
+    }
+
+    public TransportStats getTransportStats() {
+        return transport.getStats();
+    }
+
+    /**
+     * Registers the transport's connection pool gauges, see {@link HttpTransport#bindTo(MeterRegistry, String)}.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        transport.bindTo(registry, MetricsMiddleware.clientName(config));
+    }
+
+    /**
+     * Balancer over {@link RestConfig#getAddresses()}, or null for a single address.
+     */
+    public LoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
+    /**
+     * Closes the middlewares in use that are {@link AutoCloseable}, then the async bridge and the transport.
+     */
+    @Override
+    public void close() {
+        IllegalStateException failure = null;
+        for (Middleware middleware : chain.getMiddlewares()) {
+            if (middleware instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    if (failure == null) {
+                        failure = new IllegalStateException("Failed to close " + middleware.getClass().getSimpleName(), e);
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        asyncBridge.close();
+        transport.close();
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     public void use(Class<? extends Middleware> clazz) {
-        Middleware mw = MiddlewareBuilder.build(clazz, ctx);
-        this.middlewares.add(mw);
+        use(MiddlewareBuilder.build(clazz, ctx, config));
+    }
+
+    public synchronized void use(Middleware middleware) {
+        this.chain = chain.with(middleware);
     }
+
+    public List<Middleware> getMiddlewares() {
+        return chain.getMiddlewares();
+    }
+
+    /**
+     * Implementation of an interface whose methods are annotated with {@link HttpCall}, sending
+     * through this client. The annotations are read once, here; see {@link InterfaceClient}.
+     */
+    public <T> T createClient(Class<T> api) {
+        return InterfaceClient.create(api, this);
+    }
+
     public <ResT> ResT exchange(ReqOption opt, Class<ResT> resClass, Supplier<ResT> fallback) {
         try {
             return this.exchange(opt, resClass);
@@ -56,69 +144,262 @@ public class RestClient extends RestTemplate {
     }
 
     public <ResT> ResT exchange(ReqOption opt, Class<ResT> resClass) {
-        ReqContext context = new ReqContext(opt.getBody());
-        context.setMethod(opt.getMethod());
-        context.setPath(opt.getPath());
+        return castResponse(handle(createContext(opt, resClass)), resClass);
+    }
 
-        // Merge default headers vs opt headers
-        Map<String, Object> headers = new HashMap<>();
-        if (config.getDefaultHeaders() != null) {
-            headers.putAll(config.getDefaultHeaders());
-        }
-        if (opt.getHeaders() != null) {
-            headers.putAll(opt.getHeaders()); // override key
+    /**
+     * Exchange for a generic response type such as {@code new ParameterizedTypeReference<List<User>>() {}}.
+     */
+    public <ResT> ResT exchange(ReqOption opt, ParameterizedTypeReference<ResT> resType) {
+        return exchange(opt, resType.getType());
+    }
+
+    public <ResT> ResT exchange(ReqOption opt, JavaType resType) {
+        return exchange(opt, (Type) resType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <ResT> ResT exchange(ReqOption opt, Type resType) {
+        Class<?> resClass = codec().rawClass(resType);
+        ReqContext context = createContext(opt, resClass);
+        context.setGenericResponseType(resType);
+        return (ResT) castResponse(handle(context), resClass);
+    }
+
+    Object handle(ReqContext context) {
+        try {
+            chain.handler().handle(context);
+        } catch (RequestRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("HTTP request failed", e);
         }
-        context.setHeaders(headers);
+        return context.getResponse();
+    }
 
-        context.setParams(opt.getParams() != null ? new HashMap<>(opt.getParams()) : new HashMap<>());
-        context.setPathVars(opt.getPathVars() != null ? new HashMap<>(opt.getPathVars()) : new HashMap<>());
+    /**
+     * Sends the request through the middleware chain and returns the response, which must be a JSON
+     * array, as a stream of elements decoded while they are read. The caller must read it to the end
+     * or close it; caching, coalescing and hedging middlewares pass streamed requests through.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> JsonArrayStream<T> exchangeStream(ReqOption opt, Class<T> elementType) {
+        ReqContext context = createContext(opt, JsonArrayStream.class);
+        context.setElementType(elementType);
+        return (JsonArrayStream<T>) castResponse(handle(context), JsonArrayStream.class);
+    }
 
-        // Final handler call HTTP
-        Handler finalHandler = ctx -> {
-            String expandedPath = expandPath(ctx.getPath(), ctx.getPathVars());
-            URI uri = buildUri(expandedPath, ctx.getParams());
+    /**
+     * Hands each element of a JSON array response to {@code consumer} as it is read; the connection
+     * is released when this returns.
+     */
+    public <T> void exchangeStream(ReqOption opt, Class<T> elementType, Consumer<? super T> consumer) {
+        exchangeStream(opt, elementType).forEach(consumer);
+    }
 
-            HttpHeaders httpHeaders = new HttpHeaders();
-            ctx.getHeaders().forEach((k, v) -> httpHeaders.set(k, String.valueOf(v)));
+    public <ResT> CompletableFuture<ResT> exchangeAsync(ReqOption opt, Class<ResT> resClass, Supplier<ResT> fallback) {
+        return this.exchangeAsync(opt, resClass).exceptionally(e -> {
+            if (e instanceof CompletionException && e.getCause() instanceof IllegalStateException) {
+                return fallback.get();
+            }
+            throw e instanceof CompletionException ce ? ce : new CompletionException(e);
+        });
+    }
 
-            HttpEntity<?> entity = new HttpEntity<>(ctx.getRequest(), httpHeaders);
+    /**
+     * Same contract as {@link #exchange(ReqOption, Class)} but never blocks the caller: the request is sent
+     * through the transport's non-blocking client and middlewares run through {@link Middleware#applyAsync}.
+     * A middleware that does not override it still blocks: it holds one of this client's bridge threads
+     * until the rest of the chain completes, and calls beyond {@link RestConfig.Transport#getAsyncBridgeThreads()}
+     * plus {@link RestConfig.Transport#getAsyncBridgeQueue()} fail with a {@link RequestRejectedException}.
+     * Cancelling the returned future aborts the exchange.
+     */
+    public <ResT> CompletableFuture<ResT> exchangeAsync(ReqOption opt, Class<ResT> resClass) {
+        ReqContext context = createContext(opt, resClass);
+        return cancelling(context, handleAsync(context).thenApply(response -> castResponse(response, resClass)));
+    }
 
-            HttpMethod method = ctx.getMethod();
-            if (method == null) throw new IllegalArgumentException("HTTP method is required");
+    public <ResT> CompletableFuture<ResT> exchangeAsync(ReqOption opt, ParameterizedTypeReference<ResT> resType) {
+        return exchangeAsync(opt, resType.getType());
+    }
 
-            ResponseEntity<ResT> response = super.exchange(uri, method, entity, resClass);
-            ctx.setResponse(response.getBody());
-        };
+    public <ResT> CompletableFuture<ResT> exchangeAsync(ReqOption opt, JavaType resType) {
+        return exchangeAsync(opt, (Type) resType);
+    }
 
-        Handler chain = MiddlewareBuilder.buildChain(middlewares, finalHandler);
+    @SuppressWarnings("unchecked")
+    private <ResT> CompletableFuture<ResT> exchangeAsync(ReqOption opt, Type resType) {
+        Class<?> resClass = codec().rawClass(resType);
+        ReqContext context = createContext(opt, resClass);
+        context.setGenericResponseType(resType);
+        return cancelling(context, handleAsync(context).thenApply(response -> (ResT) castResponse(response, resClass)));
+    }
+
+    // Cancelling the caller's future aborts the exchange it is waiting for
+    private static <T> CompletableFuture<T> cancelling(ReqContext context, CompletableFuture<T> result) {
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                context.cancel();
+            }
+        });
+        return result;
+    }
 
+    CompletableFuture<Object> handleAsync(ReqContext context) {
+        CompletableFuture<Void> completion;
         try {
-            chain.handle(context);
-        } catch (Exception e) {
-            throw new RuntimeException("HTTP request failed", e);
+            completion = chain.asyncHandler().handle(context);
+        } catch (RuntimeException e) {
+            completion = CompletableFuture.failedFuture(e);
         }
 
-        Object response = context.getResponse();
+        return completion.handle((ignored, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof RequestRejectedException rejected) {
+                    throw rejected;
+                }
+                throw new RuntimeException("HTTP request failed", cause);
+            }
+            return context.getResponse();
+        });
+    }
+
+    public <ResT> List<BatchResult<ResT>> exchangeAll(Collection<ReqOption> opts, Class<ResT> resClass,
+                                                      int parallelism, Duration deadline) {
+        return exchangeAll(opts, resClass, parallelism, deadline, null);
+    }
+
+    /**
+     * Runs the requests concurrently, at most {@code parallelism} at a time, and blocks until all have
+     * completed or {@code deadline} has passed. Results are in request order; {@code onResult} is
+     * called (possibly from several threads) as each item completes or times out.
+     */
+    public <ResT> List<BatchResult<ResT>> exchangeAll(Collection<ReqOption> opts, Class<ResT> resClass,
+                                                      int parallelism, Duration deadline,
+                                                      Consumer<BatchResult<ResT>> onResult) {
+        return exchangeAllAsync(opts, resClass, parallelism, deadline, onResult).join();
+    }
+
+    public <ResT> CompletableFuture<List<BatchResult<ResT>>> exchangeAllAsync(Collection<ReqOption> opts, Class<ResT> resClass,
+                                                                              int parallelism, Duration deadline,
+                                                                              Consumer<BatchResult<ResT>> onResult) {
+        return BatchExecutor.execute(List.copyOf(opts), opt -> exchangeAsync(opt, resClass), parallelism, deadline, onResult);
+    }
+
+    // Final handler call HTTP
+    private void send(ReqContext ctx) {
+        URI uri = ctx.getUri();
+        HttpMethod method = ctx.getMethod();
+        if (method == null) throw new IllegalArgumentException("HTTP method is required");
+
+        if (ctx.isStreaming()) {
+            sendStreaming(ctx, uri, method);
+            return;
+        }
+
+        // RestTemplate copies entity headers onto the request, so shared read-only ones are fine here
+        HttpEntity<?> entity = new HttpEntity<>(ctx.getRequest(), entityHeaders(ctx.getHeaders()));
+
+        ResponseEntity<?> response = codec().exchange(this, uri, method, entity, ctx.getGenericResponseType());
+        ctx.setResponseStatus(response.getStatusCode());
+        ctx.setResponseHeaders(response.getHeaders());
+        ctx.setResponse(response.getBody());
+    }
+
+    private void sendStreaming(ReqContext ctx, URI uri, HttpMethod method) {
+        HttpHeaders httpHeaders = toHttpHeaders(ctx.getHeaders());
+        Object body = ctx.getRequest() instanceof BodySource source ? source : codec().encode(ctx.getRequest(), httpHeaders);
+        JsonArrayStream<?> stream = JsonArrayStream.open(getRequestFactory(), method, uri, httpHeaders, body,
+                codec().getObjectMapper().readerFor(ctx.getElementType()));
+        ctx.setResponseStatus(stream.getStatusCode());
+        ctx.setResponseHeaders(stream.getHeaders());
+        ctx.setResponse(stream);
+    }
+
+    private CompletableFuture<Void> sendAsync(ReqContext ctx) {
+        HttpMethod method = ctx.getMethod();
+        if (method == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("HTTP method is required"));
+        }
+        URI uri = ctx.getUri();
+        HttpHeaders httpHeaders = toHttpHeaders(ctx.getHeaders());
+        CompletableFuture<ResponseEntity<byte[]>> sent;
+        if (ctx.getRequest() instanceof BodySource source) {
+            if (httpHeaders.getContentType() == null) {
+                httpHeaders.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            }
+            sent = transport.sendAsync(method, uri, httpHeaders, source.publisher());
+        } else {
+            sent = transport.sendAsync(method, uri, httpHeaders, codec().encode(ctx.getRequest(), httpHeaders));
+        }
+        CompletableFuture<ResponseEntity<byte[]>> inFlight = sent;
+        ctx.cancellation().onAbort(() -> inFlight.cancel(true));
+        return sent
+                .whenComplete((response, error) -> ctx.cancellation().clear())
+                .thenAccept(response -> {
+                    Object decoded = codec().decode(response, ctx.getGenericResponseType());
+                    ctx.setResponseStatus(response.getStatusCode());
+                    ctx.setResponseHeaders(response.getHeaders());
+                    ctx.setResponse(decoded);
+                });
+    }
+
+    ReqContext createContext(ReqOption opt, Class<?> resClass) {
+        ReqContext context = new ReqContext(opt.getBody());
+        context.setMethod(opt.getMethod());
+        context.setPath(opt.getPath());
+        context.setResponseType(resClass);
+        context.setUriTemplates(uriTemplates);
+        context.setAsyncBridge(asyncBridge);
+        context.setMiddlewares(opt.getMiddlewares());
+
+        // Opt headers over the defaults; copied only if a middleware changes them
+        context.setHeaders(new HeaderMap(defaultHeaders, HeaderSnapshot.of(opt.getHeaders())));
+
+        context.setParams(opt.getParams() != null ? new HashMap<>(opt.getParams()) : new HashMap<>());
+        context.setPathVars(opt.getPathVars() != null ? new HashMap<>(opt.getPathVars()) : new HashMap<>());
+        return context;
+    }
+
+    private <ResT> ResT castResponse(Object response, Class<ResT> resClass) {
         if (resClass.isInstance(response)) {
             return resClass.cast(response);
         }
         throw new IllegalStateException("Response is not of expected type: " + resClass.getName());
     }
 
+    /**
+     * Headers for a request entity; may be a shared read-only instance.
+     */
+    static HttpHeaders entityHeaders(Map<String, Object> headers) {
+        return headers instanceof HeaderMap map ? map.toHttpHeaders() : toHttpHeaders(headers);
+    }
 
-    private String expandPath(String path, Map<String, Object> pathVars) {
-        if (pathVars == null || pathVars.isEmpty()) return path;
-        for (Map.Entry<String, Object> entry : pathVars.entrySet()) {
-            path = path.replace("{" + entry.getKey() + "}", String.valueOf(entry.getValue()));
-        }
-        return path;
+    static HttpHeaders toHttpHeaders(Map<String, Object> headers) {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        headers.forEach((k, v) -> httpHeaders.set(k, String.valueOf(v)));
+        return httpHeaders;
+    }
+
+    HeaderSnapshot getDefaultHeaders() {
+        return defaultHeaders;
+    }
+
+    UriTemplateCache getUriTemplates() {
+        return uriTemplates;
+    }
+
+    AsyncBridge getAsyncBridge() {
+        return asyncBridge;
     }
 
-    private URI buildUri(String path, Map<String, Object> queryParams) {
-        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(path);
-        if (queryParams != null) {
-            queryParams.forEach(builder::queryParam);
+    BodyCodec codec() {
+        BodyCodec current = codec;
+        if (current == null) {
+            current = BodyCodec.from(getMessageConverters());
+            codec = current;
         }
-        return builder.build(true).toUri();
+        return current;
     }
 }
@@ -1,12 +1,35 @@
 package com.xhkzeroone.resttemplate.client;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class RestConfig {
+    private String name;
     private String address;
+    // Replicas of the same service; when set, calls are balanced across them instead of address
+    private List<String> addresses;
     private int connectTimeout;
     private int readTimeout;
     private Map<String, String> defaultHeaders;
+    private Transport transport = new Transport();
+    private Retry retry = new Retry();
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+    private RateLimit rateLimit = new RateLimit();
+    private Hedge hedge = new Hedge();
+    private Logging logging = new Logging();
+    private Auth auth = new Auth();
+    private LoadBalance loadBalance = new LoadBalance();
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
 
     public String getAddress() {
         return address;
@@ -16,6 +39,14 @@ public class RestConfig {
         this.address = address;
     }
 
+    public List<String> getAddresses() {
+        return addresses;
+    }
+
+    public void setAddresses(List<String> addresses) {
+        this.addresses = addresses;
+    }
+
     public int getConnectTimeout() {
         return connectTimeout;
     }
@@ -39,4 +70,781 @@ public class RestConfig {
     public void setDefaultHeaders(Map<String, String> defaultHeaders) {
         this.defaultHeaders = defaultHeaders;
     }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    public void setRetry(Retry retry) {
+        this.retry = retry;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public ConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public void setConcurrencyLimit(ConcurrencyLimit concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public Hedge getHedge() {
+        return hedge;
+    }
+
+    public void setHedge(Hedge hedge) {
+        this.hedge = hedge;
+    }
+
+    public Logging getLogging() {
+        return logging;
+    }
+
+    public void setLogging(Logging logging) {
+        this.logging = logging;
+    }
+
+    public Auth getAuth() {
+        return auth;
+    }
+
+    public void setAuth(Auth auth) {
+        this.auth = auth;
+    }
+
+    public LoadBalance getLoadBalance() {
+        return loadBalance;
+    }
+
+    public void setLoadBalance(LoadBalance loadBalance) {
+        this.loadBalance = loadBalance;
+    }
+
+    public static class Transport {
+        private TransportType type = TransportType.POOLED;
+        private int maxTotal = 200;
+        private int maxPerRoute = 50;
+        private long timeToLive = 300000;
+        private long keepAlive = 30000;
+        private long idleEviction = 60000;
+        private long connectionRequestTimeout = 3000;
+        // HTTP2 only: streams open at once on the connection to one host, more calls queue
+        private int maxConcurrentStreams = 100;
+        // HTTP2 only: calls queued per host once all streams are open, more are rejected
+        private int maxQueuedStreams = 1000;
+        // Threads running, for exchangeAsync, the middlewares that have no async implementation
+        private int asyncBridgeThreads = 32;
+        // Calls waiting for those threads once all are busy, more are rejected
+        private int asyncBridgeQueue = 1000;
+        private Compression compression = new Compression();
+
+        public TransportType getType() {
+            return type;
+        }
+
+        public void setType(TransportType type) {
+            this.type = type;
+        }
+
+        public int getMaxTotal() {
+            return maxTotal;
+        }
+
+        public void setMaxTotal(int maxTotal) {
+            this.maxTotal = maxTotal;
+        }
+
+        public int getMaxPerRoute() {
+            return maxPerRoute;
+        }
+
+        public void setMaxPerRoute(int maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+        }
+
+        public long getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(long timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        public long getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(long keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public long getIdleEviction() {
+            return idleEviction;
+        }
+
+        public void setIdleEviction(long idleEviction) {
+            this.idleEviction = idleEviction;
+        }
+
+        public long getConnectionRequestTimeout() {
+            return connectionRequestTimeout;
+        }
+
+        public void setConnectionRequestTimeout(long connectionRequestTimeout) {
+            this.connectionRequestTimeout = connectionRequestTimeout;
+        }
+
+        public int getMaxConcurrentStreams() {
+            return maxConcurrentStreams;
+        }
+
+        public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+            this.maxConcurrentStreams = maxConcurrentStreams;
+        }
+
+        public int getMaxQueuedStreams() {
+            return maxQueuedStreams;
+        }
+
+        public void setMaxQueuedStreams(int maxQueuedStreams) {
+            this.maxQueuedStreams = maxQueuedStreams;
+        }
+
+        public int getAsyncBridgeThreads() {
+            return asyncBridgeThreads;
+        }
+
+        public void setAsyncBridgeThreads(int asyncBridgeThreads) {
+            this.asyncBridgeThreads = asyncBridgeThreads;
+        }
+
+        public int getAsyncBridgeQueue() {
+            return asyncBridgeQueue;
+        }
+
+        public void setAsyncBridgeQueue(int asyncBridgeQueue) {
+            this.asyncBridgeQueue = asyncBridgeQueue;
+        }
+
+        public Compression getCompression() {
+            return compression;
+        }
+
+        public void setCompression(Compression compression) {
+            this.compression = compression;
+        }
+    }
+
+    public static class Compression {
+        // Send Accept-Encoding and decode gzip/deflate responses
+        private boolean enabled = false;
+        private boolean compressRequests = false;
+        // Request bodies smaller than this (bytes) are sent as they are
+        private int requestThreshold = 2048;
+        // gzip or deflate
+        private String requestEncoding = "gzip";
+        private int level = 6;
+        // Idle deflaters/inflaters and buffers kept for reuse
+        private int poolSize = 64;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isCompressRequests() {
+            return compressRequests;
+        }
+
+        public void setCompressRequests(boolean compressRequests) {
+            this.compressRequests = compressRequests;
+        }
+
+        public int getRequestThreshold() {
+            return requestThreshold;
+        }
+
+        public void setRequestThreshold(int requestThreshold) {
+            this.requestThreshold = requestThreshold;
+        }
+
+        public String getRequestEncoding() {
+            return requestEncoding;
+        }
+
+        public void setRequestEncoding(String requestEncoding) {
+            this.requestEncoding = requestEncoding;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+    }
+
+    public static class Retry {
+        private int maxAttempts = 3;
+        private long baseDelay = 100;
+        private long maxDelay = 5000;
+        private long maxRetryAfter = 30000;
+        private double budgetRatio = 0.1;
+        private int budgetMaxTokens = 10;
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getBaseDelay() {
+            return baseDelay;
+        }
+
+        public void setBaseDelay(long baseDelay) {
+            this.baseDelay = baseDelay;
+        }
+
+        public long getMaxDelay() {
+            return maxDelay;
+        }
+
+        public void setMaxDelay(long maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public long getMaxRetryAfter() {
+            return maxRetryAfter;
+        }
+
+        public void setMaxRetryAfter(long maxRetryAfter) {
+            this.maxRetryAfter = maxRetryAfter;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public void setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+        }
+
+        public int getBudgetMaxTokens() {
+            return budgetMaxTokens;
+        }
+
+        public void setBudgetMaxTokens(int budgetMaxTokens) {
+            this.budgetMaxTokens = budgetMaxTokens;
+        }
+    }
+
+    public static class CircuitBreaker {
+        private CircuitBreakerMiddleware.Scope scope = CircuitBreakerMiddleware.Scope.HOST;
+        private int windowSize = 100;
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 50;
+        private double slowCallRateThreshold = 100;
+        private long slowCallDuration = 2000;
+        private long openDuration = 30000;
+        private int halfOpenCalls = 5;
+
+        public CircuitBreakerMiddleware.Scope getScope() {
+            return scope;
+        }
+
+        public void setScope(CircuitBreakerMiddleware.Scope scope) {
+            this.scope = scope;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public double getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public double getSlowCallRateThreshold() {
+            return slowCallRateThreshold;
+        }
+
+        public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+        }
+
+        public long getSlowCallDuration() {
+            return slowCallDuration;
+        }
+
+        public void setSlowCallDuration(long slowCallDuration) {
+            this.slowCallDuration = slowCallDuration;
+        }
+
+        public long getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(long openDuration) {
+            this.openDuration = openDuration;
+        }
+
+        public int getHalfOpenCalls() {
+            return halfOpenCalls;
+        }
+
+        public void setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+        }
+    }
+
+    public static class ConcurrencyLimit {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        private int maxQueue = 0;
+        private long maxWait = 0;
+        private double smoothing = 0.2;
+        private double tolerance = 1.5;
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public int getMaxQueue() {
+            return maxQueue;
+        }
+
+        public void setMaxQueue(int maxQueue) {
+            this.maxQueue = maxQueue;
+        }
+
+        public long getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(long maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public double getSmoothing() {
+            return smoothing;
+        }
+
+        public void setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+        }
+
+        public double getTolerance() {
+            return tolerance;
+        }
+
+        public void setTolerance(double tolerance) {
+            this.tolerance = tolerance;
+        }
+    }
+
+    public static class RateLimit {
+        private double rate = 100;
+        private int burst = 10;
+        private RateLimiter.Mode mode = RateLimiter.Mode.BLOCK;
+        private long maxWait = 1000;
+        private boolean adaptive = true;
+        private Map<String, Route> routes = new LinkedHashMap<>();
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public RateLimiter.Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(RateLimiter.Mode mode) {
+            this.mode = mode;
+        }
+
+        public long getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(long maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(boolean adaptive) {
+            this.adaptive = adaptive;
+        }
+
+        public Map<String, Route> getRoutes() {
+            return routes;
+        }
+
+        public void setRoutes(Map<String, Route> routes) {
+            this.routes = routes;
+        }
+
+        /**
+         * Limit for one route, keyed by "METHOD /path/{template}" or just the path template.
+         */
+        public static class Route {
+            private double rate;
+            private int burst = 1;
+
+            public double getRate() {
+                return rate;
+            }
+
+            public void setRate(double rate) {
+                this.rate = rate;
+            }
+
+            public int getBurst() {
+                return burst;
+            }
+
+            public void setBurst(int burst) {
+                this.burst = burst;
+            }
+        }
+    }
+
+    public static class Hedge {
+        // Fixed hedge delay in ms; 0 hedges at the given percentile of recent latency instead
+        private long delay = 0;
+        private double percentile = 95;
+        private long minDelay = 5;
+        private double budgetRatio = 0.1;
+        private int budgetMaxTokens = 10;
+
+        public long getDelay() {
+            return delay;
+        }
+
+        public void setDelay(long delay) {
+            this.delay = delay;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        public long getMinDelay() {
+            return minDelay;
+        }
+
+        public void setMinDelay(long minDelay) {
+            this.minDelay = minDelay;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public void setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+        }
+
+        public int getBudgetMaxTokens() {
+            return budgetMaxTokens;
+        }
+
+        public void setBudgetMaxTokens(int budgetMaxTokens) {
+            this.budgetMaxTokens = budgetMaxTokens;
+        }
+    }
+
+    public static class Logging {
+        private double successSampleRate = 1.0;
+        private double errorSampleRate = 1.0;
+        private int maxBodyLength = 1024;
+        private List<String> redactHeaders = new ArrayList<>(List.of("Authorization", "Proxy-Authorization", "Cookie", "Set-Cookie", "X-Api-Key"));
+
+        public double getSuccessSampleRate() {
+            return successSampleRate;
+        }
+
+        public void setSuccessSampleRate(double successSampleRate) {
+            this.successSampleRate = successSampleRate;
+        }
+
+        public double getErrorSampleRate() {
+            return errorSampleRate;
+        }
+
+        public void setErrorSampleRate(double errorSampleRate) {
+            this.errorSampleRate = errorSampleRate;
+        }
+
+        public int getMaxBodyLength() {
+            return maxBodyLength;
+        }
+
+        public void setMaxBodyLength(int maxBodyLength) {
+            this.maxBodyLength = maxBodyLength;
+        }
+
+        public List<String> getRedactHeaders() {
+            return redactHeaders;
+        }
+
+        public void setRedactHeaders(List<String> redactHeaders) {
+            this.redactHeaders = redactHeaders;
+        }
+    }
+
+    /**
+     * OAuth2 client-credentials token endpoint used by {@link AuthMiddleware}.
+     */
+    public static class Auth {
+        private String tokenUri;
+        private String clientId;
+        private String clientSecret;
+        private String scope;
+        // Millis before expiry at which the token is refreshed in the background
+        private long refreshAhead = 60000;
+        // Lifetime assumed when the endpoint sends no expires_in; 0 = until rejected
+        private long defaultLifetime = 0;
+        // Wait after a failed background refresh before trying again
+        private long retryDelay = 5000;
+        // Timeouts (ms) of the token endpoint call; callers without a valid token wait on it
+        private int connectTimeout = 5000;
+        private int readTimeout = 10000;
+
+        public String getTokenUri() {
+            return tokenUri;
+        }
+
+        public void setTokenUri(String tokenUri) {
+            this.tokenUri = tokenUri;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public void setClientId(String clientId) {
+            this.clientId = clientId;
+        }
+
+        public String getClientSecret() {
+            return clientSecret;
+        }
+
+        public void setClientSecret(String clientSecret) {
+            this.clientSecret = clientSecret;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public void setScope(String scope) {
+            this.scope = scope;
+        }
+
+        public long getRefreshAhead() {
+            return refreshAhead;
+        }
+
+        public void setRefreshAhead(long refreshAhead) {
+            this.refreshAhead = refreshAhead;
+        }
+
+        public long getDefaultLifetime() {
+            return defaultLifetime;
+        }
+
+        public void setDefaultLifetime(long defaultLifetime) {
+            this.defaultLifetime = defaultLifetime;
+        }
+
+        public long getRetryDelay() {
+            return retryDelay;
+        }
+
+        public void setRetryDelay(long retryDelay) {
+            this.retryDelay = retryDelay;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+    }
+
+    public static class LoadBalance {
+        // Time constant (ms) of the latency moving average; older samples fade out over about this long
+        private long decayTime = 10000;
+        // Consecutive failed calls that eject an endpoint
+        private int consecutiveFailures = 5;
+        // First ejection lasts this long (ms), each repeated one longer, up to maxEjectionTime
+        private long baseEjectionTime = 30000;
+        private long maxEjectionTime = 300000;
+        private int maxEjectionPercent = 50;
+        // A returning endpoint's share of traffic ramps up over this long (ms)
+        private long rampUpTime = 30000;
+        // A failed call costs its endpoint at least this much latency (ms), fading out over decayTime
+        private long failurePenalty = 1000;
+
+        public long getDecayTime() {
+            return decayTime;
+        }
+
+        public void setDecayTime(long decayTime) {
+            this.decayTime = decayTime;
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        public void setConsecutiveFailures(int consecutiveFailures) {
+            this.consecutiveFailures = consecutiveFailures;
+        }
+
+        public long getBaseEjectionTime() {
+            return baseEjectionTime;
+        }
+
+        public void setBaseEjectionTime(long baseEjectionTime) {
+            this.baseEjectionTime = baseEjectionTime;
+        }
+
+        public long getMaxEjectionTime() {
+            return maxEjectionTime;
+        }
+
+        public void setMaxEjectionTime(long maxEjectionTime) {
+            this.maxEjectionTime = maxEjectionTime;
+        }
+
+        public int getMaxEjectionPercent() {
+            return maxEjectionPercent;
+        }
+
+        public void setMaxEjectionPercent(int maxEjectionPercent) {
+            this.maxEjectionPercent = maxEjectionPercent;
+        }
+
+        public long getRampUpTime() {
+            return rampUpTime;
+        }
+
+        public void setRampUpTime(long rampUpTime) {
+            this.rampUpTime = rampUpTime;
+        }
+
+        public long getFailurePenalty() {
+            return failurePenalty;
+        }
+
+        public void setFailurePenalty(long failurePenalty) {
+            this.failurePenalty = failurePenalty;
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket that caps retries at a fraction of traffic. Every original request deposits
+ * {@code ratio} of a token, every retry withdraws one, and the balance never exceeds
+ * {@code maxTokens}. When the downstream is failing everywhere the bucket drains and retries
+ * stop, so they cannot multiply the load during an outage.
+ */
+public class RetryBudget {
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong balance;
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * @param ratio     retries allowed per original request, e.g. 0.1 for 10%
+     * @param maxTokens retries that may be spent in a burst; also the initial balance
+     */
+    public RetryBudget(double ratio, int maxTokens) {
+        if (ratio < 0 || maxTokens < 0) {
+            throw new IllegalArgumentException("Retry budget ratio and tokens must not be negative");
+        }
+        this.deposit = Math.round(ratio * SCALE);
+        this.capacity = maxTokens * SCALE;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    public static RetryBudget unlimited() {
+        return new RetryBudget(1, Integer.MAX_VALUE / (int) SCALE);
+    }
+
+    public void onRequest() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+    }
+
+    public boolean tryAcquire() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                exhausted.increment();
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    public double getAvailable() {
+        return (double) balance.get() / SCALE;
+    }
+
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+}
@@ -0,0 +1,44 @@
+package com.xhkzeroone.resttemplate.client;
+
+/**
+ * Retries failed calls of the Handler chain. Only idempotent requests (or ones carrying an
+ * Idempotency-Key header) with a replayable body are retried, within the per-client {@link RetryBudget}.
+ */
+public class RetryMiddleware implements Middleware {
+    private final Retryer retryer;
+
+    public RetryMiddleware() {
+        this(new RestConfig());
+    }
+
+    public RetryMiddleware(RestConfig config) {
+        this(RetryPolicy.from(config.getRetry()),
+                new RetryBudget(config.getRetry().getBudgetRatio(), config.getRetry().getBudgetMaxTokens()));
+    }
+
+    public RetryMiddleware(RetryPolicy policy, RetryBudget budget) {
+        this.retryer = new Retryer(policy, budget);
+    }
+
+    @Override
+    public Handler apply(Handler next) {
+        return ctx -> retryer.call(isIdempotent(ctx), () -> {
+            next.handle(ctx);
+            return null;
+        });
+    }
+
+    @Override
+    public AsyncHandler applyAsync(AsyncHandler next) {
+        return ctx -> retryer.callAsync(isIdempotent(ctx), () -> next.handle(ctx));
+    }
+
+    public Retryer getRetryer() {
+        return retryer;
+    }
+
+    private boolean isIdempotent(ReqContext ctx) {
+        return retryer.getPolicy().isIdempotent(ctx.getMethod(), ctx.getHeader(RetryPolicy.IDEMPOTENCY_KEY) != null)
+                && BodySource.isReplayable(ctx.getRequest());
+    }
+}
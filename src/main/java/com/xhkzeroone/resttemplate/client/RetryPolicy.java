@@ -0,0 +1,198 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * What to retry and how long to wait: exponential backoff with full jitter, bounded by
+ * {@code maxDelay}, overridden by a server's {@code Retry-After} when present.
+ */
+public class RetryPolicy {
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(
+            HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.TRACE, HttpMethod.PUT, HttpMethod.DELETE);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long maxRetryAfterMillis;
+    private final Set<Integer> retryableStatuses;
+    private final Predicate<Throwable> retryOn;
+
+    private RetryPolicy(Builder builder) {
+        this(builder.maxAttempts, builder.baseDelay.toMillis(), builder.maxDelay.toMillis(),
+                builder.maxRetryAfter.toMillis(), Set.copyOf(builder.retryableStatuses), builder.retryOn);
+    }
+
+    private RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long maxRetryAfterMillis,
+                        Set<Integer> retryableStatuses, Predicate<Throwable> retryOn) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxRetryAfterMillis = maxRetryAfterMillis;
+        this.retryableStatuses = retryableStatuses;
+        this.retryOn = retryOn;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static RetryPolicy defaults() {
+        return builder().build();
+    }
+
+    public static RetryPolicy from(RestConfig.Retry config) {
+        return builder()
+                .maxAttempts(config.getMaxAttempts())
+                .baseDelay(Duration.ofMillis(config.getBaseDelay()))
+                .maxDelay(Duration.ofMillis(config.getMaxDelay()))
+                .maxRetryAfter(Duration.ofMillis(config.getMaxRetryAfter()))
+                .build();
+    }
+
+    public static class Builder {
+        private int maxAttempts = 3;
+        private Duration baseDelay = Duration.ofMillis(100);
+        private Duration maxDelay = Duration.ofSeconds(5);
+        private Duration maxRetryAfter = Duration.ofSeconds(30);
+        private Set<Integer> retryableStatuses = Set.of(429, 500, 502, 503, 504);
+        private Predicate<Throwable> retryOn = e -> false;
+
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder baseDelay(Duration baseDelay) {
+            this.baseDelay = baseDelay;
+            return this;
+        }
+
+        public Builder maxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * A Retry-After longer than this ends the retries instead of waiting.
+         */
+        public Builder maxRetryAfter(Duration maxRetryAfter) {
+            this.maxRetryAfter = maxRetryAfter;
+            return this;
+        }
+
+        public Builder retryableStatuses(Set<Integer> retryableStatuses) {
+            this.retryableStatuses = retryableStatuses;
+            return this;
+        }
+
+        /**
+         * Additional failures to treat as retryable, on top of retryable statuses and I/O errors.
+         */
+        public Builder retryOn(Predicate<Throwable> retryOn) {
+            this.retryOn = this.retryOn.or(retryOn);
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * A copy of this policy that also retries failures matching {@code predicate}.
+     */
+    public RetryPolicy retryingOn(Predicate<Throwable> predicate) {
+        return new RetryPolicy(maxAttempts, baseDelayMillis, maxDelayMillis, maxRetryAfterMillis,
+                retryableStatuses, retryOn.or(predicate));
+    }
+
+    /**
+     * Requests that may be sent twice: idempotent methods, or any method carrying an Idempotency-Key.
+     */
+    public boolean isIdempotent(HttpMethod method, boolean hasIdempotencyKey) {
+        return hasIdempotencyKey || IDEMPOTENT_METHODS.contains(method);
+    }
+
+    public boolean isRetryable(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof RestClientResponseException response) {
+            return retryableStatuses.contains(response.getStatusCode().value());
+        }
+        if (cause instanceof ResourceAccessException || cause instanceof IOException) {
+            return true;
+        }
+        return retryOn.test(cause);
+    }
+
+    /**
+     * Delay before the given retry (1-based), or -1 if the server asked to wait longer than allowed.
+     */
+    public long delayMillis(int retry, Throwable error) {
+        long retryAfter = retryAfterMillis(unwrap(error));
+        if (retryAfter >= 0) {
+            return retryAfter <= maxRetryAfterMillis ? retryAfter : -1;
+        }
+        long ceiling = baseDelayMillis << Math.min(retry - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelayMillis) {
+            ceiling = maxDelayMillis;
+        }
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static long retryAfterMillis(Throwable error) {
+        if (!(error instanceof RestClientResponseException response) || response.getResponseHeaders() == null) {
+            return -1;
+        }
+        return retryAfterMillis(response.getResponseHeaders());
+    }
+
+    /**
+     * Retry-After in milliseconds from now, accepting delta-seconds or an HTTP date; -1 if absent.
+     */
+    static long retryAfterMillis(HttpHeaders headers) {
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        try {
+            return Math.max(Long.parseLong(value.trim()) * 1000, 0);
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(at.toInstant().toEpochMilli() - System.currentTimeMillis(), 0);
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    static Throwable unwrap(Throwable error) {
+        Throwable current = error;
+        while ((current instanceof CompletionException || current instanceof ExecutionException) && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+}
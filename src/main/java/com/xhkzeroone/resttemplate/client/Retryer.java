@@ -0,0 +1,97 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs a call under a {@link RetryPolicy} and a shared {@link RetryBudget}. The blocking variant
+ * sleeps between attempts; the async variant schedules the next attempt without holding a thread.
+ */
+public class Retryer {
+    private final RetryPolicy policy;
+    private final RetryBudget budget;
+    private final LongAdder retries = new LongAdder();
+
+    public Retryer(RetryPolicy policy, RetryBudget budget) {
+        this.policy = policy;
+        this.budget = budget;
+    }
+
+    public RetryPolicy getPolicy() {
+        return policy;
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    public <T> T call(boolean idempotent, Callable<T> call) throws Exception {
+        budget.onRequest();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (Exception e) {
+                long delay = nextDelay(idempotent, attempt, e);
+                if (delay < 0) {
+                    throw e;
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    e.addSuppressed(interrupted);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public <T> CompletableFuture<T> callAsync(boolean idempotent, Supplier<CompletableFuture<T>> call) {
+        budget.onRequest();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(idempotent, call, 1, result);
+        return result;
+    }
+
+    private <T> void attempt(boolean idempotent, Supplier<CompletableFuture<T>> call, int attempt, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            long delay = nextDelay(idempotent, attempt, error);
+            if (delay < 0) {
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                    .execute(() -> attempt(idempotent, call, attempt + 1, result));
+        });
+    }
+
+    private long nextDelay(boolean idempotent, int attempt, Throwable error) {
+        if (!idempotent || attempt >= policy.getMaxAttempts() || !policy.isRetryable(error)) {
+            return -1;
+        }
+        long delay = policy.delayMillis(attempt, error);
+        if (delay < 0 || !budget.tryAcquire()) {
+            return -1;
+        }
+        retries.increment();
+        return delay;
+    }
+}
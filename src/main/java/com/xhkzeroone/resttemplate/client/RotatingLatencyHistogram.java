@@ -0,0 +1,71 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Latency percentiles and max over a sliding window rather than since start-up. Each value is
+ * recorded once, into the ring's current {@link LatencyHistogram}; every {@code window / ring size}
+ * the next one is reset and becomes current. Reads merge the whole ring, which holds between
+ * {@code window * (size - 1) / size} and {@code window} worth of calls.
+ */
+final class RotatingLatencyHistogram {
+    private final LatencyHistogram[] ring;
+    private final long rotateEveryNanos;
+    private final LongSupplier clock;
+    private final AtomicLong rotatedAt;
+    private volatile int current;
+
+    RotatingLatencyHistogram(long windowNanos, int size, LongSupplier clock) {
+        this(windowNanos, size, clock, LatencyHistogram::new);
+    }
+
+    RotatingLatencyHistogram(long windowNanos, int size, LongSupplier clock, Supplier<LatencyHistogram> histograms) {
+        this.ring = new LatencyHistogram[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = histograms.get();
+        }
+        this.rotateEveryNanos = Math.max(windowNanos / size, 1);
+        this.clock = clock;
+        this.rotatedAt = new AtomicLong(clock.getAsLong());
+    }
+
+    void record(long nanos) {
+        rotate();
+        ring[current].record(nanos);
+    }
+
+    long valueAtPercentile(double percentile) {
+        rotate();
+        return LatencyHistogram.valueAtPercentile(ring, percentile);
+    }
+
+    long getMaxNanos() {
+        rotate();
+        long max = 0;
+        for (LatencyHistogram histogram : ring) {
+            max = Math.max(max, histogram.getMaxNanos());
+        }
+        return max;
+    }
+
+    private void rotate() {
+        long last = rotatedAt.get();
+        long elapsed = clock.getAsLong() - last;
+        if (elapsed < rotateEveryNanos) {
+            return;
+        }
+        long steps = elapsed / rotateEveryNanos;
+        // Only the thread that moves the rotation time forward resets histograms
+        if (!rotatedAt.compareAndSet(last, last + steps * rotateEveryNanos)) {
+            return;
+        }
+        int index = current;
+        for (long i = 0; i < Math.min(steps, ring.length); i++) {
+            index = (index + 1) % ring.length;
+            ring[index].reset();
+        }
+        current = index;
+    }
+}
@@ -0,0 +1,138 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket kept as a single theoretical arrival time (GCRA): a permit is granted when that
+ * time is no further ahead of now than {@code burst - 1} emission intervals, and granting moves it
+ * one interval forward. The whole state is one {@link AtomicLong}, so acquiring is a CAS loop.
+ * <p>
+ * A caller willing to wait reserves a future slot in the same CAS and sleeps until it is due,
+ * which keeps waiting callers in arrival order without a queue.
+ */
+public class TokenBucket {
+    private final LongSupplier clock;
+    private final double configuredRate;
+    private final int burst;
+    private final AtomicLong arrival;
+    private volatile long intervalNanos;
+    // A rate adjusted for a limited time reverts to the configured one at adjustedUntil
+    private volatile boolean adjusted;
+    private volatile long adjustedUntil;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    TokenBucket(double permitsPerSecond, int burst, LongSupplier clock) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+        }
+        this.clock = clock;
+        this.configuredRate = permitsPerSecond;
+        this.burst = Math.max(burst, 1);
+        this.intervalNanos = intervalOf(permitsPerSecond);
+        this.arrival = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Takes a permit if one is available now or within {@code maxWaitNanos}.
+     *
+     * @return nanos the caller must wait before using the permit, or -1 if it was not granted
+     */
+    public long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = clock.getAsLong();
+            if (adjusted) {
+                expireAdjustment(now);
+            }
+            long interval = intervalNanos;
+            long current = arrival.get();
+            long wait = current - (burst - 1) * interval - now;
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (arrival.compareAndSet(current, Math.max(current, now) + interval)) {
+                return Math.max(wait, 0);
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit taken by {@link #reserve(long)} that will not be used.
+     */
+    public void cancel() {
+        while (true) {
+            long now = clock.getAsLong();
+            long current = arrival.get();
+            // Never further back than now: an idle bucket holds at most burst permits
+            long target = Math.max(current - intervalNanos, now);
+            if (current <= now || arrival.compareAndSet(current, target)) {
+                return;
+            }
+        }
+    }
+
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * Changes the refill rate, capped at the configured rate, until it is changed again.
+     */
+    public synchronized void adjustRate(double permitsPerSecond) {
+        intervalNanos = intervalOf(Math.min(permitsPerSecond, configuredRate));
+        adjusted = false;
+    }
+
+    /**
+     * Changes the refill rate, capped at the configured rate, for {@code nanos}; then the
+     * configured rate applies again, e.g. once the server's quota window has reset.
+     */
+    public synchronized void adjustRate(double permitsPerSecond, long nanos) {
+        intervalNanos = intervalOf(Math.min(permitsPerSecond, configuredRate));
+        adjustedUntil = clock.getAsLong() + nanos;
+        adjusted = true;
+    }
+
+    /**
+     * Grants nothing before {@code nanos} from now, then resumes at the current rate one permit at a time.
+     */
+    public void pause(long nanos) {
+        long until = clock.getAsLong() + nanos;
+        while (true) {
+            long current = arrival.get();
+            long target = until + (burst - 1) * intervalNanos;
+            if (current >= target || arrival.compareAndSet(current, target)) {
+                return;
+            }
+        }
+    }
+
+    public double getRate() {
+        if (adjusted) {
+            expireAdjustment(clock.getAsLong());
+        }
+        return 1_000_000_000.0 / intervalNanos;
+    }
+
+    public double getConfiguredRate() {
+        return configuredRate;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    private synchronized void expireAdjustment(long now) {
+        if (adjusted && now - adjustedUntil >= 0) {
+            intervalNanos = intervalOf(configuredRate);
+            adjusted = false;
+        }
+    }
+
+    private static long intervalOf(double permitsPerSecond) {
+        return Math.max((long) (1_000_000_000.0 / Math.max(permitsPerSecond, 0.001)), 1);
+    }
+}
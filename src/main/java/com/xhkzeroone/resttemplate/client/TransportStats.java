@@ -0,0 +1,46 @@
+package com.xhkzeroone.resttemplate.client;
+
+/**
+ * Point-in-time view of a transport's connection pool. Non-pooled transports report zeros.
+ */
+public class TransportStats {
+    static final TransportStats EMPTY = new TransportStats(0, 0, 0, 0);
+
+    private final int leased;
+    private final int available;
+    private final int pending;
+    private final int max;
+
+    public TransportStats(int leased, int available, int pending, int max) {
+        this.leased = leased;
+        this.available = available;
+        this.pending = pending;
+        this.max = max;
+    }
+
+    public int getLeased() {
+        return leased;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public double getSaturation() {
+        return max == 0 ? 0 : (double) leased / max;
+    }
+
+    @Override
+    public String toString() {
+        return "TransportStats{leased=" + leased + ", available=" + available
+                + ", pending=" + pending + ", max=" + max + '}';
+    }
+}
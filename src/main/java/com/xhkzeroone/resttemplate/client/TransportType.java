@@ -0,0 +1,12 @@
+package com.xhkzeroone.resttemplate.client;
+
+public enum TransportType {
+    /** HttpURLConnection, no explicit pool. */
+    SIMPLE,
+    /** Apache HttpClient 5 with a bounded, evicting connection pool. */
+    POOLED,
+    /** java.net.http.HttpClient, pool managed by the JDK. */
+    JDK,
+    /** Apache HttpClient 5 async over HTTP/2 (h2c prior knowledge, ALPN over TLS), calls multiplexed as streams. */
+    HTTP2
+}
@@ -0,0 +1,53 @@
+package com.xhkzeroone.resttemplate.client;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled templates for one base address, keyed by path template. Once the cache is full new
+ * templates are compiled per call and not retained, which keeps memory bounded when callers
+ * put already-expanded values into the path.
+ */
+public class UriTemplateCache {
+    public static final int DEFAULT_MAX_SIZE = 512;
+
+    private final String baseAddress;
+    private final int maxSize;
+    private final Map<String, CompiledUriTemplate> templates = new ConcurrentHashMap<>();
+
+    public UriTemplateCache(String baseAddress) {
+        this(baseAddress, DEFAULT_MAX_SIZE);
+    }
+
+    public UriTemplateCache(String baseAddress, int maxSize) {
+        this.baseAddress = baseAddress;
+        this.maxSize = maxSize;
+    }
+
+    public CompiledUriTemplate get(String path) {
+        String key = path != null ? path : "";
+        CompiledUriTemplate template = templates.get(key);
+        if (template != null) {
+            return template;
+        }
+        template = CompiledUriTemplate.compile(baseAddress, key);
+        if (templates.size() < maxSize) {
+            CompiledUriTemplate existing = templates.putIfAbsent(key, template);
+            return existing != null ? existing : template;
+        }
+        return template;
+    }
+
+    public URI expand(String path, Map<String, ?> pathVars, Map<String, ?> queryParams) {
+        return get(path).expand(pathVars, queryParams);
+    }
+
+    public String getBaseAddress() {
+        return baseAddress;
+    }
+
+    public int size() {
+        return templates.size();
+    }
+}
@@ -1,32 +1,55 @@
 package com.xhkzeroone.resttemplate.client;
 
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
 
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
 import java.net.URI;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
-public class WebClient {
+public class WebClient implements AutoCloseable {
     private final RestTemplate restTemplate;
-    private final List<Middleware> middlewares = new ArrayList<>();
+    // Copy-on-write: replaced on use(...), read without copying on every request
+    private volatile List<Middleware> middlewares = List.of();
     private String baseUrl;
+    private volatile UriTemplateCache uriTemplates = new UriTemplateCache(null);
     private int connectTimeout = 5000;
     private int readTimeout = 10000;
+    private RestConfig.Transport transportConfig = new RestConfig.Transport();
+    private HttpTransport transport;
+    private volatile ExecutorService batchExecutor;
+    private volatile Hedger hedger;
+    private volatile BodyCodec codec;
 
     public WebClient() {
-        this.restTemplate = new RestTemplate();
+        this(new RestTemplate());
         setTimeout(connectTimeout, readTimeout);
     }
 
     public WebClient(RestTemplate restTemplate) {
         this.restTemplate = restTemplate;
+        if (restTemplate.getMessageConverters().stream().noneMatch(BodySourceHttpMessageConverter.class::isInstance)) {
+            restTemplate.getMessageConverters().add(0, new BodySourceHttpMessageConverter());
+        }
     }
 
     public WebClient timeout(int connectTimeout, int readTimeout) {
@@ -36,17 +59,45 @@ public class WebClient {
         return this;
     }
 
+    public WebClient transport(RestConfig.Transport transportConfig) {
+        this.transportConfig = transportConfig;
+        setTimeout(connectTimeout, readTimeout);
+        return this;
+    }
+
+    public WebClient transport(TransportType type) {
+        RestConfig.Transport transportConfig = new RestConfig.Transport();
+        transportConfig.setType(type);
+        return transport(transportConfig);
+    }
+
     private void setTimeout(int connectTimeout, int readTimeout) {
-        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
-        requestFactory.setConnectTimeout(connectTimeout);
-        requestFactory.setReadTimeout(readTimeout);
-        restTemplate.setRequestFactory(requestFactory);
+        HttpTransport previous = this.transport;
+        this.transport = HttpTransport.create(transportConfig, connectTimeout, readTimeout);
+        restTemplate.setRequestFactory(transport.getRequestFactory());
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public TransportStats transportStats() {
+        return transport != null ? transport.getStats() : TransportStats.EMPTY;
+    }
+
+    @Override
+    public void close() {
+        if (transport != null) {
+            transport.close();
+        }
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+        }
     }
 
     // ================== Middleware Control ==================
     public WebClient use(Class<? extends Middleware> clazz) {
         try {
-            this.middlewares.add(clazz.getDeclaredConstructor().newInstance());
+            add(clazz.getDeclaredConstructor().newInstance());
         } catch (NoSuchMethodException | InvocationTargetException |
                  InstantiationException | IllegalAccessException e) {
             throw new RuntimeException("Cannot initialize middleware: " + clazz.getName(), e);
@@ -55,37 +106,62 @@ public class WebClient {
     }
 
     public WebClient use(Middleware middleware) {
-        this.middlewares.add(middleware);
+        add(middleware);
         return this;
     }
 
+    private synchronized void add(Middleware middleware) {
+        List<Middleware> next = new ArrayList<>(middlewares.size() + 1);
+        next.addAll(middlewares);
+        next.add(middleware);
+        this.middlewares = List.copyOf(next);
+    }
+
     public WebClient enableLogging() {
-        this.middlewares.add(new LoggingMiddleware());
+        add(new LoggingMiddleware());
+        return this;
+    }
+
+    public WebClient logging(RestConfig.Logging config) {
+        add(new LoggingMiddleware(config));
         return this;
     }
 
     public WebClient enableRetry() {
-        this.middlewares.add(new RetryMiddleware());
+        add(new RetryMiddleware());
         return this;
     }
 
     public WebClient enableRetry(int maxRetries, long delayMillis) {
-        this.middlewares.add(new RetryMiddleware(maxRetries, delayMillis));
+        add(new RetryMiddleware(maxRetries, delayMillis));
+        return this;
+    }
+
+    public WebClient rateLimit(RestConfig.RateLimit config) {
+        add(new RateLimitMiddleware(new RateLimiter(config)));
+        return this;
+    }
+
+    /**
+     * Hedger shared by requests that opt in with {@link RequestBuilder#hedge()}.
+     */
+    public WebClient hedging(RestConfig.Hedge config) {
+        this.hedger = new Hedger(config);
         return this;
     }
 
     public WebClient bearerAuth(String token) {
-        this.middlewares.add(new AuthMiddleware(token));
+        add(new AuthMiddleware(token));
         return this;
     }
 
     public WebClient bearerAuth(AuthMiddleware.TokenProvider provider) {
-        this.middlewares.add(new AuthMiddleware(provider));
+        add(new AuthMiddleware(provider));
         return this;
     }
 
     public WebClient basicAuth(String username, String password) {
-        this.middlewares.add(new Middleware() {
+        add(new Middleware() {
             @Override
             public void beforeRequest(HttpMethod method, URI uri, HttpHeaders headers, Object body) {
                 Middleware.super.beforeRequest(method, uri, headers, body);
@@ -96,7 +172,7 @@ public class WebClient {
     }
 
     public WebClient basicAuth(String value) {
-        this.middlewares.add(new Middleware() {
+        add(new Middleware() {
             @Override
             public void beforeRequest(HttpMethod method, URI uri, HttpHeaders headers, Object body) {
                 Middleware.super.beforeRequest(method, uri, headers, body);
@@ -108,6 +184,7 @@ public class WebClient {
 
     public WebClient baseUrl(String baseUrl) {
         this.baseUrl = baseUrl;
+        this.uriTemplates = new UriTemplateCache(baseUrl);
         return this;
     }
 
@@ -136,6 +213,43 @@ public class WebClient {
         return baseUrl;
     }
 
+    UriTemplateCache getUriTemplates() {
+        return uriTemplates;
+    }
+
+    Hedger getHedger() {
+        return hedger;
+    }
+
+    BodyCodec codec() {
+        BodyCodec current = codec;
+        if (current == null) {
+            current = BodyCodec.from(restTemplate.getMessageConverters());
+            codec = current;
+        }
+        return current;
+    }
+
+    // Blocking RestTemplate calls of a batch run here; concurrency is bounded by the batch itself
+    ExecutorService getBatchExecutor() {
+        ExecutorService executor = batchExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = batchExecutor;
+                if (executor == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    executor = Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable, "webclient-batch-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    batchExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
 
     public static class RequestBuilder {
         private final WebClient client;
@@ -146,6 +260,8 @@ public class WebClient {
         private final Map<String, String> params = new HashMap<>();
         private Object body;
         private Class<?> resultType = String.class;
+        private Type genericResultType;
+        private Hedger hedger;
 
         RequestBuilder(WebClient client, String target) {
             this.client = client;
@@ -174,6 +290,41 @@ public class WebClient {
 
         public <T> RequestBuilder result(Class<T> clazz) {
             this.resultType = clazz;
+            this.genericResultType = null;
+            return this;
+        }
+
+        /**
+         * Generic result type such as {@code new ParameterizedTypeReference<List<User>>() {}}; JSON
+         * responses are read with a reader resolved once per type.
+         */
+        public <T> RequestBuilder result(ParameterizedTypeReference<T> type) {
+            return result(type.getType());
+        }
+
+        public RequestBuilder result(JavaType type) {
+            return result((Type) type);
+        }
+
+        private RequestBuilder result(Type type) {
+            this.resultType = client.codec().rawClass(type);
+            this.genericResultType = type;
+            return this;
+        }
+
+        /**
+         * Hedges this request with the client's hedger, see {@link WebClient#hedging(RestConfig.Hedge)}.
+         * Only GET, HEAD and OPTIONS requests are hedged.
+         */
+        public RequestBuilder hedge() {
+            if (client.getHedger() == null) {
+                throw new IllegalStateException("Hedging is not configured on this WebClient");
+            }
+            return hedge(client.getHedger());
+        }
+
+        public RequestBuilder hedge(Hedger hedger) {
+            this.hedger = hedger;
             return this;
         }
 
@@ -182,6 +333,29 @@ public class WebClient {
             return execute(HttpMethod.GET, (Class<T>) resultType);
         }
 
+        public <T> JsonArrayStream<T> stream(Class<T> elementType) {
+            return stream(HttpMethod.GET, elementType);
+        }
+
+        /**
+         * Sends the request and returns the JSON array response as a stream of elements decoded
+         * while they are read, see {@link JsonArrayStream}. The result type is ignored and the
+         * request is never hedged. Middlewares see a ResponseEntity whose body is the stream.
+         */
+        public <T> JsonArrayStream<T> stream(HttpMethod method, Class<T> elementType) {
+            RestTemplate restTemplate = client.getRestTemplate();
+            BodyCodec codec = client.codec();
+            ObjectReader reader = codec.readerFor(elementType);
+            ResponseEntity<JsonArrayStream<T>> response = execute(method, (uri, entity) -> {
+                HttpHeaders httpHeaders = new HttpHeaders();
+                httpHeaders.addAll(entity.getHeaders());
+                Object encoded = entity.getBody() instanceof BodySource source ? source : codec.encode(entity.getBody(), httpHeaders);
+                JsonArrayStream<T> stream = JsonArrayStream.open(restTemplate.getRequestFactory(), method, uri, httpHeaders, encoded, reader);
+                return new ResponseEntity<>(stream, stream.getHeaders(), stream.getStatusCode());
+            }, null);
+            return response.getBody();
+        }
+
         @SuppressWarnings(value = "unchecked")
         public <T> ResponseEntity<T> post() {
             return execute(HttpMethod.POST, (Class<T>) resultType);
@@ -213,49 +387,106 @@ public class WebClient {
             return this;
         }
 
+        // ================== Batch ==================
+        public <V, T> List<BatchResult<ResponseEntity<T>>> batch(HttpMethod method, Collection<V> items,
+                                                                 BiConsumer<RequestBuilder, V> customizer,
+                                                                 int parallelism, Duration deadline) {
+            return batch(method, items, customizer, parallelism, deadline, null);
+        }
+
+        /**
+         * Sends one request per item, each a copy of this builder customized with its item, at most
+         * {@code parallelism} at a time. Items still running at {@code deadline} come back as TIMED_OUT.
+         */
+        @SuppressWarnings(value = "unchecked")
+        public <V, T> List<BatchResult<ResponseEntity<T>>> batch(HttpMethod method, Collection<V> items,
+                                                                 BiConsumer<RequestBuilder, V> customizer,
+                                                                 int parallelism, Duration deadline,
+                                                                 Consumer<BatchResult<ResponseEntity<T>>> onResult) {
+            return BatchExecutor.<V, ResponseEntity<T>>execute(List.copyOf(items), item -> {
+                RequestBuilder request = copy();
+                customizer.accept(request, item);
+                // Cancelled at the deadline, which aborts the exchange
+                return Cancellation.supplyAsync(() -> request.execute(method, (Class<T>) request.resultType),
+                        client.getBatchExecutor());
+            }, parallelism, deadline, onResult).join();
+        }
+
+        private RequestBuilder copy() {
+            RequestBuilder copy = new RequestBuilder(client, target);
+            copy.middlewares.addAll(middlewares);
+            copy.headers.putAll(headers);
+            copy.pathVars.putAll(pathVars);
+            copy.params.putAll(params);
+            copy.body = body;
+            copy.resultType = resultType;
+            copy.genericResultType = genericResultType;
+            copy.hedger = hedger;
+            return copy;
+        }
+
         private <T> ResponseEntity<T> execute(HttpMethod method, Class<T> clazz) {
-            String fullUrl = Optional.ofNullable(this.target)
-                    .map(target -> {
-                        if (client.getBaseUrl() != null && !target.startsWith("http")) {
-                            return client.getBaseUrl() + target;
-                        }
-                        return target;
-                    })
-                    .orElse(client.getBaseUrl());
-
-            URI uri = UriComponentsBuilder.fromUriString(fullUrl)
-                    .queryParams(toMultiValueMap(this.params))
-                    .buildAndExpand(this.pathVars)
-                    .toUri();
+            Type type = genericResultType != null ? genericResultType : clazz;
+            return execute(method, (uri, entity) -> client.codec().exchange(client.getRestTemplate(), uri, method, entity, type), hedger);
+        }
+
+        private <T> ResponseEntity<T> execute(HttpMethod method, Terminal<T> terminal, Hedger hedger) {
+            URI uri = client.getUriTemplates().expand(this.target, this.pathVars, this.params);
 
             HttpHeaders httpHeaders = new HttpHeaders();
             headers.forEach(httpHeaders::add);
 
-            List<Middleware> middlewares = new ArrayList<>(client.getMiddlewares());
-            middlewares.addAll(this.middlewares);
+            List<Middleware> middlewares = client.getMiddlewares();
+            if (!this.middlewares.isEmpty()) {
+                middlewares = new ArrayList<>(middlewares);
+                middlewares.addAll(this.middlewares);
+            }
             for (WebClient.Middleware mw : middlewares) {
                 mw.beforeRequest(method, uri, httpHeaders, this.body);
             }
 
+            List<Middleware> chain = middlewares;
+            if (hedger != null && HedgingMiddleware.isHedgeable(method) && BodySource.isReplayable(this.body)) {
+                try {
+                    // Each attempt gets its own headers: middlewares such as auth renewal rewrite them while sending
+                    return hedger.call(() -> {
+                        HttpHeaders attemptHeaders = new HttpHeaders();
+                        attemptHeaders.addAll(httpHeaders);
+                        return exchange(method, uri, attemptHeaders, terminal, chain).proceed();
+                    });
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return exchange(method, uri, httpHeaders, terminal, chain).proceed();
+        }
+
+        private <T> Middleware.Exchange<T> exchange(HttpMethod method, URI uri, HttpHeaders httpHeaders, Terminal<T> terminal,
+                                                    List<Middleware> chain) {
             HttpEntity<Object> entity = (method == HttpMethod.GET || method == HttpMethod.DELETE)
                     ? new HttpEntity<>(httpHeaders)
                     : new HttpEntity<>(this.body, httpHeaders);
 
-            ResponseEntity<T> response = client.getRestTemplate().exchange(uri, method, entity, clazz);
-
-            for (WebClient.Middleware mw : middlewares) {
-                mw.afterResponse(method, uri, httpHeaders, this.body, response);
+            Middleware.Exchange<T> exchange = () -> {
+                ResponseEntity<T> response = terminal.send(uri, entity);
+                for (WebClient.Middleware mw : chain) {
+                    mw.afterResponse(method, uri, httpHeaders, this.body, response);
+                }
+                return response;
+            };
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                Middleware mw = chain.get(i);
+                Middleware.Exchange<T> inner = exchange;
+                exchange = () -> mw.aroundExchange(method, uri, httpHeaders, this.body, inner);
             }
-
-            return response;
+            return exchange;
         }
 
-        private static org.springframework.util.MultiValueMap<String, String> toMultiValueMap(Map<String, String> map) {
-            org.springframework.util.LinkedMultiValueMap<String, String> mvMap = new org.springframework.util.LinkedMultiValueMap<>();
-            if (map != null) {
-                map.forEach(mvMap::add);
-            }
-            return mvMap;
+        @FunctionalInterface
+        private interface Terminal<T> {
+            ResponseEntity<T> send(URI uri, HttpEntity<Object> entity);
         }
     }
 
@@ -267,40 +498,97 @@ public class WebClient {
 
         default void afterResponse(HttpMethod method, URI uri, HttpHeaders headers, Object body, ResponseEntity<?> response) {
         }
+
+        /**
+         * Wraps the call and its afterResponse hooks; may proceed several times or not at all.
+         */
+        default <T> ResponseEntity<T> aroundExchange(HttpMethod method, URI uri, HttpHeaders headers, Object body, Exchange<T> exchange) {
+            return exchange.proceed();
+        }
+
+        @FunctionalInterface
+        interface Exchange<T> {
+            ResponseEntity<T> proceed();
+        }
     }
 
     // ================== Logging Middleware ==================
     public static class LoggingMiddleware implements Middleware {
-        @Override
-        public void beforeRequest(HttpMethod method, URI uri, HttpHeaders headers, Object body) {
-            System.out.println("---- Request ----");
-            System.out.println("Method: " + method);
-            System.out.println("URL: " + uri);
-            System.out.println("Headers: " + headers);
-            System.out.println("Body: " + (body != null ? body : "(no body)"));
+        private static final Logger logger = Logger.getLogger(WebClient.class.getName());
+
+        private final LogFormat format;
+        private final AsyncLogger asyncLogger;
+
+        public LoggingMiddleware() {
+            this(new RestConfig.Logging());
+        }
+
+        public LoggingMiddleware(RestConfig.Logging config) {
+            this(config, AsyncLogger.shared());
+        }
+
+        public LoggingMiddleware(RestConfig.Logging config, AsyncLogger asyncLogger) {
+            this.format = new LogFormat(config);
+            this.asyncLogger = asyncLogger;
         }
 
         @Override
-        public void afterResponse(HttpMethod method, URI uri, HttpHeaders headers, Object body, ResponseEntity<?> response) {
-            System.out.println("---- Response ----");
-            System.out.println("Status: " + response.getStatusCode());
-            System.out.println("Headers: " + response.getHeaders());
-            System.out.println("Body: " + (response.getBody() != null ? response.getBody() : "(no body)"));
+        public <T> ResponseEntity<T> aroundExchange(HttpMethod method, URI uri, HttpHeaders headers, Object body, Exchange<T> exchange) {
+            long start = System.nanoTime();
+            ResponseEntity<T> response;
+            try {
+                response = exchange.proceed();
+            } catch (RuntimeException e) {
+                if (format.sample(true)) {
+                    long elapsed = System.nanoTime() - start;
+                    HttpHeaders sent = copy(headers);
+                    asyncLogger.log(logger, Level.WARNING,
+                            () -> "❌ " + request(method, uri, sent, body, elapsed) + " failed: " + e);
+                }
+                throw e;
+            }
+            boolean ok = response.getStatusCode().is2xxSuccessful();
+            if (format.sample(!ok)) {
+                long elapsed = System.nanoTime() - start;
+                HttpHeaders sent = copy(headers);
+                asyncLogger.log(logger, ok ? Level.INFO : Level.WARNING, () -> (ok ? "✅ " : "⚠️ ")
+                        + request(method, uri, sent, body, elapsed)
+                        + " -> " + response.getStatusCode() + ", Response: " + format.body(response.getBody()));
+            }
+            return response;
+        }
+
+        // The writer formats later, after other middlewares may have changed the headers
+        private static HttpHeaders copy(HttpHeaders headers) {
+            HttpHeaders copy = new HttpHeaders();
+            copy.addAll(headers);
+            return copy;
+        }
+
+        private String request(HttpMethod method, URI uri, HttpHeaders headers, Object body, long elapsedNanos) {
+            return String.format("%s %s (%.1f ms) - Headers: %s, Body: %s",
+                    method, uri, elapsedNanos / 1e6, format.headers(headers), format.body(body));
         }
     }
 
     // ================== Retry Middleware ==================
     public static class RetryMiddleware implements Middleware {
-        private final int maxRetries;
-        private final long delayMillis;
+        private final Retryer retryer;
 
         public RetryMiddleware() {
             this(3, 1000);
         }
 
         public RetryMiddleware(int maxRetries, long delayMillis) {
-            this.maxRetries = maxRetries;
-            this.delayMillis = delayMillis;
+            this(RetryPolicy.builder()
+                    .maxAttempts(maxRetries + 1)
+                    .baseDelay(Duration.ofMillis(delayMillis))
+                    .maxDelay(Duration.ofMillis(Math.min(delayMillis << Math.min(maxRetries, 20), 30000)))
+                    .build(), new RetryBudget(0.1, 10));
+        }
+
+        public RetryMiddleware(RetryPolicy policy, RetryBudget budget) {
+            this.retryer = new Retryer(policy.retryingOn(RetryableException.class::isInstance), budget);
         }
 
         @Override
@@ -310,33 +598,28 @@ public class WebClient {
             }
         }
 
+        @Override
+        public <T> ResponseEntity<T> aroundExchange(HttpMethod method, URI uri, HttpHeaders headers, Object body, Exchange<T> exchange) {
+            boolean idempotent = retryer.getPolicy().isIdempotent(method, headers.containsKey(RetryPolicy.IDEMPOTENCY_KEY))
+                    && BodySource.isReplayable(body);
+            return call(idempotent, exchange::proceed);
+        }
+
         public <T> ResponseEntity<T> executeWithRetry(RetryableOperation<T> operation) {
-            int attempt = 0;
-            while (true) {
-                try {
-                    return operation.run();
-                } catch (RetryableException ex) {
-                    attempt++;
-                    if (attempt > maxRetries) {
-                        throw new RuntimeException("Max retries reached", ex);
-                    }
-                    System.out.println("Retry attempt " + attempt + " after error: " + ex.getMessage());
-                    sleep(delayMillis);
-                } catch (Exception ex) {
-                    attempt++;
-                    if (attempt > maxRetries) {
-                        throw new RuntimeException("Max retries reached", ex);
-                    }
-                    System.out.println("Retry attempt " + attempt + " after exception: " + ex.getMessage());
-                    sleep(delayMillis);
-                }
-            }
+            return call(true, operation::run);
+        }
+
+        public Retryer getRetryer() {
+            return retryer;
         }
 
-        private void sleep(long millis) {
+        private <T> ResponseEntity<T> call(boolean idempotent, RetryableOperation<T> operation) {
             try {
-                Thread.sleep(millis);
-            } catch (InterruptedException ignored) {
+                return retryer.call(idempotent, operation::run);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
             }
         }
 
@@ -352,7 +635,45 @@ public class WebClient {
         }
     }
 
+    // ================== Rate Limit Middleware ==================
+    public static class RateLimitMiddleware implements Middleware {
+        private final RateLimiter limiter;
+
+        public RateLimitMiddleware(RateLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        @Override
+        public <T> ResponseEntity<T> aroundExchange(HttpMethod method, URI uri, HttpHeaders headers, Object body, Exchange<T> exchange) {
+            TokenBucket route = limiter.route(method, uri);
+            try {
+                limiter.acquire(route);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RequestRejectedException("Interrupted while waiting for a rate limit permit");
+            }
+            ResponseEntity<T> response;
+            try {
+                response = exchange.proceed();
+            } catch (RestClientResponseException e) {
+                limiter.onResponse(route, e.getStatusCode().value(), e.getResponseHeaders());
+                throw e;
+            }
+            limiter.onResponse(route, response.getStatusCode().value(), response.getHeaders());
+            return response;
+        }
+
+        public RateLimiter getLimiter() {
+            return limiter;
+        }
+    }
+
     // ================== Auth Middleware ==================
+    /**
+     * Sets a bearer token on every request. When the server answers 401 the token is handed back to
+     * the provider through {@link TokenProvider#invalidate(String)} and, if the provider may have a
+     * new one, the request is sent once more with it.
+     */
     public static class AuthMiddleware implements Middleware {
         private final TokenProvider tokenProvider;
 
@@ -366,15 +687,69 @@ public class WebClient {
 
         @Override
         public void beforeRequest(HttpMethod method, URI uri, HttpHeaders headers, Object body) {
+            authorize(headers);
+        }
+
+        @Override
+        public <T> ResponseEntity<T> aroundExchange(HttpMethod method, URI uri, HttpHeaders headers, Object body, Exchange<T> exchange) {
+            ResponseEntity<T> response;
+            try {
+                response = exchange.proceed();
+            } catch (HttpClientErrorException e) {
+                if (e.getStatusCode().value() != 401 || !renew(headers, body)) {
+                    throw e;
+                }
+                return exchange.proceed();
+            }
+            if (response.getStatusCode().value() == 401 && renew(headers, body)) {
+                return exchange.proceed();
+            }
+            return response;
+        }
+
+        public TokenProvider getTokenProvider() {
+            return tokenProvider;
+        }
+
+        private void authorize(HttpHeaders headers) {
             String token = tokenProvider.getToken();
             if (token != null && !token.isEmpty()) {
-                headers.set("Authorization", "Bearer " + token);
+                headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + token);
             }
         }
 
+        // The entity shares these headers, so a retry sends the new token
+        private boolean renew(HttpHeaders headers, Object body) {
+            String sent = bearerToken(headers.getFirst(HttpHeaders.AUTHORIZATION));
+            if (sent == null || !BodySource.isReplayable(body) || !tokenProvider.invalidate(sent)) {
+                return false;
+            }
+            authorize(headers);
+            return true;
+        }
+
+        static String bearerToken(String authorization) {
+            return authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7) : null;
+        }
+
         @FunctionalInterface
         public interface TokenProvider {
             String getToken();
+
+            /**
+             * Token without blocking the caller; the default calls {@link #getToken()}.
+             */
+            default CompletableFuture<String> getTokenAsync() {
+                return CompletableFuture.completedFuture(getToken());
+            }
+
+            /**
+             * Called with a token the server rejected. Returns whether a retry may get a different
+             * one; a fixed token cannot, so the default returns false.
+             */
+            default boolean invalidate(String token) {
+                return false;
+            }
         }
     }
 }
@@ -30,4 +30,9 @@ public class RestClientConfig {
         client.use(LoggingMiddleware.class);
         return client;
     }
+
+    @Bean
+    public UserApi userApi(RestClient userServiceClient) {
+        return userServiceClient.createClient(UserApi.class);
+    }
 }
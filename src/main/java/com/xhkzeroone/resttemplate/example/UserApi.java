@@ -0,0 +1,20 @@
+package com.xhkzeroone.resttemplate.example;
+
+
+import com.xhkzeroone.resttemplate.client.Body;
+import com.xhkzeroone.resttemplate.client.HttpCall;
+import com.xhkzeroone.resttemplate.client.HeaderParam;
+import com.xhkzeroone.resttemplate.client.PathVar;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@HttpCall(path = "/users", headers = "Accept: application/json")
+public interface UserApi {
+
+    @HttpCall(method = "POST")
+    Map<String, Object> getUser(@Body Object req, @HeaderParam("api-key") String apiKey);
+
+    @HttpCall(method = "GET", path = "/{id}")
+    CompletableFuture<Map<String, Object>> findById(@PathVar("id") Object id);
+}
@@ -1,6 +1,7 @@
 package com.xhkzeroone.resttemplate.example;
 
 
+import com.xhkzeroone.resttemplate.client.BatchResult;
 import com.xhkzeroone.resttemplate.client.ReqOption;
 import com.xhkzeroone.resttemplate.client.RestClient;
 import com.xhkzeroone.resttemplate.client.WebClient;
@@ -10,27 +11,40 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
 public class UserService {
 
     private final RestClient client;
+    private final UserApi userApi;
 
-    public UserService(RestClient client) {
+    public UserService(RestClient client, UserApi userApi) {
         this.client = client;
+        this.userApi = userApi;
     }
 
-    public Object getUser(Object req) {
-        return client.exchange(ReqOption.builder()
-                .method(HttpMethod.POST)
-                .path("/users")
-                .body(req)
-                .header("api-key", UUID.randomUUID().toString())
-                .build(), Object.class);
+    public Map<String, Object> getUser(Object req) {
+        return userApi.getUser(req, UUID.randomUUID().toString());
     }
 
 
+    public List<BatchResult<Object>> getUsers(Collection<Object> reqs) {
+        List<ReqOption> options = reqs.stream()
+                .map(req -> ReqOption.builder()
+                        .method(HttpMethod.POST)
+                        .path("/users")
+                        .body(req)
+                        .header("api-key", UUID.randomUUID().toString())
+                        .build())
+                .toList();
+        return client.exchangeAll(options, Object.class, 16, Duration.ofSeconds(3));
+    }
+
     public static void main(String[] args) {
 
         WebClient client = new WebClient()
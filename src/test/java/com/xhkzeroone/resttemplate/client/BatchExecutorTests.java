@@ -0,0 +1,60 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchExecutorTests {
+
+    @Test
+    void synchronousCompletionsDoNotNestCalls() {
+        List<Integer> inputs = IntStream.range(0, 20_000).boxed().toList();
+        int[] firstDepth = {-1};
+        int[] deepest = {0};
+
+        List<BatchResult<Integer>> results = BatchExecutor.execute(inputs, i -> {
+            int depth = Thread.currentThread().getStackTrace().length;
+            if (firstDepth[0] < 0) {
+                firstDepth[0] = depth;
+            }
+            deepest[0] = Math.max(deepest[0], depth);
+            return i % 2 == 0 ? CompletableFuture.completedFuture(i) : CompletableFuture.failedFuture(new IllegalStateException());
+        }, 8, Duration.ofSeconds(10), null).join();
+
+        assertEquals(inputs.size(), results.size());
+        assertEquals(BatchResult.Status.SUCCESS, results.get(19_998).getStatus());
+        assertEquals(BatchResult.Status.FAILED, results.get(19_999).getStatus());
+        assertTrue(deepest[0] - firstDepth[0] < 20, "stack grew by " + (deepest[0] - firstDepth[0]));
+    }
+
+    @Test
+    void cancelsCallsStillInFlightAtTheDeadline() {
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        List<BatchResult<String>> results = BatchExecutor.execute(List.of(0, 1, 2), i -> {
+            CompletableFuture<String> call = new CompletableFuture<>();
+            if (i == 0) {
+                call.complete("first");
+            }
+            calls.add(call);
+            return call;
+        }, 2, Duration.ofMillis(50), null).join();
+
+        assertEquals(BatchResult.Status.SUCCESS, results.get(0).getStatus());
+        assertEquals(BatchResult.Status.TIMED_OUT, results.get(1).getStatus());
+        assertEquals(BatchResult.Status.TIMED_OUT, results.get(2).getStatus());
+        assertTrue(calls.get(1).isCancelled());
+        assertTrue(calls.get(2).isCancelled());
+    }
+
+    @Test
+    void requiresADeadline() {
+        assertThrows(IllegalArgumentException.class, () -> BatchExecutor.execute(List.of(1),
+                CompletableFuture::completedFuture, 1, null, null));
+    }
+}
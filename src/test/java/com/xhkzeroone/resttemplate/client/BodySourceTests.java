@@ -0,0 +1,162 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BodySourceTests {
+
+    private static final int SIZE = 5 * 1024 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private StubServer server;
+    private RestClient client;
+    private String address;
+    private final AtomicInteger unavailableHits = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubServer();
+        // Counts the body bytes and reports how they were framed
+        server.route("/upload", exchange -> {
+            long bytes = 0;
+            long sum = 0;
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                for (int n; (n = in.read(buffer)) > 0; bytes += n) {
+                    for (int i = 0; i < n; i++) {
+                        sum += buffer[i] & 0xff;
+                    }
+                }
+            }
+            String length = exchange.getRequestHeaders().getFirst("Content-Length");
+            String encoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+            StubServer.json(exchange, 200, "{\"bytes\":" + bytes + ",\"sum\":" + sum + ",\"length\":\"" + length
+                    + "\",\"encoding\":\"" + encoding + "\"}");
+        });
+        server.route("/unavailable", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            unavailableHits.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+        address = server.address();
+
+        RestConfig config = new RestConfig();
+        config.setConnectTimeout(1000);
+        config.setReadTimeout(5000);
+        config.getRetry().setBaseDelay(1);
+        client = new RestClient(null, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    private ReqOption put(String path, Object body) {
+        return ReqOption.builder().method(HttpMethod.PUT).path(address + path).body(body).build();
+    }
+
+    private static byte[] content() {
+        byte[] data = new byte[SIZE];
+        Arrays.fill(data, (byte) 7);
+        return data;
+    }
+
+    @Test
+    void fileIsSentWithContentLength() throws Exception {
+        Path file = Files.write(dir.resolve("upload.bin"), content());
+
+        Map<?, ?> result = client.exchange(put("/upload", BodySource.of(file)), Map.class);
+
+        assertEquals(SIZE, ((Number) result.get("bytes")).intValue());
+        assertEquals(7L * SIZE, ((Number) result.get("sum")).longValue());
+        assertEquals(String.valueOf(SIZE), result.get("length"));
+    }
+
+    @Test
+    void streamOfUnknownLengthIsSentChunked() {
+        Map<?, ?> result = client.exchange(put("/upload", BodySource.of(new ByteArrayInputStream(content()))), Map.class);
+
+        assertEquals(SIZE, ((Number) result.get("bytes")).intValue());
+        assertEquals("chunked", result.get("encoding"));
+    }
+
+    @Test
+    void asyncExchangeStreamsChannelsAndWriters() throws Exception {
+        Path file = Files.write(dir.resolve("upload.bin"), content());
+
+        Map<?, ?> channel = client.exchangeAsync(put("/upload", BodySource.of(Files.newByteChannel(file), SIZE)), Map.class).join();
+        Map<?, ?> writer = client.exchangeAsync(put("/upload", BodySource.writer(out -> {
+            for (int i = 0; i < 1024; i++) {
+                out.write(new byte[]{1, 2, 3});
+            }
+        })), Map.class).join();
+
+        assertEquals(SIZE, ((Number) channel.get("bytes")).intValue());
+        assertEquals(String.valueOf(SIZE), channel.get("length"));
+        assertEquals(3072, ((Number) writer.get("bytes")).intValue());
+        assertEquals(6144, ((Number) writer.get("sum")).intValue());
+    }
+
+    @Test
+    void asyncWriterFailureFailsTheCall() {
+        String[] writerThread = new String[1];
+        CompletableFuture<Map> call = client.exchangeAsync(put("/upload", BodySource.writer(out -> {
+            writerThread[0] = Thread.currentThread().getName();
+            out.write(new byte[1024]);
+            throw new IOException("source gone");
+        })), Map.class);
+
+        assertThrows(CompletionException.class, call::join);
+        assertTrue(writerThread[0].startsWith("body-writer-"), writerThread[0]);
+    }
+
+    @Test
+    void onlyReplayableBodiesAreRetried() throws Exception {
+        client.use(new RetryMiddleware(new RestConfig()));
+        Path file = Files.write(dir.resolve("upload.bin"), content());
+
+        assertThrows(RuntimeException.class, () -> client.exchange(put("/unavailable", BodySource.of(file)), Map.class));
+        assertTrue(unavailableHits.getAndSet(0) >= 3);
+
+        assertThrows(RuntimeException.class, () -> client.exchange(put("/unavailable",
+                BodySource.of(Channels.newChannel(new ByteArrayInputStream(content())))), Map.class));
+        // Neither the middleware nor the transport may resend a one-shot body
+        assertEquals(1, unavailableHits.get());
+    }
+
+    @Test
+    void webClientSendsBodySources() {
+        try (WebClient webClient = new WebClient().baseUrl(address)) {
+            ResponseEntity<Map<?, ?>> response = webClient.target("/upload")
+                    .body(BodySource.writer(out -> out.write(content()), SIZE))
+                    .result(Map.class)
+                    .put();
+            Map<?, ?> result = response.getBody();
+            assertEquals(SIZE, ((Number) result.get("bytes")).intValue());
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingTokenProviderTests {
+
+    private StubServer server;
+    private String address;
+    private final AtomicInteger tokensIssued = new AtomicInteger();
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+    private volatile long expiresIn = 3600;
+    private volatile String acceptedToken = "token-1";
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubServer();
+        server.route("/token", exchange -> {
+            String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (!form.contains("grant_type=client_credentials")
+                    || exchange.getRequestHeaders().getFirst("Authorization") == null) {
+                StubServer.json(exchange, 400, "{\"error\":\"invalid_request\"}");
+                return;
+            }
+            StubServer.json(exchange, 200, "{\"access_token\":\"token-" + tokensIssued.incrementAndGet()
+                    + "\",\"token_type\":\"Bearer\",\"expires_in\":" + expiresIn + "}");
+        });
+        // Never answers in time
+        server.route("/hanging-token", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.route("/api", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            authorizations.add(String.valueOf(authorization));
+            if (!("Bearer " + acceptedToken).equals(authorization)) {
+                StubServer.json(exchange, 401, "{\"error\":\"invalid_token\"}");
+                return;
+            }
+            StubServer.json(exchange, 200, "{\"ok\":true}");
+        });
+        server.start();
+        address = server.address();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private RestConfig.Auth auth() {
+        RestConfig.Auth auth = new RestConfig.Auth();
+        auth.setTokenUri(address + "/token");
+        auth.setClientId("client");
+        auth.setClientSecret("secret");
+        return auth;
+    }
+
+    @Test
+    void cachesTheTokenUntilItNeedsRefreshing() {
+        try (CachingTokenProvider provider = CachingTokenProvider.clientCredentials(auth())) {
+            assertEquals("token-1", provider.getToken());
+            assertEquals("token-1", provider.getToken());
+            assertEquals("token-1", provider.getTokenAsync().join());
+            assertEquals(1, tokensIssued.get());
+        }
+    }
+
+    @Test
+    void tokenFetchIsBoundedByTheAuthTimeouts() {
+        RestConfig.Auth auth = auth();
+        auth.setTokenUri(address + "/hanging-token");
+        auth.setReadTimeout(200);
+        try (CachingTokenProvider provider = CachingTokenProvider.clientCredentials(auth)) {
+            assertTimeoutPreemptively(Duration.ofSeconds(3), () -> {
+                assertThrows(ResourceAccessException.class, provider::getToken);
+            });
+        }
+    }
+
+    @Test
+    void concurrentCallersShareOneFetch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger fetches = new AtomicInteger();
+        try (CachingTokenProvider provider = new CachingTokenProvider(() -> {
+            fetches.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return new CachingTokenProvider.Token("shared", Duration.ofHours(1));
+        })) {
+            ExecutorService callers = Executors.newFixedThreadPool(16);
+            try {
+                List<Future<String>> tokens = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    tokens.add(callers.submit(provider::getToken));
+                }
+                Thread.sleep(100);
+                release.countDown();
+                for (Future<String> token : tokens) {
+                    assertEquals("shared", token.get(5, TimeUnit.SECONDS));
+                }
+            } finally {
+                callers.shutdownNow();
+            }
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void refreshesInTheBackgroundBeforeExpiry() throws Exception {
+        AtomicLong millis = new AtomicLong(1_000_000);
+        List<Long> delays = new ArrayList<>();
+        List<Runnable> scheduled = new ArrayList<>();
+        RestConfig.Auth auth = new RestConfig.Auth();
+        auth.setRefreshAhead(1500);
+        try (CachingTokenProvider provider = new CachingTokenProvider(
+                () -> new CachingTokenProvider.Token("token-" + tokensIssued.incrementAndGet(), Duration.ofSeconds(2)),
+                auth, millis::get, (task, delayMillis) -> {
+                    scheduled.add(task);
+                    delays.add(delayMillis);
+                })) {
+            assertEquals("token-1", provider.getToken());
+            // Lifetime 2s, refreshed 1s in (at most half the lifetime ahead) without any call
+            assertEquals(List.of(1000L), delays);
+            millis.addAndGet(1000);
+            scheduled.get(0).run();
+            assertEquals("token-2", provider.getToken());
+            assertEquals(List.of(1000L, 1000L), delays);
+
+            // A call inside the refresh window gets the current token while a new one is fetched
+            millis.addAndGet(1500);
+            assertEquals("token-2", provider.getToken());
+            for (int i = 0; i < 500 && tokensIssued.get() < 3; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals("token-3", provider.getToken());
+
+            // Refreshes scheduled for a replaced token do nothing
+            scheduled.get(1).run();
+            assertEquals(3, tokensIssued.get());
+        }
+    }
+
+    @Test
+    void closedProviderStopsRefreshing() {
+        AtomicLong millis = new AtomicLong();
+        List<Runnable> scheduled = new ArrayList<>();
+        CachingTokenProvider provider = new CachingTokenProvider(
+                () -> new CachingTokenProvider.Token("token-" + tokensIssued.incrementAndGet(), Duration.ofSeconds(2)),
+                new RestConfig.Auth(), millis::get, (task, delayMillis) -> scheduled.add(task));
+        assertEquals("token-1", provider.getToken());
+
+        provider.close();
+        scheduled.get(0).run();
+        assertEquals(1, tokensIssued.get());
+    }
+
+    @Test
+    void webClientRetriesOnceWithANewTokenAfter401() {
+        acceptedToken = "token-2";
+        try (CachingTokenProvider provider = CachingTokenProvider.clientCredentials(auth())) {
+            WebClient client = new WebClient().bearerAuth(provider);
+            ResponseEntity<Map<?, ?>> response = client.target(address + "/api").result(Map.class).get();
+
+            assertEquals(Boolean.TRUE, response.getBody().get("ok"));
+            assertEquals(List.of("Bearer token-1", "Bearer token-2"), authorizations);
+            assertEquals(2, tokensIssued.get());
+        }
+    }
+
+    @Test
+    void restClientRetriesOnceWithANewTokenAfter401() {
+        acceptedToken = "token-2";
+        RestConfig config = new RestConfig();
+        config.setAuth(auth());
+        AuthMiddleware auth = new AuthMiddleware(config);
+        try (RestClient client = new RestClient(null, config)) {
+            client.use(auth);
+            ReqOption get = ReqOption.builder().method(HttpMethod.GET).path(address + "/api").build();
+
+            assertEquals(Boolean.TRUE, client.exchange(get, Map.class).get("ok"));
+            assertEquals(Boolean.TRUE, client.exchangeAsync(get, Map.class).join().get("ok"));
+            assertEquals(List.of("Bearer token-1", "Bearer token-2", "Bearer token-2"), authorizations);
+
+            // A token that is rejected again is not retried a second time
+            acceptedToken = "never";
+            assertThrows(RuntimeException.class, () -> client.exchange(get, Map.class));
+            assertEquals(5, authorizations.size());
+            assertEquals(3, tokensIssued.get());
+        }
+        // The client closes the provider the middleware created
+        assertTrue(((CachingTokenProvider) auth.getTokenProvider()).isClosed());
+    }
+}
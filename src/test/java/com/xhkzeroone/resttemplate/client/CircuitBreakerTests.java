@@ -0,0 +1,108 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTests {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final RestConfig.CircuitBreaker config = new RestConfig.CircuitBreaker();
+
+    private Breaker breaker() {
+        config.setWindowSize(10);
+        config.setMinimumCalls(5);
+        config.setFailureRateThreshold(50);
+        config.setSlowCallDuration(100);
+        config.setOpenDuration(1000);
+        config.setHalfOpenCalls(2);
+        return new Breaker("test", config, nanos::get);
+    }
+
+    private void call(Breaker breaker, boolean failed, long millis) {
+        Breaker.Permit permit = breaker.acquire();
+        nanos.addAndGet(millis * 1_000_000);
+        breaker.onResult(permit, failed);
+    }
+
+    @Test
+    void opensWhenFailureRateCrossesThreshold() {
+        Breaker breaker = breaker();
+        call(breaker, false, 1);
+        call(breaker, false, 1);
+        call(breaker, true, 1);
+        call(breaker, true, 1);
+        assertEquals(Breaker.State.CLOSED, breaker.getState());
+
+        call(breaker, true, 1);
+
+        assertEquals(Breaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitBreakerOpenException.class, breaker::acquire);
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    @Test
+    void opensOnSlowCalls() {
+        config.setSlowCallRateThreshold(60);
+        Breaker breaker = breaker();
+        for (int i = 0; i < 5; i++) {
+            call(breaker, false, 150);
+        }
+        assertEquals(Breaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void halfOpenProbesCloseOrReopen() {
+        Breaker breaker = breaker();
+        for (int i = 0; i < 5; i++) {
+            call(breaker, true, 1);
+        }
+        nanos.addAndGet(1_000_000_000L);
+
+        call(breaker, true, 1);
+        assertEquals(Breaker.State.HALF_OPEN, breaker.getState());
+        call(breaker, true, 1);
+        assertEquals(Breaker.State.OPEN, breaker.getState());
+
+        nanos.addAndGet(1_000_000_000L);
+        call(breaker, false, 1);
+        call(breaker, false, 1);
+        assertEquals(Breaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getFailureRate());
+    }
+
+    @Test
+    void windowForgetsOldOutcomes() {
+        Breaker breaker = breaker();
+        call(breaker, true, 1);
+        call(breaker, true, 1);
+        assertEquals(100, breaker.getFailureRate());
+        for (int i = 0; i < 10; i++) {
+            call(breaker, false, 1);
+        }
+        assertEquals(Breaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getFailureRate());
+    }
+
+    @Test
+    void rejectsWindowsThatCouldNeverDecide() {
+        breaker();
+        config.setHalfOpenCalls(0);
+        assertThrows(IllegalArgumentException.class, () -> new Breaker("test", config));
+        config.setHalfOpenCalls(2);
+        config.setWindowSize(0);
+        assertThrows(IllegalArgumentException.class, () -> new Breaker("test", config));
+        config.setWindowSize(10);
+        config.setMinimumCalls(11);
+        assertThrows(IllegalArgumentException.class, () -> new Breaker("test", config));
+        config.setMinimumCalls(0);
+        assertThrows(IllegalArgumentException.class, () -> new Breaker("test", config));
+
+        // Checked up front by the middleware rather than on the first call
+        RestConfig restConfig = new RestConfig();
+        restConfig.getCircuitBreaker().setHalfOpenCalls(0);
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerMiddleware(restConfig));
+    }
+}
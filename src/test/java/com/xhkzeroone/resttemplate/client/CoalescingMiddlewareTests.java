@@ -0,0 +1,192 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingMiddlewareTests {
+
+    private final CoalescingMiddleware coalescing = new CoalescingMiddleware();
+    private final AtomicInteger downstreamCalls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ReqContext context(HttpMethod method) {
+        ReqContext ctx = new ReqContext(null);
+        ctx.setMethod(method);
+        ctx.setPath("http://api.local/users/1");
+        ctx.setHeaders(new HashMap<>());
+        ctx.setResponseType(String.class);
+        return ctx;
+    }
+
+    private List<Future<Object>> callConcurrently(ExecutorService executor, int callers, Handler handler) throws Exception {
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(executor.submit(() -> {
+                ReqContext ctx = context(HttpMethod.GET);
+                handler.handle(ctx);
+                return ctx.getResponse();
+            }));
+        }
+        while (coalescing.getFollowerCount() < callers - 1) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        return results;
+    }
+
+    @Test
+    void concurrentReadsShareOneCall() throws Exception {
+        Handler handler = coalescing.apply(ctx -> {
+            downstreamCalls.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            ctx.setResponse("user");
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (Future<Object> result : callConcurrently(executor, 8, handler)) {
+                assertEquals("user", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, downstreamCalls.get());
+        assertEquals(7.0 / 8, coalescing.getCoalescingRatio(), 1e-9);
+        assertEquals(0, coalescing.getInFlightCount());
+    }
+
+    @Test
+    void errorResponseIsSharedThenReleased() throws Exception {
+        Handler handler = coalescing.apply(ctx -> {
+            if (downstreamCalls.incrementAndGet() == 1) {
+                release.await(5, TimeUnit.SECONDS);
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            ctx.setResponse("recovered");
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (Future<Object> result : callConcurrently(executor, 4, handler)) {
+                Exception error = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(HttpServerErrorException.class, error.getCause());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(3, coalescing.getSharedFailureCount());
+
+        ReqContext ctx = context(HttpMethod.GET);
+        handler.handle(ctx);
+        assertEquals("recovered", ctx.getResponse());
+    }
+
+    @Test
+    void followersCallThemselvesWhenTheLeaderIsAborted() throws Exception {
+        Handler handler = coalescing.apply(ctx -> {
+            if (downstreamCalls.incrementAndGet() == 1) {
+                release.await(5, TimeUnit.SECONDS);
+                throw new ResourceAccessException("aborted", new InterruptedIOException());
+            }
+            ctx.setResponse("user");
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            int served = 0;
+            for (Future<Object> result : callConcurrently(executor, 4, handler)) {
+                try {
+                    assertEquals("user", result.get(5, TimeUnit.SECONDS));
+                    served++;
+                } catch (ExecutionException e) {
+                    // Only the leader sees its own abort
+                    assertInstanceOf(ResourceAccessException.class, e.getCause());
+                }
+            }
+            assertEquals(3, served);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(4, downstreamCalls.get());
+        assertEquals(0, coalescing.getSharedFailureCount());
+    }
+
+    @Test
+    void asyncFollowersCallThemselvesWhenTheLeaderIsCancelled() {
+        CompletableFuture<Void> leader = new CompletableFuture<>();
+        AsyncHandler handler = coalescing.applyAsync(ctx -> {
+            if (downstreamCalls.incrementAndGet() == 1) {
+                return leader;
+            }
+            ctx.setResponse("user");
+            return CompletableFuture.completedFuture(null);
+        });
+        CompletableFuture<Void> first = handler.handle(context(HttpMethod.GET));
+        ReqContext follower = context(HttpMethod.GET);
+        CompletableFuture<Void> second = handler.handle(follower);
+        assertFalse(second.isDone());
+
+        leader.cancel(false);
+        assertTrue(first.isCompletedExceptionally());
+        second.join();
+        assertEquals("user", follower.getResponse());
+        assertEquals(2, downstreamCalls.get());
+    }
+
+    @Test
+    void followersWaitAtMostTheReadTimeout() throws Exception {
+        RestConfig config = new RestConfig();
+        config.setReadTimeout(100);
+        CoalescingMiddleware bounded = new CoalescingMiddleware(config);
+        Handler handler = bounded.apply(ctx -> {
+            release.await(5, TimeUnit.SECONDS);
+            ctx.setResponse("user");
+        });
+        AsyncHandler asyncHandler = bounded.applyAsync(ctx -> new CompletableFuture<>());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> leader = executor.submit(() -> {
+                handler.handle(context(HttpMethod.GET));
+                return null;
+            });
+            while (bounded.getInFlightCount() == 0) {
+                Thread.sleep(5);
+            }
+            assertThrows(ResourceAccessException.class, () -> handler.handle(context(HttpMethod.GET)));
+            release.countDown();
+            leader.get(5, TimeUnit.SECONDS);
+
+            asyncHandler.handle(context(HttpMethod.GET));
+            CompletionException error = assertThrows(CompletionException.class,
+                    () -> asyncHandler.handle(context(HttpMethod.GET)).join());
+            assertInstanceOf(ResourceAccessException.class, error.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void writesAreNotCoalesced() throws Exception {
+        Handler handler = coalescing.apply(ctx -> downstreamCalls.incrementAndGet());
+        handler.handle(context(HttpMethod.POST));
+        handler.handle(context(HttpMethod.POST));
+        assertEquals(2, downstreamCalls.get());
+        assertEquals(0, coalescing.getLeaderCount());
+    }
+}
@@ -0,0 +1,59 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledUriTemplateTests {
+
+    @Test
+    void resolvesAgainstBaseAddress() {
+        CompiledUriTemplate template = CompiledUriTemplate.compile("http://api.local/v1/", "/users/{id}");
+        assertEquals("http://api.local/v1/users/42", template.expand(Map.of("id", 42), null).toString());
+    }
+
+    @Test
+    void keepsAbsolutePath() {
+        CompiledUriTemplate template = CompiledUriTemplate.compile("http://api.local", "https://other.local/x");
+        assertEquals("https://other.local/x", template.expand(Map.of(), Map.of()).toString());
+    }
+
+    @Test
+    void encodesVariablesAndQueryValues() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("q", "a b&c=d+e");
+        params.put("tag", List.of("x", "y/z"));
+        params.put("flag", null);
+
+        CompiledUriTemplate template = CompiledUriTemplate.compile("http://api.local", "/files/{name}?v=1");
+        String uri = template.expand(Map.of("name", "dir/é.txt"), params).toString();
+
+        assertEquals("http://api.local/files/dir%2F%C3%A9.txt?v=1&q=a%20b%26c%3Dd%2Be&tag=x&tag=y%2Fz&flag", uri);
+    }
+
+    @Test
+    void appendsQueryBeforeFragment() {
+        CompiledUriTemplate template = CompiledUriTemplate.compile(null, "http://api.local/{id}#top");
+        assertEquals("http://api.local/1?a=b#top", template.expand(Map.of("id", "1"), Map.of("a", "b")).toString());
+    }
+
+    @Test
+    void rejectsMissingVariable() {
+        CompiledUriTemplate template = CompiledUriTemplate.compile("http://api.local", "/users/{id}");
+        assertThrows(IllegalArgumentException.class, () -> template.expand(Map.of(), null));
+    }
+
+    @Test
+    void cacheReturnsSameTemplateAndStaysBounded() {
+        UriTemplateCache cache = new UriTemplateCache("http://api.local", 2);
+        assertSame(cache.get("/a/{id}"), cache.get("/a/{id}"));
+        cache.get("/b");
+        cache.get("/c");
+        assertEquals(2, cache.size());
+        assertEquals("http://api.local/c", cache.expand("/c", null, null).toString());
+    }
+}
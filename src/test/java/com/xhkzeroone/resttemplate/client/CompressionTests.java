@@ -0,0 +1,132 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTests {
+
+    private static final byte[] TEXT = "{\"name\":\"compressible\"}".repeat(500).getBytes(StandardCharsets.UTF_8);
+
+    private final RestConfig.Compression config = new RestConfig.Compression();
+    private StubServer server;
+    private String address;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubServer();
+        // Reports how the request body arrived; gzips the reply when the client accepts it
+        server.route("/echo", exchange -> {
+            String requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            InputStream in = exchange.getRequestBody();
+            if ("gzip".equals(requestEncoding)) {
+                in = new GZIPInputStream(in);
+            }
+            int received = in.readAllBytes().length;
+            byte[] payload = ("{\"received\":" + received + ",\"encoding\":\"" + requestEncoding
+                    + "\",\"padding\":\"" + "x".repeat(4096) + "\"}").getBytes(StandardCharsets.UTF_8);
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (accept != null && accept.contains("gzip")) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                payload = gzip(payload);
+            }
+            StubServer.respond(exchange, 200, "application/json", payload);
+        });
+        server.start();
+        address = server.address();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void gzipInteroperatesWithJdkStreams() throws Exception {
+        CompressionCodec codec = new CompressionCodec(config);
+
+        byte[] compressed = codec.compress(TEXT);
+        assertTrue(compressed.length < TEXT.length / 10);
+        assertArrayEquals(TEXT, new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes());
+        assertArrayEquals(TEXT, codec.decompress(gzip(TEXT), "gzip"));
+        // Pooled instances are reused across streams
+        assertArrayEquals(TEXT, codec.decompress(codec.compress(TEXT), "gzip"));
+    }
+
+    @Test
+    void deflateAcceptsZlibAndRawData() throws Exception {
+        config.setRequestEncoding("deflate");
+        CompressionCodec codec = new CompressionCodec(config);
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(raw, new Deflater(6, true))) {
+            out.write(TEXT);
+        }
+
+        assertArrayEquals(TEXT, new InflaterInputStream(new ByteArrayInputStream(codec.compress(TEXT))).readAllBytes());
+        assertArrayEquals(TEXT, codec.decompress(codec.compress(TEXT), "deflate"));
+        assertArrayEquals(TEXT, codec.decompress(raw.toByteArray(), "deflate"));
+    }
+
+    @Test
+    void corruptOrEmptyBodies() throws Exception {
+        CompressionCodec codec = new CompressionCodec(config);
+        byte[] corrupt = gzip(TEXT);
+        corrupt[corrupt.length - 5] ^= 1;
+
+        assertInstanceOf(ZipException.class, assertThrows(RuntimeException.class, () -> codec.decompress(corrupt, "gzip")).getCause());
+        assertEquals(0, codec.decompress(new byte[0], "gzip").length);
+    }
+
+    @Test
+    void clientsNegotiateAndCompressAboveThreshold() {
+        for (TransportType type : TransportType.values()) {
+            if (type == TransportType.HTTP2) {
+                // The stub only speaks HTTP/1.1, see H2TransportTests
+                continue;
+            }
+            RestConfig restConfig = new RestConfig();
+            restConfig.getTransport().setType(type);
+            restConfig.getTransport().getCompression().setEnabled(true);
+            restConfig.getTransport().getCompression().setCompressRequests(true);
+            try (RestClient client = new RestClient(null, restConfig)) {
+                Map<?, ?> small = client.exchange(post(Map.of("id", 1)), Map.class);
+                Map<?, ?> large = client.exchange(post(Map.of("text", new String(TEXT, StandardCharsets.UTF_8))), Map.class);
+                Map<?, ?> async = client.exchangeAsync(post(Map.of("text", new String(TEXT, StandardCharsets.UTF_8))), Map.class).join();
+
+                assertEquals("null", small.get("encoding"), type.name());
+                assertEquals("gzip", large.get("encoding"), type.name());
+                assertEquals("gzip", async.get("encoding"), type.name());
+                assertEquals(4096, ((String) large.get("padding")).length(), type.name());
+                assertEquals(4096, ((String) async.get("padding")).length(), type.name());
+            }
+        }
+    }
+
+    private ReqOption post(Object body) {
+        return ReqOption.builder().method(HttpMethod.POST).path(address + "/echo").body(body).build();
+    }
+}
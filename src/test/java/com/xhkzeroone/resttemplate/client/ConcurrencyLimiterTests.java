@@ -0,0 +1,133 @@
+package com.xhkzeroone.resttemplate.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimiterTests {
+
+    private final RestConfig.ConcurrencyLimit config = new RestConfig.ConcurrencyLimit();
+
+    private ConcurrencyLimiter limiter(int limit) {
+        config.setInitialLimit(limit);
+        config.setMinLimit(1);
+        config.setMaxLimit(100);
+        return new ConcurrencyLimiter(config);
+    }
+
+    @Test
+    void rejectsOverLimitWithoutQueue() throws Exception {
+        ConcurrencyLimiter limiter = limiter(2);
+        limiter.acquire();
+        limiter.acquire();
+
+        assertThrows(RequestRejectedException.class, limiter::acquire);
+        assertEquals(1, limiter.getRejectedCount());
+
+        limiter.release(1_000_000, false);
+        limiter.acquire();
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    void queuedCallerIsHandedReleasedSlot() throws Exception {
+        config.setMaxQueue(1);
+        config.setMaxWait(1000);
+        ConcurrencyLimiter limiter = limiter(1);
+        limiter.acquire();
+
+        CompletableFuture<Void> waiter = limiter.acquireAsync();
+        assertFalse(waiter.isDone());
+        assertEquals(1, limiter.getQueued());
+        assertThrows(RequestRejectedException.class, limiter::acquire);
+
+        limiter.release(1_000_000, false);
+
+        assertTrue(waiter.isDone());
+        assertEquals(0, limiter.getQueued());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void queuedCallerTimesOut() throws Exception {
+        config.setMaxQueue(1);
+        config.setMaxWait(50);
+        ConcurrencyLimiter limiter = limiter(1);
+        limiter.acquire();
+
+        assertThrows(RequestRejectedException.class, limiter::acquire);
+        assertEquals(0, limiter.getQueued());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void dropsShrinkAndSteadyLatencyGrowsTheLimit() throws Exception {
+        ConcurrencyLimiter limiter = limiter(20);
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+            limiter.release(1_000_000, true);
+        }
+        int shrunk = limiter.getLimit();
+        assertTrue(shrunk < 20, "limit " + shrunk);
+
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < limiter.getLimit(); j++) {
+                limiter.acquire();
+            }
+            int held = limiter.getInFlight();
+            for (int j = 0; j < held; j++) {
+                limiter.release(1_000_000, false);
+            }
+        }
+        assertTrue(limiter.getLimit() > shrunk, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void middlewarePublishesGaugesAndReleasesOnErrors() {
+        RestConfig restConfig = new RestConfig();
+        restConfig.setName("users");
+        restConfig.getConcurrencyLimit().setInitialLimit(4);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ConcurrencyLimitMiddleware middleware = new ConcurrencyLimitMiddleware(restConfig, registry);
+        double[] inFlight = new double[1];
+        Handler handler = middleware.apply(ctx -> {
+            inFlight[0] = registry.get("restclient.concurrency.inflight").tag("client", "users").gauge().value();
+            throw new AssertionError("handler bug");
+        });
+
+        assertThrows(AssertionError.class, () -> handler.handle(new ReqContext(null)));
+
+        assertEquals(1, inFlight[0]);
+        assertEquals(0, middleware.getLimiter().getInFlight());
+        assertEquals(4, registry.get("restclient.concurrency.limit").gauge().value());
+        assertEquals(0, registry.get("restclient.concurrency.queued").gauge().value());
+    }
+
+    @Test
+    void clientsWithTheSameNameDoNotShareGauges() {
+        RestConfig restConfig = new RestConfig();
+        restConfig.setName("users");
+        restConfig.getConcurrencyLimit().setInitialLimit(4);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ConcurrencyLimitMiddleware first = new ConcurrencyLimitMiddleware(restConfig, registry);
+        restConfig.getConcurrencyLimit().setInitialLimit(8);
+        ConcurrencyLimitMiddleware second = new ConcurrencyLimitMiddleware(restConfig, registry);
+
+        assertEquals("users-2", second.getClientName());
+        assertEquals(4, registry.get("restclient.concurrency.limit").tag("client", "users").gauge().value());
+        assertEquals(8, registry.get("restclient.concurrency.limit").tag("client", "users-2").gauge().value());
+
+        // Closing removes the gauges and frees the name
+        first.close();
+        assertNull(registry.find("restclient.concurrency.limit").tag("client", "users").gauge());
+        ConcurrencyLimitMiddleware recreated = new ConcurrencyLimitMiddleware(restConfig, registry);
+        assertEquals("users", recreated.getClientName());
+        assertEquals(8, registry.get("restclient.concurrency.limit").tag("client", "users").gauge().value());
+        second.close();
+        recreated.close();
+    }
+}
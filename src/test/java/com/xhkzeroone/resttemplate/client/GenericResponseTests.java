@@ -0,0 +1,97 @@
+package com.xhkzeroone.resttemplate.client;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenericResponseTests {
+
+    private static final ParameterizedTypeReference<List<User>> USERS = new ParameterizedTypeReference<>() {
+    };
+
+    private StubServer server;
+    private RestClient client;
+    private String address;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubServer().route("/users", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            String path = exchange.getRequestURI().getPath();
+            String contentType = path.endsWith("/text") ? "text/plain" : "application/json";
+            String body = path.endsWith("/text") ? "plain" : "[{\"id\":1,\"name\":\"Ann\"},{\"id\":2,\"name\":\"Bob\"}]";
+            exchange.getResponseHeaders().set("X-Accept", String.valueOf(exchange.getRequestHeaders().getFirst("Accept")));
+            StubServer.respond(exchange, 200, contentType, body.getBytes(StandardCharsets.UTF_8));
+        }).start();
+        address = server.address();
+        client = new RestClient(null, new RestConfig());
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    private ReqOption get(String path) {
+        return ReqOption.builder().method(HttpMethod.GET).path(address + path).build();
+    }
+
+    @Test
+    void restClientDecodesParameterizedTypes() {
+        List<User> users = client.exchange(get("/users"), USERS);
+
+        assertEquals(2, users.size());
+        assertEquals("Bob", users.get(1).name);
+
+        JavaType type = new ObjectMapper().getTypeFactory().constructCollectionType(List.class, User.class);
+        List<User> viaJavaType = client.exchange(get("/users"), type);
+        assertEquals(1, viaJavaType.get(0).id);
+
+        List<User> async = client.exchangeAsync(get("/users"), USERS).join();
+        assertEquals("Ann", async.get(0).name);
+    }
+
+    @Test
+    void webClientDecodesParameterizedTypes() {
+        ResponseEntity<List<User>> response = new WebClient().target(address + "/users").result(USERS).get();
+
+        assertEquals("Ann", response.getBody().get(0).name);
+        assertTrue(response.getHeaders().getFirst("X-Accept").contains("application/json"));
+    }
+
+    @Test
+    void nonJsonResponsesStillUseTheMessageConverters() {
+        assertEquals("plain", client.exchange(get("/users/text"), String.class));
+        ResponseEntity<String> response = new WebClient().target(address + "/users/text").result(String.class).get();
+        assertEquals("plain", response.getBody());
+    }
+
+    @Test
+    void readersAreResolvedOncePerType() {
+        BodyCodec codec = new BodyCodec(new ObjectMapper());
+        ParameterizedTypeReference<List<User>> same = new ParameterizedTypeReference<>() {
+        };
+
+        assertSame(codec.readerFor(USERS.getType()), codec.readerFor(same.getType()));
+        assertNotSame(codec.readerFor(USERS.getType()), codec.readerFor(new ParameterizedTypeReference<List<Map<String, Object>>>() {
+        }.getType()));
+        assertEquals(List.class, codec.rawClass(USERS.getType()));
+    }
+
+    static class User {
+        public int id;
+        public String name;
+    }
+}
@@ -0,0 +1,277 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.IOSessionListener;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class H2TransportTests {
+
+    private static final String TEXT = "{\"name\":\"compressible\"}".repeat(500);
+
+    private HttpAsyncServer server;
+    private ScheduledExecutorService delays;
+    private String address;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        delays = Executors.newSingleThreadScheduledExecutor();
+        // HTTP/2 only, so a plain connection must start with the h2c preface (prior knowledge)
+        server = H2ServerBootstrap.bootstrap()
+                .setCanonicalHostName("127.0.0.1")
+                .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+                .setH2Config(H2Config.custom().setMaxConcurrentStreams(1000).build())
+                .setIOSessionListener(new ConnectionCounter())
+                .register("*", new EchoHandler())
+                .create();
+        server.start();
+        ListenerEndpoint endpoint = server.listen(new InetSocketAddress("127.0.0.1", 0), URIScheme.HTTP).get();
+        address = "http://127.0.0.1:" + ((InetSocketAddress) endpoint.getAddress()).getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close(CloseMode.IMMEDIATE);
+        delays.shutdownNow();
+    }
+
+    private RestConfig config(int maxConcurrentStreams) {
+        RestConfig config = new RestConfig();
+        config.getTransport().setType(TransportType.HTTP2);
+        config.getTransport().setMaxConcurrentStreams(maxConcurrentStreams);
+        return config;
+    }
+
+    private ReqOption get(int delay) {
+        return ReqOption.builder().method(HttpMethod.GET).path(address + "/echo").params("delay", delay).build();
+    }
+
+    @Test
+    void multiplexesConcurrentCallsOverOneConnection() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(50);
+        try (RestClient client = new RestClient(null, config(100))) {
+            List<Future<Map<?, ?>>> responses = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                responses.add(callers.submit(() -> client.exchange(get(100), Map.class)));
+            }
+            for (Future<Map<?, ?>> response : responses) {
+                assertEquals("HTTP/2.0", response.get(5, TimeUnit.SECONDS).get("protocol"));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, connections.get());
+        assertTrue(maxInFlight.get() > 10, "streams in flight at once: " + maxInFlight.get());
+    }
+
+    @Test
+    void queuesCallsBeyondTheStreamLimit() {
+        try (RestClient client = new RestClient(null, config(4))) {
+            List<CompletableFuture<Map>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                responses.add(client.exchangeAsync(get(50), Map.class));
+            }
+            responses.forEach(response -> assertEquals("HTTP/2.0", response.join().get("protocol")));
+        }
+        assertEquals(4, maxInFlight.get());
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    void queuedCallsGivenUpOnLeaveTheQueue() throws Exception {
+        RestConfig.Transport transport = config(2).getTransport();
+        transport.setMaxQueuedStreams(5000);
+        try (H2ClientHttpRequestFactory factory = new H2ClientHttpRequestFactory(transport, 1000, 5000)) {
+            URI slow = URI.create(address + "/echo?delay=2000");
+            List<CompletableFuture<SimpleHttpResponse>> running = List.of(
+                    factory.execute(HttpMethod.GET, slow, new HttpHeaders(), null),
+                    factory.execute(HttpMethod.GET, slow, new HttpHeaders(), null));
+            List<CompletableFuture<SimpleHttpResponse>> queued = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                queued.add(factory.execute(HttpMethod.GET, slow, new HttpHeaders(), new byte[1024])
+                        .orTimeout(50, TimeUnit.MILLISECONDS));
+            }
+            for (CompletableFuture<SimpleHttpResponse> call : queued) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> call.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(TimeoutException.class, e.getCause());
+            }
+            for (CompletableFuture<SimpleHttpResponse> call : running) {
+                assertEquals(200, call.get(5, TimeUnit.SECONDS).getCode());
+            }
+
+            // The timed-out calls were never sent and their slots were not lost
+            URI fast = URI.create(address + "/echo");
+            assertEquals(200, factory.execute(HttpMethod.GET, fast, new HttpHeaders(), null).get(5, TimeUnit.SECONDS).getCode());
+            assertEquals(200, factory.execute(HttpMethod.GET, fast, new HttpHeaders(), null).get(5, TimeUnit.SECONDS).getCode());
+        }
+        assertEquals(4, requests.get());
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    void rejectsCallsBeyondTheQueueLimit() throws Exception {
+        RestConfig.Transport transport = config(1).getTransport();
+        transport.setMaxQueuedStreams(2);
+        try (H2ClientHttpRequestFactory factory = new H2ClientHttpRequestFactory(transport, 1000, 5000)) {
+            URI slow = URI.create(address + "/echo?delay=200");
+            List<CompletableFuture<SimpleHttpResponse>> accepted = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                accepted.add(factory.execute(HttpMethod.GET, slow, new HttpHeaders(), null));
+            }
+            CompletableFuture<SimpleHttpResponse> rejected = factory.execute(HttpMethod.GET, slow, new HttpHeaders(), null);
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+            assertInstanceOf(RequestRejectedException.class, e.getCause());
+            for (CompletableFuture<SimpleHttpResponse> call : accepted) {
+                assertEquals(200, call.get(5, TimeUnit.SECONDS).getCode());
+            }
+        }
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void webClientCompressesOverHttp2() {
+        RestConfig.Transport transport = config(100).getTransport();
+        transport.getCompression().setEnabled(true);
+        transport.getCompression().setCompressRequests(true);
+        try (WebClient client = new WebClient().transport(transport)) {
+            ResponseEntity<Map<?, ?>> response = client.target(address + "/echo").body(Map.of("text", TEXT)).result(Map.class).post();
+
+            assertEquals("gzip", response.getBody().get("encoding"));
+            assertTrue((Integer) response.getBody().get("received") > TEXT.length());
+            assertEquals("HTTP/2.0", response.getBody().get("protocol"));
+        }
+        try (RestClient client = new RestClient(null, config(100))) {
+            assertEquals("null", client.exchange(get(0), Map.class).get("encoding"));
+        }
+    }
+
+    // Replies after ?delay= ms with how the request arrived; gzips the reply when the client accepts it
+    private class EchoHandler implements AsyncServerRequestHandler<Message<HttpRequest, byte[]>> {
+        @Override
+        public AsyncRequestConsumer<Message<HttpRequest, byte[]>> prepare(HttpRequest request, EntityDetails entityDetails,
+                                                                          HttpContext context) {
+            return new BasicRequestConsumer<>(BasicAsyncEntityConsumer::new);
+        }
+
+        @Override
+        public void handle(Message<HttpRequest, byte[]> message, ResponseTrigger trigger, HttpContext context) throws IOException {
+            requests.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            HttpRequest request = message.getHead();
+            Header encoding = request.getFirstHeader("Content-Encoding");
+            byte[] body = message.getBody() != null ? message.getBody() : new byte[0];
+            if (encoding != null && "gzip".equals(encoding.getValue())) {
+                body = new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes();
+            }
+            String query = request.getPath().contains("delay=") ? request.getPath().replaceAll(".*delay=(\\d+).*", "$1") : "0";
+            byte[] payload = ("{\"received\":" + body.length + ",\"encoding\":\"" + (encoding != null ? encoding.getValue() : null)
+                    + "\",\"protocol\":\"" + context.getProtocolVersion() + "\"}").getBytes(StandardCharsets.UTF_8);
+            Header accept = request.getFirstHeader("Accept-Encoding");
+            AsyncResponseBuilder response = AsyncResponseBuilder.create(200);
+            if (accept != null && accept.getValue().contains("gzip")) {
+                response.setHeader("Content-Encoding", "gzip");
+                payload = gzip(payload);
+            }
+            response.setEntity(payload, ContentType.APPLICATION_JSON);
+            delays.schedule(() -> {
+                inFlight.decrementAndGet();
+                try {
+                    trigger.submitResponse(response.build(), context);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, Long.parseLong(query), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private class ConnectionCounter implements IOSessionListener {
+        @Override
+        public void connected(IOSession session) {
+            connections.incrementAndGet();
+        }
+
+        @Override
+        public void startTls(IOSession session) {
+        }
+
+        @Override
+        public void inputReady(IOSession session) {
+        }
+
+        @Override
+        public void outputReady(IOSession session) {
+        }
+
+        @Override
+        public void timeout(IOSession session) {
+        }
+
+        @Override
+        public void exception(IOSession session, Exception ex) {
+        }
+
+        @Override
+        public void disconnected(IOSession session) {
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeaderMapTests {
+
+    private final HeaderSnapshot defaults = HeaderSnapshot.of(Map.of("accept", "application/xml", "X-Client", "demo"));
+
+    @Test
+    void requestHeadersOverrideDefaultsRegardlessOfCase() {
+        HeaderMap headers = new HeaderMap(defaults, HeaderSnapshot.of(Map.of("ACCEPT", "application/json", "X-Id", 7)));
+
+        assertEquals(3, headers.size());
+        assertEquals("application/json", headers.get("Accept"));
+        assertEquals("7", headers.get("x-id"));
+        assertEquals("demo", headers.get("x-client"));
+
+        HttpHeaders http = headers.toHttpHeaders();
+        assertEquals(List.of("application/json"), http.get(HttpHeaders.ACCEPT));
+        assertEquals(List.of("demo"), http.get("X-Client"));
+        assertEquals(3, http.size());
+    }
+
+    @Test
+    void perCallHeadersLayerOverFixedOnes() {
+        HeaderSnapshot fixed = HeaderSnapshot.of(Map.of("Accept", "application/json"));
+        String[] names = {HeaderSnapshot.canonicalName("accept"), HeaderSnapshot.canonicalName("X-Trace")};
+
+        HeaderSnapshot call = fixed.with(names, new Object[]{"text/plain", 42});
+        assertEquals(2, call.size());
+        assertEquals("text/plain", call.get("ACCEPT"));
+        assertEquals("42", call.get("x-trace"));
+        assertEquals("application/json", fixed.get("Accept"));
+
+        // Nothing to add keeps the fixed snapshot itself
+        assertSame(fixed, fixed.with(names, new Object[]{null, null}));
+        assertSame(fixed, fixed.with(names, new Object[]{"application/json", null}));
+    }
+
+    @Test
+    void sharesDefaultHeadersUntilChanged() {
+        HeaderMap headers = new HeaderMap(defaults, HeaderSnapshot.EMPTY);
+        assertSame(defaults.toHttpHeaders(), headers.toHttpHeaders());
+
+        HeaderMap copy = headers.copy();
+        copy.put("If-None-Match", "\"v1\"");
+        copy.remove("X-CLIENT");
+
+        assertEquals("\"v1\"", copy.get(HttpHeaders.IF_NONE_MATCH));
+        assertFalse(copy.containsKey("X-Client"));
+        assertEquals(List.of("\"v1\""), copy.toHttpHeaders().get("if-none-match"));
+        // The original and the shared snapshot are untouched
+        assertNull(headers.get(HttpHeaders.IF_NONE_MATCH));
+        assertEquals("demo", headers.get("X-Client"));
+        assertSame(defaults.toHttpHeaders(), headers.toHttpHeaders());
+        assertEquals(2, defaults.size());
+    }
+
+    @Test
+    void optionHeadersAreSnapshottedWhenBuilt() {
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("X-Trace", "a");
+        source.put("x-trace", "b");
+        source.put("X-Empty", null);
+        HeaderSnapshot snapshot = HeaderSnapshot.of(source);
+        source.put("X-Trace", "c");
+
+        assertEquals(1, snapshot.size());
+        assertEquals("b", snapshot.get("X-TRACE"));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.put("X-Other", "x"));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.toHttpHeaders().set("X-Other", "x"));
+
+        ReqOption option = ReqOption.builder().method(HttpMethod.GET).path("/users").header("X-Trace", "a").build();
+        assertThrows(UnsupportedOperationException.class, () -> option.getHeaders().put("X-Trace", "b"));
+        assertTrue(ReqOption.builder().method(HttpMethod.GET).path("/users").build().getHeaders().isEmpty());
+    }
+
+    @Test
+    void contextLooksUpHeadersCaseInsensitively() {
+        ReqContext ctx = new ReqContext(null);
+        ctx.setHeaders(new HeaderMap(defaults, HeaderSnapshot.of(Map.of("Idempotency-Key", "k1"))));
+
+        assertEquals("k1", ctx.getHeader("idempotency-key"));
+        assertEquals("application/xml", ctx.getHeader(HttpHeaders.ACCEPT));
+        assertNull(ctx.getHeader("X-Missing"));
+    }
+}
@@ -0,0 +1,216 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgerTests {
+
+    private final RestConfig.Hedge config = new RestConfig.Hedge();
+
+    @Test
+    void hedgeWinsWhenPrimaryIsSlow() {
+        config.setDelay(20);
+        Hedger hedger = new Hedger(config);
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = hedger.<String>hedge(() -> attempts.incrementAndGet() == 1
+                ? slow
+                : CompletableFuture.completedFuture("hedge")).join();
+
+        assertEquals("hedge", result);
+        assertEquals(2, attempts.get());
+        assertEquals(1, hedger.getHedgeWonCount());
+        assertTrue(slow.isCancelled());
+    }
+
+    @Test
+    void primaryFinishingFirstIsNotCountedAsWon() {
+        config.setDelay(10);
+        Hedger hedger = new Hedger(config);
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+
+        CompletableFuture<String> result = hedger.hedge(() -> attempts.incrementAndGet() == 1 ? primary : hedge);
+        while (attempts.get() < 2) {
+            Thread.onSpinWait();
+        }
+        primary.complete("primary");
+        hedge.complete("hedge");
+
+        assertEquals("primary", result.join());
+        assertEquals(1, hedger.getHedgeCount());
+        assertEquals(0, hedger.getHedgeWonCount());
+    }
+
+    @Test
+    void blockingCallAbortsTheLosingAttempt() throws Exception {
+        config.setDelay(20);
+        Hedger hedger = new Hedger(config);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch aborted = new CountDownLatch(1);
+
+        String result = hedger.call(() -> {
+            if (attempts.incrementAndGet() > 1) {
+                return "hedge";
+            }
+            Cancellation.register(aborted::countDown);
+            aborted.await();
+            return "primary";
+        });
+
+        assertEquals("hedge", result);
+        assertTrue(aborted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void restClientReleasesTheLosingConnection() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        try (StubServer server = new StubServer()) {
+            server.route("/", exchange -> {
+                if (requests.incrementAndGet() % 2 == 1) {
+                    try {
+                        Thread.sleep(3000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                try {
+                    StubServer.respond(exchange, 200, "text/plain", "ok".getBytes(StandardCharsets.UTF_8));
+                } catch (IOException ignored) {
+                    // The client gave up on this one
+                }
+            }).start();
+
+            RestConfig restConfig = new RestConfig();
+            restConfig.setAddress(server.address());
+            restConfig.getHedge().setDelay(50);
+            try (RestClient client = new RestClient(null, restConfig)) {
+                client.use(new HedgingMiddleware(restConfig));
+                ReqOption get = ReqOption.builder().method(HttpMethod.GET).path("/slow").build();
+
+                assertEquals("ok", client.exchange(get, String.class));
+                awaitNoLeasedConnections(client);
+                assertEquals("ok", client.exchangeAsync(get, String.class).join());
+                awaitNoLeasedConnections(client);
+            }
+        }
+    }
+
+    private static void awaitNoLeasedConnections(RestClient client) throws InterruptedException {
+        // Without the abort the slow attempt would hold its connection for three seconds
+        for (int i = 0; i < 100 && client.getTransportStats().getLeased() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, client.getTransportStats().getLeased());
+    }
+
+    @Test
+    void fastCallsAreNotHedged() throws Exception {
+        config.setDelay(200);
+        Hedger hedger = new Hedger(config);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertEquals("ok", hedger.call(() -> {
+            attempts.incrementAndGet();
+            return "ok";
+        }));
+        Thread.sleep(250);
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, hedger.getHedgeCount());
+    }
+
+    @Test
+    void budgetCapsHedges() {
+        config.setDelay(10);
+        config.setBudgetRatio(0);
+        config.setBudgetMaxTokens(1);
+        Hedger hedger = new Hedger(config);
+        AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<String> slow = new CompletableFuture<>();
+            CompletableFuture<String> result = hedger.hedge(() -> {
+                attempts.incrementAndGet();
+                return slow;
+            });
+            CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS)
+                    .execute(() -> slow.complete("done"));
+            assertEquals("done", result.join());
+        }
+
+        assertEquals(1, hedger.getHedgeCount());
+        assertEquals(4, attempts.get());
+    }
+
+    @Test
+    void failureWaitsForOtherAttempt() {
+        config.setDelay(10);
+        Hedger hedger = new Hedger(config);
+        CompletableFuture<String> failsLater = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = hedger.hedge(() -> attempts.incrementAndGet() == 1
+                ? failsLater
+                : CompletableFuture.supplyAsync(() -> "hedge",
+                CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS)));
+        CompletableFuture.delayedExecutor(30, TimeUnit.MILLISECONDS)
+                .execute(() -> failsLater.completeExceptionally(new IllegalStateException("boom")));
+
+        assertEquals("hedge", result.join());
+    }
+
+    @Test
+    void percentileDelayNeedsSamples() {
+        Hedger hedger = new Hedger(config);
+        assertEquals(-1, hedger.delayMillis());
+        for (int i = 0; i < 20; i++) {
+            hedger.hedge(() -> CompletableFuture.completedFuture("ok")).join();
+        }
+        assertEquals(config.getMinDelay(), hedger.delayMillis());
+    }
+
+    @Test
+    void percentileFollowsThePrimaryWhenItFailsOrLoses() {
+        config.setPercentile(50);
+        config.setBudgetRatio(1);
+        config.setBudgetMaxTokens(100);
+        Hedger hedger = new Hedger(config);
+
+        // Failures count too: 20 primaries failing after 30ms
+        List<CompletableFuture<String>> failing = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            failing.add(hedger.hedge(() -> CompletableFuture.supplyAsync(() -> {
+                throw new IllegalStateException("down");
+            }, CompletableFuture.delayedExecutor(30, TimeUnit.MILLISECONDS))));
+        }
+        failing.forEach(call -> assertThrows(CompletionException.class, call::join));
+        assertTrue(hedger.delayMillis() >= 30, "delay " + hedger.delayMillis());
+
+        // Hedges winning at once record how long the primary had been running, not their own time
+        List<CompletableFuture<String>> hedged = new ArrayList<>();
+        for (int i = 0; i < 44; i++) {
+            AtomicInteger attempts = new AtomicInteger();
+            hedged.add(hedger.hedge(() -> attempts.incrementAndGet() == 1
+                    ? new CompletableFuture<>()
+                    : CompletableFuture.completedFuture("hedge")));
+        }
+        hedged.forEach(call -> assertEquals("hedge", call.join()));
+        assertEquals(44, hedger.getHedgeWonCount());
+        assertTrue(hedger.delayMillis() >= 30, "delay " + hedger.delayMillis());
+    }
+}
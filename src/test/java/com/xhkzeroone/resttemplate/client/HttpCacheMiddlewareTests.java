@@ -0,0 +1,116 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpCacheMiddlewareTests {
+
+    private final MutableClock clock = new MutableClock();
+    private final HttpCacheMiddleware cache = new HttpCacheMiddleware(100, Duration.ZERO, clock);
+    private final List<ReqContext> calls = new ArrayList<>();
+
+    private Object get(Consumer<ReqContext> downstream) throws Exception {
+        ReqContext ctx = new ReqContext(null);
+        ctx.setMethod(HttpMethod.GET);
+        ctx.setPath("http://api.local/users/1");
+        ctx.setHeaders(new HashMap<>());
+        ctx.setResponseType(String.class);
+        cache.apply(c -> {
+            calls.add(c);
+            downstream.accept(c);
+        }).handle(ctx);
+        return ctx.getResponse();
+    }
+
+    private static Consumer<ReqContext> respond(HttpStatus status, String body, String cacheControl) {
+        return ctx -> {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setETag("\"v1\"");
+            headers.setCacheControl(cacheControl);
+            ctx.setResponseStatus(status);
+            ctx.setResponseHeaders(headers);
+            ctx.setResponse(body);
+        };
+    }
+
+    @Test
+    void freshEntryShortCircuitsChain() throws Exception {
+        assertEquals("one", get(respond(HttpStatus.OK, "one", "max-age=60")));
+        clock.advance(Duration.ofSeconds(30));
+
+        assertEquals("one", get(respond(HttpStatus.OK, "two", "max-age=60")));
+        assertEquals(1, calls.size());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void staleEntryIsRevalidatedWithEtag() throws Exception {
+        get(respond(HttpStatus.OK, "one", "max-age=10"));
+        clock.advance(Duration.ofSeconds(11));
+
+        assertEquals("one", get(respond(HttpStatus.NOT_MODIFIED, null, "max-age=10")));
+        assertEquals("\"v1\"", calls.get(1).getHeader("If-None-Match"));
+        assertEquals(1, cache.getRevalidatedCount());
+
+        get(respond(HttpStatus.OK, "unused", "max-age=10"));
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    void staleIfErrorServesLastGoodValue() throws Exception {
+        get(respond(HttpStatus.OK, "one", "max-age=10, stale-if-error=60"));
+        clock.advance(Duration.ofSeconds(30));
+
+        Object value = get(ctx -> {
+            throw HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "", new HttpHeaders(), new byte[0], null);
+        });
+
+        assertEquals("one", value);
+        assertEquals(1, cache.getStaleServedCount());
+    }
+
+    @Test
+    void noStoreIsNotCached() throws Exception {
+        get(respond(HttpStatus.OK, "one", "no-store"));
+        get(respond(HttpStatus.OK, "two", "no-store"));
+        assertEquals(2, calls.size());
+        assertEquals(0, cache.size());
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
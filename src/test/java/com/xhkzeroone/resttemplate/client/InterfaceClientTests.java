@@ -0,0 +1,145 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InterfaceClientTests {
+
+    private StubServer server;
+    private RestClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Echoes how the request arrived
+        server = new StubServer().route("/users", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String echo = "{\"method\":\"" + exchange.getRequestMethod()
+                    + "\",\"path\":\"" + exchange.getRequestURI().getRawPath()
+                    + "\",\"query\":\"" + exchange.getRequestURI().getRawQuery()
+                    + "\",\"accept\":\"" + exchange.getRequestHeaders().getFirst("Accept")
+                    + "\",\"client\":\"" + exchange.getRequestHeaders().getFirst("X-Client")
+                    + "\",\"trace\":\"" + exchange.getRequestHeaders().getFirst("X-Trace")
+                    + "\",\"body\":" + (body.isEmpty() ? "null" : body) + "}";
+            StubServer.json(exchange, 200, exchange.getRequestURI().getPath().endsWith("/list") ? "[" + echo + "," + echo + "]" : echo);
+        }).start();
+
+        RestConfig config = new RestConfig();
+        config.setAddress(server.address());
+        config.setDefaultHeaders(Map.of("X-Client", "default"));
+        client = new RestClient(null, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @HttpCall(path = "/users", headers = "Accept: application/json")
+    interface UserApi {
+        @HttpCall(method = "GET", path = "/{id}")
+        Echo get(@PathVar("id") long id, @QueryParam("tag") List<String> tags, @QueryParam("q") String query);
+
+        @HttpCall(method = "POST", headers = "X-Client: api")
+        CompletableFuture<Echo> create(@Body Map<String, Object> user, @HeaderParam("X-Trace") String trace);
+
+        @HttpCall(method = "DELETE", path = "/{id}")
+        void delete(@PathVar long id);
+
+        @HttpCall(path = "list")
+        List<Echo> list();
+
+        default Echo first() {
+            return get(1, List.of(), null);
+        }
+    }
+
+    interface Unannotated {
+        Echo get();
+    }
+
+    interface UnboundParameter {
+        @HttpCall(path = "/users")
+        Echo get(String id);
+    }
+
+    @Test
+    void bindsPathQueryAndHeaderArguments() {
+        UserApi api = client.createClient(UserApi.class);
+
+        Echo echo = api.get(7, List.of("a b", "c"), "x&y");
+        assertEquals("GET", echo.method);
+        assertEquals("/users/7", echo.path);
+        assertTrue(echo.query.contains("tag=a%20b&tag=c"), echo.query);
+        assertTrue(echo.query.contains("q=x%26y"), echo.query);
+        assertEquals("application/json", echo.accept);
+        assertEquals("default", echo.client);
+
+        // Null query parameters are left out
+        assertEquals("null", api.get(8, List.of(), null).query);
+        assertEquals("/users/1", api.first().path);
+    }
+
+    @Test
+    void sendsBodiesAsyncAndGenericResponses() {
+        UserApi api = client.createClient(UserApi.class);
+
+        Echo created = api.create(Map.of("name", "Ann"), "t-1").join();
+        assertEquals("POST", created.method);
+        assertEquals("/users", created.path);
+        assertEquals(Map.of("name", "Ann"), created.body);
+        assertEquals("api", created.client);
+        assertEquals("t-1", created.trace);
+        assertEquals("null", api.create(Map.of(), null).join().trace);
+
+        List<Echo> list = api.list();
+        assertEquals(2, list.size());
+        assertEquals("/users/list", list.get(0).path);
+
+        assertDoesNotThrow(() -> api.delete(3));
+    }
+
+    @Test
+    void middlewaresCanStillRewriteTheRequest() {
+        client.use(next -> ctx -> {
+            if (ctx.getPath().endsWith("/{id}")) {
+                ctx.setPath("/users/rewritten/{id}");
+            }
+            ctx.getHeaders().put("X-Trace", "middleware");
+            next.handle(ctx);
+        });
+        Echo echo = client.createClient(UserApi.class).get(9, List.of(), null);
+
+        assertEquals("/users/rewritten/9", echo.path);
+        assertEquals("middleware", echo.trace);
+    }
+
+    @Test
+    void rejectsIncompleteInterfacesWhenCreated() {
+        assertThrows(IllegalArgumentException.class, () -> client.createClient(Unannotated.class));
+        assertThrows(IllegalArgumentException.class, () -> client.createClient(UnboundParameter.class));
+
+        UserApi api = client.createClient(UserApi.class);
+        assertEquals(api, api);
+        assertNotEquals(api, client.createClient(UserApi.class));
+        assertEquals("UserApi client", api.toString());
+    }
+
+    static class Echo {
+        public String method;
+        public String path;
+        public String query;
+        public String accept;
+        public String client;
+        public String trace;
+        public Object body;
+    }
+}
@@ -0,0 +1,147 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonArrayStreamTests {
+
+    private StubServer server;
+    private RestClient client;
+    private String address;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubServer();
+        // Chunked array of {"id":n}; count=-1 streams until the client goes away
+        server.route("/items", exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            long count = query != null ? Long.parseLong(query.substring("count=".length())) : -1;
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write('[');
+                for (long i = 0; count < 0 || i < count; i++) {
+                    out.write(((i > 0 ? "," : "") + "{\"id\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+                }
+                out.write(']');
+            } catch (IOException ignored) {
+                // Client closed the stream early
+            }
+        });
+        // Unbounded gzip-encoded array
+        server.route("/gzipped-items", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                out.write('[');
+                for (long i = 0; ; i++) {
+                    out.write(((i > 0 ? "," : "") + "{\"id\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (IOException ignored) {
+                // Client closed the stream early
+            }
+        });
+        server.route("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        address = server.address();
+
+        RestConfig config = new RestConfig();
+        config.setConnectTimeout(1000);
+        config.setReadTimeout(5000);
+        client = new RestClient(null, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    private ReqOption get(String path) {
+        return ReqOption.builder().method(HttpMethod.GET).path(address + path).build();
+    }
+
+    @Test
+    void consumerSeesEveryElementInOrder() {
+        AtomicLong count = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+
+        client.exchangeStream(get("/items?count=200000"), Item.class, item -> {
+            count.incrementAndGet();
+            sum.addAndGet(item.id());
+        });
+
+        assertEquals(200_000, count.get());
+        assertEquals(199_999L * 200_000 / 2, sum.get());
+        assertEquals(0, client.getTransportStats().getLeased());
+    }
+
+    @Test
+    void closingStreamEarlyReleasesUnboundedResponse() {
+        try (Stream<Item> items = client.exchangeStream(get("/items"), Item.class).stream()) {
+            List<Long> ids = items.limit(5).map(Item::id).collect(Collectors.toList());
+            assertEquals(List.of(0L, 1L, 2L, 3L, 4L), ids);
+        }
+        assertEquals(0, client.getTransportStats().getLeased());
+    }
+
+    @Test
+    void closingCompressedStreamEarlyAbortsInsteadOfDraining() {
+        RestConfig config = new RestConfig();
+        config.setReadTimeout(5000);
+        config.getTransport().getCompression().setEnabled(true);
+        try (RestClient compressing = new RestClient(null, config)) {
+            // Closing by draining would never finish: the body has no end
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                try (Stream<Item> items = compressing.exchangeStream(get("/gzipped-items"), Item.class).stream()) {
+                    assertEquals(List.of(0L, 1L, 2L), items.limit(3).map(Item::id).collect(Collectors.toList()));
+                }
+            });
+            assertEquals(0, compressing.getTransportStats().getLeased());
+        }
+    }
+
+    @Test
+    void emptyArrayHasNoElements() {
+        try (JsonArrayStream<Map> items = client.exchangeStream(get("/items?count=0"), Map.class)) {
+            assertFalse(items.hasNext());
+        }
+    }
+
+    @Test
+    void errorStatusIsThrownBeforeStreaming() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> client.exchangeStream(get("/missing"), Item.class));
+        assertInstanceOf(HttpClientErrorException.NotFound.class, e.getCause());
+    }
+
+    @Test
+    void webClientStreamsElements() {
+        try (WebClient webClient = new WebClient().baseUrl(address);
+             JsonArrayStream<Item> items = webClient.target("/items").param("count", "3").stream(Item.class)) {
+            assertEquals(List.of(0L, 1L, 2L), items.stream().map(Item::id).collect(Collectors.toList()));
+        }
+    }
+
+    record Item(long id) {
+    }
+}
@@ -0,0 +1,180 @@
+package com.xhkzeroone.resttemplate.client;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTests {
+
+    @Test
+    void bucketsStayWithinRelativeError() {
+        for (long value = 1; value < 1L << 40; value = value * 3 + 7) {
+            long upper = LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(value));
+            assertTrue(upper >= value, "value " + value);
+            assertTrue(upper - value <= Math.max(value / 32, 1), "value " + value + " upper " + upper);
+        }
+    }
+
+    @Test
+    void percentilesOfUniformLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), histogram.getMaxNanos());
+        assertEquals(500, TimeUnit.NANOSECONDS.toMillis(histogram.valueAtPercentile(50)), 500 * 0.04);
+        assertEquals(990, TimeUnit.NANOSECONDS.toMillis(histogram.valueAtPercentile(99)), 990 * 0.04);
+        assertEquals(0, new LatencyHistogram().valueAtPercentile(99));
+    }
+
+    @Test
+    void coarserHistogramsClampAtTheirMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram(4, 36);
+        for (long value = 1; value < 1L << 37; value = value * 3 + 7) {
+            long upper = LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(value, 4), 4);
+            assertTrue(upper >= value && upper - value <= Math.max(value / 16, 1), "value " + value + " upper " + upper);
+        }
+        histogram.record(TimeUnit.HOURS.toNanos(1));
+        assertEquals((1L << 37) - 1, histogram.getMaxNanos());
+        assertEquals((1L << 37) - 1, histogram.valueAtPercentile(50));
+    }
+
+    @Test
+    void middlewareExportsPerTemplateAndStatusClass() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RestConfig config = new RestConfig();
+        config.setName("users");
+        MetricsMiddleware metrics = new MetricsMiddleware(config, registry);
+        Handler handler = metrics.apply(ctx -> {
+            if ("/fail".equals(ctx.getPath())) {
+                throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+            }
+            ctx.setResponseStatus(HttpStatus.OK);
+        });
+
+        for (int i = 0; i < 3; i++) {
+            ReqContext ctx = new ReqContext(null);
+            ctx.setMethod(HttpMethod.GET);
+            ctx.setPath("/users/{id}");
+            handler.handle(ctx);
+        }
+        ReqContext failing = new ReqContext(null);
+        failing.setMethod(HttpMethod.GET);
+        failing.setPath("/fail");
+        assertThrows(HttpServerErrorException.class, () -> handler.handle(failing));
+
+        assertEquals(3, metrics.getHistogram(HttpMethod.GET, "/users/{id}", "2xx").getCount());
+        assertEquals(1, metrics.getHistogram(HttpMethod.GET, "/fail", "5xx").getCount());
+        FunctionTimer timer = registry.get(MetricsMiddleware.METRIC_NAME)
+                .tags("client", "users", "uri", "/users/{id}", "status", "2xx")
+                .functionTimer();
+        assertEquals(3, timer.count());
+        assertNotNull(registry.get(MetricsMiddleware.METRIC_NAME + ".percentile")
+                .tags("uri", "/users/{id}", "phi", "0.99")
+                .gauge());
+    }
+
+    @Test
+    void rotatingHistogramForgetsOldLatencies() {
+        AtomicLong nanos = new AtomicLong();
+        RotatingLatencyHistogram histogram = new RotatingLatencyHistogram(TimeUnit.SECONDS.toNanos(3), 3, nanos::get);
+        histogram.record(TimeUnit.SECONDS.toNanos(5));
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertEquals(TimeUnit.SECONDS.toNanos(5), histogram.getMaxNanos());
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(TimeUnit.SECONDS.toNanos(5), histogram.getMaxNanos());
+
+        // The spike is older than the window now, the later call is not
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(10, TimeUnit.NANOSECONDS.toMillis(histogram.getMaxNanos()), 1);
+        assertEquals(10, TimeUnit.NANOSECONDS.toMillis(histogram.valueAtPercentile(99)), 1);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    @Test
+    void gaugesCoverTheRecentWindowAndRejectionsHaveTheirOwnStatus() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AtomicLong nanos = new AtomicLong();
+        RestConfig config = new RestConfig();
+        config.setName("users");
+        MetricsMiddleware metrics = new MetricsMiddleware(config, registry, nanos::get);
+        Handler handler = metrics.apply(ctx -> {
+            if ("/limited".equals(ctx.getPath())) {
+                throw new RequestRejectedException("limited");
+            }
+            ctx.setResponseStatus(HttpStatus.OK);
+        });
+        ReqContext ok = new ReqContext(null);
+        ok.setMethod(HttpMethod.GET);
+        ok.setPath("/users");
+        handler.handle(ok);
+        ReqContext limited = new ReqContext(null);
+        limited.setMethod(HttpMethod.GET);
+        limited.setPath("/limited");
+        assertThrows(RequestRejectedException.class, () -> handler.handle(limited));
+
+        assertEquals(1, metrics.getHistogram(HttpMethod.GET, "/limited", "REJECTED").getCount());
+        assertNull(metrics.getHistogram(HttpMethod.GET, "/limited", "IO_ERROR"));
+        assertTrue(registry.get(MetricsMiddleware.METRIC_NAME + ".max").tags("uri", "/users").gauge().value() > 0);
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        assertEquals(0, registry.get(MetricsMiddleware.METRIC_NAME + ".max").tags("uri", "/users").gauge().value());
+        assertEquals(1, registry.get(MetricsMiddleware.METRIC_NAME).tags("uri", "/users").functionTimer().count());
+    }
+
+    @Test
+    void seriesBeyondTheCapAreRecordedAsOther() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetricsMiddleware metrics = new MetricsMiddleware(new RestConfig(), registry);
+        Handler handler = metrics.apply(ctx -> ctx.setResponseStatus(HttpStatus.OK));
+        for (int i = 0; i < MetricsMiddleware.MAX_SERIES + 10; i++) {
+            ReqContext ctx = new ReqContext(null);
+            ctx.setMethod(HttpMethod.GET);
+            ctx.setPath("/route-" + i);
+            handler.handle(ctx);
+        }
+
+        assertNotNull(metrics.getHistogram(HttpMethod.GET, "/route-" + (MetricsMiddleware.MAX_SERIES - 1), "2xx"));
+        assertNull(metrics.getHistogram(HttpMethod.GET, "/route-" + MetricsMiddleware.MAX_SERIES, "2xx"));
+        assertEquals(10, metrics.getHistogram(HttpMethod.GET, "OTHER", "2xx").getCount());
+        assertEquals(MetricsMiddleware.MAX_SERIES + 1, registry.find(MetricsMiddleware.METRIC_NAME).functionTimers().size());
+        metrics.close();
+    }
+
+    @Test
+    void clientsWithTheSameNameDoNotShareMeters() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RestConfig config = new RestConfig();
+        config.setName("users");
+        MetricsMiddleware first = new MetricsMiddleware(config, registry);
+        MetricsMiddleware second = new MetricsMiddleware(config, registry);
+        assertEquals("users", first.getClientName());
+        assertEquals("users-2", second.getClientName());
+
+        ReqContext ctx = new ReqContext(null);
+        ctx.setMethod(HttpMethod.GET);
+        ctx.setPath("/users");
+        second.apply(call -> call.setResponseStatus(HttpStatus.OK)).handle(ctx);
+        assertEquals(1, registry.get(MetricsMiddleware.METRIC_NAME).tags("client", "users-2").functionTimer().count());
+
+        // Closing removes the meters and frees the name
+        second.close();
+        assertNull(registry.find(MetricsMiddleware.METRIC_NAME).tags("client", "users-2").functionTimer());
+        first.close();
+        assertEquals("users", new MetricsMiddleware(config, registry).getClientName());
+    }
+}
@@ -0,0 +1,218 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadBalancerTests {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final RestConfig.LoadBalance config = new RestConfig.LoadBalance();
+
+    private LoadBalancer balancer(String... addresses) {
+        config.setConsecutiveFailures(3);
+        config.setBaseEjectionTime(1000);
+        config.setRampUpTime(1000);
+        return new LoadBalancer(List.of(addresses), config, nanos::get);
+    }
+
+    private void call(LoadBalancer.Endpoint endpoint, long millis, boolean failed) {
+        long startedAt = endpoint.start();
+        nanos.addAndGet(millis * 1_000_000);
+        endpoint.complete(startedAt, failed);
+    }
+
+    private int picks(LoadBalancer balancer, LoadBalancer.Endpoint endpoint, int calls) {
+        int picked = 0;
+        for (int i = 0; i < calls; i++) {
+            if (balancer.choose() == endpoint) {
+                picked++;
+            }
+        }
+        return picked;
+    }
+
+    @Test
+    void prefersLowerLatencyTimesOutstandingCalls() {
+        LoadBalancer balancer = balancer("http://a", "http://b");
+        LoadBalancer.Endpoint a = balancer.getEndpoints().get(0);
+        LoadBalancer.Endpoint b = balancer.getEndpoints().get(1);
+        call(a, 10, false);
+        call(b, 50, false);
+
+        assertEquals(10, a.getLatencyMillis(), 0.001);
+        assertEquals(100, picks(balancer, a, 100));
+
+        // 10ms x 7 in flight costs more than 50ms x 1
+        for (int i = 0; i < 6; i++) {
+            a.start();
+        }
+        assertEquals(100, picks(balancer, b, 100));
+    }
+
+    @Test
+    void latencyAverageReactsToPeaksAndDecays() {
+        LoadBalancer balancer = balancer("http://a", "http://b");
+        LoadBalancer.Endpoint a = balancer.getEndpoints().get(0);
+        call(a, 10, false);
+        call(a, 200, false);
+        assertEquals(200, a.getLatencyMillis(), 0.001);
+
+        nanos.addAndGet(30_000_000_000L);
+        call(a, 10, false);
+        assertTrue(a.getLatencyMillis() < 20, "latency " + a.getLatencyMillis());
+    }
+
+    @Test
+    void ejectsAfterConsecutiveFailuresAndRampsBackIn() {
+        LoadBalancer balancer = balancer("http://a", "http://b", "http://c");
+        LoadBalancer.Endpoint a = balancer.getEndpoints().get(0);
+        for (LoadBalancer.Endpoint endpoint : balancer.getEndpoints()) {
+            call(endpoint, 10, false);
+        }
+        call(a, 10, true);
+        call(a, 10, false);
+        call(a, 10, true);
+        call(a, 10, true);
+        assertFalse(a.isEjected());
+
+        call(a, 10, true);
+        assertTrue(a.isEjected());
+        assertEquals(0, picks(balancer, a, 200));
+
+        // Back after the ejection time, first at a fraction of its share (about 270 of the 1000), then fully
+        nanos.addAndGet(1_000_000_000L);
+        assertFalse(a.isEjected());
+        int returning = picks(balancer, a, 3000);
+        assertTrue(returning > 0 && returning < 500, "picked " + returning);
+        nanos.addAndGet(1_000_000_000L);
+        int recovered = picks(balancer, a, 3000);
+        assertTrue(recovered > 700, "picked " + recovered);
+
+        // Failing again before a healthy call after the ramp-up doubles the ejection time
+        for (int i = 0; i < 3; i++) {
+            call(a, 10, true);
+        }
+        nanos.addAndGet(1_500_000_000L);
+        assertTrue(a.isEjected());
+        nanos.addAndGet(500_000_000L);
+        assertFalse(a.isEjected());
+    }
+
+    @Test
+    void failuresArePenalizedUntilThePenaltyFades() {
+        config.setDecayTime(1000);
+        config.setFailurePenalty(500);
+        LoadBalancer balancer = balancer("http://a", "http://b");
+        LoadBalancer.Endpoint a = balancer.getEndpoints().get(0);
+        LoadBalancer.Endpoint b = balancer.getEndpoints().get(1);
+        call(a, 1, false);
+        call(b, 50, false);
+        assertEquals(100, picks(balancer, a, 100));
+
+        // Failing in 1ms would otherwise keep a the cheapest
+        call(a, 1, true);
+        assertEquals(1, a.getLatencyMillis(), 0.5);
+        assertEquals(100, picks(balancer, b, 100));
+
+        // 500ms * e^-3 is below b's 50ms
+        nanos.addAndGet(3_000_000_000L);
+        assertEquals(100, picks(balancer, a, 100));
+    }
+
+    @Test
+    void errorsReleaseTheEndpoint() {
+        LoadBalancer balancer = balancer("http://a");
+        Handler handler = balancer.apply(ctx -> {
+            throw new StackOverflowError();
+        });
+        ReqContext ctx = new ReqContext(null);
+        ctx.setPath("/users");
+
+        assertThrows(StackOverflowError.class, () -> handler.handle(ctx));
+        assertEquals(0, balancer.getEndpoints().get(0).getOutstanding());
+    }
+
+    @Test
+    void breakersAreKeyedByRouteWhenCallsAreBalanced() {
+        RestConfig restConfig = new RestConfig();
+        assertEquals(CircuitBreakerMiddleware.Scope.HOST, new CircuitBreakerMiddleware(restConfig).getScope());
+        restConfig.setAddresses(List.of("http://a", "http://b"));
+        assertEquals(CircuitBreakerMiddleware.Scope.ROUTE, new CircuitBreakerMiddleware(restConfig).getScope());
+    }
+
+    @Test
+    void keepsEnoughEndpointsInRotation() {
+        config.setMaxEjectionPercent(50);
+        LoadBalancer balancer = balancer("http://a", "http://b");
+        for (LoadBalancer.Endpoint endpoint : balancer.getEndpoints()) {
+            for (int i = 0; i < 3; i++) {
+                call(endpoint, 10, true);
+            }
+        }
+        assertTrue(balancer.getEndpoints().get(0).isEjected());
+        assertFalse(balancer.getEndpoints().get(1).isEjected());
+        assertEquals(200, picks(balancer, balancer.getEndpoints().get(1), 200));
+    }
+
+    @Test
+    void restClientSteersAwayFromAFastButFailingReplica() throws Exception {
+        AtomicInteger healthyCalls = new AtomicInteger();
+        AtomicInteger failingCalls = new AtomicInteger();
+        try (StubServer healthy = server(200, 20, healthyCalls); StubServer failing = server(500, 0, failingCalls)) {
+            RestConfig restConfig = new RestConfig();
+            restConfig.setAddresses(List.of(healthy.address(), failing.address()));
+            restConfig.getLoadBalance().setConsecutiveFailures(3);
+            try (RestClient client = new RestClient(null, restConfig)) {
+                ReqOption get = ReqOption.builder().method(HttpMethod.GET).path("/users/{id}").pathVars("id", 1).build();
+                // Absolute URLs bypass the balancer, so this warms up connections without recording latency
+                for (StubServer server : List.of(healthy, failing)) {
+                    ReqOption warmUp = ReqOption.builder().method(HttpMethod.GET).path(server.address() + "/users/0").build();
+                    for (int i = 0; i < 3; i++) {
+                        try {
+                            client.exchange(warmUp, Map.class);
+                        } catch (RuntimeException ignored) {
+                            // The failing replica
+                        }
+                    }
+                }
+                healthyCalls.set(0);
+                failingCalls.set(0);
+
+                // The failing replica answers fastest, but its first failure costs it the penalty
+                int failures = 0;
+                for (int i = 0; i < 50; i++) {
+                    try {
+                        assertEquals("/users/1", client.exchange(get, Map.class).get("path"));
+                    } catch (RuntimeException e) {
+                        failures++;
+                    }
+                }
+                assertEquals(1, failures);
+                assertEquals(1, failingCalls.get());
+
+                assertEquals("/users/1", client.exchangeAsync(get, Map.class).join().get("path"));
+                assertEquals(50, healthyCalls.get());
+            }
+        }
+    }
+
+    private static StubServer server(int status, long delayMillis, AtomicInteger calls) throws Exception {
+        return new StubServer().route("/users", exchange -> {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getRequestBody().readAllBytes();
+            StubServer.json(exchange, status, "{\"path\":\"" + exchange.getRequestURI().getPath() + "\"}");
+        }).start();
+    }
+}
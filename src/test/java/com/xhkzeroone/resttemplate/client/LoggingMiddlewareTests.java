@@ -0,0 +1,191 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoggingMiddlewareTests {
+
+    private final RestConfig.Logging config = new RestConfig.Logging();
+
+    @Test
+    void redactsSensitiveHeadersCaseInsensitively() {
+        LogFormat format = new LogFormat(config);
+
+        String headers = format.headers(Map.of("authorization", List.of("Bearer secret"), "Accept", List.of("application/json")));
+
+        assertFalse(headers.contains("secret"));
+        assertTrue(headers.contains("authorization=***"));
+        assertTrue(headers.contains("Accept=application/json"));
+    }
+
+    @Test
+    void truncatesLongBodies() {
+        config.setMaxBodyLength(4);
+        LogFormat format = new LogFormat(config);
+
+        assertEquals("abcd... (10 chars)", format.body("abcdefghij"));
+        assertEquals("abcd... (6 bytes)", format.body("abcdef".getBytes()));
+        assertEquals("abc", format.body("abc"));
+        assertEquals("(no body)", format.body(null));
+    }
+
+    @Test
+    void samplesSuccessesAndErrorsSeparately() {
+        config.setSuccessSampleRate(0);
+        config.setErrorSampleRate(1);
+        LogFormat format = new LogFormat(config);
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(format.sample(false));
+            assertTrue(format.sample(true));
+        }
+    }
+
+    @Test
+    void dropsInsteadOfBlockingWhenBufferIsFull() throws Exception {
+        Logger logger = Logger.getLogger("logging-middleware-tests");
+        logger.setUseParentHandlers(false);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        AsyncLogger asyncLogger = new AsyncLogger(2, "logging-tests");
+
+        // The first message occupies the writer, the next two fill the buffer
+        assertTrue(asyncLogger.log(logger, Level.INFO, () -> "first"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertTrue(asyncLogger.log(logger, Level.INFO, () -> "second"));
+        assertTrue(asyncLogger.log(logger, Level.INFO, () -> "third"));
+        assertFalse(asyncLogger.log(logger, Level.INFO, () -> "dropped"));
+        assertEquals(1, asyncLogger.getDroppedCount());
+        release.countDown();
+    }
+
+    @Test
+    void idleWriterWakesForTheNextMessage() throws Exception {
+        BlockingQueue<LogRecord> records = new LinkedBlockingQueue<>();
+        Logger logger = capturing("logging-middleware-tests.wake", records);
+        AsyncLogger asyncLogger = new AsyncLogger(16, "logging-tests-wake");
+
+        asyncLogger.log(logger, Level.INFO, () -> "first");
+        assertEquals("first", records.poll(5, TimeUnit.SECONDS).getMessage());
+        Thread.sleep(50);
+        asyncLogger.log(logger, Level.INFO, () -> "second");
+        assertEquals("second", records.poll(5, TimeUnit.SECONDS).getMessage());
+    }
+
+    @Test
+    void writerSurvivesErrorsFromMessages() throws Exception {
+        BlockingQueue<LogRecord> records = new LinkedBlockingQueue<>();
+        Logger logger = capturing("logging-middleware-tests.errors", records);
+        AsyncLogger asyncLogger = new AsyncLogger(16, "logging-tests-errors");
+
+        asyncLogger.log(logger, Level.INFO, () -> {
+            throw new StackOverflowError();
+        });
+        asyncLogger.log(logger, Level.INFO, () -> "after");
+
+        assertEquals("after", records.poll(5, TimeUnit.SECONDS).getMessage());
+        assertEquals(1, asyncLogger.getFailedCount());
+    }
+
+    @Test
+    void middlewareLogsTheCallAsItWasWhenSampled() throws Exception {
+        BlockingQueue<LogRecord> records = new LinkedBlockingQueue<>();
+        CountDownLatch release = new CountDownLatch(1);
+        Logger blocker = Logger.getLogger("logging-middleware-tests.blocker");
+        blocker.setUseParentHandlers(false);
+        blocker.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        capturing(LoggingMiddleware.class.getName(), records);
+        AsyncLogger asyncLogger = new AsyncLogger(16, "logging-tests-capture");
+        ReqContext ctx = new ReqContext(null);
+        ctx.setMethod(HttpMethod.GET);
+        ctx.setPath("/users/{id}");
+        ctx.setHeaders(new HashMap<>(Map.of("Accept", "application/json")));
+
+        // Keep the writer busy so the call's line is formatted only after the context has changed
+        asyncLogger.log(blocker, Level.INFO, () -> "blocking");
+        new LoggingMiddleware(new RestConfig(), asyncLogger)
+                .apply(call -> call.setResponseStatus(HttpStatus.NOT_FOUND))
+                .handle(ctx);
+        ctx.setPath("/changed");
+        ctx.getHeaders().put("X-Later", "1");
+        ctx.setResponseStatus(HttpStatus.OK);
+        release.countDown();
+
+        LogRecord record = records.poll(5, TimeUnit.SECONDS);
+        assertEquals(Level.WARNING, record.getLevel());
+        assertTrue(record.getMessage().contains("GET /users/{id}"), record.getMessage());
+        assertTrue(record.getMessage().contains("404"), record.getMessage());
+        assertFalse(record.getMessage().contains("X-Later"), record.getMessage());
+    }
+
+    private static Logger capturing(String name, BlockingQueue<LogRecord> records) {
+        Logger logger = Logger.getLogger(name);
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return logger;
+    }
+}
@@ -0,0 +1,126 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MiddlewareChainTests {
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private StubServer server;
+    private RestClient client;
+    private String address;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubServer().route("/users", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            StubServer.json(exchange, 200, "{\"path\":\"" + exchange.getRequestURI().getPath() + "\"}");
+        }).start();
+        address = server.address();
+
+        RestConfig config = new RestConfig();
+        config.setConnectTimeout(1000);
+        config.setReadTimeout(2000);
+        client = new RestClient(null, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    private ReqOption.Builder get(String path) {
+        return ReqOption.builder().method(HttpMethod.GET).path(address + path);
+    }
+
+    private Middleware tracing(String name) {
+        return next -> ctx -> {
+            events.add(name + ">");
+            next.handle(ctx);
+            events.add("<" + name);
+        };
+    }
+
+    @Test
+    void scopedMiddlewaresRunInsideClientMiddlewares() {
+        client.use(tracing("a"));
+        client.use(tracing("b"));
+
+        String body = client.exchange(get("/users/1").use(tracing("c")).use(tracing("d")).build(), String.class);
+
+        assertTrue(body.contains("/users/1"));
+        assertEquals(List.of("a>", "b>", "c>", "d>", "<d", "<c", "<b", "<a"), events);
+    }
+
+    @Test
+    void scopedMiddlewaresRunInsideClientMiddlewaresAsync() {
+        client.use(tracing("a"));
+        client.use(tracing("b"));
+
+        CompletableFuture<String> future = client.exchangeAsync(
+                get("/users/1").use(tracing("c")).use(tracing("d")).build(), String.class);
+
+        assertTrue(future.join().contains("/users/1"));
+        assertEquals(List.of("a>", "b>", "c>", "d>", "<d", "<c", "<b", "<a"), events);
+    }
+
+    @Test
+    void scopedMiddlewaresApplyToTheirOwnRequestOnly() {
+        client.use(tracing("a"));
+
+        client.exchange(get("/users/1").use(tracing("c")).build(), String.class);
+        client.exchange(get("/users/2").build(), String.class);
+        client.exchangeAsync(get("/users/3").build(), String.class).join();
+
+        assertEquals(List.of("a>", "c>", "<c", "<a", "a>", "<a", "a>", "<a"), events);
+    }
+
+    @Test
+    void useRebuildsTheChainForLaterCalls() {
+        client.use(tracing("a"));
+        client.exchange(get("/users/1").build(), String.class);
+        assertEquals(List.of("a>", "<a"), events);
+
+        Middleware b = tracing("b");
+        client.use(b);
+        events.clear();
+        client.exchange(get("/users/2").build(), String.class);
+        assertEquals(List.of("a>", "b>", "<b", "<a"), events);
+
+        events.clear();
+        client.exchangeAsync(get("/users/3").build(), String.class).join();
+        assertEquals(List.of("a>", "b>", "<b", "<a"), events);
+        assertEquals(2, client.getMiddlewares().size());
+        assertSame(b, client.getMiddlewares().get(1));
+    }
+
+    @Test
+    void chainIsBuiltOnceAndWithLeavesItUnchanged() throws Exception {
+        MiddlewareChain chain = MiddlewareChain.of(List.of(tracing("a")),
+                ctx -> events.add("send"), ctx -> CompletableFuture.runAsync(() -> events.add("send")));
+        MiddlewareChain extended = chain.with(tracing("b"));
+
+        assertSame(chain.handler(), chain.handler());
+        assertSame(chain.asyncHandler(), chain.asyncHandler());
+        assertEquals(1, chain.getMiddlewares().size());
+        assertEquals(2, extended.getMiddlewares().size());
+
+        chain.handler().handle(new ReqContext(null));
+        assertEquals(List.of("a>", "send", "<a"), events);
+
+        events.clear();
+        ReqContext context = new ReqContext(null);
+        context.setMiddlewares(List.of(tracing("c")));
+        extended.asyncHandler().handle(context).join();
+        assertEquals(List.of("a>", "b>", "c>", "send", "<c", "<b", "<a"), events);
+    }
+}
@@ -0,0 +1,152 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTests {
+
+    private static final long MS = 1_000_000;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final RestConfig.RateLimit config = new RestConfig.RateLimit();
+
+    @Test
+    void bucketAllowsBurstThenPacesAtRate() {
+        TokenBucket bucket = new TokenBucket(10, 3, nanos::get);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertEquals(100 * MS, bucket.reserve(200 * MS));
+
+        nanos.addAndGet(200 * MS);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void failFastRejectsWhenEmpty() {
+        config.setRate(1);
+        config.setBurst(1);
+        config.setMode(RateLimiter.Mode.FAIL_FAST);
+        RateLimiter limiter = new RateLimiter(config, nanos::get);
+
+        assertEquals(0, limiter.reserve(null));
+        assertThrows(RequestRejectedException.class, () -> limiter.reserve(null));
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    void blockingModeWaitsWithinMaxWait() {
+        config.setRate(10);
+        config.setBurst(1);
+        config.setMaxWait(150);
+        RateLimiter limiter = new RateLimiter(config, nanos::get);
+
+        assertEquals(0, limiter.reserve(null));
+        assertEquals(100 * MS, limiter.reserve(null));
+        assertThrows(RequestRejectedException.class, () -> limiter.reserve(null));
+    }
+
+    @Test
+    void routeTemplatesHaveTheirOwnBucket() {
+        RestConfig.RateLimit.Route route = new RestConfig.RateLimit.Route();
+        route.setRate(1);
+        config.getRoutes().put("GET /users/{id}", route);
+        config.setMode(RateLimiter.Mode.FAIL_FAST);
+        RateLimiter limiter = new RateLimiter(config, nanos::get);
+
+        TokenBucket bucket = limiter.route(HttpMethod.GET, "/users/{id}");
+        assertNotNull(bucket);
+        assertSame(bucket, limiter.route(HttpMethod.GET, URI.create("http://localhost/users/42")));
+        assertNull(limiter.route(HttpMethod.POST, "/users/{id}"));
+        assertNull(limiter.route(HttpMethod.GET, URI.create("http://localhost/orders/1")));
+
+        limiter.reserve(bucket);
+        assertThrows(RequestRejectedException.class, () -> limiter.reserve(bucket));
+        assertEquals(0, limiter.reserve(null));
+    }
+
+    @Test
+    void clientRejectionGivesTheRoutePermitBack() {
+        RestConfig.RateLimit.Route route = new RestConfig.RateLimit.Route();
+        route.setRate(1);
+        route.setBurst(3);
+        config.getRoutes().put("/users/{id}", route);
+        config.setRate(1);
+        config.setBurst(1);
+        config.setMode(RateLimiter.Mode.FAIL_FAST);
+        RateLimiter limiter = new RateLimiter(config, nanos::get);
+        TokenBucket bucket = limiter.route(HttpMethod.GET, "/users/{id}");
+
+        assertEquals(0, limiter.reserve(bucket));
+        for (int i = 0; i < 5; i++) {
+            assertThrows(RequestRejectedException.class, () -> limiter.reserve(bucket));
+        }
+        assertEquals(5, limiter.getRejectedCount());
+
+        // One second refills the one permit the accepted call took, and nothing was lost to rejections
+        nanos.addAndGet(1000 * MS);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire(), "permit " + i);
+        }
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void quotaRateLastsUntilTheResetWindowPasses() {
+        config.setRate(100);
+        RateLimiter limiter = new RateLimiter(config, nanos::get);
+        TokenBucket bucket = limiter.getClientBucket();
+
+        HttpHeaders quota = new HttpHeaders();
+        quota.set("RateLimit-Remaining", "20");
+        quota.set("RateLimit-Reset", "10");
+        limiter.onResponse(null, 200, quota);
+        assertEquals(2, bucket.getRate(), 0.01);
+
+        // Later responses without quota headers leave the lowered rate in place until the window resets
+        limiter.onResponse(null, 200, new HttpHeaders());
+        nanos.addAndGet(9_999 * MS);
+        assertEquals(2, bucket.getRate(), 0.01);
+
+        nanos.addAndGet(MS);
+        assertEquals(100, bucket.getRate(), 0.01);
+        for (int i = 0; i < config.getBurst(); i++) {
+            assertTrue(bucket.tryAcquire(), "permit " + i);
+        }
+        nanos.addAndGet(10 * MS);
+        assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    void adaptsToRateLimitHeadersAndRetryAfter() {
+        config.setRate(100);
+        RateLimiter limiter = new RateLimiter(config, nanos::get);
+        TokenBucket bucket = limiter.getClientBucket();
+
+        HttpHeaders quota = new HttpHeaders();
+        quota.set("RateLimit-Remaining", "20");
+        quota.set("RateLimit-Reset", "10");
+        limiter.onResponse(null, 200, quota);
+        assertEquals(2, bucket.getRate(), 0.01);
+
+        quota.set("RateLimit-Remaining", "5000");
+        limiter.onResponse(null, 200, quota);
+        assertEquals(100, bucket.getRate(), 0.01);
+
+        HttpHeaders tooMany = new HttpHeaders();
+        tooMany.set(HttpHeaders.RETRY_AFTER, "2");
+        limiter.onResponse(null, 429, tooMany);
+        assertFalse(bucket.tryAcquire());
+        nanos.addAndGet(2000 * MS);
+        assertTrue(bucket.tryAcquire());
+    }
+}
@@ -0,0 +1,204 @@
+package com.xhkzeroone.resttemplate.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestClientTests {
+
+    private StubServer server;
+    private RestClient client;
+    private String address;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubServer().route("/users", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/slow")) {
+                sleep(2000);
+            }
+            int status = path.endsWith("/404") ? 404 : 200;
+            if (path.endsWith("/empty")) {
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+                return;
+            }
+            StubServer.json(exchange, status, "{\"path\":\"" + path + "\",\"query\":\"" + exchange.getRequestURI().getRawQuery() + "\"}");
+        }).start();
+        address = server.address();
+
+        RestConfig config = new RestConfig();
+        config.setConnectTimeout(1000);
+        config.setReadTimeout(2000);
+        client = new RestClient(null, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    private ReqOption.Builder get(String path) {
+        return ReqOption.builder().method(HttpMethod.GET).path(address + path);
+    }
+
+    @Test
+    void exchangeAsyncDecodesBody() {
+        Map<?, ?> body = client.exchangeAsync(get("/users/{id}").pathVars("id", 7).build(), Map.class).join();
+        assertEquals("/users/7", body.get("path"));
+    }
+
+    @Test
+    void exchangeAsyncRunsMiddlewaresOnCompletion() {
+        List<String> events = new ArrayList<>();
+        client.use(TracingMiddleware.class);
+        TracingMiddleware.events = events;
+
+        CompletableFuture<String> future = client.exchangeAsync(get("/users/1").build(), String.class);
+
+        assertTrue(future.join().contains("/users/1"));
+        assertEquals(List.of("before", "after"), events);
+    }
+
+    @Test
+    void exchangeAsyncFailsWithHttpError() {
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> client.exchangeAsync(get("/users/404").build(), String.class).join());
+        assertEquals("HTTP request failed", error.getCause().getMessage());
+    }
+
+    @Test
+    void exchangeAsyncUsesFallbackOnEmptyResponse() {
+        String value = client.exchangeAsync(get("/users/empty").build(), String.class, () -> "fallback").join();
+        assertEquals("fallback", value);
+    }
+
+    @Test
+    void exchangeAsyncKeepsConnectionsInThePool() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        client.bindTo(registry);
+        assertEquals(0, registry.get("restclient.pool.available").tag("client", "default").gauge().value());
+
+        for (int i = 0; i < 3; i++) {
+            client.exchangeAsync(get("/users/" + i).build(), String.class).join();
+        }
+
+        // A connection goes back to the pool just after its response completes the call
+        for (int i = 0; i < 100 && client.getTransportStats().getLeased() > 0; i++) {
+            sleep(10);
+        }
+        TransportStats stats = client.getTransportStats();
+        assertEquals(0, stats.getLeased());
+        assertTrue(stats.getAvailable() >= 1 && stats.getAvailable() <= 3, stats.toString());
+        assertEquals(stats.getAvailable(), registry.get("restclient.pool.available").gauge().value());
+        assertEquals(stats.getMax(), registry.get("restclient.pool.max").gauge().value());
+    }
+
+    @Test
+    void exchangeAsyncRunsBlockingMiddlewaresOnTheClientsBridge() {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        Middleware recording = next -> ctx -> {
+            threads.add(Thread.currentThread().getName());
+            next.handle(ctx);
+        };
+        client.use(recording);
+        client.use(recording);
+
+        client.exchangeAsync(get("/users/1").use(recording).build(), String.class).join();
+
+        // Nested bridged middlewares share the thread the outermost one holds
+        assertEquals(3, threads.size());
+        assertEquals(1, Set.copyOf(threads).size());
+        assertEquals("rest-async-bridge", threads.get(0));
+    }
+
+    @Test
+    void exchangeAsyncRejectsCallsBeyondTheBridgeBound() throws Exception {
+        RestConfig config = new RestConfig();
+        config.setReadTimeout(2000);
+        config.getTransport().setAsyncBridgeThreads(1);
+        config.getTransport().setAsyncBridgeQueue(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (RestClient bounded = new RestClient(null, config)) {
+            bounded.use(next -> ctx -> {
+                release.await();
+                next.handle(ctx);
+            });
+
+            CompletableFuture<String> running = bounded.exchangeAsync(get("/users/1").build(), String.class);
+            CompletableFuture<String> queued = bounded.exchangeAsync(get("/users/2").build(), String.class);
+            CompletableFuture<String> rejected = bounded.exchangeAsync(get("/users/3").build(), String.class);
+
+            CompletionException error = assertThrows(CompletionException.class, rejected::join);
+            assertInstanceOf(RequestRejectedException.class, error.getCause());
+            assertEquals("fallback", bounded.exchangeAsync(get("/users/4").build(), String.class, () -> "fallback").join());
+
+            release.countDown();
+            assertTrue(running.join().contains("/users/1"));
+            assertTrue(queued.join().contains("/users/2"));
+        }
+    }
+
+    @Test
+    void exchangeAllReturnsPartialResultsAtDeadline() {
+        List<ReqOption> options = List.of(get("/users/1").build(), get("/users/slow").build(),
+                get("/users/2").build(), get("/users/404").build());
+        List<BatchResult<String>> seen = new CopyOnWriteArrayList<>();
+
+        List<BatchResult<String>> results = client.exchangeAll(options, String.class, 2, Duration.ofMillis(800), seen::add);
+
+        assertEquals(4, results.size());
+        assertEquals(BatchResult.Status.SUCCESS, results.get(0).getStatus());
+        assertEquals(BatchResult.Status.TIMED_OUT, results.get(1).getStatus());
+        assertEquals(BatchResult.Status.SUCCESS, results.get(2).getStatus());
+        assertEquals(BatchResult.Status.FAILED, results.get(3).getStatus());
+        assertTrue(results.get(2).getValue().contains("/users/2"));
+        assertEquals(4, seen.size());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class TracingMiddleware implements Middleware {
+        static List<String> events;
+
+        @Override
+        public Handler apply(Handler next) {
+            return ctx -> {
+                events.add("before");
+                next.handle(ctx);
+                events.add("after");
+            };
+        }
+
+        @Override
+        public AsyncHandler applyAsync(AsyncHandler next) {
+            return ctx -> {
+                events.add("before");
+                return next.handle(ctx).thenRun(() -> events.add("after"));
+            };
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.xhkzeroone.resttemplate.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryerTests {
+
+    private final RetryPolicy policy = RetryPolicy.builder()
+            .maxAttempts(3)
+            .baseDelay(Duration.ofMillis(1))
+            .maxDelay(Duration.ofMillis(5))
+            .build();
+
+    private static HttpServerErrorException unavailable(String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) {
+            headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        return (HttpServerErrorException) HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "", headers, new byte[0], null);
+    }
+
+    @Test
+    void retriesTransientFailuresUntilSuccess() throws Exception {
+        Retryer retryer = new Retryer(policy, RetryBudget.unlimited());
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retryer.call(true, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw unavailable(null);
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(2, retryer.getRetryCount());
+    }
+
+    @Test
+    void doesNotRetryNonIdempotentOrClientErrors() {
+        Retryer retryer = new Retryer(policy, RetryBudget.unlimited());
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(HttpServerErrorException.class, () -> retryer.call(false, () -> {
+            attempts.incrementAndGet();
+            throw unavailable(null);
+        }));
+        assertThrows(HttpClientErrorException.class, () -> retryer.call(true, () -> {
+            attempts.incrementAndGet();
+            throw HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "", new HttpHeaders(), new byte[0], null);
+        }));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void budgetStopsRetriesOnceDrained() {
+        RetryBudget budget = new RetryBudget(0.1, 2);
+        Retryer retryer = new Retryer(policy, budget);
+        AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(HttpServerErrorException.class, () -> retryer.call(true, () -> {
+                attempts.incrementAndGet();
+                throw unavailable(null);
+            }));
+        }
+
+        // 5 originals plus the 2 retries the bucket started with (deposits stay below one token)
+        assertEquals(7, attempts.get());
+        assertTrue(budget.getExhaustedCount() > 0);
+    }
+
+    @Test
+    void honoursRetryAfterAndGivesUpWhenTooLong() {
+        assertEquals(2000, policy.delayMillis(1, unavailable("2")));
+        assertEquals(-1, policy.delayMillis(1, unavailable("3600")));
+        long jittered = policy.delayMillis(3, unavailable(null));
+        assertTrue(jittered >= 0 && jittered <= 5);
+    }
+
+    @Test
+    void asyncRetrySchedulesNextAttempt() {
+        Retryer retryer = new Retryer(policy, RetryBudget.unlimited());
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = retryer.callAsync(true, () -> attempts.incrementAndGet() < 2
+                ? CompletableFuture.failedFuture(unavailable(null))
+                : CompletableFuture.completedFuture("ok"));
+
+        assertEquals("ok", result.join());
+        assertEquals(2, attempts.get());
+    }
+}
@@ -0,0 +1,58 @@
+package com.xhkzeroone.resttemplate.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP server for the client tests: add routes, {@link #start()} it, call {@link #address()}
+ * and close it when done.
+ */
+final class StubServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+    }
+
+    StubServer route(String path, HttpHandler handler) {
+        server.createContext(path, handler);
+        return this;
+    }
+
+    StubServer start() {
+        server.start();
+        return this;
+    }
+
+    String address() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    static void respond(HttpExchange exchange, int status, String contentType, byte[] payload) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, payload.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(payload);
+        }
+    }
+
+    static void json(HttpExchange exchange, int status, String body) throws IOException {
+        respond(exchange, status, "application/json", body.getBytes(StandardCharsets.UTF_8));
+    }
+}